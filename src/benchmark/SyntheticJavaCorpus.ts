@@ -0,0 +1,168 @@
+export interface SyntheticCorpusOptions {
+    classCount: number;
+    // Defaults to one package per 25 types
+    packageCount?: number;
+    // Longest extends chain among classes (and among interfaces)
+    inheritanceDepth?: number;
+    // Interfaces implemented by each class
+    interfaceFanOut?: number;
+    // Share of the types that are interfaces
+    interfaceRatio?: number;
+    // Share of field and method types wrapped in generics (List<T>, Map<String, List<T>>)
+    genericsRatio?: number;
+    // Fields per class whose type is another type of the corpus
+    fieldReferences?: number;
+    methodsPerClass?: number;
+    // Same seed, same corpus
+    seed?: number;
+}
+
+export interface SyntheticJavaFile {
+    filePath: string;
+    packageName: string;
+    className: string;
+    source: string;
+}
+
+/**
+ * Generates a deterministic Java code base for benchmarks: classes with extends chains up to
+ * `inheritanceDepth`, interfaces implemented `interfaceFanOut` at a time, generic members and
+ * fields referencing other types across packages.
+ */
+export function generateSyntheticCorpus(options: SyntheticCorpusOptions): SyntheticJavaFile[] {
+    const classCount = Math.max(1, Math.floor(options.classCount));
+    const packageCount = Math.max(1, options.packageCount ?? Math.ceil(classCount / 25));
+    const inheritanceDepth = Math.max(1, options.inheritanceDepth ?? 4);
+    const interfaceFanOut = Math.max(0, options.interfaceFanOut ?? 2);
+    const interfaceCount = Math.min(classCount - 1, Math.round(classCount * (options.interfaceRatio ?? 0.15)));
+    const genericsRatio = options.genericsRatio ?? 0.3;
+    const fieldReferences = Math.max(0, options.fieldReferences ?? 3);
+    const methodsPerClass = Math.max(0, options.methodsPerClass ?? 8);
+
+    // Park-Miller generator, so the corpus only depends on the seed
+    let state = (options.seed ?? 1) % 2147483647 || 1;
+    const random = () => {
+        state = (state * 48271) % 2147483647;
+        return (state - 1) / 2147483646;
+    };
+    const pick = (from: number, to: number) => from + Math.floor(random() * (to - from));
+
+    // Interfaces first, then classes; supertypes always have a lower index
+    const names: string[] = [];
+    const packages: string[] = [];
+    const depth: number[] = [];
+    const parent: number[] = [];
+    for (let i = 0; i < classCount; i++) {
+        const isInterface = i < interfaceCount;
+        names.push(isInterface ? `Service${i}Api` : `Entity${i}`);
+        packages.push(`com.synthetic.module${i % packageCount}`);
+
+        const firstOfKind = isInterface ? 0 : interfaceCount;
+        let supertype = -1;
+        if (i > firstOfKind && random() < 0.7) {
+            const candidate = pick(firstOfKind, i);
+            if (depth[candidate] < inheritanceDepth - 1) {
+                supertype = candidate;
+            }
+        }
+        parent.push(supertype);
+        depth.push(supertype >= 0 ? depth[supertype] + 1 : 0);
+    }
+
+    const generic = (type: string) => {
+        if (random() >= genericsRatio) {
+            return type;
+        }
+        return random() < 0.5 ? `List<${type}>` : `Map<String, List<${type}>>`;
+    };
+
+    const files: SyntheticJavaFile[] = [];
+    for (let i = 0; i < classCount; i++) {
+        const isInterface = i < interfaceCount;
+        const className = names[i];
+        const packageName = packages[i];
+        const referenced = new Set<number>();
+
+        const header: string[] = [];
+        if (isInterface) {
+            header.push(`public interface ${className}`);
+            if (parent[i] >= 0) {
+                header.push(` extends ${names[parent[i]]}`);
+                referenced.add(parent[i]);
+            }
+        } else {
+            header.push(`public ${i % 11 === 0 ? 'abstract ' : ''}class ${className}`);
+            if (parent[i] >= 0) {
+                header.push(` extends ${names[parent[i]]}`);
+                referenced.add(parent[i]);
+            }
+            const implemented = new Set<number>();
+            for (let k = 0; k < interfaceFanOut && interfaceCount > 0; k++) {
+                implemented.add(pick(0, interfaceCount));
+            }
+            if (implemented.size > 0) {
+                header.push(` implements ${[...implemented].map(id => names[id]).join(', ')}`);
+                implemented.forEach(id => referenced.add(id));
+            }
+        }
+
+        const body: string[] = [];
+        const fieldTypes: string[] = [];
+        if (!isInterface) {
+            for (let f = 0; f < fieldReferences; f++) {
+                const target = pick(0, classCount);
+                referenced.add(target);
+                const type = generic(names[target]);
+                fieldTypes.push(type);
+                body.push(`    private ${type} ref${f};`);
+            }
+            body.push('    private String name;');
+            body.push('    protected long version;');
+            body.push(`    public static final int LIMIT_${i} = ${i};`);
+            body.push('');
+            body.push(`    public ${className}(String name) {`);
+            body.push('        this.name = name;');
+            body.push('    }');
+        }
+
+        for (let m = 0; m < methodsPerClass; m++) {
+            // Getters of the referencing fields first, then methods returning plain or generic strings
+            const returnType = m % 3 === 0 ? 'void' : m <= fieldTypes.length ? fieldTypes[m - 1] : generic('String');
+            const signature = `public ${returnType} ${m % 4 === 1 ? 'get' : 'process'}Value${m}(String input, int count)`;
+            if (isInterface) {
+                body.push(`    ${signature};`);
+            } else {
+                body.push('');
+                body.push(`    ${signature} {`);
+                body.push(returnType === 'void' ? '        count++;' : '        return null;');
+                body.push('    }');
+            }
+        }
+
+        const imports = [...referenced]
+            .filter(id => packages[id] !== packageName)
+            .map(id => `import ${packages[id]}.${names[id]};`);
+        if (fieldTypes.some(type => type.startsWith('List') || type.startsWith('Map'))) {
+            imports.push('import java.util.List;', 'import java.util.Map;');
+        }
+
+        const source = [
+            `package ${packageName};`,
+            '',
+            ...imports,
+            '',
+            `${header.join('')} {`,
+            ...body,
+            '}',
+            ''
+        ].join('\n');
+
+        files.push({
+            filePath: `/synthetic/src/main/java/${packageName.replace(/\./g, '/')}/${className}.java`,
+            packageName,
+            className,
+            source
+        });
+    }
+    return files;
+}
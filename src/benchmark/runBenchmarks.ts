@@ -0,0 +1,266 @@
+import * as fs from 'fs';
+import * as path from 'path';
+import { installVscodeMock } from './vscodeMock';
+import { generateSyntheticCorpus, SyntheticCorpusOptions } from './SyntheticJavaCorpus';
+import type { JavaClassStructure } from '../parser/JavaCodeParser';
+
+/**
+ * Budgets in microseconds per class (median run). A benchmark over budget at any size is a
+ * regression; they are set well above the current numbers so only real slowdowns trip them.
+ */
+export const REGRESSION_THRESHOLDS: { [benchmark: string]: number } = {
+    parseWithRegex: 2500,
+    compactClassStructure: 100,
+    buildClassGraph: 250,
+    generateMultiClassDiagram: 350,
+    generateInteractiveClassDiagram: 500,
+    classGraphIndex2Hop: 400
+};
+
+// Allowed slowdown against a baseline result file before it counts as a regression
+export const BASELINE_TOLERANCE = 1.3;
+
+export interface BenchmarkResult {
+    name: string;
+    classes: number;
+    iterations: number;
+    minMs: number;
+    medianMs: number;
+    microsPerClass: number;
+    heapDeltaMB: number;
+}
+
+export interface BenchmarkReport {
+    timestamp: string;
+    node: string;
+    corpus: Omit<SyntheticCorpusOptions, 'classCount'>;
+    // Cold module load plus activate(), checked against ACTIVATION_BUDGET_MS
+    activationMs: number;
+    results: BenchmarkResult[];
+    regressions: string[];
+}
+
+interface BenchmarkOptions {
+    sizes: number[];
+    iterations: number;
+    output: string;
+    baseline?: string;
+}
+
+const CORPUS_OPTIONS: Omit<SyntheticCorpusOptions, 'classCount'> = {
+    inheritanceDepth: 5,
+    interfaceFanOut: 2,
+    interfaceRatio: 0.15,
+    genericsRatio: 0.3,
+    fieldReferences: 3,
+    methodsPerClass: 8,
+    seed: 42
+};
+
+function parseArguments(argv: string[]): BenchmarkOptions {
+    const options: BenchmarkOptions = {
+        sizes: [200, 1000, 3000],
+        iterations: 5,
+        output: path.resolve('benchmark-results.json')
+    };
+    for (let i = 0; i < argv.length; i++) {
+        const value = argv[i + 1];
+        switch (argv[i]) {
+            case '--sizes':
+                options.sizes = value.split(',').map(Number).filter(size => size > 0);
+                i++;
+                break;
+            case '--iterations':
+                options.iterations = Math.max(1, Number(value));
+                i++;
+                break;
+            case '--output':
+                options.output = path.resolve(value);
+                i++;
+                break;
+            case '--baseline':
+                options.baseline = path.resolve(value);
+                i++;
+                break;
+            default:
+                throw new Error(`Unknown argument: ${argv[i]}`);
+        }
+    }
+    return options;
+}
+
+/**
+ * Runs `task` once to warm up and then `iterations` times. The code under test logs a lot,
+ * console.log is silenced while it runs.
+ */
+async function measure(name: string, classes: number, iterations: number, task: () => unknown): Promise<BenchmarkResult> {
+    const log = console.log;
+    const timings: number[] = [];
+    let heapDelta = 0;
+    console.log = () => undefined;
+    try {
+        await task();
+        for (let i = 0; i < iterations; i++) {
+            const heapBefore = process.memoryUsage().heapUsed;
+            const startTime = process.hrtime.bigint();
+            await task();
+            timings.push(Number(process.hrtime.bigint() - startTime) / 1e6);
+            heapDelta = Math.max(heapDelta, process.memoryUsage().heapUsed - heapBefore);
+        }
+    } finally {
+        console.log = log;
+    }
+
+    timings.sort((a, b) => a - b);
+    const medianMs = timings[Math.floor(timings.length / 2)];
+    return {
+        name,
+        classes,
+        iterations,
+        minMs: round(timings[0]),
+        medianMs: round(medianMs),
+        microsPerClass: round(medianMs * 1000 / classes),
+        heapDeltaMB: round(heapDelta / (1024 * 1024))
+    };
+}
+
+function round(value: number): number {
+    return Math.round(value * 100) / 100;
+}
+
+/**
+ * Loads the extension the way VS Code does on the first Java file of a window and runs
+ * activate(). Must run before anything else loads the extension's modules, or the module
+ * load would not be cold.
+ */
+function measureActivation(): { activationMs: number, budgetMs: number } {
+    const log = console.log;
+    const context = { globalStorageUri: undefined, subscriptions: [] as { dispose(): unknown }[] };
+    console.log = () => undefined;
+    try {
+        const startTime = process.hrtime.bigint();
+        const extension = require('../extension') as typeof import('../extension');
+        extension.activate(context as any);
+        const activationMs = round(Number(process.hrtime.bigint() - startTime) / 1e6);
+        return { activationMs, budgetMs: extension.ACTIVATION_BUDGET_MS };
+    } finally {
+        // Also stops the deferred Java support initialization
+        context.subscriptions.forEach(subscription => subscription.dispose());
+        console.log = log;
+    }
+}
+
+function findRegressions(results: BenchmarkResult[], baseline: BenchmarkReport | undefined): string[] {
+    const regressions: string[] = [];
+    for (const result of results) {
+        const budget = REGRESSION_THRESHOLDS[result.name];
+        if (budget !== undefined && result.microsPerClass > budget) {
+            regressions.push(`${result.name} @ ${result.classes}: ${result.microsPerClass}µs/class exceeds the ${budget}µs/class budget`);
+        }
+
+        // Fastest runs are compared, they are the least affected by noise on the machine
+        const previous = baseline?.results.find(entry => entry.name === result.name && entry.classes === result.classes);
+        if (previous && result.minMs > previous.minMs * BASELINE_TOLERANCE) {
+            regressions.push(`${result.name} @ ${result.classes}: ${result.minMs}ms vs ${previous.minMs}ms in the baseline`);
+        }
+    }
+    return regressions;
+}
+
+async function runBenchmarks(options: BenchmarkOptions): Promise<BenchmarkReport> {
+    // Everything importing vscode is loaded after the mock is in place
+    installVscodeMock();
+    const activation = measureActivation();
+    console.log(`\nActivation ${activation.activationMs}ms (budget ${activation.budgetMs}ms)`);
+
+    const { JavaCodeParser } = require('../parser/JavaCodeParser') as typeof import('../parser/JavaCodeParser');
+    const { JavaLanguageServerClient } = require('../languageserver/JavaLanguageServerClient') as typeof import('../languageserver/JavaLanguageServerClient');
+    const { buildClassGraph } = require('../graph/ClassGraph') as typeof import('../graph/ClassGraph');
+    const { ClassGraphIndex, qualifiedNameOf } = require('../graph/ClassGraphIndex') as typeof import('../graph/ClassGraphIndex');
+    const { compactClassStructure } = require('../parser/MemberTable') as typeof import('../parser/MemberTable');
+    const { PlantUMLGenerator } = require('../plantuml/PlantUMLGenerator') as typeof import('../plantuml/PlantUMLGenerator');
+
+    const context = { globalStorageUri: undefined, subscriptions: [] } as any;
+    const languageServerClient = new JavaLanguageServerClient(context);
+    const parser = new JavaCodeParser(context, languageServerClient);
+    const generator = new PlantUMLGenerator();
+    const results: BenchmarkResult[] = [];
+
+    try {
+        for (const size of options.sizes) {
+            const files = generateSyntheticCorpus({ ...CORPUS_OPTIONS, classCount: size });
+            console.log(`\n${size} classes (${Math.round(files.reduce((total, file) => total + file.source.length, 0) / 1024)}KB of source)`);
+
+            let parsed: JavaClassStructure[] = [];
+            let structures: JavaClassStructure[] = [];
+            const suite: Array<[string, () => unknown]> = [
+                ['parseWithRegex', async () => {
+                    parsed = [];
+                    for (const file of files) {
+                        parsed.push(await parser['parseWithRegex'](file.source, file.filePath));
+                    }
+                }],
+                // parseJavaFile hands out compact models, the steps below work on those
+                ['compactClassStructure', () => {
+                    structures = parsed.map(compactClassStructure);
+                }],
+                ['buildClassGraph', () => buildClassGraph(structures)],
+                ['generateMultiClassDiagram', () => generator.generateMultiClassDiagram(structures)],
+                ['generateInteractiveClassDiagram', () => generator.generateInteractiveClassDiagram(structures[structures.length - 1], structures)],
+                // Index build plus one 2-hop neighborhood query per class
+                ['classGraphIndex2Hop', () => {
+                    const index = new ClassGraphIndex();
+                    structures.forEach(structure => index.update(structure));
+                    for (const structure of structures) {
+                        index.getNeighborhood(qualifiedNameOf(structure), { depth: 2 });
+                    }
+                }]
+            ];
+
+            for (const [name, task] of suite) {
+                const result = await measure(name, size, options.iterations, task);
+                results.push(result);
+                console.log(`  ${name.padEnd(32)} ${String(result.medianMs).padStart(9)}ms  ${String(result.microsPerClass).padStart(8)}µs/class  heap ${result.heapDeltaMB}MB`);
+            }
+        }
+    } finally {
+        parser.dispose();
+        languageServerClient.dispose();
+    }
+
+    const baseline = options.baseline && fs.existsSync(options.baseline)
+        ? JSON.parse(fs.readFileSync(options.baseline, 'utf8')) as BenchmarkReport
+        : undefined;
+
+    return {
+        timestamp: new Date().toISOString(),
+        node: process.version,
+        corpus: CORPUS_OPTIONS,
+        activationMs: activation.activationMs,
+        results,
+        regressions: [
+            ...(activation.activationMs > activation.budgetMs
+                ? [`activation: ${activation.activationMs}ms exceeds the ${activation.budgetMs}ms budget`]
+                : []),
+            ...findRegressions(results, baseline)
+        ]
+    };
+}
+
+if (require.main === module) {
+    const options = parseArguments(process.argv.slice(2));
+    runBenchmarks(options)
+        .then(report => {
+            fs.writeFileSync(options.output, JSON.stringify(report, null, 2));
+            console.log(`\nResults written to ${options.output}`);
+            if (report.regressions.length > 0) {
+                console.error('\nPerformance regressions:');
+                report.regressions.forEach(regression => console.error(`  ${regression}`));
+                process.exitCode = 1;
+            }
+        })
+        .catch(error => {
+            console.error('Benchmark failed:', error);
+            process.exitCode = 1;
+        });
+}
@@ -0,0 +1,76 @@
+import * as path from 'path';
+
+/**
+ * Just enough of the `vscode` module to construct the parser and generators under plain Node.
+ * Events never fire, configuration always returns the default value and the Language Server
+ * is reported as missing, so everything runs on the offline code paths.
+ */
+function createVscodeMock(): Record<string, unknown> {
+    const disposable = { dispose: () => undefined };
+    const event = () => disposable;
+
+    const workspace = {
+        // Tests set this to the folders of their temporary workspace
+        workspaceFolders: undefined as { uri: { fsPath: string } }[] | undefined,
+        getWorkspaceFolder: (uri: { fsPath: string }) => (workspace.workspaceFolders || []).find(folder =>
+            uri.fsPath === folder.uri.fsPath || uri.fsPath.startsWith(folder.uri.fsPath + path.sep)),
+        // Open documents, tests add entries to simulate editor buffers
+        textDocuments: [] as { uri: { toString(): string }, version: number }[],
+        onDidChangeTextDocument: event,
+        onDidChangeConfiguration: event,
+        onDidSaveTextDocument: event,
+        createFileSystemWatcher: () => ({ onDidChange: event, onDidCreate: event, onDidDelete: event, dispose: () => undefined }),
+        getConfiguration: () => ({ get: <T>(_key: string, defaultValue?: T) => defaultValue }),
+        findFiles: async () => []
+    };
+
+    return {
+        workspace,
+        window: {
+            showInformationMessage: async () => undefined,
+            showWarningMessage: async () => undefined,
+            showErrorMessage: async () => undefined,
+            createOutputChannel: () => ({ appendLine: () => undefined, dispose: () => undefined })
+        },
+        extensions: {
+            getExtension: () => undefined
+        },
+        commands: {
+            executeCommand: async () => undefined,
+            registerCommand: () => disposable
+        },
+        Uri: {
+            file: (fsPath: string) => ({ fsPath, path: fsPath, scheme: 'file', toString: () => `file://${fsPath}` })
+        },
+        SymbolKind: new Proxy({}, { get: (_target, name) => String(name) }),
+        Disposable: class {
+            constructor(private callback: () => void) {}
+            dispose(): void {
+                this.callback();
+            }
+        }
+    };
+}
+
+let installed = false;
+
+/**
+ * Makes `require('vscode')` return the mock. Must run before any module importing vscode is loaded.
+ */
+export function installVscodeMock(): void {
+    if (installed) {
+        return;
+    }
+    installed = true;
+
+    // eslint-disable-next-line @typescript-eslint/no-var-requires
+    const Module = require('module');
+    const mock = createVscodeMock();
+    const originalLoad = Module._load;
+    Module._load = function (request: string, ...rest: unknown[]) {
+        if (request === 'vscode') {
+            return mock;
+        }
+        return originalLoad.call(this, request, ...rest);
+    };
+}
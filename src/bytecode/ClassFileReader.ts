@@ -0,0 +1,339 @@
+/**
+ * Minimal reader for the JVM class file format (JVMS chapter 4). Only what a class
+ * diagram needs is decoded: names, access flags, supertypes, fields and methods
+ * with their generic signatures. Code attributes are skipped without being parsed.
+ */
+
+export const ACC_PUBLIC = 0x0001;
+export const ACC_PRIVATE = 0x0002;
+export const ACC_PROTECTED = 0x0004;
+export const ACC_STATIC = 0x0008;
+export const ACC_FINAL = 0x0010;
+export const ACC_SYNCHRONIZED = 0x0020;
+export const ACC_BRIDGE = 0x0040;
+export const ACC_VOLATILE = 0x0040;
+export const ACC_TRANSIENT = 0x0080;
+export const ACC_NATIVE = 0x0100;
+export const ACC_INTERFACE = 0x0200;
+export const ACC_ABSTRACT = 0x0400;
+export const ACC_SYNTHETIC = 0x1000;
+export const ACC_ANNOTATION = 0x2000;
+export const ACC_ENUM = 0x4000;
+
+export interface ClassFileMember {
+    name: string;
+    accessFlags: number;
+    descriptor: string;
+    // Generic signature, when the member uses generics
+    signature?: string;
+    // Declared exceptions (methods only), internal names
+    exceptions: string[];
+}
+
+export interface ClassFileInfo {
+    // Internal name, e.g. java/util/Map$Entry
+    thisClass: string;
+    superClass?: string;
+    interfaces: string[];
+    accessFlags: number;
+    signature?: string;
+    fields: ClassFileMember[];
+    methods: ClassFileMember[];
+}
+
+// Constant pool tags
+const CONSTANT_Utf8 = 1;
+const CONSTANT_Integer = 3;
+const CONSTANT_Float = 4;
+const CONSTANT_Long = 5;
+const CONSTANT_Double = 6;
+const CONSTANT_Class = 7;
+const CONSTANT_String = 8;
+const CONSTANT_Fieldref = 9;
+const CONSTANT_Methodref = 10;
+const CONSTANT_InterfaceMethodref = 11;
+const CONSTANT_NameAndType = 12;
+const CONSTANT_MethodHandle = 15;
+const CONSTANT_MethodType = 16;
+const CONSTANT_Dynamic = 17;
+const CONSTANT_InvokeDynamic = 18;
+const CONSTANT_Module = 19;
+const CONSTANT_Package = 20;
+
+export function parseClassFile(data: Buffer): ClassFileInfo {
+    if (data.length < 10 || data.readUInt32BE(0) !== 0xCAFEBABE) {
+        throw new Error('Not a class file');
+    }
+
+    // Offsets of the constant pool entries; strings are decoded on first use
+    const poolCount = data.readUInt16BE(8);
+    const poolOffsets = new Int32Array(poolCount);
+    const utf8Cache = new Map<number, string>();
+    let offset = 10;
+
+    for (let index = 1; index < poolCount; index++) {
+        poolOffsets[index] = offset;
+        const tag = data[offset];
+        switch (tag) {
+            case CONSTANT_Utf8:
+                offset += 3 + data.readUInt16BE(offset + 1);
+                break;
+            case CONSTANT_Integer:
+            case CONSTANT_Float:
+            case CONSTANT_Fieldref:
+            case CONSTANT_Methodref:
+            case CONSTANT_InterfaceMethodref:
+            case CONSTANT_NameAndType:
+            case CONSTANT_Dynamic:
+            case CONSTANT_InvokeDynamic:
+                offset += 5;
+                break;
+            case CONSTANT_Long:
+            case CONSTANT_Double:
+                offset += 9;
+                // 8-byte constants take two pool slots
+                index++;
+                break;
+            case CONSTANT_Class:
+            case CONSTANT_String:
+            case CONSTANT_MethodType:
+            case CONSTANT_Module:
+            case CONSTANT_Package:
+                offset += 3;
+                break;
+            case CONSTANT_MethodHandle:
+                offset += 4;
+                break;
+            default:
+                throw new Error(`Unknown constant pool tag ${tag} at index ${index}`);
+        }
+    }
+
+    const utf8 = (index: number): string => {
+        let value = utf8Cache.get(index);
+        if (value === undefined) {
+            const start = poolOffsets[index];
+            if (!start || data[start] !== CONSTANT_Utf8) {
+                throw new Error(`Constant pool entry ${index} is not a Utf8`);
+            }
+            const length = data.readUInt16BE(start + 1);
+            // Modified UTF-8 only differs from UTF-8 for NUL and supplementary characters
+            value = data.toString('utf8', start + 3, start + 3 + length);
+            utf8Cache.set(index, value);
+        }
+        return value;
+    };
+    const className = (index: number): string => utf8(data.readUInt16BE(poolOffsets[index] + 1));
+
+    const accessFlags = data.readUInt16BE(offset);
+    const thisClass = className(data.readUInt16BE(offset + 2));
+    const superIndex = data.readUInt16BE(offset + 4);
+    const superClass = superIndex ? className(superIndex) : undefined;
+    offset += 6;
+
+    const interfaceCount = data.readUInt16BE(offset);
+    offset += 2;
+    const interfaces: string[] = [];
+    for (let i = 0; i < interfaceCount; i++) {
+        interfaces.push(className(data.readUInt16BE(offset)));
+        offset += 2;
+    }
+
+    const readMembers = (): ClassFileMember[] => {
+        const count = data.readUInt16BE(offset);
+        offset += 2;
+        const members: ClassFileMember[] = [];
+        for (let i = 0; i < count; i++) {
+            const member: ClassFileMember = {
+                accessFlags: data.readUInt16BE(offset),
+                name: utf8(data.readUInt16BE(offset + 2)),
+                descriptor: utf8(data.readUInt16BE(offset + 4)),
+                exceptions: []
+            };
+            offset += 6;
+            readAttributes((name, start) => {
+                if (name === 'Signature') {
+                    member.signature = utf8(data.readUInt16BE(start));
+                } else if (name === 'Exceptions') {
+                    const exceptionCount = data.readUInt16BE(start);
+                    for (let j = 0; j < exceptionCount; j++) {
+                        member.exceptions.push(className(data.readUInt16BE(start + 2 + j * 2)));
+                    }
+                }
+            });
+            members.push(member);
+        }
+        return members;
+    };
+
+    const readAttributes = (visit: (name: string, start: number) => void): void => {
+        const count = data.readUInt16BE(offset);
+        offset += 2;
+        for (let i = 0; i < count; i++) {
+            const name = utf8(data.readUInt16BE(offset));
+            const length = data.readUInt32BE(offset + 2);
+            visit(name, offset + 6);
+            offset += 6 + length;
+        }
+    };
+
+    const fields = readMembers();
+    const methods = readMembers();
+    let signature: string | undefined;
+    readAttributes((name, start) => {
+        if (name === 'Signature') {
+            signature = utf8(data.readUInt16BE(start));
+        }
+    });
+
+    return { thisClass, superClass, interfaces, accessFlags, signature, fields, methods };
+}
+
+/**
+ * Converts an internal name (java/util/Map$Entry) to a binary name with dots (java.util.Map.Entry).
+ */
+export function internalToQualifiedName(internalName: string): string {
+    return internalName.replace(/[/$]/g, '.');
+}
+
+export function simpleNameOf(internalName: string): string {
+    const slash = internalName.lastIndexOf('/');
+    const name = internalName.substring(slash + 1);
+    const dollar = name.lastIndexOf('$');
+    return dollar >= 0 ? name.substring(dollar + 1) : name;
+}
+
+/**
+ * Reads field descriptors / generic signatures (JVMS 4.3 and 4.7.9.1) into
+ * source-like type names using simple class names, e.g. List<String>.
+ */
+export class SignatureReader {
+    private position = 0;
+
+    constructor(private text: string) {}
+
+    get done(): boolean {
+        return this.position >= this.text.length;
+    }
+
+    peek(): string {
+        return this.text[this.position];
+    }
+
+    /**
+     * Skips a formal type parameter list `<T:Ljava/lang/Object;>` and returns the parameter names.
+     */
+    readTypeParameters(): string[] {
+        const names: string[] = [];
+        if (this.peek() !== '<') {
+            return names;
+        }
+        this.position++;
+        while (this.peek() !== '>' && !this.done) {
+            const colon = this.text.indexOf(':', this.position);
+            names.push(this.text.substring(this.position, colon));
+            this.position = colon;
+            // Class bound and interface bounds, each introduced by ':'
+            while (this.peek() === ':') {
+                this.position++;
+                if (this.peek() !== ':' && this.peek() !== '>') {
+                    this.readType();
+                }
+            }
+        }
+        this.position++;
+        return names;
+    }
+
+    readType(): string {
+        const tag = this.text[this.position++];
+        switch (tag) {
+            case 'B': return 'byte';
+            case 'C': return 'char';
+            case 'D': return 'double';
+            case 'F': return 'float';
+            case 'I': return 'int';
+            case 'J': return 'long';
+            case 'S': return 'short';
+            case 'Z': return 'boolean';
+            case 'V': return 'void';
+            case '[': return `${this.readType()}[]`;
+            case 'T': {
+                const end = this.text.indexOf(';', this.position);
+                const name = this.text.substring(this.position, end);
+                this.position = end + 1;
+                return name;
+            }
+            case 'L':
+                return this.readClassType();
+            default:
+                throw new Error(`Unexpected signature character '${tag}' in ${this.text}`);
+        }
+    }
+
+    /**
+     * Reads the method part of a descriptor / signature: (params)return^throws.
+     */
+    readMethod(): { parameters: string[]; returnType: string; exceptions: string[] } {
+        this.readTypeParameters();
+        const parameters: string[] = [];
+        this.position++; // (
+        while (this.peek() !== ')') {
+            parameters.push(this.readType());
+        }
+        this.position++; // )
+        const returnType = this.readType();
+        const exceptions: string[] = [];
+        while (this.peek() === '^') {
+            this.position++;
+            exceptions.push(this.readType());
+        }
+        return { parameters, returnType, exceptions };
+    }
+
+    private readClassType(): string {
+        let name = '';
+        let args = '';
+        let segment = '';
+        for (;;) {
+            const char = this.text[this.position++];
+            if (char === ';') {
+                break;
+            }
+            if (char === '<') {
+                args = `<${this.readTypeArguments().join(', ')}>`;
+            } else if (char === '.') {
+                // Inner class of a parameterized outer class, keep only the inner part
+                name = segment;
+                segment = '';
+                args = '';
+            } else if (char === '/' || char === '$') {
+                segment = '';
+            } else {
+                segment += char;
+            }
+        }
+        return (segment || name) + args;
+    }
+
+    private readTypeArguments(): string[] {
+        const args: string[] = [];
+        while (this.peek() !== '>') {
+            const char = this.peek();
+            if (char === '*') {
+                this.position++;
+                args.push('?');
+            } else if (char === '+') {
+                this.position++;
+                args.push(`? extends ${this.readType()}`);
+            } else if (char === '-') {
+                this.position++;
+                args.push(`? super ${this.readType()}`);
+            } else {
+                args.push(this.readType());
+            }
+        }
+        this.position++;
+        return args;
+    }
+}
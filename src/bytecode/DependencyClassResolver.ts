@@ -0,0 +1,506 @@
+import * as vscode from 'vscode';
+import * as fs from 'fs';
+import * as os from 'os';
+import * as path from 'path';
+import * as zlib from 'zlib';
+import type { ClassInfoResult, FieldInfo, MethodInfo } from '../languageserver/JavaLanguageServerClient';
+import { LruCache } from '../cache/LruCache';
+import { mapWithConcurrency } from '../util/concurrency';
+import { collectFiles } from '../util/fileDiscovery';
+import { JarReader } from './JarReader';
+import { tracer } from '../trace/Tracer';
+import {
+    parseClassFile,
+    simpleNameOf,
+    internalToQualifiedName,
+    SignatureReader,
+    ClassFileInfo,
+    ClassFileMember,
+    ACC_PUBLIC, ACC_PRIVATE, ACC_PROTECTED, ACC_STATIC, ACC_FINAL, ACC_ABSTRACT,
+    ACC_INTERFACE, ACC_ENUM, ACC_SYNTHETIC, ACC_BRIDGE
+} from './ClassFileReader';
+
+// Bump when the on-disk index layout changes
+const INDEX_FORMAT_VERSION = 1;
+
+// Resolved class infos kept in memory
+const CLASS_INFO_CACHE_SIZE = 2000;
+
+// Archives whose central directory stays loaded for entry reads
+const OPEN_ARCHIVE_CACHE_SIZE = 64;
+
+// Central directories read at the same time while indexing
+const INDEX_CONCURRENCY = 16;
+
+interface ClassLocation {
+    archive: string;
+    entry: string;
+}
+
+interface IndexedArchive {
+    size: number;
+    mtimeMs: number;
+    // Class entry names inside the archive
+    entries: string[];
+}
+
+interface IndexFile {
+    version: number;
+    archives: { [archivePath: string]: IndexedArchive };
+}
+
+/**
+ * Archives on the project classpath, as reported by the Language Server. Undefined when it
+ * cannot tell (not installed, not started); a rejection means it should be asked again.
+ */
+export type ClasspathProvider = () => Promise<string[] | undefined>;
+
+/**
+ * Resolves dependency and JDK types straight from bytecode. The archives on the project
+ * classpath plus the JDK are indexed (the index is persisted and only re-read for archives
+ * whose size or mtime changed); class files are inflated and parsed on demand.
+ */
+export class DependencyClassResolver {
+    private locations = new Map<string, ClassLocation>();
+    private indexReady: Promise<void> | undefined;
+    private archives = new LruCache<string, Promise<JarReader>>(OPEN_ARCHIVE_CACHE_SIZE);
+    private classInfos = new LruCache<string, ClassInfoResult | null>(CLASS_INFO_CACHE_SIZE);
+
+    constructor(private storageDir?: string, private classpathProvider?: ClasspathProvider) {}
+
+    /**
+     * Looks a class up by qualified name. A simple name only resolves to java.lang, the one
+     * package every compilation unit imports; anything else could be a workspace type (User,
+     * Order, Node) and must not turn into an unrelated library class. Returns null when no
+     * indexed archive has it.
+     */
+    async resolve(className: string): Promise<ClassInfoResult | null> {
+        const cached = this.classInfos.get(className);
+        if (cached !== undefined) {
+            return cached ? structuredClone(cached) : null;
+        }
+
+        let info: ClassInfoResult | null = null;
+        try {
+            await this.ensureIndexed();
+            const location = this.findLocation(className);
+            if (location) {
+                const archive = await this.openArchive(location.archive);
+                const data = await archive.read(location.entry);
+                if (data) {
+                    info = this.toClassInfo(parseClassFile(data));
+                }
+            }
+        } catch (error) {
+            console.warn(`Could not read ${className} from bytecode:`, error);
+        }
+
+        // Misses only stick once the index covers the classpath
+        if (info || this.indexReady) {
+            this.classInfos.set(className, info);
+        }
+        return info ? structuredClone(info) : null;
+    }
+
+    /**
+     * Builds the archive index on first call; later calls return immediately.
+     */
+    ensureIndexed(): Promise<void> {
+        if (!this.indexReady) {
+            const indexReady: Promise<void> = this.buildIndex().then(complete => {
+                // Built without a classpath the Language Server failed to give, ask again next time
+                if (!complete && this.indexReady === indexReady) {
+                    this.indexReady = undefined;
+                }
+            }, error => {
+                console.warn('Indexing dependency archives failed:', error);
+            });
+            this.indexReady = indexReady;
+        }
+        return this.indexReady;
+    }
+
+    /**
+     * The project classpath changed (or became known): the next lookup re-indexes. Archives
+     * whose size and mtime did not change come from the persisted index.
+     */
+    invalidateIndex(): void {
+        this.indexReady = undefined;
+        this.classInfos.clear();
+    }
+
+    dispose(): void {
+        this.archives.clear();
+        this.classInfos.clear();
+    }
+
+    private findLocation(className: string): ClassLocation | undefined {
+        return className.includes('.') ? this.locations.get(className) : this.locations.get(`java.lang.${className}`);
+    }
+
+    /**
+     * Resolves to false when the Language Server could not report the classpath this time.
+     */
+    private async buildIndex(): Promise<boolean> {
+        const startTime = Date.now();
+        let classpath: string[] | undefined;
+        let complete = true;
+        try {
+            classpath = await this.classpathProvider?.();
+        } catch (error) {
+            tracer.log('Project classpath unavailable, indexing without it:', error);
+            complete = false;
+        }
+
+        // Earlier archives win when the same class appears twice
+        const archivePaths = [
+            ...await this.findConfiguredArchives(),
+            ...(classpath ? classpath.filter(isArchive) : await this.findWorkspaceArchives()),
+            ...await this.findLocalRepositoryArchives(),
+            ...await this.findJdkArchives()
+        ];
+        const uniquePaths = Array.from(new Set(archivePaths));
+
+        const previous = await this.readIndexFile();
+        const next: IndexFile = { version: INDEX_FORMAT_VERSION, archives: {} };
+        // Swapped in once complete, lookups keep the previous index until then
+        const locations = new Map<string, ClassLocation>();
+        let reread = 0;
+
+        const indexed = await mapWithConcurrency(uniquePaths, INDEX_CONCURRENCY, async archivePath => {
+            try {
+                const stat = await fs.promises.stat(archivePath);
+                const known = previous?.archives[archivePath];
+                if (known && known.size === stat.size && known.mtimeMs === stat.mtimeMs) {
+                    return known;
+                }
+
+                reread++;
+                const reader = await JarReader.open(archivePath, isClassEntry);
+                return { size: stat.size, mtimeMs: stat.mtimeMs, entries: Array.from(reader.entryNames) };
+            } catch (error) {
+                console.warn(`Skipping unreadable archive ${archivePath}:`, error);
+                return undefined;
+            }
+        });
+
+        uniquePaths.forEach((archivePath, index) => {
+            const archive = indexed[index];
+            if (!archive) {
+                return;
+            }
+            next.archives[archivePath] = archive;
+            for (const entry of archive.entries) {
+                const qualifiedName = entryToQualifiedName(entry);
+                if (locations.has(qualifiedName)) {
+                    continue;
+                }
+                locations.set(qualifiedName, { archive: archivePath, entry });
+            }
+        });
+        this.locations = locations;
+
+        const removed = previous ? Object.keys(previous.archives).some(archivePath => !next.archives[archivePath]) : true;
+        if (reread > 0 || removed) {
+            await this.writeIndexFile(next);
+        }
+
+        console.log(`Dependency index: ${locations.size} classes in ${Object.keys(next.archives).length} archives (${reread} re-read, ${Date.now() - startTime}ms)`);
+        return complete;
+    }
+
+    private async findConfiguredArchives(): Promise<string[]> {
+        const configured = vscode.workspace.getConfiguration('javaClassDiagram').get<string[]>('classpath', []);
+        const result: string[] = [];
+        for (const entry of configured) {
+            const resolved = entry.startsWith('~') ? path.join(os.homedir(), entry.substring(1)) : entry;
+            result.push(...await collectArchives(resolved));
+        }
+        return result;
+    }
+
+    /**
+     * JARs checked into the workspace (lib/ folders), used when the Language Server cannot
+     * report the classpath.
+     */
+    private async findWorkspaceArchives(): Promise<string[]> {
+        const uris = await vscode.workspace.findFiles('**/*.jar', '**/node_modules/**');
+        return uris.map(uri => uri.fsPath).filter(isBinaryJar);
+    }
+
+    /**
+     * Opt-in: every artifact of the local Maven and Gradle caches, whether the project uses it
+     * or not.
+     */
+    private async findLocalRepositoryArchives(): Promise<string[]> {
+        if (!vscode.workspace.getConfiguration('javaClassDiagram').get<boolean>('indexLocalRepositories', false)) {
+            return [];
+        }
+
+        const home = os.homedir();
+        const archives = [
+            ...await collectArchives(path.join(home, '.m2', 'repository')),
+            ...await collectArchives(path.join(home, '.gradle', 'caches', 'modules-2', 'files-2.1'))
+        ];
+        return newestVersionsOnly(archives);
+    }
+
+    private async findJdkArchives(): Promise<string[]> {
+        const javaHome = await findJavaHome();
+        if (!javaHome) {
+            return [];
+        }
+
+        // Java 8 and older ship rt.jar, newer JDKs ship one JMOD per module
+        for (const rtJar of [path.join(javaHome, 'jre', 'lib', 'rt.jar'), path.join(javaHome, 'lib', 'rt.jar')]) {
+            if (await exists(rtJar)) {
+                return [rtJar];
+            }
+        }
+        const jmodsDir = path.join(javaHome, 'jmods');
+        try {
+            const names = await fs.promises.readdir(jmodsDir);
+            // java.base first, it holds most of what diagrams reference
+            return names
+                .filter(name => name.endsWith('.jmod'))
+                .sort((a, b) => (a === 'java.base.jmod' ? -1 : b === 'java.base.jmod' ? 1 : a.localeCompare(b)))
+                .map(name => path.join(jmodsDir, name));
+        } catch {
+            return [];
+        }
+    }
+
+    private openArchive(archivePath: string): Promise<JarReader> {
+        let archive = this.archives.get(archivePath);
+        if (!archive) {
+            archive = JarReader.open(archivePath, isClassEntry);
+            this.archives.set(archivePath, archive);
+            archive.catch(() => this.archives.delete(archivePath));
+        }
+        return archive;
+    }
+
+    private toClassInfo(classFile: ClassFileInfo): ClassInfoResult {
+        const isInterface = (classFile.accessFlags & ACC_INTERFACE) !== 0;
+        const className = simpleNameOf(classFile.thisClass);
+        const qualifiedName = internalToQualifiedName(classFile.thisClass);
+        const packageSeparator = classFile.thisClass.lastIndexOf('/');
+        const packageName = packageSeparator > 0 ? classFile.thisClass.substring(0, packageSeparator).replace(/\//g, '.') : '';
+
+        // Supertypes with generic arguments when the class has a Signature attribute
+        let superType: string | undefined;
+        let interfaces: string[];
+        if (classFile.signature) {
+            const reader = new SignatureReader(classFile.signature);
+            reader.readTypeParameters();
+            superType = reader.readType();
+            interfaces = [];
+            while (!reader.done) {
+                interfaces.push(reader.readType());
+            }
+        } else {
+            superType = classFile.superClass ? simpleNameOf(classFile.superClass) : undefined;
+            interfaces = classFile.interfaces.map(simpleNameOf);
+        }
+        if (classFile.superClass === 'java/lang/Object') {
+            superType = undefined;
+        }
+
+        // Same convention as the source parsers: an interface's first parent goes to superClass
+        if (isInterface) {
+            superType = interfaces.shift();
+        }
+
+        const fields: FieldInfo[] = [];
+        for (const field of classFile.fields) {
+            if (!isVisibleMember(field)) {
+                continue;
+            }
+            fields.push({
+                name: field.name,
+                type: new SignatureReader(field.signature || field.descriptor).readType(),
+                modifiers: modifiersOf(field.accessFlags, false)
+            });
+        }
+
+        const methods: MethodInfo[] = [];
+        const constructors: MethodInfo[] = [];
+        for (const method of classFile.methods) {
+            if (!isVisibleMember(method) || (method.accessFlags & ACC_BRIDGE) !== 0 || method.name === '<clinit>') {
+                continue;
+            }
+            const signature = new SignatureReader(method.signature || method.descriptor).readMethod();
+            const info: MethodInfo = {
+                name: method.name === '<init>' ? className : method.name,
+                returnType: method.name === '<init>' ? '' : signature.returnType,
+                parameters: signature.parameters.map((type, index) => ({ name: `arg${index}`, type })),
+                modifiers: modifiersOf(method.accessFlags, isInterface),
+                exceptions: signature.exceptions.length > 0 ? signature.exceptions : method.exceptions.map(simpleNameOf)
+            };
+            if (method.name === '<init>') {
+                constructors.push(info);
+            } else {
+                methods.push(info);
+            }
+        }
+
+        tracer.log(`Resolved ${qualifiedName} from bytecode`);
+        return {
+            className,
+            packageName,
+            superClass: superType,
+            interfaces,
+            fields,
+            methods,
+            constructors,
+            isAbstract: !isInterface && (classFile.accessFlags & ACC_ABSTRACT) !== 0,
+            isInterface,
+            isEnum: (classFile.accessFlags & ACC_ENUM) !== 0
+        };
+    }
+
+    private async readIndexFile(): Promise<IndexFile | undefined> {
+        if (!this.storageDir) {
+            return undefined;
+        }
+        try {
+            const data = await fs.promises.readFile(this.getIndexPath());
+            const file = JSON.parse(zlib.gunzipSync(data).toString('utf8')) as IndexFile;
+            return file.version === INDEX_FORMAT_VERSION && file.archives ? file : undefined;
+        } catch {
+            // Missing or corrupt index, everything is re-read
+            return undefined;
+        }
+    }
+
+    private async writeIndexFile(file: IndexFile): Promise<void> {
+        if (!this.storageDir) {
+            return;
+        }
+        try {
+            await fs.promises.mkdir(this.storageDir, { recursive: true });
+            await fs.promises.writeFile(this.getIndexPath(), zlib.gzipSync(JSON.stringify(file)));
+        } catch (error) {
+            console.warn('Cannot write dependency index:', error);
+        }
+    }
+
+    private getIndexPath(): string {
+        return path.join(this.storageDir!, `dependency-index-v${INDEX_FORMAT_VERSION}.json.gz`);
+    }
+}
+
+function isClassEntry(name: string): boolean {
+    return name.endsWith('.class') &&
+        !name.endsWith('module-info.class') &&
+        !name.endsWith('package-info.class') &&
+        // Multi-release overrides duplicate the base entries
+        !name.startsWith('META-INF/');
+}
+
+function entryToQualifiedName(entry: string): string {
+    // JMOD entries live under classes/
+    const name = entry.startsWith('classes/') ? entry.substring('classes/'.length) : entry;
+    return internalToQualifiedName(name.substring(0, name.length - '.class'.length));
+}
+
+function isBinaryJar(filePath: string): boolean {
+    return filePath.endsWith('.jar') && !filePath.endsWith('-sources.jar') && !filePath.endsWith('-javadoc.jar');
+}
+
+function isArchive(filePath: string): boolean {
+    // Output folders on the classpath hold workspace classes, the source parsers cover those
+    return isBinaryJar(filePath) || filePath.endsWith('.jmod');
+}
+
+function isVisibleMember(member: ClassFileMember): boolean {
+    // Dependency types are shown by their API, like javap -protected
+    return (member.accessFlags & ACC_SYNTHETIC) === 0 &&
+        (member.accessFlags & ACC_PRIVATE) === 0 &&
+        (member.accessFlags & (ACC_PUBLIC | ACC_PROTECTED)) !== 0 &&
+        !member.name.startsWith('lambda$');
+}
+
+function modifiersOf(accessFlags: number, inInterface: boolean): string[] {
+    const modifiers: string[] = [];
+    if (accessFlags & ACC_PUBLIC) modifiers.push('public');
+    if (accessFlags & ACC_PROTECTED) modifiers.push('protected');
+    if (accessFlags & ACC_STATIC) modifiers.push('static');
+    if (accessFlags & ACC_FINAL) modifiers.push('final');
+    // Interface methods are implicitly abstract, only mark it for classes
+    if ((accessFlags & ACC_ABSTRACT) && !inInterface) modifiers.push('abstract');
+    return modifiers;
+}
+
+/**
+ * Keeps one version per artifact directory (Maven: group/artifact/version/x.jar,
+ * Gradle: group/artifact/version/hash/x.jar), the highest one.
+ */
+function newestVersionsOnly(archives: string[]): string[] {
+    const byArtifact = new Map<string, { version: string; paths: string[] }>();
+    for (const archive of archives) {
+        const parts = archive.split(path.sep);
+        // Gradle adds a hash directory below the version
+        const versionIndex = /^[0-9a-f]{30,}$/.test(parts[parts.length - 2]) ? parts.length - 3 : parts.length - 2;
+        const version = parts[versionIndex];
+        const artifactKey = parts.slice(0, versionIndex).join(path.sep);
+
+        const current = byArtifact.get(artifactKey);
+        const comparison = current ? version.localeCompare(current.version, undefined, { numeric: true }) : 1;
+        if (!current || comparison > 0) {
+            byArtifact.set(artifactKey, { version, paths: [archive] });
+        } else if (comparison === 0) {
+            current.paths.push(archive);
+        }
+    }
+    return Array.from(byArtifact.values()).flatMap(entry => entry.paths);
+}
+
+/**
+ * JARs below `root` (or `root` itself when it is an archive). The walk reads a bounded number
+ * of directories at a time, deep repositories cannot exhaust file handles.
+ */
+async function collectArchives(root: string): Promise<string[]> {
+    try {
+        const stat = await fs.promises.stat(root);
+        if (stat.isFile()) {
+            return isArchive(root) ? [root] : [];
+        }
+    } catch {
+        return [];
+    }
+    const jars = await collectFiles(root, { extension: '.jar', useGitIgnore: false });
+    return jars.filter(isBinaryJar).sort();
+}
+
+async function findJavaHome(): Promise<string | undefined> {
+    const configured = vscode.workspace.getConfiguration('java').get<string>('jdt.ls.java.home') ||
+        vscode.workspace.getConfiguration('java').get<string>('home') ||
+        process.env.JAVA_HOME;
+    if (configured && await exists(configured)) {
+        return configured;
+    }
+
+    // Fall back to the java executable on PATH (usually a symlink into the JDK)
+    const executable = process.platform === 'win32' ? 'java.exe' : 'java';
+    for (const dir of (process.env.PATH || '').split(path.delimiter)) {
+        const candidate = path.join(dir, executable);
+        if (await exists(candidate)) {
+            try {
+                return path.dirname(path.dirname(await fs.promises.realpath(candidate)));
+            } catch {
+                continue;
+            }
+        }
+    }
+    return undefined;
+}
+
+async function exists(filePath: string): Promise<boolean> {
+    try {
+        await fs.promises.access(filePath);
+        return true;
+    } catch {
+        return false;
+    }
+}
@@ -0,0 +1,206 @@
+import * as fs from 'fs';
+import * as zlib from 'zlib';
+
+// End of central directory record and its ZIP64 counterparts
+const EOCD_SIGNATURE = 0x06054b50;
+const ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+const ZIP64_EOCD_SIGNATURE = 0x06064b50;
+const CENTRAL_DIRECTORY_SIGNATURE = 0x02014b50;
+const LOCAL_HEADER_SIGNATURE = 0x04034b50;
+
+// EOCD (22 bytes) plus the longest possible archive comment
+const MAX_EOCD_SEARCH = 22 + 0xffff;
+
+const METHOD_STORED = 0;
+const METHOD_DEFLATED = 8;
+
+export interface JarEntry {
+    name: string;
+    method: number;
+    compressedSize: number;
+    uncompressedSize: number;
+    // Absolute file offset of the local file header
+    localHeaderOffset: number;
+}
+
+/**
+ * Reads the central directory of a JAR / ZIP (or JMOD, which prefixes the ZIP data
+ * with a 4 byte header) and inflates single entries on demand. Only the directory
+ * is read up front; entry data is never touched until it is asked for.
+ */
+export class JarReader {
+    private constructor(
+        readonly filePath: string,
+        private entries: Map<string, JarEntry>
+    ) {}
+
+    /**
+     * Opens an archive and reads its central directory. `filter` limits which entry
+     * names are kept in memory (e.g. only *.class files).
+     */
+    static async open(filePath: string, filter?: (name: string) => boolean): Promise<JarReader> {
+        const handle = await fs.promises.open(filePath, 'r');
+        try {
+            const { size } = await handle.stat();
+            const tailLength = Math.min(size, MAX_EOCD_SEARCH);
+            const tail = Buffer.alloc(tailLength);
+            await handle.read(tail, 0, tailLength, size - tailLength);
+
+            let eocd = -1;
+            for (let i = tailLength - 22; i >= 0; i--) {
+                if (tail.readUInt32LE(i) === EOCD_SIGNATURE) {
+                    eocd = i;
+                    break;
+                }
+            }
+            if (eocd < 0) {
+                throw new Error(`${filePath} is not a ZIP archive`);
+            }
+
+            let entryCount = tail.readUInt16LE(eocd + 10);
+            let directorySize = tail.readUInt32LE(eocd + 12);
+            let directoryOffset = tail.readUInt32LE(eocd + 16);
+            let directoryEnd = size - tailLength + eocd;
+
+            // ZIP64: the real values live in the ZIP64 end of central directory record
+            if (eocd >= 20 && tail.readUInt32LE(eocd - 20) === ZIP64_EOCD_LOCATOR_SIGNATURE) {
+                const zip64Offset = Number(tail.readBigUInt64LE(eocd - 12));
+                const zip64 = Buffer.alloc(56);
+                await handle.read(zip64, 0, 56, zip64Offset);
+                if (zip64.readUInt32LE(0) === ZIP64_EOCD_SIGNATURE) {
+                    entryCount = Number(zip64.readBigUInt64LE(32));
+                    directorySize = Number(zip64.readBigUInt64LE(40));
+                    directoryOffset = Number(zip64.readBigUInt64LE(48));
+                    directoryEnd = zip64Offset;
+                }
+            }
+
+            // Offsets are relative to the start of the ZIP data, which is not the
+            // start of the file for JMODs and self-extracting archives
+            const baseOffset = directoryEnd - directorySize - directoryOffset;
+
+            const directory = Buffer.alloc(directorySize);
+            await handle.read(directory, 0, directorySize, baseOffset + directoryOffset);
+
+            const entries = new Map<string, JarEntry>();
+            let offset = 0;
+            for (let i = 0; i < entryCount && offset + 46 <= directory.length; i++) {
+                if (directory.readUInt32LE(offset) !== CENTRAL_DIRECTORY_SIGNATURE) {
+                    break;
+                }
+                const method = directory.readUInt16LE(offset + 10);
+                let compressedSize = directory.readUInt32LE(offset + 20);
+                let uncompressedSize = directory.readUInt32LE(offset + 24);
+                const nameLength = directory.readUInt16LE(offset + 28);
+                const extraLength = directory.readUInt16LE(offset + 30);
+                const commentLength = directory.readUInt16LE(offset + 32);
+                let localHeaderOffset = directory.readUInt32LE(offset + 42);
+                const name = directory.toString('utf8', offset + 46, offset + 46 + nameLength);
+
+                if (compressedSize === 0xffffffff || uncompressedSize === 0xffffffff || localHeaderOffset === 0xffffffff) {
+                    const sizes = readZip64Extra(
+                        directory.subarray(offset + 46 + nameLength, offset + 46 + nameLength + extraLength),
+                        uncompressedSize === 0xffffffff,
+                        compressedSize === 0xffffffff,
+                        localHeaderOffset === 0xffffffff
+                    );
+                    uncompressedSize = sizes.uncompressedSize ?? uncompressedSize;
+                    compressedSize = sizes.compressedSize ?? compressedSize;
+                    localHeaderOffset = sizes.localHeaderOffset ?? localHeaderOffset;
+                }
+
+                if (!filter || filter(name)) {
+                    entries.set(name, {
+                        name,
+                        method,
+                        compressedSize,
+                        uncompressedSize,
+                        localHeaderOffset: baseOffset + localHeaderOffset
+                    });
+                }
+                offset += 46 + nameLength + extraLength + commentLength;
+            }
+
+            return new JarReader(filePath, entries);
+        } finally {
+            await handle.close();
+        }
+    }
+
+    get entryNames(): IterableIterator<string> {
+        return this.entries.keys();
+    }
+
+    get size(): number {
+        return this.entries.size;
+    }
+
+    has(name: string): boolean {
+        return this.entries.has(name);
+    }
+
+    /**
+     * Reads and inflates one entry.
+     */
+    async read(name: string): Promise<Buffer | undefined> {
+        const entry = this.entries.get(name);
+        if (!entry) {
+            return undefined;
+        }
+
+        const handle = await fs.promises.open(this.filePath, 'r');
+        try {
+            const header = Buffer.alloc(30);
+            await handle.read(header, 0, 30, entry.localHeaderOffset);
+            if (header.readUInt32LE(0) !== LOCAL_HEADER_SIGNATURE) {
+                throw new Error(`Bad local header for ${name} in ${this.filePath}`);
+            }
+            // The local name / extra lengths may differ from the central directory ones
+            const dataOffset = entry.localHeaderOffset + 30 + header.readUInt16LE(26) + header.readUInt16LE(28);
+
+            const compressed = Buffer.alloc(entry.compressedSize);
+            await handle.read(compressed, 0, entry.compressedSize, dataOffset);
+
+            if (entry.method === METHOD_STORED) {
+                return compressed;
+            }
+            if (entry.method === METHOD_DEFLATED) {
+                return zlib.inflateRawSync(compressed);
+            }
+            throw new Error(`Unsupported compression method ${entry.method} for ${name}`);
+        } finally {
+            await handle.close();
+        }
+    }
+}
+
+function readZip64Extra(
+    extra: Buffer,
+    hasUncompressed: boolean,
+    hasCompressed: boolean,
+    hasOffset: boolean
+): { uncompressedSize?: number; compressedSize?: number; localHeaderOffset?: number } {
+    let offset = 0;
+    while (offset + 4 <= extra.length) {
+        const id = extra.readUInt16LE(offset);
+        const length = extra.readUInt16LE(offset + 2);
+        if (id === 0x0001) {
+            const result: { uncompressedSize?: number; compressedSize?: number; localHeaderOffset?: number } = {};
+            let field = offset + 4;
+            if (hasUncompressed) {
+                result.uncompressedSize = Number(extra.readBigUInt64LE(field));
+                field += 8;
+            }
+            if (hasCompressed) {
+                result.compressedSize = Number(extra.readBigUInt64LE(field));
+                field += 8;
+            }
+            if (hasOffset) {
+                result.localHeaderOffset = Number(extra.readBigUInt64LE(field));
+            }
+            return result;
+        }
+        offset += 4 + length;
+    }
+    return {};
+}
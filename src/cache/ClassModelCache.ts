@@ -0,0 +1,214 @@
+import * as fs from 'fs';
+import * as path from 'path';
+import * as zlib from 'zlib';
+import * as crypto from 'crypto';
+import type { JavaClassStructure } from '../parser/JavaCodeParser';
+import { compactClassStructure } from '../parser/MemberTable';
+
+/**
+ * Bump whenever JavaClassStructure, the entry layout or the parsers change shape,
+ * so stale shards written by an older build are ignored instead of misread.
+ */
+const CACHE_FORMAT_VERSION = 5;
+
+// Entries are spread over a fixed number of gzip'd shard files. A shard is only
+// read from disk the first time a file hashing into it is looked up.
+const SHARD_COUNT = 64;
+
+// Dirty shards are written back in the background after this delay
+const FLUSH_DELAY_MS = 2000;
+
+/**
+ * Parser that produced a cached structure. Only Language Server results are final, the others
+ * were fallbacks (server busy, starting or missing) and are worth parsing again once it serves.
+ */
+export type ParserTier = 'languageServer' | 'javaParser' | 'regex';
+
+export interface ClassModelCacheEntry {
+    hash: string;
+    structure: JavaClassStructure;
+    tier: ParserTier;
+}
+
+export interface ClassModelCacheStats {
+    hits: number;
+    misses: number;
+    writes: number;
+    loadedShards: number;
+    entries: number;
+}
+
+interface ShardFile {
+    version: number;
+    entries: { [filePath: string]: ClassModelCacheEntry };
+}
+
+/**
+ * Persistent cache of parsed class models, keyed by file path plus content hash.
+ * A hit skips the Language Server round trip, the regex fallback and the system
+ * class enhancement for files that did not change since the last run.
+ */
+export class ClassModelCache {
+    private shards = new Map<number, Map<string, ClassModelCacheEntry>>();
+    private dirtyShards = new Set<number>();
+    private flushTimer: NodeJS.Timeout | undefined;
+    private hits = 0;
+    private misses = 0;
+    private writes = 0;
+
+    constructor(private storageDir: string | undefined) {}
+
+    static hashContent(content: string): string {
+        return crypto.createHash('sha1').update(content).digest('hex');
+    }
+
+    /**
+     * Returns a copy of the cached entry if the stored content hash still matches.
+     */
+    get(filePath: string, contentHash: string): ClassModelCacheEntry | undefined {
+        const key = this.normalizePath(filePath);
+        const entry = this.getShard(key).get(key);
+
+        if (!entry || entry.hash !== contentHash) {
+            this.misses++;
+            return undefined;
+        }
+
+        this.hits++;
+        // Callers are free to mutate what they get back, keep the cached copy pristine. The
+        // member table is immutable and shared, only the class header is copied.
+        return {
+            hash: entry.hash,
+            structure: compactClassStructure(entry.structure),
+            tier: entry.tier
+        };
+    }
+
+    set(filePath: string, contentHash: string, structure: JavaClassStructure, tier: ParserTier): void {
+        const key = this.normalizePath(filePath);
+        this.getShard(key).set(key, {
+            hash: contentHash,
+            structure: compactClassStructure(structure),
+            tier
+        });
+        this.writes++;
+        this.markDirty(key);
+    }
+
+    invalidate(filePath: string): void {
+        const key = this.normalizePath(filePath);
+        if (this.getShard(key).delete(key)) {
+            this.markDirty(key);
+        }
+    }
+
+    getStats(): ClassModelCacheStats {
+        let entries = 0;
+        for (const shard of this.shards.values()) {
+            entries += shard.size;
+        }
+        return {
+            hits: this.hits,
+            misses: this.misses,
+            writes: this.writes,
+            loadedShards: this.shards.size,
+            entries
+        };
+    }
+
+    /**
+     * Writes all dirty shards to disk synchronously.
+     */
+    flush(): void {
+        if (this.flushTimer) {
+            clearTimeout(this.flushTimer);
+            this.flushTimer = undefined;
+        }
+
+        if (!this.storageDir || this.dirtyShards.size === 0) {
+            this.dirtyShards.clear();
+            return;
+        }
+
+        try {
+            fs.mkdirSync(this.storageDir, { recursive: true });
+        } catch (error) {
+            console.warn('Cannot create class model cache directory:', error);
+            return;
+        }
+
+        for (const shardIndex of this.dirtyShards) {
+            const shard = this.shards.get(shardIndex);
+            if (!shard) {
+                continue;
+            }
+
+            const file: ShardFile = { version: CACHE_FORMAT_VERSION, entries: Object.fromEntries(shard) };
+            try {
+                fs.writeFileSync(this.getShardPath(shardIndex), zlib.gzipSync(JSON.stringify(file)));
+            } catch (error) {
+                console.warn(`Cannot write class model cache shard ${shardIndex}:`, error);
+            }
+        }
+        this.dirtyShards.clear();
+    }
+
+    dispose(): void {
+        this.flush();
+    }
+
+    private getShard(key: string): Map<string, ClassModelCacheEntry> {
+        const shardIndex = this.getShardIndex(key);
+        let shard = this.shards.get(shardIndex);
+        if (!shard) {
+            shard = this.loadShard(shardIndex);
+            this.shards.set(shardIndex, shard);
+        }
+        return shard;
+    }
+
+    private loadShard(shardIndex: number): Map<string, ClassModelCacheEntry> {
+        if (!this.storageDir) {
+            return new Map();
+        }
+
+        try {
+            const shardPath = this.getShardPath(shardIndex);
+            if (!fs.existsSync(shardPath)) {
+                return new Map();
+            }
+
+            const file = JSON.parse(zlib.gunzipSync(fs.readFileSync(shardPath)).toString('utf8')) as ShardFile;
+            if (file.version !== CACHE_FORMAT_VERSION || !file.entries) {
+                return new Map();
+            }
+            // Shards hold plain member lists (the views serialize through toJSON)
+            return new Map(Object.entries(file.entries).map(([filePath, entry]) =>
+                [filePath, { ...entry, structure: compactClassStructure(entry.structure) }]));
+        } catch (error) {
+            // A corrupt shard is just a cold shard
+            console.warn(`Ignoring unreadable class model cache shard ${shardIndex}:`, error);
+            return new Map();
+        }
+    }
+
+    private markDirty(key: string): void {
+        this.dirtyShards.add(this.getShardIndex(key));
+        if (!this.flushTimer && this.storageDir) {
+            this.flushTimer = setTimeout(() => this.flush(), FLUSH_DELAY_MS);
+        }
+    }
+
+    private getShardIndex(key: string): number {
+        return crypto.createHash('md5').update(key).digest()[0] % SHARD_COUNT;
+    }
+
+    private getShardPath(shardIndex: number): string {
+        return path.join(this.storageDir!, `class-model-v${CACHE_FORMAT_VERSION}-${shardIndex.toString().padStart(2, '0')}.json.gz`);
+    }
+
+    private normalizePath(filePath: string): string {
+        const normalized = path.normalize(filePath);
+        return process.platform === 'win32' ? normalized.toLowerCase() : normalized;
+    }
+}
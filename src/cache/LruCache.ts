@@ -0,0 +1,83 @@
+/**
+ * Bounded least-recently-used map. Relies on Map keeping insertion order:
+ * a hit re-inserts the key at the end, eviction takes the first key.
+ *
+ * Optionally also bounded by total size, with `sizeOf` giving the size of a value.
+ */
+export class LruCache<K, V> {
+    private entries = new Map<K, V>();
+    private evictions = 0;
+    private currentSize = 0;
+
+    constructor(
+        private maxEntries: number,
+        private maxSize = Infinity,
+        private sizeOf: (value: V) => number = () => 0
+    ) {}
+
+    get(key: K): V | undefined {
+        const value = this.entries.get(key);
+        if (value === undefined) {
+            return undefined;
+        }
+        this.entries.delete(key);
+        this.entries.set(key, value);
+        return value;
+    }
+
+    set(key: K, value: V): void {
+        this.delete(key);
+        this.entries.set(key, value);
+        this.currentSize += this.sizeOf(value);
+        // The newest entry always stays, even when it alone exceeds maxSize
+        while (this.entries.size > 1 && (this.entries.size > this.maxEntries || this.currentSize > this.maxSize)) {
+            const oldest = this.entries.keys().next().value as K;
+            this.delete(oldest);
+            this.evictions++;
+        }
+    }
+
+    delete(key: K): boolean {
+        const value = this.entries.get(key);
+        if (value === undefined) {
+            return false;
+        }
+        this.entries.delete(key);
+        this.currentSize -= this.sizeOf(value);
+        return true;
+    }
+
+    clear(): void {
+        this.entries.clear();
+        this.currentSize = 0;
+    }
+
+    /**
+     * Removes every entry matching the predicate, without touching recency.
+     */
+    deleteWhere(predicate: (value: V, key: K) => boolean): number {
+        let removed = 0;
+        for (const [key, value] of this.entries) {
+            if (predicate(value, key)) {
+                this.delete(key);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    get size(): number {
+        return this.entries.size;
+    }
+
+    /**
+     * Sum of sizeOf over all entries.
+     */
+    get totalSize(): number {
+        return this.currentSize;
+    }
+
+    get evictionCount(): number {
+        return this.evictions;
+    }
+}
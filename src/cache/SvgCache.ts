@@ -0,0 +1,230 @@
+import * as fs from 'fs';
+import * as path from 'path';
+import * as zlib from 'zlib';
+import * as crypto from 'crypto';
+import { promisify } from 'util';
+import { LruCache } from './LruCache';
+
+const gzip = promisify(zlib.gzip);
+const gunzip = promisify(zlib.gunzip);
+
+// Bump when the renderers change what they produce for the same source
+const CACHE_FORMAT_VERSION = 3;
+const FILE_PREFIX = `svg-v${CACHE_FORMAT_VERSION}-`;
+const FILE_SUFFIX = '.svg.gz';
+
+const DEFAULT_MEMORY_BYTES = 32 * 1024 * 1024;
+const DEFAULT_DISK_BYTES = 128 * 1024 * 1024;
+const MAX_MEMORY_ENTRIES = 500;
+
+export interface SvgCacheStats {
+    memoryHits: number;
+    diskHits: number;
+    misses: number;
+    writes: number;
+    memoryEntries: number;
+    memoryBytes: number;
+    memoryEvictions: number;
+    diskEntries: number;
+    diskBytes: number;
+    diskEvictions: number;
+    hitRate: number;
+}
+
+interface DiskEntry {
+    size: number;
+    lastUsed: number;
+}
+
+/**
+ * Two-level cache of rendered SVG, keyed by a hash of the PlantUML source.
+ * Memory is an LRU bounded by bytes; disk holds one gzip'd file per diagram
+ * in extension storage and drops the least recently used files above its size limit.
+ */
+export class SvgCache {
+    private memory: LruCache<string, string>;
+    private diskIndex: Promise<Map<string, DiskEntry>> | undefined;
+    private diskBytes = 0;
+    private diskIndexSize = 0;
+    private memoryHits = 0;
+    private diskHits = 0;
+    private misses = 0;
+    private writes = 0;
+    private diskEvictions = 0;
+
+    constructor(
+        private storageDir: string | undefined,
+        private maxMemoryBytes = DEFAULT_MEMORY_BYTES,
+        private maxDiskBytes = DEFAULT_DISK_BYTES
+    ) {
+        // JS strings are UTF-16, two bytes per character
+        this.memory = new LruCache<string, string>(MAX_MEMORY_ENTRIES, maxMemoryBytes, svg => svg.length * 2);
+    }
+
+    static hashSource(plantUMLCode: string, namespace = ''): string {
+        return crypto.createHash('sha256').update(namespace).update('\0').update(plantUMLCode).digest('hex');
+    }
+
+    async get(key: string): Promise<string | undefined> {
+        const cached = this.memory.get(key);
+        if (cached !== undefined) {
+            this.memoryHits++;
+            return cached;
+        }
+
+        const index = await this.loadDiskIndex();
+        const entry = index.get(key);
+        if (entry) {
+            try {
+                const svg = (await gunzip(await fs.promises.readFile(this.getFilePath(key)))).toString('utf8');
+                this.diskHits++;
+                entry.lastUsed = Date.now();
+                // mtime doubles as the last use time for eviction across sessions
+                fs.promises.utimes(this.getFilePath(key), new Date(), new Date()).catch(() => undefined);
+                this.rememberInMemory(key, svg);
+                return svg;
+            } catch (error) {
+                console.warn(`Dropping unreadable SVG cache entry ${key}:`, error);
+                this.removeDiskEntry(index, key);
+            }
+        }
+
+        this.misses++;
+        return undefined;
+    }
+
+    /**
+     * Stores the SVG in memory immediately; the returned promise settles once it is on disk.
+     */
+    async set(key: string, svg: string): Promise<void> {
+        this.writes++;
+        this.rememberInMemory(key, svg);
+
+        if (!this.storageDir) {
+            return;
+        }
+
+        try {
+            const data = await gzip(Buffer.from(svg, 'utf8'));
+            if (data.length > this.maxDiskBytes) {
+                return;
+            }
+            await fs.promises.mkdir(this.storageDir, { recursive: true });
+            // Write then rename, so a reader never sees a half-written file
+            const filePath = this.getFilePath(key);
+            const tempPath = `${filePath}.${process.pid}.tmp`;
+            await fs.promises.writeFile(tempPath, data);
+            await fs.promises.rename(tempPath, filePath);
+
+            const index = await this.loadDiskIndex();
+            this.removeDiskEntry(index, key, false);
+            index.set(key, { size: data.length, lastUsed: Date.now() });
+            this.diskBytes += data.length;
+            this.evictFromDisk(index);
+        } catch (error) {
+            console.warn('Cannot write SVG cache entry:', error);
+        }
+    }
+
+    getStats(): SvgCacheStats {
+        const lookups = this.memoryHits + this.diskHits + this.misses;
+        return {
+            memoryHits: this.memoryHits,
+            diskHits: this.diskHits,
+            misses: this.misses,
+            writes: this.writes,
+            memoryEntries: this.memory.size,
+            memoryBytes: this.memory.totalSize,
+            memoryEvictions: this.memory.evictionCount,
+            diskEntries: this.diskIndexSize,
+            diskBytes: this.diskBytes,
+            diskEvictions: this.diskEvictions,
+            hitRate: lookups === 0 ? 0 : (this.memoryHits + this.diskHits) / lookups
+        };
+    }
+
+    clear(): void {
+        this.memory.clear();
+    }
+
+    private rememberInMemory(key: string, svg: string): void {
+        // One huge diagram should not flush everything else out of memory
+        if (svg.length * 2 <= this.maxMemoryBytes / 4) {
+            this.memory.set(key, svg);
+        }
+    }
+
+    private loadDiskIndex(): Promise<Map<string, DiskEntry>> {
+        if (!this.diskIndex) {
+            this.diskIndex = this.scanDisk();
+        }
+        return this.diskIndex;
+    }
+
+    private async scanDisk(): Promise<Map<string, DiskEntry>> {
+        const index = new Map<string, DiskEntry>();
+        if (!this.storageDir) {
+            return index;
+        }
+
+        let names: string[];
+        try {
+            names = await fs.promises.readdir(this.storageDir);
+        } catch {
+            // No cache directory yet
+            return index;
+        }
+
+        for (const name of names) {
+            const filePath = path.join(this.storageDir, name);
+            if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+                // Leftovers of an older format or an interrupted write
+                if (name.startsWith('svg-')) {
+                    fs.promises.unlink(filePath).catch(() => undefined);
+                }
+                continue;
+            }
+            try {
+                const stat = await fs.promises.stat(filePath);
+                index.set(name.substring(FILE_PREFIX.length, name.length - FILE_SUFFIX.length), { size: stat.size, lastUsed: stat.mtimeMs });
+                this.diskBytes += stat.size;
+            } catch {
+                continue;
+            }
+        }
+        this.diskIndexSize = index.size;
+        this.evictFromDisk(index);
+        return index;
+    }
+
+    private evictFromDisk(index: Map<string, DiskEntry>): void {
+        if (this.diskBytes > this.maxDiskBytes) {
+            const oldestFirst = [...index.entries()].sort((a, b) => a[1].lastUsed - b[1].lastUsed);
+            for (const [key] of oldestFirst) {
+                if (this.diskBytes <= this.maxDiskBytes) {
+                    break;
+                }
+                this.removeDiskEntry(index, key);
+                this.diskEvictions++;
+            }
+        }
+        this.diskIndexSize = index.size;
+    }
+
+    private removeDiskEntry(index: Map<string, DiskEntry>, key: string, deleteFile = true): void {
+        const entry = index.get(key);
+        if (!entry) {
+            return;
+        }
+        index.delete(key);
+        this.diskBytes -= entry.size;
+        this.diskIndexSize = index.size;
+        if (deleteFile) {
+            fs.promises.unlink(this.getFilePath(key)).catch(() => undefined);
+        }
+    }
+
+    private getFilePath(key: string): string {
+        return path.join(this.storageDir!, `${FILE_PREFIX}${key}${FILE_SUFFIX}`);
+    }
+}
@@ -1,32 +1,64 @@
 import * as vscode from 'vscode';
-import { JavaCodeParser } from './parser/JavaCodeParser';
+import { JavaCodeParser, JavaClassStructure } from './parser/JavaCodeParser';
+import { JavaLanguageServerClient } from './languageserver/JavaLanguageServerClient';
 import { PlantUMLGenerator } from './plantuml/PlantUMLGenerator';
 import { testSystemClassParser } from './parser/SystemClassParser';
 import { ClassDiagramWebviewProvider } from './webview/ClassDiagramWebviewProvider';
+import { DiagramLiveUpdater } from './watch/DiagramLiveUpdater';
+import { mapWithConcurrency, DEFAULT_PARSE_CONCURRENCY } from './util/concurrency';
+import { findJavaFiles, getDiscoveryOptions } from './util/workspaceDiscovery';
+import { FolderDiagramPipeline } from './pipeline/FolderDiagramPipeline';
+import { discoverBuildModules } from './modules/BuildModules';
+import { getModuleFiles, summarizeModules } from './modules/ModuleOverview';
+import { tracer } from './trace/Tracer';
+import { languageServerScheduler } from './languageserver/LanguageServerScheduler';
+import type { TypeDeclaration } from './index/SubtypeIndex';
+import { SupersedingCancellation, abortSignalOf, anySignal, cancellationSignalOf, currentCancellation, isCancellationError, runCancellable, throwIfCancelled } from './util/cancellation';
 import * as path from 'path';
 import * as fs from 'fs';
+import { performance } from 'perf_hooks';
 
 let currentPanel: vscode.WebviewPanel | undefined;
 let webviewProvider: ClassDiagramWebviewProvider;
 
-export async function activate(context: vscode.ExtensionContext) {
-    console.log('Java Class Diagram extension is now active!');
-    vscode.window.showInformationMessage('Java Class Diagram extension activated!');
+// activate() runs in every window that opens a Java file, it only registers commands. Checked
+// on every activation and by the benchmarks (cold module load included there)
+export const ACTIVATION_BUDGET_MS = 100;
 
-    const javaParser = new JavaCodeParser(context);
-    const plantUMLGenerator = new PlantUMLGenerator();
-    webviewProvider = new ClassDiagramWebviewProvider(context);
+export function activate(context: vscode.ExtensionContext): void {
+    const activationStart = performance.now();
 
-    // Initialize the Java parser with Language Server support
-    try {
-        await javaParser.initialize();
-        console.log('Java parser initialized with Language Server support');
-    } catch (error) {
-        console.warn('Failed to initialize Language Server support, using fallback parsing:', error);
-    }
-
-    // Try to activate Java extension pack members early (also in host debug)
-    await ensureJavaExtensionsActivated();
+    // One client for parsing and navigation: one class info cache, one set of watchers
+    const languageServerClient = new JavaLanguageServerClient(context);
+    context.subscriptions.push(languageServerClient);
+    const javaParser = new JavaCodeParser(context, languageServerClient);
+    const plantUMLGenerator = new PlantUMLGenerator();
+    webviewProvider = new ClassDiagramWebviewProvider(context, languageServerClient);
+    const liveUpdater = new DiagramLiveUpdater(javaParser, plantUMLGenerator, webviewProvider);
+    // The panel shows one diagram at a time: starting a diagram cancels the generation of the
+    // previous one, down to its queued Language Server requests and javap processes
+    const diagramGenerations = new SupersedingCancellation();
+
+    // Activating redhat.java and connecting to its Language Server waits for the first diagram.
+    // The rest of the Java extension pack (debugger, test runner, build tools) is left to
+    // VS Code's own activation events, diagrams do not use it
+    let javaSupport: Promise<void> | undefined;
+    const ensureJavaSupport = (): Promise<void> => {
+        if (!javaSupport) {
+            javaSupport = initializeJavaSupport(languageServerClient);
+        }
+        return javaSupport;
+    };
+
+    // Per-stage timings of every diagram command, details only with verbose logging
+    const traceChannel = vscode.window.createOutputChannel('Java Class Diagram Trace');
+    tracer.setVerbose(isVerboseLogging());
+    tracer.onDidCompleteTrace(trace => traceChannel.appendLine(trace.summarize() + '\n'));
+    const verboseLoggingListener = vscode.workspace.onDidChangeConfiguration(event => {
+        if (event.affectsConfiguration('javaClassDiagram.verboseLogging')) {
+            tracer.setVerbose(isVerboseLogging());
+        }
+    });
 
     // Register command to generate class diagram for single file
     const generateDiagramCommand = vscode.commands.registerCommand(
@@ -51,39 +83,28 @@ export async function activate(context: vscode.ExtensionContext) {
 
                 vscode.window.showInformationMessage('Generating enhanced class diagram...');
 
-                const javaCode = fs.readFileSync(uri.fsPath, 'utf8');
-
-                // Use the new method that gets related classes
-                const { mainClass, relatedClasses } = await javaParser.parseJavaFileWithRelatedClasses(javaCode, uri.fsPath);
+                await runCancellable(diagramGenerations.begin(), () => tracer.trace(`Class diagram ${path.basename(uri.fsPath)}`, async () => {
+                    await tracer.span('javaSupport', 'ls', () => ensureJavaSupport());
+                    const javaCode = await tracer.span('readFile', 'io', () => fs.promises.readFile(uri.fsPath, 'utf8'));
 
-                // Generate interactive diagram with related classes
-                const plantUMLCode = plantUMLGenerator.generateInteractiveClassDiagram(mainClass, relatedClasses);
+                    // Use the new method that gets related classes
+                    const { mainClass, relatedClasses } = await javaParser.parseJavaFileWithRelatedClasses(javaCode, uri.fsPath);
 
-                // --- DEBUG LOGGING START ---
-                console.log("--- Generated PlantUML Code ---");
-                console.log(plantUMLCode);
-                console.log("--- Parsed Class Details ---");
-                const logClassDetails = (cls: any, prefix = "") => {
-                    if (!cls) return;
-                    console.log(`${prefix}Class: ${cls.className}`);
-                    console.log(`${prefix}  Superclass: ${cls.superClass || 'N/A'}`);
-                    if (cls.inheritanceHierarchy && cls.inheritanceHierarchy.length > 0) {
-                        console.log(`${prefix}  Inheritance Hierarchy: ${cls.inheritanceHierarchy.join(' -> ')}`);
-                    }
-                };
-                console.log("Main Class:");
-                logClassDetails(mainClass);
-                if (relatedClasses.length > 0) {
-                    console.log("Related Classes:");
-                    relatedClasses.forEach(cls => logClassDetails(cls, "  "));
-                }
-                console.log("--- END DEBUG LOGGING ---");
-                // --- DEBUG LOGGING END ---
+                    // Generate interactive diagram with related classes
+                    const plantUMLCode = plantUMLGenerator.generateInteractiveClassDiagram(mainClass, relatedClasses);
+                    tracer.log(`Generated PlantUML for ${mainClass.className} with ${relatedClasses.length} related classes:\n${plantUMLCode}`);
 
-                // Show diagram in new webview panel
-                await showClassDiagram(context, plantUMLCode, path.basename(uri.fsPath, '.java'), [mainClass, ...relatedClasses]);
+                    // Show diagram in new webview panel, unless a newer diagram took over meanwhile
+                    throwIfCancelled();
+                    await showClassDiagram(context, plantUMLCode, path.basename(uri.fsPath, '.java'), [mainClass, ...relatedClasses]);
+                    liveUpdater.trackFile(uri.fsPath, relatedClasses);
+                }));
 
             } catch (error) {
+                if (isCancellationError(error)) {
+                    console.log(`Class diagram of ${uri.fsPath} superseded by a newer diagram`);
+                    return;
+                }
                 vscode.window.showErrorMessage(`Error generating diagram: ${error}`);
                 console.error('Error:', error);
             }
@@ -102,114 +123,260 @@ export async function activate(context: vscode.ExtensionContext) {
                     return;
                 }
 
-                // Show progress indicator
-                await vscode.window.withProgress({
-                    location: vscode.ProgressLocation.Notification,
-                    title: "Generating folder class diagram",
-                    cancellable: true
-                }, async (progress, token) => {
-
-                    progress.report({ increment: 0, message: "Searching for Java files..." });
+                const generation = diagramGenerations.begin();
+                await tracer.trace(`Folder diagram ${path.basename(uri.fsPath)}`, async () => {
+                    await tracer.span('javaSupport', 'ls', () => ensureJavaSupport());
+                    // Show progress indicator
+                    await vscode.window.withProgress({
+                        location: vscode.ProgressLocation.Notification,
+                        title: "Generating folder class diagram",
+                        cancellable: true
+                    }, async (progress, progressToken) => {
+
+                        progress.report({ increment: 0, message: "Searching for Java files..." });
+
+                        // Stopped from the notification or by a newer diagram
+                        const signal = anySignal(generation, abortSignalOf(progressToken));
+                        const token = cancellationSignalOf(signal);
+
+                        // Files are parsed while discovery runs, the panel fills in as classes arrive
+                        const pipeline = new FolderDiagramPipeline(javaParser, plantUMLGenerator, webviewProvider);
+                        const { classStructures: allClassStructures, errors, discoveredFiles, cancelled } = await runCancellable(signal, () => pipeline.run(uri.fsPath, {
+                            title: path.basename(uri.fsPath) + '_diagram',
+                            discovery: getDiscoveryOptions(uri.fsPath, token),
+                            concurrency: getParseConcurrency(),
+                            // Large folders go to the graph view, which lays out any number of classes
+                            chooseView: (fileCount, classStructures) => shouldUseGraphView(fileCount)
+                                ? 'graph'
+                                : shouldUsePackageOverview(classStructures) ? 'packageOverview' : 'plantuml',
+                            token,
+                            onProgress: (parsedFiles, fileCount) => progress.report({
+                                message: `Parsed ${parsedFiles} of ${fileCount} Java files found so far`
+                            })
+                        }));
+
+                        if (cancelled) {
+                            if (!generation.aborted) {
+                                vscode.window.showInformationMessage(`Class diagram generation cancelled after ${allClassStructures.length} classes`);
+                            }
+                            return;
+                        }
 
-                    const javaFiles = await findJavaFiles(uri.fsPath);
-                    if (javaFiles.length === 0) {
-                        vscode.window.showWarningMessage('No Java files found in the selected folder');
-                        return;
-                    }
+                        if (discoveredFiles === 0) {
+                            vscode.window.showWarningMessage('No Java files found in the selected folder');
+                            return;
+                        }
 
-                    // Limit the number of files to process to prevent memory issues
-                    const maxFiles = 50;
-                    let filesToProcess = javaFiles;
+                        if (allClassStructures.length === 0) {
+                            vscode.window.showErrorMessage('No classes could be parsed from the selected folder');
+                            if (errors.length > 0) {
+                                const errorSummary = errors.map(e => `${e.file}: ${e.error}`).join('\n');
+                                vscode.window.showErrorMessage(`Parsing errors:\n${errorSummary}`);
+                            }
+                            return;
+                        }
 
-                    if (javaFiles.length > maxFiles) {
-                        const choice = await vscode.window.showWarningMessage(
-                            `Found ${javaFiles.length} Java files. Processing all files may cause performance issues. Would you like to process only the first ${maxFiles} files?`,
-                            'Process First 50', 'Process All', 'Cancel'
-                        );
+                        liveUpdater.trackFolder(uri.fsPath, allClassStructures);
 
-                        if (choice === 'Cancel') {
-                            return;
-                        } else if (choice === 'Process First 50') {
-                            filesToProcess = javaFiles.slice(0, maxFiles);
+                        // Show summary
+                        let message = `Successfully generated diagram for ${allClassStructures.length} classes`;
+                        if (errors.length > 0) {
+                            message += ` (${errors.length} files had parsing errors)`;
+                            console.log('Parsing errors:', errors);
                         }
-                    }
+                        vscode.window.showInformationMessage(message);
 
-                    progress.report({ increment: 10, message: `Processing ${filesToProcess.length} Java files...` });
+                        const cacheStats = javaParser.getCacheStats();
+                        tracer.log(`Class model cache: ${cacheStats.hits} hits, ${cacheStats.misses} misses, ${cacheStats.entries} entries in ${cacheStats.loadedShards} loaded shards`);
+                        const classInfoStats = javaParser.getClassInfoCacheStats();
+                        tracer.log(`Class info cache: ${(classInfoStats.hitRate * 100).toFixed(1)}% hit rate (${classInfoStats.hits} hits, ${classInfoStats.deduplicated} deduplicated, ${classInfoStats.misses} misses, ${classInfoStats.entries} entries)`);
+                    });
+                });
 
-                    const allClassStructures = [];
-                    const errors = [];
+            } catch (error) {
+                vscode.window.showErrorMessage(`Error generating folder diagram: ${error}`);
+                console.error('Error:', error);
+            }
+        }
+    );
 
-                    for (let i = 0; i < filesToProcess.length; i++) {
-                        if (token.isCancellationRequested) {
-                            vscode.window.showInformationMessage('Class diagram generation cancelled');
-                            return;
-                        }
+    // Register command to show every workspace type extending / implementing the selected class
+    const generateImplementationsDiagramCommand = vscode.commands.registerCommand(
+        'javaClassDiagram.generateImplementationsDiagram',
+        async (uri: vscode.Uri) => {
+            try {
+                if (!uri) {
+                    const activeEditor = vscode.window.activeTextEditor;
+                    if (!activeEditor) {
+                        vscode.window.showErrorMessage('No Java file selected');
+                        return;
+                    }
+                    uri = activeEditor.document.uri;
+                }
 
-                        const javaFile = filesToProcess[i];
-                        const fileName = path.basename(javaFile);
+                if (!uri.fsPath.endsWith('.java')) {
+                    vscode.window.showErrorMessage('Please select a Java file');
+                    return;
+                }
 
-                        try {
-                            progress.report({
-                                increment: 80 / filesToProcess.length,
-                                message: `Parsing ${fileName}... (${i + 1}/${filesToProcess.length})`
-                            });
+                await runCancellable(diagramGenerations.begin(), () => tracer.trace(`Implementations of ${path.basename(uri.fsPath, '.java')}`, async () => {
+                    await tracer.span('javaSupport', 'ls', () => ensureJavaSupport());
+                    const javaCode = await tracer.span('readFile', 'io', () => fs.promises.readFile(uri.fsPath, 'utf8'));
+                    const mainClass = await javaParser.parseJavaFile(javaCode, uri.fsPath);
+                    const qualifiedName = mainClass.packageName ? `${mainClass.packageName}.${mainClass.className}` : mainClass.className;
 
-                            const javaCode = fs.readFileSync(javaFile, 'utf8');
-                            const classStructure = await javaParser.parseJavaFile(javaCode, javaFile);
-                            allClassStructures.push(classStructure);
+                    const subtypes = await javaParser.findAllSubtypes(qualifiedName);
+                    if (subtypes.length === 0) {
+                        vscode.window.showInformationMessage(`No subtypes of ${mainClass.className} found in the workspace`);
+                        return;
+                    }
 
+                    // Several subtypes can live in one file (nested types), parse each file once
+                    const subtypeFiles = Array.from(new Set(subtypes.map(subtype => subtype.filePath)));
+                    const parsedFiles = await mapWithConcurrency(subtypeFiles, getParseConcurrency(), async filePath => {
+                        try {
+                            const javaCode = await tracer.span('readFile', 'io', () => fs.promises.readFile(filePath, 'utf8'));
+                            return await languageServerScheduler.runInBackground(() => javaParser.parseJavaFile(javaCode, filePath));
                         } catch (error) {
-                            console.error(`Error parsing ${javaFile}:`, error);
-                            errors.push({ file: fileName, error: error instanceof Error ? error.message : String(error) });
-                            // Continue with other files
+                            if (isCancellationError(error)) {
+                                throw error;
+                            }
+                            console.warn(`Error parsing ${filePath}:`, error);
+                            return undefined;
                         }
-                    }
+                    }, cancellationSignalOf(currentCancellation()));
+                    throwIfCancelled();
+
+                    const structuresByFile = new Map<string, JavaClassStructure>();
+                    subtypeFiles.forEach((filePath, index) => {
+                        const structure = parsedFiles[index];
+                        if (structure) {
+                            structuresByFile.set(filePath, structure);
+                        }
+                    });
 
-                    if (allClassStructures.length === 0) {
-                        vscode.window.showErrorMessage('No classes could be parsed from the selected folder');
-                        if (errors.length > 0) {
-                            const errorSummary = errors.map(e => `${e.file}: ${e.error}`).join('\n');
-                            vscode.window.showErrorMessage(`Parsing errors:\n${errorSummary}`);
+                    const subtypeStructures: JavaClassStructure[] = [];
+                    for (const subtype of subtypes) {
+                        const fileStructure = structuresByFile.get(subtype.filePath);
+                        if (!fileStructure) {
+                            continue;
+                        }
+                        const structure = findDeclaredStructure(fileStructure, subtype);
+                        if (structure && !subtypeStructures.includes(structure)) {
+                            subtypeStructures.push(structure);
                         }
-                        return;
                     }
 
-                    progress.report({ increment: 90, message: "Generating PlantUML diagram..." });
-
-                    try {
-                        if (allClassStructures.length === 0) {
-                            vscode.window.showWarningMessage('No classes could be parsed successfully');
-                            return;
-                        }
+                    const allClassStructures = [mainClass, ...subtypeStructures];
+                    const plantUMLCode = plantUMLGenerator.generateMultiClassDiagram(allClassStructures);
+                    await showClassDiagram(context, plantUMLCode, `${mainClass.className}_implementations`, allClassStructures);
+                }));
 
-                        const plantUMLCode = plantUMLGenerator.generateMultiClassDiagram(allClassStructures);
+            } catch (error) {
+                if (isCancellationError(error)) {
+                    console.log('Implementations diagram superseded by a newer diagram');
+                    return;
+                }
+                vscode.window.showErrorMessage(`Error generating implementations diagram: ${error}`);
+                console.error('Error:', error);
+            }
+        }
+    );
 
-                        progress.report({ increment: 100, message: "Opening diagram..." });
+    // Register command to show the modules of a Maven / Gradle build and the dependencies between them
+    const generateModuleDiagramCommand = vscode.commands.registerCommand(
+        'javaClassDiagram.generateModuleDiagram',
+        async (uri?: vscode.Uri) => {
+            try {
+                const rootUri = uri ?? vscode.workspace.workspaceFolders?.[0]?.uri;
+                if (!rootUri) {
+                    vscode.window.showErrorMessage('No folder selected');
+                    return;
+                }
 
-                        await showClassDiagram(context, plantUMLCode, path.basename(uri.fsPath) + '_diagram', allClassStructures);
+                // Also cancels the modules still being expanded in the previous overview
+                const generation = diagramGenerations.begin();
+                await runCancellable(generation, () => tracer.trace(`Module diagram ${path.basename(rootUri.fsPath)}`, async () => {
+                    await tracer.span('javaSupport', 'ls', () => ensureJavaSupport());
+                    const moduleGraph = await tracer.span('modules', 'io', async span => {
+                        const graph = await discoverBuildModules(rootUri.fsPath);
+                        span.count('modules', graph.modules.length);
+                        return graph;
+                    });
+                    if (moduleGraph.modules.length === 0) {
+                        vscode.window.showWarningMessage('No Maven (pom.xml) or Gradle (settings.gradle) modules found in the selected folder');
+                        return;
+                    }
 
-                        // Show summary
-                        let message = `Successfully generated diagram for ${allClassStructures.length} classes`;
-                        if (errors.length > 0) {
-                            message += ` (${errors.length} files had parsing errors)`;
-                            console.log('Parsing errors:', errors);
+                    // Type headers only; classes are parsed per module when it is expanded
+                    const typeIndex = await tracer.span('typeIndex', 'index', () => javaParser.getTypeIndex());
+                    const overview = summarizeModules(moduleGraph, typeIndex);
+
+                    await webviewProvider.showModuleOverview(overview, path.basename(rootUri.fsPath) + '_modules', {
+                        packageOverviewThreshold: getPackageOverviewThreshold(),
+                        loadModule: moduleId => {
+                            const module = moduleGraph.modules.find(candidate => candidate.id === moduleId);
+                            if (!module) {
+                                return Promise.reject(new Error(`Unknown module ${moduleId}`));
+                            }
+                            return runCancellable(generation, () => tracer.trace(`Module ${module.name}`, async () => {
+                                const files = getModuleFiles(module, moduleGraph.modules, typeIndex);
+                                const structures = await mapWithConcurrency(files, getParseConcurrency(), async filePath => {
+                                    try {
+                                        const javaCode = await tracer.span('readFile', 'io', () => fs.promises.readFile(filePath, 'utf8'));
+                                        return await languageServerScheduler.runInBackground(() => javaParser.parseJavaFile(javaCode, filePath));
+                                    } catch (error) {
+                                        if (isCancellationError(error)) {
+                                            throw error;
+                                        }
+                                        console.warn(`Error parsing ${filePath}:`, error);
+                                        return undefined;
+                                    }
+                                }, cancellationSignalOf(generation));
+                                return structures.filter((structure): structure is JavaClassStructure => structure !== undefined);
+                            }));
                         }
-                        vscode.window.showInformationMessage(message);
-
-                    } catch (error) {
-                        vscode.window.showErrorMessage(`Error generating PlantUML diagram: ${error instanceof Error ? error.message : String(error)}`);
-                        console.error('PlantUML generation error:', error);
-                        console.error('Class structures:', allClassStructures);
-                    }
-                });
+                    });
+                    console.log(`Module diagram: ${moduleGraph.modules.length} modules, ${overview.dependencies.length} module dependencies, ${overview.hierarchy.length} cross-module hierarchy links`);
+                }));
 
             } catch (error) {
-                vscode.window.showErrorMessage(`Error generating folder diagram: ${error}`);
+                if (isCancellationError(error)) {
+                    console.log('Module diagram superseded by a newer diagram');
+                    return;
+                }
+                vscode.window.showErrorMessage(`Error generating module diagram: ${error instanceof Error ? error.message : String(error)}`);
                 console.error('Error:', error);
             }
         }
     );
 
+    // Save the recorded traces for chrome://tracing or Perfetto
+    const exportTraceCommand = vscode.commands.registerCommand(
+        'javaClassDiagram.exportTrace',
+        async () => {
+            if (tracer.getCompletedTraces().length === 0) {
+                vscode.window.showInformationMessage('No diagram has been generated yet, there is no trace to export');
+                return;
+            }
+
+            const target = await vscode.window.showSaveDialog({
+                defaultUri: vscode.Uri.file(path.join(vscode.workspace.workspaceFolders?.[0]?.uri.fsPath ?? '', 'java-class-diagram-trace.json')),
+                filters: { 'Trace Event JSON': ['json'] }
+            });
+            if (!target) {
+                return;
+            }
+
+            try {
+                await fs.promises.writeFile(target.fsPath, tracer.exportChromeTrace(), 'utf8');
+                vscode.window.showInformationMessage(`Trace written to ${target.fsPath}, open it in chrome://tracing or ui.perfetto.dev`);
+            } catch (error) {
+                vscode.window.showErrorMessage(`Error exporting trace: ${error instanceof Error ? error.message : String(error)}`);
+            }
+        }
+    );
+
     // Add a test command for large project handling
     const testLargeProjectCommand = vscode.commands.registerCommand(
         'javaClassDiagram.testLargeProject',
@@ -266,12 +433,40 @@ export async function activate(context: vscode.ExtensionContext) {
     );
 
     context.subscriptions.push(
+        { dispose: () => javaParser.dispose() },
+        liveUpdater,
+        traceChannel,
+        verboseLoggingListener,
         generateDiagramCommand,
         generateFolderDiagramCommand,
+        generateImplementationsDiagramCommand,
+        generateModuleDiagramCommand,
+        exportTraceCommand,
         testLargeProjectCommand,
         testSystemParsingCommand,
         testCommand
     );
+
+    const activationMs = performance.now() - activationStart;
+    console.log(`Java Class Diagram extension activated in ${activationMs.toFixed(1)}ms`);
+    if (activationMs > ACTIVATION_BUDGET_MS) {
+        console.warn(`Activation took ${activationMs.toFixed(1)}ms, over the ${ACTIVATION_BUDGET_MS}ms budget`);
+    }
+}
+
+/**
+ * Activates redhat.java and connects the client shared by the parser and the webview
+ * navigation to its Language Server. Runs once, on the first diagram request.
+ */
+async function initializeJavaSupport(languageServerClient: JavaLanguageServerClient): Promise<void> {
+    const startTime = Date.now();
+    try {
+        await languageServerClient.initialize();
+        console.log('Java parser initialized with Language Server support');
+    } catch (error) {
+        console.warn('Failed to initialize Language Server support, using fallback parsing:', error);
+    }
+    console.log(`Java support initialized in ${Date.now() - startTime}ms`);
 }
 
 async function showClassDiagram(
@@ -627,89 +822,58 @@ System Class: ${classStructure.isSystemClass ? 'Yes' : 'No'}
     }
 }
 
-async function findJavaFiles(folderPath: string): Promise<string[]> {
-    const javaFiles: string[] = [];
-
-    // Directories to skip for performance and relevance
-    const skipDirectories = new Set([
-        'node_modules', '.git', '.svn', '.hg', 'build', 'dist', 'out', 'bin',
-        'target', '.idea', '.vscode', 'temp', 'tmp', '.gradle', '.maven',
-        'test-output', 'coverage', 'logs', 'cache'
-    ]);
-
-    function searchDirectory(dir: string, depth: number = 0) {
-        // Limit recursion depth to prevent infinite loops and improve performance
-        if (depth > 10) {
-            return;
-        }
-
-        try {
-            const files = fs.readdirSync(dir);
-
-            for (const file of files) {
-                // Skip hidden files and directories
-                if (file.startsWith('.') && !file.endsWith('.java')) {
-                    continue;
-                }
-
-                const filePath = path.join(dir, file);
+/**
+ * The structure of `declaration` within the parsed file: the top-level type or a nested one at
+ * any depth, found by the enclosing types of its qualified name.
+ */
+function findDeclaredStructure(fileStructure: JavaClassStructure, declaration: TypeDeclaration): JavaClassStructure | undefined {
+    const nestedName = declaration.packageName
+        ? declaration.qualifiedName.substring(declaration.packageName.length + 1)
+        : declaration.qualifiedName;
+    const [topLevel, ...nested] = nestedName.split('.');
+    let structure: JavaClassStructure | undefined = fileStructure.className === topLevel ? fileStructure : undefined;
+    for (const name of nested) {
+        structure = structure?.innerClasses.find(inner => inner.className === name);
+    }
+    return structure;
+}
 
-                try {
-                    const stat = fs.statSync(filePath);
+/**
+ * Whether a folder diagram uses the in-webview graph view instead of PlantUML
+ * (`javaClassDiagram.folderDiagramView`: auto switches above graphViewThreshold files).
+ */
+function shouldUseGraphView(fileCount: number): boolean {
+    const config = vscode.workspace.getConfiguration('javaClassDiagram');
+    const mode = config.get<'auto' | 'plantuml' | 'graph'>('folderDiagramView', 'auto');
+    if (mode !== 'auto') {
+        return mode === 'graph';
+    }
+    return fileCount > Math.max(1, config.get<number>('graphViewThreshold', 100));
+}
 
-                    if (stat.isDirectory()) {
-                        // Skip excluded directories
-                        if (skipDirectories.has(file.toLowerCase())) {
-                            continue;
-                        }
-                        searchDirectory(filePath, depth + 1);
-                    } else if (file.endsWith('.java')) {
-                        javaFiles.push(filePath);
-                    }
-                } catch (error) {
-                    // Skip files/directories that can't be accessed
-                    console.warn(`Skipping ${filePath}: ${error}`);
-                    continue;
-                }
-            }
-        } catch (error) {
-            console.warn(`Cannot read directory ${dir}: ${error}`);
-        }
+/**
+ * Whether a PlantUML folder diagram starts as a package overview (more than
+ * packageOverviewThreshold classes spread over several packages).
+ */
+function shouldUsePackageOverview(classStructures: JavaClassStructure[]): boolean {
+    if (classStructures.length <= getPackageOverviewThreshold()) {
+        return false;
     }
+    const packages = new Set(classStructures.map(structure => structure.packageName || ''));
+    return packages.size > 1;
+}
 
-    searchDirectory(folderPath);
-    return javaFiles;
+function getPackageOverviewThreshold(): number {
+    return Math.max(1, vscode.workspace.getConfiguration('javaClassDiagram').get<number>('packageOverviewThreshold', 50));
 }
 
+function isVerboseLogging(): boolean {
+    return vscode.workspace.getConfiguration('javaClassDiagram').get<boolean>('verboseLogging', false);
+}
 
-async function ensureJavaExtensionsActivated() {
-    const ids = [
-        'redhat.java',                    // Language Support for Java(TM) by Red Hat
-        'vscjava.vscode-java-debug',      // Debugger for Java
-        'vscjava.vscode-java-test',       // Test Runner for Java
-        'vscjava.vscode-maven',           // Maven for Java
-        'vscjava.vscode-gradle',          // Gradle for Java
-        'vscjava.vscode-java-dependency', // Project Manager for Java
-        'vscjava.vscode-java-pack'        // Extension Pack for Java (meta)
-    ];
-
-    for (const id of ids) {
-        try {
-            const ext = vscode.extensions.getExtension(id);
-            if (ext) {
-                if (!ext.isActive) {
-                    console.log(`[Java Pack] Activating ${id}...`);
-                    await ext.activate();
-                } else {
-                    console.log(`[Java Pack] Already active: ${id}`);
-                }
-            } else {
-                console.warn(`[Java Pack] Not installed: ${id}`);
-            }
-        } catch (e) {
-            console.warn(`[Java Pack] Failed to activate ${id}:`, e);
-        }
-    }
+function getParseConcurrency(): number {
+    const configured = vscode.workspace.getConfiguration('javaClassDiagram').get<number>('parseConcurrency', DEFAULT_PARSE_CONCURRENCY);
+    return Math.max(1, Math.floor(configured));
 }
 
 export function deactivate() {
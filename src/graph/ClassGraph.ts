@@ -0,0 +1,237 @@
+import type { JavaClassStructure, JavaField, JavaMethod } from '../parser/JavaCodeParser';
+
+export type ClassGraphNodeKind = 'class' | 'interface' | 'enum' | 'abstract' | 'external';
+export type ClassGraphEdgeKind = 'extends' | 'implements' | 'association';
+
+const EDGE_KINDS: readonly ClassGraphEdgeKind[] = ['extends', 'implements', 'association'];
+
+export interface ClassGraphNode {
+    id: number;
+    name: string;
+    qualifiedName: string;
+    packageName: string;
+    kind: ClassGraphNodeKind;
+    // Empty for supertypes outside the diagram
+    filePath: string;
+    // Member lines, formatted like the PlantUML diagrams ("+name : Type")
+    fields: string[];
+    methods: string[];
+}
+
+export interface ClassGraphEdge {
+    // extends / implements: subtype → supertype, association: owner → referenced type
+    source: number;
+    target: number;
+    kind: ClassGraphEdgeKind;
+}
+
+/**
+ * Class diagram as plain data, for renderers that do their own layout instead of going through PlantUML.
+ */
+export interface ClassGraph {
+    nodes: ClassGraphNode[];
+    edges: ClassGraphEdge[];
+}
+
+/**
+ * Builds the class graph of a set of parsed classes. Every class is kept; supertypes outside
+ * the set become 'external' nodes, associations are only drawn between classes of the set.
+ */
+export function buildClassGraph(classStructures: JavaClassStructure[]): ClassGraph {
+    const nodes: ClassGraphNode[] = [];
+    const byQualifiedName = new Map<string, number>();
+    const bySimpleName = new Map<string, number[]>();
+
+    const addNode = (node: Omit<ClassGraphNode, 'id'>): number => {
+        const id = nodes.length;
+        nodes.push({ id, ...node });
+        byQualifiedName.set(node.qualifiedName, id);
+        const sameName = bySimpleName.get(node.name);
+        if (sameName) {
+            sameName.push(id);
+        } else {
+            bySimpleName.set(node.name, [id]);
+        }
+        return id;
+    };
+
+    const structureIds: number[] = [];
+    for (const structure of classStructures) {
+        const qualifiedName = structure.packageName ? `${structure.packageName}.${structure.className}` : structure.className;
+        const existing = byQualifiedName.get(qualifiedName);
+        if (existing !== undefined) {
+            // The same type parsed twice (e.g. from a file and a related class lookup)
+            structureIds.push(existing);
+            continue;
+        }
+        structureIds.push(addNode({
+            name: structure.className,
+            qualifiedName,
+            packageName: structure.packageName || '',
+            kind: toNodeKind(structure.classType),
+            filePath: structure.filePath || '',
+            fields: structure.fields.map(formatField),
+            methods: [...structure.constructors, ...structure.methods].map(formatMethod)
+        }));
+    }
+
+    // Prefers the same package, then an explicit import, then any class with that simple name
+    const resolve = (typeName: string, from: JavaClassStructure): number | undefined => {
+        const qualified = byQualifiedName.get(typeName);
+        if (qualified !== undefined) {
+            return qualified;
+        }
+        const simpleName = typeName.substring(typeName.lastIndexOf('.') + 1);
+        const candidates = bySimpleName.get(simpleName);
+        if (!candidates) {
+            return undefined;
+        }
+        if (candidates.length === 1) {
+            return candidates[0];
+        }
+        return candidates.find(id => nodes[id].packageName === (from.packageName || '')) ??
+            candidates.find(id => from.imports.some(imported => imported === nodes[id].qualifiedName)) ??
+            candidates[0];
+    };
+
+    const edges: ClassGraphEdge[] = [];
+    // (source, kind, target) packed into one number; node ids stay far below 2^26
+    const edgeKeys = new Set<number>();
+    const addEdge = (source: number, target: number, kind: ClassGraphEdgeKind) => {
+        const key = (source * EDGE_KINDS.length + EDGE_KINDS.indexOf(kind)) * 0x4000000 + target;
+        if (source !== target && !edgeKeys.has(key)) {
+            edgeKeys.add(key);
+            edges.push({ source, target, kind });
+        }
+    };
+
+    classStructures.forEach((structure, index) => {
+        const id = structureIds[index];
+        const supertype = (typeName: string, kind: ClassGraphEdgeKind) => {
+            const baseName = stripTypeArguments(typeName);
+            if (!baseName) {
+                return;
+            }
+            let target = resolve(baseName, structure);
+            if (target === undefined) {
+                const simpleName = baseName.substring(baseName.lastIndexOf('.') + 1);
+                target = addNode({
+                    name: simpleName,
+                    qualifiedName: baseName,
+                    packageName: baseName.includes('.') ? baseName.substring(0, baseName.lastIndexOf('.')) : '',
+                    kind: 'external',
+                    filePath: '',
+                    fields: [],
+                    methods: []
+                });
+            }
+            addEdge(id, target, kind);
+        };
+
+        if (structure.superClass) {
+            supertype(structure.superClass, 'extends');
+        }
+        // Interfaces extend their parents, classes implement them
+        for (const interfaceName of structure.interfaces) {
+            supertype(interfaceName, structure.classType === 'interface' ? 'extends' : 'implements');
+        }
+
+        for (const field of structure.fields) {
+            for (const typeName of referencedTypeNames(field.type)) {
+                const target = resolve(typeName, structure);
+                if (target !== undefined && nodes[target].kind !== 'external') {
+                    addEdge(id, target, 'association');
+                }
+            }
+        }
+    });
+
+    return { nodes, edges };
+}
+
+export interface ClassGraphDiff {
+    // Same nodes (by id and qualified name) and the same edges, the layout still holds
+    sameStructure: boolean;
+    // With the same structure: the nodes whose label or members changed
+    changedNodes: ClassGraphNode[];
+}
+
+/**
+ * Compares two graphs built from the same sources before and after an edit. Most saves only
+ * touch members, those are redrawn without a new layout.
+ */
+export function diffClassGraphs(previous: ClassGraph, next: ClassGraph): ClassGraphDiff {
+    const sameStructure = previous.nodes.length === next.nodes.length &&
+        previous.edges.length === next.edges.length &&
+        next.nodes.every((node, id) => node.qualifiedName === previous.nodes[id].qualifiedName && node.kind === previous.nodes[id].kind) &&
+        next.edges.every((edge, index) => {
+            const before = previous.edges[index];
+            return edge.source === before.source && edge.target === before.target && edge.kind === before.kind;
+        });
+    if (!sameStructure) {
+        return { sameStructure, changedNodes: [] };
+    }
+
+    const changedNodes = next.nodes.filter((node, id) => {
+        const before = previous.nodes[id];
+        return node.name !== before.name || node.filePath !== before.filePath ||
+            !sameLines(node.fields, before.fields) || !sameLines(node.methods, before.methods);
+    });
+    return { sameStructure, changedNodes };
+}
+
+function sameLines(a: string[], b: string[]): boolean {
+    return a.length === b.length && a.every((line, index) => line === b[index]);
+}
+
+function toNodeKind(classType: JavaClassStructure['classType']): ClassGraphNodeKind {
+    switch (classType) {
+        case 'interface':
+            return 'interface';
+        case 'enum':
+            return 'enum';
+        case 'abstract class':
+            return 'abstract';
+        default:
+            return 'class';
+    }
+}
+
+function stripTypeArguments(typeName: string): string {
+    const genericStart = typeName.indexOf('<');
+    return (genericStart >= 0 ? typeName.substring(0, genericStart) : typeName).trim();
+}
+
+/**
+ * Every type name in a declared type, so `Map<String, List<Order>>` also links to Order.
+ */
+export function referencedTypeNames(type: string): string[] {
+    return type.match(/[A-Za-z_$][\w$]*(?:\.[A-Za-z_$][\w$]*)*/g) || [];
+}
+
+function simpleTypeName(type: string): string {
+    return type.replace(/\b(?:[a-z_$][\w$]*\.)+(?=[A-Za-z_$])/g, '');
+}
+
+function visibilitySymbol(visibility: string): string {
+    switch (visibility) {
+        case 'public':
+            return '+';
+        case 'private':
+            return '-';
+        case 'protected':
+            return '#';
+        default:
+            return '~';
+    }
+}
+
+function formatField(field: JavaField): string {
+    return `${visibilitySymbol(field.visibility)}${field.isStatic ? 'static ' : ''}${field.name} : ${simpleTypeName(field.type)}`;
+}
+
+function formatMethod(method: JavaMethod): string {
+    const parameters = method.parameters.map(parameter => `${parameter.name}: ${simpleTypeName(parameter.type)}`).join(', ');
+    const returnType = method.returnType && method.returnType !== 'void' ? ` : ${simpleTypeName(method.returnType)}` : '';
+    return `${visibilitySymbol(method.visibility)}${method.isStatic ? 'static ' : ''}${method.isAbstract ? 'abstract ' : ''}${method.name}(${parameters})${returnType}`;
+}
@@ -0,0 +1,352 @@
+import type { JavaClassStructure } from '../parser/JavaCodeParser';
+import { referencedTypeNames } from './ClassGraph';
+import { CompactGraph, CompactGraphBuilder, NameInterner } from './CompactGraph';
+import { getMemberTable } from '../parser/MemberTable';
+
+// association: field types, dependency: types in method and constructor signatures
+export type ClassRelationKind = 'extends' | 'implements' | 'association' | 'dependency';
+
+export const ALL_RELATION_KINDS: readonly ClassRelationKind[] = ['extends', 'implements', 'association', 'dependency'];
+
+export type RelationDirection = 'outgoing' | 'incoming' | 'both';
+
+export interface TypeReference {
+    kind: ClassRelationKind;
+    // As written in the source, type arguments removed
+    typeName: string;
+}
+
+export interface NeighborhoodQuery {
+    // Hops from the start class; Infinity follows the relations to the end
+    depth: number;
+    // Relations followed, all by default
+    kinds?: readonly ClassRelationKind[];
+    // outgoing by default: what the class uses, not what uses it
+    direction?: RelationDirection;
+    // Only classes in these packages or their sub-packages are returned and walked through
+    packages?: readonly string[];
+    // Stop after this many classes, closest first
+    maxClasses?: number;
+}
+
+export interface ClassNeighbor {
+    qualifiedName: string;
+    // Undefined for supertypes outside the index (library types)
+    structure?: JavaClassStructure;
+    distance: number;
+    // Relation of the edge the class was reached by
+    kind: ClassRelationKind;
+}
+
+interface IndexedClass {
+    structure: JavaClassStructure;
+    references: TypeReference[];
+}
+
+interface Adjacency {
+    names: NameInterner;
+    // Indexed classes have the ids below classCount, library supertypes the ones above
+    classCount: number;
+    graph: CompactGraph;
+    // Query scratch space, one slot per node
+    visited: Int32Array;
+    queue: Int32Array;
+    stamp: number;
+}
+
+const KIND_IDS: { [kind in ClassRelationKind]: number } = { extends: 0, implements: 1, association: 2, dependency: 3 };
+
+// Tokens of a declared type that never name a class
+const NON_TYPE_NAMES = new Set([
+    'void', 'boolean', 'byte', 'char', 'short', 'int', 'long', 'float', 'double', 'var',
+    'extends', 'super', 'final'
+]);
+
+/**
+ * In-memory graph of the parsed classes and their relations: inheritance, implementation,
+ * field associations and method signature dependencies. Classes are added as they are parsed;
+ * the adjacency is resolved on the first query after a change, so neighborhood queries are
+ * plain graph walks without any Language Server round trip.
+ */
+export class ClassGraphIndex {
+    private classes = new Map<string, IndexedClass>();
+    private namesByFile = new Map<string, Set<string>>();
+    private namesBySimpleName = new Map<string, Set<string>>();
+    private adjacency: Adjacency | undefined;
+
+    get size(): number {
+        return this.classes.size;
+    }
+
+    /**
+     * Adds a parsed class, replacing the previous version of the same class.
+     */
+    update(structure: JavaClassStructure): void {
+        const qualifiedName = qualifiedNameOf(structure);
+        // Model cache hits hand back a copy sharing the member table, the adjacency stays valid
+        const existing = this.classes.get(qualifiedName)?.structure;
+        if (existing === structure || (existing && getMemberTable(existing) && getMemberTable(existing) === getMemberTable(structure))) {
+            return;
+        }
+        this.removeClass(qualifiedName);
+
+        this.classes.set(qualifiedName, { structure, references: getTypeReferences(structure) });
+        addToSet(this.namesBySimpleName, structure.className, qualifiedName);
+        if (structure.filePath) {
+            addToSet(this.namesByFile, structure.filePath, qualifiedName);
+        }
+        this.adjacency = undefined;
+    }
+
+    /**
+     * Drops the classes parsed from a file that was deleted or changed.
+     */
+    removeFile(filePath: string): void {
+        for (const qualifiedName of Array.from(this.namesByFile.get(filePath) || [])) {
+            this.removeClass(qualifiedName);
+        }
+    }
+
+    get(qualifiedName: string): JavaClassStructure | undefined {
+        return this.classes.get(qualifiedName)?.structure;
+    }
+
+    clear(): void {
+        this.classes.clear();
+        this.namesByFile.clear();
+        this.namesBySimpleName.clear();
+        this.adjacency = undefined;
+    }
+
+    /**
+     * Classes within `query.depth` hops of `qualifiedName`, closest first, without the class itself.
+     */
+    getNeighborhood(qualifiedName: string, query: NeighborhoodQuery): ClassNeighbor[] {
+        const adjacency = this.getAdjacency();
+        const start = adjacency.names.idOf(qualifiedName);
+        if (start < 0) {
+            return [];
+        }
+
+        const kinds = (query.kinds ?? ALL_RELATION_KINDS).map(kind => KIND_IDS[kind]);
+        const direction = query.direction ?? 'outgoing';
+        const maxClasses = query.maxClasses ?? Infinity;
+        const packages = query.packages;
+        const inPackages = (name: string) => !packages ||
+            packages.some(packageName => packageName === '' || name.startsWith(packageName + '.'));
+
+        // Stamping instead of clearing keeps a query independent of the graph size
+        const { visited, queue } = adjacency;
+        const stamp = ++adjacency.stamp;
+        visited[start] = stamp;
+        queue[0] = start;
+        let head = 0;
+        let tail = 1;
+
+        const result: ClassNeighbor[] = [];
+        // Adds the unvisited nodes of an adjacency list; false once maxClasses is reached
+        const visit = (targets: Int32Array, kind: number, distance: number): boolean => {
+            for (let i = 0; i < targets.length; i++) {
+                const target = targets[i];
+                if (visited[target] === stamp) {
+                    continue;
+                }
+                const name = adjacency.names.nameOf(target);
+                if (!inPackages(name)) {
+                    continue;
+                }
+                visited[target] = stamp;
+                result.push({ qualifiedName: name, structure: this.classes.get(name)?.structure, distance, kind: ALL_RELATION_KINDS[kind] });
+                if (result.length >= maxClasses) {
+                    return false;
+                }
+                // Library types (ids from classCount on) have no known relations to walk
+                if (target < adjacency.classCount) {
+                    queue[tail++] = target;
+                }
+            }
+            return true;
+        };
+
+        for (let distance = 1; distance <= query.depth && head < tail; distance++) {
+            const levelEnd = tail;
+            for (; head < levelEnd; head++) {
+                const current = queue[head];
+                for (const kind of kinds) {
+                    if ((direction !== 'incoming' && !visit(adjacency.graph.outgoing(kind, current), kind, distance)) ||
+                        (direction !== 'outgoing' && !visit(adjacency.graph.incoming(kind, current), kind, distance))) {
+                        return result;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private removeClass(qualifiedName: string): void {
+        const existing = this.classes.get(qualifiedName);
+        if (!existing) {
+            return;
+        }
+        this.classes.delete(qualifiedName);
+        this.namesBySimpleName.get(existing.structure.className)?.delete(qualifiedName);
+        if (existing.structure.filePath) {
+            this.namesByFile.get(existing.structure.filePath)?.delete(qualifiedName);
+        }
+        this.adjacency = undefined;
+    }
+
+    /**
+     * Interns the indexed classes (ids 0..n-1) and the library supertypes they name (ids from n
+     * on), then builds the typed-array adjacency. Linear in classes plus references.
+     */
+    private getAdjacency(): Adjacency {
+        if (this.adjacency) {
+            return this.adjacency;
+        }
+
+        const names = new NameInterner();
+        for (const qualifiedName of this.classes.keys()) {
+            names.intern(qualifiedName);
+        }
+        const classCount = names.size;
+
+        const builder = new CompactGraphBuilder(ALL_RELATION_KINDS.length);
+        let source = 0;
+        for (const { structure, references } of this.classes.values()) {
+            for (const reference of references) {
+                const target = this.resolve(reference.typeName, structure);
+                if (target === undefined) {
+                    continue;
+                }
+                let targetId = names.idOf(target);
+                if (targetId < 0) {
+                    // Only supertypes are kept when they are outside the index
+                    if (reference.kind !== 'extends' && reference.kind !== 'implements') {
+                        continue;
+                    }
+                    targetId = names.intern(target);
+                }
+                if (targetId !== source) {
+                    builder.addEdge(KIND_IDS[reference.kind], source, targetId);
+                }
+            }
+            source++;
+        }
+
+        this.adjacency = {
+            names,
+            classCount,
+            graph: builder.build(names.size),
+            visited: new Int32Array(names.size),
+            queue: new Int32Array(names.size),
+            stamp: 0
+        };
+        return this.adjacency;
+    }
+
+    /**
+     * Qualified name of the type `typeName` refers to in `from`: single-type import, same
+     * package, nested type, on-demand import, then a unique simple name. Names that resolve to
+     * nothing indexed come back as written so library supertypes still get a node.
+     */
+    private resolve(typeName: string, from: JavaClassStructure): string | undefined {
+        if (this.classes.has(typeName)) {
+            return typeName;
+        }
+
+        const simpleName = typeName.substring(typeName.lastIndexOf('.') + 1);
+        const candidates = this.namesBySimpleName.get(simpleName);
+        if (typeName.includes('.')) {
+            // Outer.Inner style reference
+            for (const candidate of candidates || []) {
+                if (candidate.endsWith('.' + typeName)) {
+                    return candidate;
+                }
+            }
+            return typeName;
+        }
+
+        const singleImport = from.imports.find(imported => imported.endsWith('.' + typeName));
+        if (singleImport) {
+            return singleImport;
+        }
+        if (!candidates || candidates.size === 0) {
+            return typeName;
+        }
+
+        const packagePrefix = from.packageName ? from.packageName + '.' : '';
+        const fromName = qualifiedNameOf(from);
+        for (const candidate of [packagePrefix + typeName, `${fromName}.${typeName}`]) {
+            if (candidates.has(candidate)) {
+                return candidate;
+            }
+        }
+        for (const imported of from.imports) {
+            if (imported.endsWith('.*') && candidates.has(imported.slice(0, -1) + typeName)) {
+                return imported.slice(0, -1) + typeName;
+            }
+        }
+        return candidates.size === 1 ? candidates.values().next().value : typeName;
+    }
+}
+
+/**
+ * Every type a class refers to in its supertypes, fields and member signatures.
+ */
+export function getTypeReferences(structure: JavaClassStructure): TypeReference[] {
+    const references: TypeReference[] = [];
+    const add = (kind: ClassRelationKind, type: string | undefined) => {
+        if (!type) {
+            return;
+        }
+        // Annotations on type uses (@NonNull String) are not relations
+        for (const typeName of referencedTypeNames(type.replace(/@[\w.]+/g, ''))) {
+            if (!NON_TYPE_NAMES.has(typeName)) {
+                references.push({ kind, typeName });
+            }
+        }
+    };
+    const addSupertype = (kind: ClassRelationKind, type: string) => {
+        const genericStart = type.indexOf('<');
+        add(kind, genericStart >= 0 ? type.substring(0, genericStart) : type);
+        // Type arguments of a supertype (extends Repository<Order>) are uses of the class
+        if (genericStart >= 0) {
+            add('dependency', type.substring(genericStart));
+        }
+    };
+
+    if (structure.superClass) {
+        addSupertype('extends', structure.superClass);
+    }
+    // Interfaces extend their parents, classes implement them
+    for (const interfaceName of structure.interfaces) {
+        addSupertype(structure.classType === 'interface' ? 'extends' : 'implements', interfaceName);
+    }
+    for (const field of structure.fields) {
+        add('association', field.type);
+    }
+    for (const method of [...structure.constructors, ...structure.methods]) {
+        add('dependency', method.returnType);
+        for (const parameter of method.parameters) {
+            add('dependency', parameter.type);
+        }
+        for (const exception of method.exceptions || []) {
+            add('dependency', exception);
+        }
+    }
+    return references;
+}
+
+export function qualifiedNameOf(type: { packageName: string, className: string }): string {
+    return type.packageName ? `${type.packageName}.${type.className}` : type.className;
+}
+
+function addToSet(map: Map<string, Set<string>>, key: string, value: string): void {
+    const set = map.get(key);
+    if (set) {
+        set.add(value);
+    } else {
+        map.set(key, new Set([value]));
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Dense integer ids for names (qualified class names, diagram node names), so graph code
+ * compares and stores numbers instead of strings.
+ */
+export class NameInterner {
+    private ids = new Map<string, number>();
+    private names: string[] = [];
+
+    get size(): number {
+        return this.names.length;
+    }
+
+    /**
+     * Id of `name`, assigning the next free one on first sight.
+     */
+    intern(name: string): number {
+        let id = this.ids.get(name);
+        if (id === undefined) {
+            id = this.names.length;
+            this.ids.set(name, id);
+            this.names.push(name);
+        }
+        return id;
+    }
+
+    /**
+     * Id of an already interned name, -1 otherwise.
+     */
+    idOf(name: string): number {
+        return this.ids.get(name) ?? -1;
+    }
+
+    nameOf(id: number): string {
+        return this.names[id];
+    }
+}
+
+const INITIAL_EDGE_CAPACITY = 1024;
+
+/**
+ * Collects edges as (source, target) id pairs in growable typed arrays, one list per edge
+ * kind. Duplicates are allowed here and removed by build().
+ */
+export class CompactGraphBuilder {
+    private sources: Int32Array[] = [];
+    private targets: Int32Array[] = [];
+    private counts: number[] = [];
+
+    constructor(readonly kindCount: number) {
+        for (let kind = 0; kind < kindCount; kind++) {
+            this.sources.push(new Int32Array(INITIAL_EDGE_CAPACITY));
+            this.targets.push(new Int32Array(INITIAL_EDGE_CAPACITY));
+            this.counts.push(0);
+        }
+    }
+
+    addEdge(kind: number, source: number, target: number): void {
+        const count = this.counts[kind];
+        if (count === this.sources[kind].length) {
+            this.sources[kind] = grow(this.sources[kind]);
+            this.targets[kind] = grow(this.targets[kind]);
+        }
+        this.sources[kind][count] = source;
+        this.targets[kind][count] = target;
+        this.counts[kind] = count + 1;
+    }
+
+    /**
+     * Compressed adjacency (CSR) per kind in both directions. Linear in nodes plus edges:
+     * a counting sort groups the edges by source, duplicates within a group are dropped with
+     * a marker array instead of a hash set.
+     */
+    build(nodeCount: number): CompactGraph {
+        const outgoing: Adjacency[] = [];
+        const incoming: Adjacency[] = [];
+        const marker = new Int32Array(nodeCount).fill(-1);
+        for (let kind = 0; kind < this.kindCount; kind++) {
+            const forward = groupBy(this.sources[kind], this.targets[kind], this.counts[kind], nodeCount);
+            const deduplicated = removeDuplicates(forward, nodeCount, marker);
+            outgoing.push(deduplicated);
+            incoming.push(reverse(deduplicated, nodeCount));
+        }
+        return new CompactGraph(nodeCount, outgoing, incoming);
+    }
+}
+
+interface Adjacency {
+    // Edges of node n are targets[offsets[n] .. offsets[n + 1])
+    offsets: Int32Array;
+    targets: Int32Array;
+}
+
+/**
+ * Immutable adjacency lists over integer node ids, one CSR structure per edge kind and
+ * direction: 4 bytes per edge and direction plus 4 bytes per node and kind.
+ */
+export class CompactGraph {
+    constructor(
+        readonly nodeCount: number,
+        private outgoingLists: Adjacency[],
+        private incomingLists: Adjacency[]
+    ) {}
+
+    outgoing(kind: number, node: number): Int32Array {
+        return slice(this.outgoingLists[kind], node);
+    }
+
+    incoming(kind: number, node: number): Int32Array {
+        return slice(this.incomingLists[kind], node);
+    }
+
+    edgeCount(kind: number): number {
+        return this.outgoingLists[kind].targets.length;
+    }
+}
+
+function slice(adjacency: Adjacency, node: number): Int32Array {
+    return adjacency.targets.subarray(adjacency.offsets[node], adjacency.offsets[node + 1]);
+}
+
+function grow(array: Int32Array): Int32Array {
+    const grown = new Int32Array(array.length * 2);
+    grown.set(array);
+    return grown;
+}
+
+function groupBy(keys: Int32Array, values: Int32Array, count: number, nodeCount: number): Adjacency {
+    const offsets = new Int32Array(nodeCount + 1);
+    for (let i = 0; i < count; i++) {
+        offsets[keys[i] + 1]++;
+    }
+    for (let node = 0; node < nodeCount; node++) {
+        offsets[node + 1] += offsets[node];
+    }
+    const cursor = offsets.slice(0, nodeCount);
+    const targets = new Int32Array(count);
+    for (let i = 0; i < count; i++) {
+        targets[cursor[keys[i]]++] = values[i];
+    }
+    return { offsets, targets };
+}
+
+function removeDuplicates(adjacency: Adjacency, nodeCount: number, marker: Int32Array): Adjacency {
+    const offsets = new Int32Array(nodeCount + 1);
+    const { offsets: inputOffsets, targets: inputTargets } = adjacency;
+    let write = 0;
+    for (let node = 0; node < nodeCount; node++) {
+        offsets[node] = write;
+        for (let i = inputOffsets[node]; i < inputOffsets[node + 1]; i++) {
+            const target = inputTargets[i];
+            // marker[target] === node: this target was already seen in node's list
+            if (marker[target] !== node) {
+                marker[target] = node;
+                inputTargets[write++] = target;
+            }
+        }
+    }
+    offsets[nodeCount] = write;
+    marker.fill(-1);
+    return { offsets, targets: inputTargets.slice(0, write) };
+}
+
+function reverse(adjacency: Adjacency, nodeCount: number): Adjacency {
+    const { offsets, targets } = adjacency;
+    const sources = new Int32Array(targets.length);
+    for (let node = 0; node < nodeCount; node++) {
+        sources.fill(node, offsets[node], offsets[node + 1]);
+    }
+    return groupBy(targets, sources, targets.length, nodeCount);
+}
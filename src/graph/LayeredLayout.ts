@@ -0,0 +1,357 @@
+export interface LayoutNodeSize {
+    width: number;
+    height: number;
+}
+
+export interface LayoutEdge {
+    // The upper end: supertype for inheritance, owner for associations
+    from: number;
+    to: number;
+    // false: the edge does not push `to` below `from` (like Graphviz constraint=false),
+    // it only pulls the two ends together. Defaults to true.
+    constraint?: boolean;
+}
+
+export interface LayeredLayoutOptions {
+    horizontalGap?: number;
+    verticalGap?: number;
+    // Rows wider than this wrap; defaults to a roughly square drawing
+    maxRowWidth?: number;
+    // Barycenter sweeps for crossing reduction
+    orderingIterations?: number;
+    // Passes pulling nodes towards their neighbours
+    positioningIterations?: number;
+}
+
+export interface LayeredLayoutResult {
+    // Top-left corner of every node
+    x: number[];
+    y: number[];
+    // Row the node was placed in (a wide layer spans several rows)
+    row: number[];
+    width: number;
+    height: number;
+    rowCount: number;
+    layerCount: number;
+    reversedEdges: number;
+}
+
+/**
+ * Sugiyama-style layered layout: cycle removal, longest-path layering, barycenter
+ * ordering and barycenter positioning. Long edges get no dummy nodes, and layers wider
+ * than maxRowWidth wrap into several rows, which keeps thousands of classes close to linear.
+ *
+ * Self-contained on purpose: the webview ships `computeLayeredLayout.toString()` into a
+ * Blob worker, so nothing outside this function body may be referenced.
+ */
+export function computeLayeredLayout(
+    nodes: LayoutNodeSize[],
+    edges: LayoutEdge[],
+    options: LayeredLayoutOptions = {}
+): LayeredLayoutResult {
+    const nodeCount = nodes.length;
+    const horizontalGap = options.horizontalGap ?? 40;
+    const verticalGap = options.verticalGap ?? 80;
+    const orderingIterations = options.orderingIterations ?? 4;
+    const positioningIterations = options.positioningIterations ?? 4;
+
+    // Adjacency of the layering edges, and of all edges in both directions; parallel edges collapsed
+    const down: number[][] = [];
+    const up: number[][] = [];
+    const linked: number[][] = [];
+    for (let i = 0; i < nodeCount; i++) {
+        down.push([]);
+        up.push([]);
+        linked.push([]);
+    }
+    const seen = new Set<number>();
+    const seenLinks = new Set<number>();
+    for (const edge of edges) {
+        if (edge.from === edge.to || edge.from < 0 || edge.to < 0 || edge.from >= nodeCount || edge.to >= nodeCount) {
+            continue;
+        }
+        const linkKey = Math.min(edge.from, edge.to) * nodeCount + Math.max(edge.from, edge.to);
+        if (!seenLinks.has(linkKey)) {
+            seenLinks.add(linkKey);
+            linked[edge.from].push(edge.to);
+            linked[edge.to].push(edge.from);
+        }
+        const key = edge.from * nodeCount + edge.to;
+        if (edge.constraint !== false && !seen.has(key)) {
+            seen.add(key);
+            down[edge.from].push(edge.to);
+        }
+    }
+
+    // 1. Cycle removal: iterative DFS, edges to a node on the stack are reversed
+    const state = new Uint8Array(nodeCount); // 0 new, 1 on stack, 2 done
+    let reversedEdges = 0;
+    const dagDown: number[][] = down.map(() => []);
+    for (let start = 0; start < nodeCount; start++) {
+        if (state[start] !== 0) {
+            continue;
+        }
+        const stack: number[] = [start];
+        const cursor: number[] = [0];
+        state[start] = 1;
+        while (stack.length > 0) {
+            const v = stack[stack.length - 1];
+            const i = cursor[cursor.length - 1];
+            if (i < down[v].length) {
+                cursor[cursor.length - 1] = i + 1;
+                const w = down[v][i];
+                if (state[w] === 1) {
+                    dagDown[w].push(v);
+                    reversedEdges++;
+                } else {
+                    dagDown[v].push(w);
+                    if (state[w] === 0) {
+                        state[w] = 1;
+                        stack.push(w);
+                        cursor.push(0);
+                    }
+                }
+            } else {
+                state[v] = 2;
+                stack.pop();
+                cursor.pop();
+            }
+        }
+    }
+    for (let v = 0; v < nodeCount; v++) {
+        up[v] = [];
+    }
+    for (let v = 0; v < nodeCount; v++) {
+        for (const w of dagDown[v]) {
+            up[w].push(v);
+        }
+    }
+
+    // 2. Layering: longest path from the sources (Kahn order). Isolated nodes go last.
+    const layer = new Int32Array(nodeCount);
+    const inDegree = new Int32Array(nodeCount);
+    for (let v = 0; v < nodeCount; v++) {
+        inDegree[v] = up[v].length;
+    }
+    const queue: number[] = [];
+    for (let v = 0; v < nodeCount; v++) {
+        if (inDegree[v] === 0) {
+            queue.push(v);
+        }
+    }
+    for (let head = 0; head < queue.length; head++) {
+        const v = queue[head];
+        for (const w of dagDown[v]) {
+            layer[w] = Math.max(layer[w], layer[v] + 1);
+            if (--inDegree[w] === 0) {
+                queue.push(w);
+            }
+        }
+    }
+    // A source sits right above its highest child instead of at the very top
+    for (let i = queue.length - 1; i >= 0; i--) {
+        const v = queue[i];
+        if (up[v].length === 0 && dagDown[v].length > 0) {
+            let minChild = Infinity;
+            for (const w of dagDown[v]) {
+                minChild = Math.min(minChild, layer[w]);
+            }
+            layer[v] = minChild - 1;
+        }
+    }
+
+    let layerCount = 0;
+    for (let v = 0; v < nodeCount; v++) {
+        if (linked[v].length > 0) {
+            layerCount = Math.max(layerCount, layer[v] + 1);
+        }
+    }
+    const layers: number[][] = [];
+    for (let l = 0; l < layerCount; l++) {
+        layers.push([]);
+    }
+    const isolated: number[] = [];
+    for (let v = 0; v < nodeCount; v++) {
+        if (linked[v].length === 0) {
+            isolated.push(v);
+        } else {
+            layers[layer[v]].push(v);
+        }
+    }
+
+    // 3. Ordering: barycenter sweeps over all neighbours in the layers above / below
+    const layerAbove: number[][] = linked.map((adjacent, v) => adjacent.filter(w => linked[w].length > 0 && layer[w] < layer[v]));
+    const layerBelow: number[][] = linked.map((adjacent, v) => adjacent.filter(w => linked[w].length > 0 && layer[w] > layer[v]));
+    const position = new Float64Array(nodeCount);
+    const assignPositions = (members: number[]) => {
+        for (let i = 0; i < members.length; i++) {
+            position[members[i]] = i;
+        }
+    };
+    layers.forEach(assignPositions);
+
+    const barycenter = new Float64Array(nodeCount);
+    const sortLayer = (members: number[], neighbours: number[][]) => {
+        for (const v of members) {
+            const adjacent = neighbours[v];
+            if (adjacent.length === 0) {
+                // Keeps its place relative to the others
+                barycenter[v] = position[v];
+                continue;
+            }
+            let sum = 0;
+            for (const w of adjacent) {
+                sum += position[w] / Math.max(1, layers[layer[w]].length - 1) * Math.max(1, members.length - 1);
+            }
+            barycenter[v] = sum / adjacent.length;
+        }
+        members.sort((a, b) => barycenter[a] - barycenter[b] || position[a] - position[b]);
+        assignPositions(members);
+    };
+    for (let iteration = 0; iteration < orderingIterations; iteration++) {
+        for (let l = 1; l < layerCount; l++) {
+            sortLayer(layers[l], layerAbove);
+        }
+        for (let l = layerCount - 2; l >= 0; l--) {
+            sortLayer(layers[l], layerBelow);
+        }
+    }
+
+    // 4. Rows: wide layers wrap, isolated nodes are packed at the bottom
+    let totalArea = 0;
+    for (const node of nodes) {
+        totalArea += (node.width + horizontalGap) * (node.height + verticalGap);
+    }
+    const maxRowWidth = options.maxRowWidth ?? Math.max(2000, Math.sqrt(totalArea) * 1.6);
+    const rows: number[][] = [];
+    const wrap = (members: number[]) => {
+        let current: number[] = [];
+        let width = 0;
+        for (const v of members) {
+            if (current.length > 0 && width + nodes[v].width > maxRowWidth) {
+                rows.push(current);
+                current = [];
+                width = 0;
+            }
+            current.push(v);
+            width += nodes[v].width + horizontalGap;
+        }
+        if (current.length > 0) {
+            rows.push(current);
+        }
+    };
+    layers.forEach(wrap);
+    wrap(isolated);
+
+    const row = new Array<number>(nodeCount).fill(0);
+    rows.forEach((members, index) => {
+        for (const v of members) {
+            row[v] = index;
+        }
+    });
+
+    // 5. Positioning: start packed, then pull every row towards the barycenter of its
+    // neighbours' centers. Order and spacing are kept by an isotonic regression
+    // (pool adjacent violators), the least squares fit under the ordering constraints.
+    const x = new Array<number>(nodeCount).fill(0);
+    for (const members of rows) {
+        let cursor = 0;
+        for (const v of members) {
+            x[v] = cursor;
+            cursor += nodes[v].width + horizontalGap;
+        }
+    }
+
+    const center = (v: number) => x[v] + nodes[v].width / 2;
+    const placeRow = (members: number[], neighbours: number[][]) => {
+        const count = members.length;
+        if (count === 0) {
+            return;
+        }
+        // Offsets so the constraint becomes x[i] - offset[i] non-decreasing
+        const offset = new Float64Array(count);
+        const target = new Float64Array(count);
+        for (let i = 0; i < count; i++) {
+            const v = members[i];
+            if (i > 0) {
+                offset[i] = offset[i - 1] + nodes[members[i - 1]].width + horizontalGap;
+            }
+            const adjacent = neighbours[v];
+            let desired = x[v];
+            if (adjacent.length > 0) {
+                let sum = 0;
+                for (const w of adjacent) {
+                    sum += center(w);
+                }
+                desired = sum / adjacent.length - nodes[v].width / 2;
+            }
+            target[i] = desired - offset[i];
+        }
+
+        const blockValue: number[] = [];
+        const blockWeight: number[] = [];
+        const blockSize: number[] = [];
+        for (let i = 0; i < count; i++) {
+            blockValue.push(target[i]);
+            blockWeight.push(1);
+            blockSize.push(1);
+            while (blockValue.length > 1 && blockValue[blockValue.length - 2] > blockValue[blockValue.length - 1]) {
+                const value = blockValue.pop()!;
+                const weight = blockWeight.pop()!;
+                const size = blockSize.pop()!;
+                const last = blockValue.length - 1;
+                blockValue[last] = (blockValue[last] * blockWeight[last] + value * weight) / (blockWeight[last] + weight);
+                blockWeight[last] += weight;
+                blockSize[last] += size;
+            }
+        }
+        let i = 0;
+        for (let b = 0; b < blockValue.length; b++) {
+            for (let k = 0; k < blockSize[b]; k++, i++) {
+                x[members[i]] = blockValue[b] + offset[i];
+            }
+        }
+    };
+
+    // Neighbours across rows: everything connected, in either direction
+    const above: number[][] = linked.map((adjacent, v) => adjacent.filter(w => row[w] < row[v]));
+    const below: number[][] = linked.map((adjacent, v) => adjacent.filter(w => row[w] > row[v]));
+    for (let iteration = 0; iteration < positioningIterations; iteration++) {
+        for (let r = 1; r < rows.length; r++) {
+            placeRow(rows[r], above);
+        }
+        for (let r = rows.length - 2; r >= 0; r--) {
+            placeRow(rows[r], below);
+        }
+    }
+
+    // 6. Normalize and stack the rows
+    let minX = Infinity;
+    let maxX = -Infinity;
+    for (let v = 0; v < nodeCount; v++) {
+        minX = Math.min(minX, x[v]);
+        maxX = Math.max(maxX, x[v] + nodes[v].width);
+    }
+    const y = new Array<number>(nodeCount).fill(0);
+    let top = 0;
+    for (const members of rows) {
+        let rowHeight = 0;
+        for (const v of members) {
+            x[v] -= minX;
+            y[v] = top;
+            rowHeight = Math.max(rowHeight, nodes[v].height);
+        }
+        top += rowHeight + verticalGap;
+    }
+
+    return {
+        x,
+        y,
+        row,
+        width: nodeCount > 0 ? maxX - minX : 0,
+        height: Math.max(0, top - verticalGap),
+        rowCount: rows.length,
+        layerCount,
+        reversedEdges
+    };
+}
@@ -0,0 +1,87 @@
+export interface BoundingBox {
+    minX: number;
+    minY: number;
+    maxX: number;
+    maxY: number;
+}
+
+export interface RTreeNode extends BoundingBox {
+    // Index of the box in the input for leaf entries, -1 for inner nodes
+    item: number;
+    children: RTreeNode[];
+}
+
+/**
+ * Static R-tree packed with Sort-Tile-Recursive: entries are sorted into vertical slabs by
+ * x, each slab by y, and cut into nodes of `nodeCapacity`; the same is repeated one level up
+ * until a single root is left. Built once in O(n log n), point queries visit O(log n) nodes.
+ *
+ * Self-contained on purpose (no imports, no helpers outside the function) so the webview can
+ * embed it through `toString()`, like the layered layout.
+ */
+export function buildRTree(boxes: BoundingBox[], nodeCapacity: number = 16): RTreeNode | null {
+    if (boxes.length === 0) {
+        return null;
+    }
+
+    let level: RTreeNode[] = boxes.map((box, item) => ({
+        minX: box.minX,
+        minY: box.minY,
+        maxX: box.maxX,
+        maxY: box.maxY,
+        item,
+        children: []
+    }));
+
+    while (level.length > 1) {
+        const parentCount = Math.ceil(level.length / nodeCapacity);
+        const sliceSize = Math.ceil(Math.sqrt(parentCount)) * nodeCapacity;
+        level.sort((a, b) => (a.minX + a.maxX) - (b.minX + b.maxX));
+
+        const next: RTreeNode[] = [];
+        for (let sliceStart = 0; sliceStart < level.length; sliceStart += sliceSize) {
+            const slice = level.slice(sliceStart, sliceStart + sliceSize);
+            slice.sort((a, b) => (a.minY + a.maxY) - (b.minY + b.maxY));
+            for (let start = 0; start < slice.length; start += nodeCapacity) {
+                const children = slice.slice(start, start + nodeCapacity);
+                const node: RTreeNode = { minX: Infinity, minY: Infinity, maxX: -Infinity, maxY: -Infinity, item: -1, children };
+                for (const child of children) {
+                    node.minX = Math.min(node.minX, child.minX);
+                    node.minY = Math.min(node.minY, child.minY);
+                    node.maxX = Math.max(node.maxX, child.maxX);
+                    node.maxY = Math.max(node.maxY, child.maxY);
+                }
+                next.push(node);
+            }
+        }
+        level = next;
+    }
+
+    // A single box still gets an inner root so callers only ever see one node shape
+    return level[0].item === -1 ? level[0] : { ...level[0], item: -1, children: [level[0]] };
+}
+
+/**
+ * Indexes of all boxes containing the point (edges inclusive), in no particular order.
+ */
+export function searchRTree(root: RTreeNode | null, x: number, y: number): number[] {
+    const result: number[] = [];
+    if (!root) {
+        return result;
+    }
+    const stack: RTreeNode[] = [root];
+    while (stack.length > 0) {
+        const node = stack.pop()!;
+        for (const child of node.children) {
+            if (x < child.minX || x > child.maxX || y < child.minY || y > child.maxY) {
+                continue;
+            }
+            if (child.item >= 0) {
+                result.push(child.item);
+            } else {
+                stack.push(child);
+            }
+        }
+    }
+    return result;
+}
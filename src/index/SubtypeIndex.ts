@@ -0,0 +1,546 @@
+import * as vscode from 'vscode';
+import * as fs from 'fs';
+import * as path from 'path';
+import { mapWithConcurrency } from '../util/concurrency';
+import { findJavaFiles, isExcludedJavaFile } from '../util/workspaceDiscovery';
+
+// Header scanning is pure I/O + regex, a wide window keeps the disk busy
+const INDEX_READ_CONCURRENCY = 32;
+
+export type TypeDeclarationKind = 'class' | 'interface' | 'enum' | 'record';
+
+export interface TypeDeclaration {
+    simpleName: string;
+    // Package plus enclosing types, e.g. com.acme.Outer.Inner
+    qualifiedName: string;
+    packageName: string;
+    filePath: string;
+    kind: TypeDeclarationKind;
+    // extends / implements clauses as written in the source, generic arguments erased
+    supertypes: string[];
+    line: number;
+}
+
+interface IndexedFile {
+    packageName: string;
+    imports: string[];
+    declarations: TypeDeclaration[];
+}
+
+/**
+ * Workspace-wide supertype → subtypes index. Built once from the headers of all
+ * workspace Java files and kept current by a file system watcher, so subtype and
+ * implementation queries are map lookups instead of workspace scans.
+ */
+export class SubtypeIndex implements vscode.Disposable {
+    private files = new Map<string, IndexedFile>();
+    // Keyed by the simple name of the supertype as written (last segment, no generics)
+    private subtypesBySimpleName = new Map<string, Set<TypeDeclaration>>();
+    private typesBySimpleName = new Map<string, Set<TypeDeclaration>>();
+    private building: Promise<void> | undefined;
+    private watcher: vscode.FileSystemWatcher | undefined;
+
+    /**
+     * Builds the index on first call; later calls return immediately.
+     */
+    ensureBuilt(): Promise<void> {
+        if (!this.building) {
+            this.building = this.build().catch(error => {
+                console.warn('Building the subtype index failed:', error);
+                // Allow a retry on the next query
+                this.building = undefined;
+            });
+        }
+        return this.building;
+    }
+
+    /**
+     * Direct subtypes (classes extending / interfaces extending / classes implementing) of a type.
+     * `typeName` may be simple or fully qualified; a qualified name also filters out
+     * unrelated types that happen to share the simple name.
+     */
+    getDirectSubtypes(typeName: string): TypeDeclaration[] {
+        const targetName = eraseGenerics(typeName);
+        const simpleName = lastSegment(targetName);
+        const candidates = this.subtypesBySimpleName.get(simpleName);
+        if (!candidates) {
+            return [];
+        }
+
+        const qualified = targetName.includes('.');
+        const result: TypeDeclaration[] = [];
+        for (const declaration of candidates) {
+            if (!qualified) {
+                result.push(declaration);
+                continue;
+            }
+            const file = this.files.get(declaration.filePath);
+            const references = declaration.supertypes.filter(supertype => lastSegment(supertype) === simpleName);
+            if (file && references.some(reference => this.refersTo(file, reference, targetName))) {
+                result.push(declaration);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * All transitive subtypes of a type, closest first.
+     */
+    getAllSubtypes(typeName: string): TypeDeclaration[] {
+        const result: TypeDeclaration[] = [];
+        const visited = new Set<string>([eraseGenerics(typeName)]);
+        const queue = [eraseGenerics(typeName)];
+
+        while (queue.length > 0) {
+            const current = queue.shift()!;
+            for (const subtype of this.getDirectSubtypes(current)) {
+                if (visited.has(subtype.qualifiedName)) {
+                    continue;
+                }
+                visited.add(subtype.qualifiedName);
+                result.push(subtype);
+                queue.push(subtype.qualifiedName);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Every indexed type declaration.
+     */
+    *getDeclarations(): IterableIterator<TypeDeclaration> {
+        for (const file of this.files.values()) {
+            yield* file.declarations;
+        }
+    }
+
+    /**
+     * The workspace type a supertype reference of `declaration` names; undefined for library
+     * types and references the index cannot resolve.
+     */
+    resolveSupertype(declaration: TypeDeclaration, reference: string): TypeDeclaration | undefined {
+        return this.resolveIn(this.files.get(declaration.filePath), reference, declaration);
+    }
+
+    /**
+     * The workspace type `reference`, as written in the file `filePath`, names; undefined for
+     * library types, unindexed files and references the index cannot resolve.
+     */
+    resolveType(filePath: string, reference: string): TypeDeclaration | undefined {
+        return this.resolveIn(this.files.get(normalizePath(filePath)), reference);
+    }
+
+    getTypeCount(): number {
+        let count = 0;
+        for (const file of this.files.values()) {
+            count += file.declarations.length;
+        }
+        return count;
+    }
+
+    /**
+     * Re-reads the type headers of a single file.
+     */
+    async updateFile(filePath: string): Promise<void> {
+        const key = normalizePath(filePath);
+        try {
+            const source = await fs.promises.readFile(key, 'utf8');
+            this.putFile(key, scanTypeDeclarations(source, key));
+        } catch {
+            this.removeFile(key);
+        }
+    }
+
+    removeFile(filePath: string): void {
+        const key = normalizePath(filePath);
+        const existing = this.files.get(key);
+        if (!existing) {
+            return;
+        }
+
+        this.files.delete(key);
+        for (const declaration of existing.declarations) {
+            this.typesBySimpleName.get(declaration.simpleName)?.delete(declaration);
+            for (const supertype of declaration.supertypes) {
+                this.subtypesBySimpleName.get(lastSegment(supertype))?.delete(declaration);
+            }
+        }
+    }
+
+    dispose(): void {
+        this.watcher?.dispose();
+        this.watcher = undefined;
+        this.files.clear();
+        this.subtypesBySimpleName.clear();
+        this.typesBySimpleName.clear();
+        this.building = undefined;
+    }
+
+    private async build(): Promise<void> {
+        const startTime = Date.now();
+
+        // Watch first so edits made while the initial scan runs are not lost
+        if (!this.watcher) {
+            this.watcher = vscode.workspace.createFileSystemWatcher('**/*.java');
+            this.watcher.onDidChange(uri => this.afterBuild(() => this.updateWatchedFile(uri)));
+            this.watcher.onDidCreate(uri => this.afterBuild(() => this.updateWatchedFile(uri)));
+            this.watcher.onDidDelete(uri => this.afterBuild(async () => this.removeFile(uri.fsPath)));
+        }
+
+        // Same exclusions as folder diagrams: .gitignore (build output) and files.exclude
+        const files: string[] = [];
+        for (const folder of vscode.workspace.workspaceFolders || []) {
+            files.push(...await findJavaFiles(folder.uri.fsPath));
+        }
+        await mapWithConcurrency(files, INDEX_READ_CONCURRENCY, async filePath => {
+            const key = normalizePath(filePath);
+            try {
+                const source = await fs.promises.readFile(key, 'utf8');
+                this.putFile(key, scanTypeDeclarations(source, key));
+            } catch (error) {
+                console.warn(`Subtype index skipped ${key}:`, error);
+            }
+        });
+
+        console.log(`Subtype index built: ${this.getTypeCount()} types in ${this.files.size} files (${Date.now() - startTime}ms)`);
+    }
+
+    /**
+     * The watcher reports every .java file, build output and excluded folders included; only
+     * files the initial scan would have read go into the index.
+     */
+    private async updateWatchedFile(uri: vscode.Uri): Promise<void> {
+        const folder = vscode.workspace.getWorkspaceFolder(uri);
+        if (!folder || await isExcludedJavaFile(folder.uri.fsPath, uri.fsPath)) {
+            this.removeFile(uri.fsPath);
+            return;
+        }
+        await this.updateFile(uri.fsPath);
+    }
+
+    private afterBuild(update: () => Promise<void>): void {
+        (this.building || Promise.resolve())
+            .then(update)
+            .catch(error => console.warn('Subtype index update failed:', error));
+    }
+
+    private putFile(key: string, file: IndexedFile): void {
+        this.removeFile(key);
+        this.files.set(key, file);
+
+        for (const declaration of file.declarations) {
+            addToSet(this.typesBySimpleName, declaration.simpleName, declaration);
+            for (const supertype of declaration.supertypes) {
+                addToSet(this.subtypesBySimpleName, lastSegment(supertype), declaration);
+            }
+        }
+    }
+
+    private resolveIn(file: IndexedFile | undefined, reference: string, exclude?: TypeDeclaration): TypeDeclaration | undefined {
+        const typeName = eraseGenerics(reference);
+        const candidates = this.typesBySimpleName.get(lastSegment(typeName));
+        if (!file || !candidates) {
+            return undefined;
+        }
+        for (const candidate of candidates) {
+            if (candidate !== exclude && this.refersTo(file, typeName, candidate.qualifiedName)) {
+                return candidate;
+            }
+        }
+        return undefined;
+    }
+
+    /**
+     * Decides whether `reference`, as written in `file`, names the type `targetName`.
+     */
+    private refersTo(file: IndexedFile, reference: string, targetName: string): boolean {
+        if (reference.includes('.')) {
+            // Fully qualified or Outer.Inner style reference
+            return targetName === reference || targetName.endsWith('.' + reference);
+        }
+
+        const targetPackage = targetName.substring(0, targetName.lastIndexOf('.'));
+        let wildcardMatch = false;
+        for (const importName of file.imports) {
+            if (importName.endsWith('.*')) {
+                wildcardMatch = wildcardMatch || importName.slice(0, -2) === targetPackage;
+            } else if (lastSegment(importName) === reference) {
+                // A single-type import always wins
+                return importName === targetName;
+            }
+        }
+
+        if (targetPackage === file.packageName || wildcardMatch) {
+            return true;
+        }
+
+        // Nested type referenced by its simple name from inside the enclosing file
+        const declaredHere = file.declarations.some(declaration => declaration.qualifiedName === targetName);
+        if (declaredHere) {
+            return true;
+        }
+
+        // Unresolvable from the source alone, accept when the simple name is unambiguous
+        const sameName = this.typesBySimpleName.get(reference);
+        return !sameName || sameName.size <= 1;
+    }
+}
+
+/**
+ * Extracts the package, imports and every (nested) type declaration header of a
+ * Java source file without building an AST.
+ */
+export function scanTypeDeclarations(source: string, filePath: string): IndexedFile {
+    const masked = maskCommentsAndLiterals(source);
+
+    const packageMatch = /\bpackage\s+([\w.]+)\s*;/.exec(masked);
+    const packageName = packageMatch ? packageMatch[1] : '';
+
+    const imports: string[] = [];
+    const importRegex = /\bimport\s+(?!static\b)([\w.]+(?:\s*\.\s*\*)?)\s*;/g;
+    let importMatch: RegExpExecArray | null;
+    while ((importMatch = importRegex.exec(masked)) !== null) {
+        imports.push(importMatch[1].replace(/\s+/g, ''));
+    }
+
+    const declarations: TypeDeclaration[] = [];
+    // Enclosing types with the brace depth of their body
+    const enclosing: { name: string; depth: number }[] = [];
+    let depth = 0;
+    // Declaration whose body starts at the given offset
+    let pendingBody: { name: string; offset: number } | undefined;
+    let lineOffset = 0;
+    let line = 0;
+
+    const tokenRegex = /[{}]|\b(class|interface|enum|record)\b/g;
+    let token: RegExpExecArray | null;
+    while ((token = tokenRegex.exec(masked)) !== null) {
+        if (token[0] === '{') {
+            depth++;
+            if (pendingBody && pendingBody.offset === token.index) {
+                enclosing.push({ name: pendingBody.name, depth });
+                pendingBody = undefined;
+            }
+            continue;
+        }
+        if (token[0] === '}') {
+            if (enclosing.length > 0 && enclosing[enclosing.length - 1].depth === depth) {
+                enclosing.pop();
+            }
+            depth--;
+            continue;
+        }
+
+        // Foo.class literals
+        let previous = token.index - 1;
+        while (previous >= 0 && /\s/.test(masked[previous])) {
+            previous--;
+        }
+        if (previous >= 0 && masked[previous] === '.') {
+            continue;
+        }
+
+        const header = parseHeader(masked, token.index + token[0].length, token[1] as TypeDeclarationKind);
+        if (!header) {
+            continue;
+        }
+
+        for (; lineOffset < token.index; lineOffset++) {
+            if (masked.charCodeAt(lineOffset) === 10) {
+                line++;
+            }
+        }
+
+        const owner = enclosing.length > 0 ? enclosing[enclosing.length - 1].name : packageName;
+        const qualifiedName = owner ? `${owner}.${header.name}` : header.name;
+        declarations.push({
+            simpleName: header.name,
+            qualifiedName,
+            packageName,
+            filePath,
+            kind: token[1] as TypeDeclarationKind,
+            supertypes: header.supertypes,
+            line
+        });
+
+        pendingBody = { name: qualifiedName, offset: header.bodyOffset };
+        // Continue right before the body so its brace is counted
+        tokenRegex.lastIndex = header.bodyOffset;
+    }
+
+    return { packageName, imports, declarations };
+}
+
+function parseHeader(
+    text: string,
+    start: number,
+    kind: TypeDeclarationKind
+): { name: string; supertypes: string[]; bodyOffset: number } | undefined {
+    const nameMatch = /^\s+([A-Za-z_$][\w$]*)/.exec(text.substring(start, start + 256));
+    if (!nameMatch) {
+        return undefined;
+    }
+
+    let index = start + nameMatch[0].length;
+    index = skipWhitespace(text, index);
+    if (text[index] === '<') {
+        index = skipBalanced(text, index, '<', '>');
+    }
+    index = skipWhitespace(text, index);
+    if (kind === 'record') {
+        // `record` is only a contextual keyword; a real record has a component list
+        if (text[index] !== '(') {
+            return undefined;
+        }
+        index = skipBalanced(text, index, '(', ')');
+    }
+
+    const bodyOffset = text.indexOf('{', index);
+    if (bodyOffset < 0) {
+        return undefined;
+    }
+    const clause = text.substring(index, bodyOffset);
+    // Anything else before the body means this was not a declaration
+    if (!/^\s*((extends|implements|permits)\b[\s\S]*)?$/.test(clause)) {
+        return undefined;
+    }
+
+    const supertypes: string[] = [];
+    const clauseRegex = /\b(extends|implements|permits)\b([\s\S]*?)(?=\b(?:extends|implements|permits)\b|$)/g;
+    let clauseMatch: RegExpExecArray | null;
+    while ((clauseMatch = clauseRegex.exec(clause)) !== null) {
+        if (clauseMatch[1] === 'permits') {
+            continue;
+        }
+        for (const typeName of splitTopLevel(clauseMatch[2])) {
+            const erased = eraseGenerics(typeName.replace(/@[\w.]+(\s*\([^)]*\))?/g, '')).replace(/\s+/g, '');
+            if (erased) {
+                supertypes.push(erased);
+            }
+        }
+    }
+
+    return { name: nameMatch[1], supertypes, bodyOffset };
+}
+
+/**
+ * Replaces comments, string/char literals and text blocks with spaces, keeping offsets and newlines.
+ */
+function maskCommentsAndLiterals(source: string): string {
+    const chars = source.split('');
+    let i = 0;
+    const blank = (from: number, to: number) => {
+        for (let j = from; j < to && j < chars.length; j++) {
+            if (chars[j] !== '\n') {
+                chars[j] = ' ';
+            }
+        }
+    };
+
+    while (i < source.length) {
+        const c = source[i];
+        const next = source[i + 1];
+        if (c === '/' && next === '/') {
+            const end = source.indexOf('\n', i);
+            const stop = end < 0 ? source.length : end;
+            blank(i, stop);
+            i = stop;
+        } else if (c === '/' && next === '*') {
+            const end = source.indexOf('*/', i + 2);
+            const stop = end < 0 ? source.length : end + 2;
+            blank(i, stop);
+            i = stop;
+        } else if (c === '"' && source.startsWith('"""', i)) {
+            const end = source.indexOf('"""', i + 3);
+            const stop = end < 0 ? source.length : end + 3;
+            blank(i, stop);
+            i = stop;
+        } else if (c === '"' || c === '\'') {
+            let j = i + 1;
+            while (j < source.length && source[j] !== c && source[j] !== '\n') {
+                j += source[j] === '\\' ? 2 : 1;
+            }
+            blank(i, j + 1);
+            i = j + 1;
+        } else {
+            i++;
+        }
+    }
+    return chars.join('');
+}
+
+function skipWhitespace(text: string, index: number): number {
+    while (index < text.length && /\s/.test(text[index])) {
+        index++;
+    }
+    return index;
+}
+
+function skipBalanced(text: string, index: number, open: string, close: string): number {
+    let level = 0;
+    for (; index < text.length; index++) {
+        if (text[index] === open) {
+            level++;
+        } else if (text[index] === close) {
+            level--;
+            if (level === 0) {
+                return index + 1;
+            }
+        }
+    }
+    return index;
+}
+
+function splitTopLevel(typeList: string): string[] {
+    const result: string[] = [];
+    let current = '';
+    let level = 0;
+    for (const char of typeList) {
+        if (char === '<') level++;
+        if (char === '>') level--;
+        if (char === ',' && level === 0) {
+            result.push(current.trim());
+            current = '';
+        } else {
+            current += char;
+        }
+    }
+    if (current.trim()) {
+        result.push(current.trim());
+    }
+    return result;
+}
+
+function eraseGenerics(typeName: string): string {
+    let result = '';
+    let level = 0;
+    for (const char of typeName) {
+        if (char === '<') {
+            level++;
+        } else if (char === '>') {
+            level--;
+        } else if (level === 0) {
+            result += char;
+        }
+    }
+    return result.trim();
+}
+
+function lastSegment(typeName: string): string {
+    const index = typeName.lastIndexOf('.');
+    return index < 0 ? typeName : typeName.substring(index + 1);
+}
+
+function addToSet<K, V>(map: Map<K, Set<V>>, key: K, value: V): void {
+    let set = map.get(key);
+    if (!set) {
+        set = new Set<V>();
+        map.set(key, set);
+    }
+    set.add(value);
+}
+
+function normalizePath(filePath: string): string {
+    const normalized = path.normalize(filePath);
+    return process.platform === 'win32' ? normalized.toLowerCase() : normalized;
+}
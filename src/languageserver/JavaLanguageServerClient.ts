@@ -9,6 +9,15 @@ import {
     Range,
     TextDocumentIdentifier
 } from 'vscode-languageclient/node';
+import * as path from 'path';
+import { LruCache } from '../cache/LruCache';
+import { DependencyClassResolver } from '../bytecode/DependencyClassResolver';
+import { tracer } from '../trace/Tracer';
+import { languageServerScheduler } from './LanguageServerScheduler';
+import { SharedCancellation, currentCancellation, isCancellationError, raceCancellation, runCancellable, throwIfCancelled } from '../util/cancellation';
+
+// Class infos kept in memory; one diagram touches a few dozen, a folder run a few hundred
+const CLASS_INFO_CACHE_SIZE = 1000;
 
 // Define custom request types for Java-specific operations
 namespace JavaRequests {
@@ -96,11 +105,60 @@ export interface TypeDefinitionResult {
     range: Range;
 }
 
+export interface ClassInfoCacheStats {
+    hits: number;
+    misses: number;
+    // Lookups that joined a request already in flight for the same class
+    deduplicated: number;
+    invalidations: number;
+    evictions: number;
+    entries: number;
+    hitRate: number;
+}
+
+interface ClassInfoCacheEntry {
+    // null is cached too, unresolvable names are looked up as often as resolvable ones
+    result: ClassInfoResult | null;
+    // Source document the result was read from, and its version at that time
+    documentUri?: string;
+    documentVersion?: number;
+}
+
 export class JavaLanguageServerClient {
     private client: LanguageClient | undefined;
     private isReady: boolean = false;
-
-    constructor(private context: vscode.ExtensionContext) {}
+    private classInfoCache = new LruCache<string, ClassInfoCacheEntry>(CLASS_INFO_CACHE_SIZE);
+    private inFlightClassInfo = new Map<string, { promise: Promise<ClassInfoResult | null>, cancellation: SharedCancellation }>();
+    // Bumped on every invalidation so lookups started before it do not store stale results
+    private cacheGeneration = 0;
+    private cacheStats = { hits: 0, misses: 0, deduplicated: 0, invalidations: 0 };
+    private disposables: vscode.Disposable[] = [];
+    // Reads dependency / JDK types from JAR bytecode when the Language Server cannot provide them
+    private dependencyResolver: DependencyClassResolver;
+
+    constructor(private context: vscode.ExtensionContext) {
+        this.dependencyResolver = new DependencyClassResolver(
+            context.globalStorageUri ? path.join(context.globalStorageUri.fsPath, 'dependency-index') : undefined,
+            () => this.getProjectClasspath()
+        );
+
+        this.disposables.push(
+            vscode.workspace.onDidChangeTextDocument(event => {
+                if (event.contentChanges.length > 0 && event.document.uri.path.endsWith('.java')) {
+                    this.invalidateDocument(event.document.uri);
+                }
+            })
+        );
+
+        const watcher = vscode.workspace.createFileSystemWatcher('**/*.java');
+        this.disposables.push(
+            watcher,
+            watcher.onDidChange(uri => this.invalidateDocument(uri)),
+            // A new or removed file can change what a simple class name resolves to
+            watcher.onDidCreate(uri => this.invalidateDocument(uri, true)),
+            watcher.onDidDelete(uri => this.invalidateDocument(uri, true))
+        );
+    }
 
     async initialize(): Promise<void> {
         // Check if Java extension is installed and active
@@ -113,6 +171,26 @@ export class JavaLanguageServerClient {
             await javaExtension.activate();
         }
 
+        const settings = vscode.workspace.getConfiguration('javaClassDiagram');
+        languageServerScheduler.configure({
+            maxWindow: Math.max(1, Math.floor(settings.get<number>('languageServerConcurrency', 8))),
+            timeoutMs: Math.max(1000, settings.get<number>('languageServerTimeout', 10000))
+        });
+        // Background requests wait while jdt.ls imports and indexes the workspace
+        const javaApi = javaExtension.exports as {
+            serverReady?: () => Promise<unknown>;
+            onDidClasspathUpdate?: vscode.Event<vscode.Uri>;
+        } | undefined;
+        if (typeof javaApi?.serverReady === 'function') {
+            const serverReady = javaApi.serverReady();
+            languageServerScheduler.waitForServer(serverReady);
+            // The dependency index built before the import finished lacks the project classpath
+            serverReady.then(() => this.dependencyResolver.invalidateIndex(), () => undefined);
+        }
+        if (typeof javaApi?.onDidClasspathUpdate === 'function') {
+            this.disposables.push(javaApi.onDidClasspathUpdate(() => this.dependencyResolver.invalidateIndex()));
+        }
+
         // We'll connect to the existing Java Language Server instead of starting our own
         // This is done through the Java extension's API
         await this.connectToExistingLanguageServer();
@@ -135,6 +213,61 @@ export class JavaLanguageServerClient {
         }
     }
 
+    /**
+     * Runs one of VS Code's symbol / definition commands against the Language Server through
+     * the shared scheduler, timed as an `ls` span and counted as a Language Server call.
+     * Identical queries in flight at the same time share one call.
+     */
+    private querySymbols<T>(command: string, ...args: unknown[]): Promise<T | undefined> {
+        return tracer.span(command.replace('vscode.execute', 'ls.'), 'ls', span => {
+            const key = [command, ...args.map(arg => typeof arg === 'string' ? arg : JSON.stringify(arg))].join('\u0000');
+            return languageServerScheduler.schedule(() => {
+                span.count('lsCalls');
+                return vscode.commands.executeCommand<T>(command, ...args);
+            }, { key });
+        });
+    }
+
+    /**
+     * Archives on the classpath of every project jdt.ls imported, test scope included. Undefined
+     * when the Java extension is not running, the dependency resolver then indexes without it.
+     */
+    private async getProjectClasspath(): Promise<string[] | undefined> {
+        const javaExtension = vscode.extensions.getExtension('redhat.java');
+        if (!javaExtension?.isActive) {
+            return undefined;
+        }
+
+        const projects = await this.querySymbols<string[]>('java.project.getAll');
+        if (!projects) {
+            return undefined;
+        }
+        const classpaths = await Promise.all(projects.map(project =>
+            this.querySymbols<{ classpaths?: string[]; modulepaths?: string[] }>(
+                'java.project.getClasspaths', project, JSON.stringify({ scope: 'test' }))
+        ));
+        return classpaths.flatMap(result => [...(result?.classpaths || []), ...(result?.modulepaths || [])]);
+    }
+
+    /**
+     * Document symbols of a file, or undefined when the Language Server has none (yet).
+     */
+    getDocumentSymbols(uri: vscode.Uri): Promise<vscode.DocumentSymbol[] | undefined> {
+        return this.querySymbols<vscode.DocumentSymbol[]>('vscode.executeDocumentSymbolProvider', uri);
+    }
+
+    getWorkspaceSymbols(query: string): Promise<vscode.SymbolInformation[] | undefined> {
+        return this.querySymbols<vscode.SymbolInformation[]>('vscode.executeWorkspaceSymbolProvider', query);
+    }
+
+    /**
+     * Opening a document makes the Language Server read and compile it, so it is scheduled
+     * like a query.
+     */
+    openDocument(uri: vscode.Uri): Promise<vscode.TextDocument> {
+        return languageServerScheduler.schedule(() => vscode.workspace.openTextDocument(uri), { key: `open\u0000${uri.toString()}` });
+    }
+
     async getClassHierarchy(document: vscode.TextDocument, position: vscode.Position): Promise<ClassHierarchyResult | null> {
         if (!this.isReady || !this.client) {
             return null;
@@ -155,14 +288,100 @@ export class JavaLanguageServerClient {
     }
 
     async getClassInfo(className: string, includeSystemClasses: boolean = true): Promise<ClassInfoResult | null> {
+        const cached = this.classInfoCache.get(className);
+        if (cached && this.isCacheEntryCurrent(cached)) {
+            this.cacheStats.hits++;
+            tracer.count('cacheHits');
+            return cached.result ? structuredClone(cached.result) : null;
+        }
+
+        // Concurrent lookups of the same class share one Language Server round trip, it is
+        // cancelled once every caller waiting for it is
+        const signal = currentCancellation();
+        throwIfCancelled(signal);
+        let pending = this.inFlightClassInfo.get(className);
+        if (pending && !pending.cancellation.signal.aborted) {
+            this.cacheStats.deduplicated++;
+            tracer.count('cacheHits');
+        } else {
+            this.cacheStats.misses++;
+            const cancellation = new SharedCancellation();
+            const started: typeof pending = {
+                promise: runCancellable(cancellation.signal, () => this.loadClassInfo(className)),
+                cancellation
+            };
+            pending = started;
+            this.inFlightClassInfo.set(className, started);
+            const settle = () => {
+                cancellation.dispose();
+                if (this.inFlightClassInfo.get(className) === started) {
+                    this.inFlightClassInfo.delete(className);
+                }
+            };
+            started.promise.then(settle, settle);
+        }
+        pending.cancellation.join(signal);
+
+        const result = await raceCancellation(pending.promise, signal);
+        // Every caller gets its own copy, some of them extend what they receive
+        return result ? structuredClone(result) : null;
+    }
+
+    getCacheStats(): ClassInfoCacheStats {
+        const lookups = this.cacheStats.hits + this.cacheStats.misses + this.cacheStats.deduplicated;
+        return {
+            ...this.cacheStats,
+            evictions: this.classInfoCache.evictionCount,
+            entries: this.classInfoCache.size,
+            hitRate: lookups > 0 ? (this.cacheStats.hits + this.cacheStats.deduplicated) / lookups : 0
+        };
+    }
+
+    /**
+     * Drops cached class infos read from the given document. `dropUnresolved` also
+     * forgets cached misses, which a newly created file may now satisfy.
+     */
+    invalidateDocument(uri: vscode.Uri, dropUnresolved: boolean = false): void {
+        const uriString = uri.toString();
+        this.cacheGeneration++;
+        this.cacheStats.invalidations += this.classInfoCache.deleteWhere(entry =>
+            entry.documentUri === uriString || (dropUnresolved && entry.result === null)
+        );
+    }
+
+    private async loadClassInfo(className: string): Promise<ClassInfoResult | null> {
+        const generation = this.cacheGeneration;
         // Always use VSCode API for now since we're connecting to existing Language Server
-        return await this.getClassInfoUsingVSCodeAPI(className);
+        const result = await this.getClassInfoUsingVSCodeAPI(className);
+
+        // The source changed while we were reading it, do not cache what may be stale
+        if (generation === this.cacheGeneration) {
+            const documentUri = result?.location?.uri;
+            const document = documentUri
+                ? vscode.workspace.textDocuments.find(doc => doc.uri.toString() === documentUri)
+                : undefined;
+            this.classInfoCache.set(className, {
+                result,
+                documentUri,
+                documentVersion: document?.version
+            });
+        }
+        return result;
+    }
+
+    private isCacheEntryCurrent(entry: ClassInfoCacheEntry): boolean {
+        if (!entry.documentUri || entry.documentVersion === undefined) {
+            return true;
+        }
+        // Edits are normally caught by onDidChangeTextDocument, the version check covers missed events
+        const document = vscode.workspace.textDocuments.find(doc => doc.uri.toString() === entry.documentUri);
+        return !document || document.version === entry.documentVersion;
     }
 
     async getInheritanceHierarchy(className: string): Promise<string[]> {
         try {
             // Use VSCode's type hierarchy provider if available
-            const symbols = await vscode.commands.executeCommand<vscode.SymbolInformation[]>(
+            const symbols = await this.querySymbols<vscode.SymbolInformation[]>(
                 'vscode.executeWorkspaceSymbolProvider',
                 className
             );
@@ -181,7 +400,7 @@ export class JavaLanguageServerClient {
             }
 
             // Get the document and analyze inheritance
-            const document = await vscode.workspace.openTextDocument(classSymbol.location.uri);
+            const document = await this.openDocument(classSymbol.location.uri);
             return this.extractInheritanceFromDocument(document, className);
 
         } catch (error) {
@@ -211,7 +430,7 @@ export class JavaLanguageServerClient {
         isAbstract: boolean;
     } {
         const text = document.getText();
-        console.log(`Extracting inheritance for ${className} from text length: ${text.length}`);
+        tracer.log(`Extracting inheritance for ${className} from text length: ${text.length}`);
 
         const result = {
             superClass: undefined as string | undefined,
@@ -226,9 +445,9 @@ export class JavaLanguageServerClient {
 
         if (extendsMatch) {
             result.superClass = extendsMatch[1].trim();
-            console.log(`Found superclass for ${className}: ${result.superClass}`);
+            tracer.log(`Found superclass for ${className}: ${result.superClass}`);
         } else {
-            console.log(`No superclass found for ${className}`);
+            tracer.log(`No superclass found for ${className}`);
         }
 
         // 查找 "implements Interface1, Interface2"
@@ -240,14 +459,14 @@ export class JavaLanguageServerClient {
                 .split(',')
                 .map(i => i.trim())
                 .filter(i => i.length > 0);
-            console.log(`Found interfaces for ${className}:`, result.interfaces);
+            tracer.log(`Found interfaces for ${className}:`, result.interfaces);
         }
 
         // 检查是否是抽象类
         const abstractRegex = new RegExp(`abstract\\s+class\\s+${className}`, 'i');
         if (abstractRegex.test(text)) {
             result.isAbstract = true;
-            console.log(`${className} is abstract`);
+            tracer.log(`${className} is abstract`);
         }
 
         // 检查接口声明和接口继承
@@ -267,11 +486,11 @@ export class JavaLanguageServerClient {
                     // 如果有多个父接口，其余的存储在interfaces字段中
                     result.interfaces = parentInterfaces.slice(1);
                 }
-                console.log(`Found interface inheritance for ${className}: superClass=${result.superClass}, additional interfaces:`, result.interfaces);
+                tracer.log(`Found interface inheritance for ${className}: superClass=${result.superClass}, additional interfaces:`, result.interfaces);
             }
         }
 
-        console.log(`Final inheritance result for ${className}:`, result);
+        tracer.log(`Final inheritance result for ${className}:`, result);
         return result;
     }
 
@@ -291,7 +510,7 @@ export class JavaLanguageServerClient {
     private async getClassInfoUsingVSCodeAPI(className: string): Promise<ClassInfoResult | null> {
         try {
             // First try to find in workspace
-            let symbols = await vscode.commands.executeCommand<vscode.SymbolInformation[]>(
+            let symbols = await this.querySymbols<vscode.SymbolInformation[]>(
                 'vscode.executeWorkspaceSymbolProvider',
                 className
             );
@@ -314,8 +533,8 @@ export class JavaLanguageServerClient {
             }
 
             // Get document symbols to extract class details
-            const document = await vscode.workspace.openTextDocument(classSymbol.location.uri);
-            const documentSymbols = await vscode.commands.executeCommand<vscode.DocumentSymbol[]>(
+            const document = await this.openDocument(classSymbol.location.uri);
+            const documentSymbols = await this.querySymbols<vscode.DocumentSymbol[]>(
                 'vscode.executeDocumentSymbolProvider',
                 document.uri
             );
@@ -328,6 +547,9 @@ export class JavaLanguageServerClient {
 
             return this.parseDocumentSymbols(documentSymbols, className, document);
         } catch (error) {
+            if (isCancellationError(error)) {
+                throw error;
+            }
             console.error('Error using VSCode API for class info:', error);
             return await this.getSystemClassInfo(className);
         }
@@ -338,6 +560,12 @@ export class JavaLanguageServerClient {
             // Try to use "Go to Definition" on a reference to the class
             // This can help us find system classes that aren't in the workspace
 
+            // Dependency and JDK classes straight from their class files
+            const bytecodeInfo = await this.dependencyResolver.resolve(className);
+            if (bytecodeInfo) {
+                return bytecodeInfo;
+            }
+
             // For system classes like java.lang.String, java.util.List, etc.
             // We can provide basic information
             if (this.isKnownSystemClass(className)) {
@@ -497,7 +725,7 @@ export class JavaLanguageServerClient {
 
         // Extract inheritance information from the document text
         const inheritanceInfo = this.extractInheritanceFromText(document, className);
-        console.log(`Inheritance info for ${className}:`, inheritanceInfo);
+        tracer.log(`Inheritance info for ${className}:`, inheritanceInfo);
 
         return {
             className: className,
@@ -553,7 +781,7 @@ export class JavaLanguageServerClient {
 
     async getTypeDefinition(document: vscode.TextDocument, position: vscode.Position): Promise<vscode.Location[]> {
         try {
-            const locations = await vscode.commands.executeCommand<vscode.Location[]>(
+            const locations = await this.querySymbols<vscode.Location[]>(
                 'vscode.executeDefinitionProvider',
                 document.uri,
                 position
@@ -571,7 +799,7 @@ export class JavaLanguageServerClient {
     async findClassLocation(className: string): Promise<vscode.Location | null> {
         try {
             // 首先尝试在工作区中搜索类符号
-            const symbols = await vscode.commands.executeCommand<vscode.SymbolInformation[]>(
+            const symbols = await this.querySymbols<vscode.SymbolInformation[]>(
                 'vscode.executeWorkspaceSymbolProvider',
                 className
             );
@@ -621,8 +849,8 @@ export class JavaLanguageServerClient {
             }
 
             // 打开类文件并获取文档符号
-            const document = await vscode.workspace.openTextDocument(classLocation.uri);
-            const documentSymbols = await vscode.commands.executeCommand<vscode.DocumentSymbol[]>(
+            const document = await this.openDocument(classLocation.uri);
+            const documentSymbols = await this.querySymbols<vscode.DocumentSymbol[]>(
                 'vscode.executeDocumentSymbolProvider',
                 document.uri
             );
@@ -666,8 +894,8 @@ export class JavaLanguageServerClient {
             }
 
             // 打开类文件并获取文档符号
-            const document = await vscode.workspace.openTextDocument(classLocation.uri);
-            const documentSymbols = await vscode.commands.executeCommand<vscode.DocumentSymbol[]>(
+            const document = await this.openDocument(classLocation.uri);
+            const documentSymbols = await this.querySymbols<vscode.DocumentSymbol[]>(
                 'vscode.executeDocumentSymbolProvider',
                 document.uri
             );
@@ -701,8 +929,14 @@ export class JavaLanguageServerClient {
 
     async findClassInDependencies(className: string): Promise<ClassInfoResult | null> {
         try {
+            // Offline and independent of the Language Server index state
+            const bytecodeInfo = await this.dependencyResolver.resolve(className);
+            if (bytecodeInfo) {
+                return bytecodeInfo;
+            }
+
             // Use VSCode's workspace symbol search to find classes in dependencies
-            const symbols = await vscode.commands.executeCommand<vscode.SymbolInformation[]>(
+            const symbols = await this.querySymbols<vscode.SymbolInformation[]>(
                 'vscode.executeWorkspaceSymbolProvider',
                 className
             );
@@ -722,8 +956,8 @@ export class JavaLanguageServerClient {
 
             if (externalSymbol) {
                 try {
-                    const document = await vscode.workspace.openTextDocument(externalSymbol.location.uri);
-                    const documentSymbols = await vscode.commands.executeCommand<vscode.DocumentSymbol[]>(
+                    const document = await this.openDocument(externalSymbol.location.uri);
+                    const documentSymbols = await this.querySymbols<vscode.DocumentSymbol[]>(
                         'vscode.executeDocumentSymbolProvider',
                         document.uri
                     );
@@ -810,6 +1044,10 @@ export class JavaLanguageServerClient {
     }
 
     dispose(): void {
+        this.disposables.forEach(disposable => disposable.dispose());
+        this.disposables = [];
+        this.classInfoCache.clear();
+        this.dependencyResolver.dispose();
         if (this.client) {
             this.client.stop();
         }
@@ -0,0 +1,370 @@
+import { AsyncLocalStorage } from 'async_hooks';
+import { CancellationError, SharedCancellation, currentCancellation, raceCancellation } from '../util/cancellation';
+
+// interactive: a user is waiting (diagram of the open file, navigation); background: folder runs, live updates
+export type RequestPriority = 'interactive' | 'background';
+
+export interface LanguageServerSchedulerOptions {
+    // Requests in flight at start, grown while latency stays below the target
+    initialWindow: number;
+    maxWindow: number;
+    // A response slower than this halves the window
+    targetLatencyMs: number;
+    // A request still running after this is given up on
+    timeoutMs: number;
+    // Background dispatch pauses after a timeout, doubling up to this while timeouts repeat
+    maxBackoffMs: number;
+    // Background work waits at most this long for the Language Server to report it is ready
+    readyWaitMs: number;
+}
+
+export interface ScheduleOptions {
+    // Requests with the same key share one call while it is queued or running
+    key?: string;
+    // Defaults to the priority of the surrounding runInBackground call, interactive otherwise
+    priority?: RequestPriority;
+    timeoutMs?: number;
+    // Defaults to the surrounding runCancellable signal. A queued request is dropped once every
+    // caller sharing it is cancelled; a running one is only waited for no longer, VS Code's
+    // commands cannot be cancelled
+    signal?: AbortSignal;
+}
+
+export interface LanguageServerSchedulerStats {
+    window: number;
+    inFlight: number;
+    queuedInteractive: number;
+    queuedBackground: number;
+    completed: number;
+    coalesced: number;
+    cancelled: number;
+    timeouts: number;
+    failures: number;
+    // Exponentially weighted, over completed requests
+    meanLatencyMs: number;
+    backoffMs: number;
+}
+
+export class LanguageServerTimeoutError extends Error {
+    constructor(readonly timeoutMs: number) {
+        super(`Language Server request timed out after ${timeoutMs}ms`);
+        this.name = 'LanguageServerTimeoutError';
+    }
+}
+
+const DEFAULT_OPTIONS: LanguageServerSchedulerOptions = {
+    initialWindow: 4,
+    maxWindow: 8,
+    targetLatencyMs: 750,
+    timeoutMs: 10000,
+    maxBackoffMs: 8000,
+    readyWaitMs: 30000
+};
+
+const INITIAL_BACKOFF_MS = 250;
+const LATENCY_SMOOTHING = 0.2;
+
+interface ScheduledRequest {
+    key?: string;
+    task: () => PromiseLike<unknown>;
+    priority: RequestPriority;
+    timeoutMs: number;
+    started: boolean;
+    cancellation: SharedCancellation;
+    promise: Promise<unknown>;
+    resolve: (value: unknown) => void;
+    reject: (error: unknown) => void;
+}
+
+/**
+ * FIFO with an advancing head, so draining a folder's worth of requests is linear.
+ */
+class RequestQueue {
+    private items: ScheduledRequest[] = [];
+    private head = 0;
+
+    get length(): number {
+        return this.items.length - this.head;
+    }
+
+    push(request: ScheduledRequest): void {
+        this.items.push(request);
+    }
+
+    shift(): ScheduledRequest | undefined {
+        if (this.head === this.items.length) {
+            return undefined;
+        }
+        const request = this.items[this.head++];
+        if (this.head > 1024 && this.head * 2 > this.items.length) {
+            this.items = this.items.slice(this.head);
+            this.head = 0;
+        }
+        return request;
+    }
+
+    remove(request: ScheduledRequest): boolean {
+        const index = this.items.indexOf(request, this.head);
+        if (index < 0) {
+            return false;
+        }
+        this.items.splice(index, 1);
+        return true;
+    }
+}
+
+/**
+ * Single entry point for the extension's Language Server traffic (document opens, symbol and
+ * definition queries). jdt.ls also serves the editor, so the number of requests in flight is an
+ * AIMD window: it grows by one per window of responses faster than the target latency and is
+ * halved, at most once per round trip, by slow responses and timeouts. Interactive requests are
+ * always dispatched before background ones; background ones additionally wait for the server to
+ * finish starting, pause after timeouts and leave one slot of the window free.
+ */
+export class LanguageServerScheduler {
+    private options: LanguageServerSchedulerOptions;
+    private window: number;
+    private inFlight = 0;
+    private interactive = new RequestQueue();
+    private background = new RequestQueue();
+    private pending = new Map<string, ScheduledRequest>();
+    private ready = true;
+    private backoffMs = 0;
+    private backoffUntil = 0;
+    private lastDecrease = 0;
+    private wakeTimer: NodeJS.Timeout | undefined;
+    private priorityContext = new AsyncLocalStorage<RequestPriority>();
+    private stats = { completed: 0, coalesced: 0, cancelled: 0, timeouts: 0, failures: 0, meanLatencyMs: 0 };
+
+    constructor(options: Partial<LanguageServerSchedulerOptions> = {}) {
+        this.options = { ...DEFAULT_OPTIONS, ...options };
+        this.window = Math.min(this.options.initialWindow, this.options.maxWindow);
+    }
+
+    configure(options: Partial<LanguageServerSchedulerOptions>): void {
+        this.options = { ...this.options, ...options };
+        this.window = Math.max(1, Math.min(this.window, this.options.maxWindow));
+        this.pump();
+    }
+
+    /**
+     * Holds background requests until `serverReady` settles (or readyWaitMs passes), e.g. while
+     * jdt.ls imports and indexes the workspace.
+     */
+    waitForServer(serverReady: PromiseLike<unknown>): void {
+        this.ready = false;
+        const markReady = () => {
+            clearTimeout(timer);
+            this.ready = true;
+            this.pump();
+        };
+        const timer = setTimeout(markReady, this.options.readyWaitMs);
+        serverReady.then(markReady, markReady);
+    }
+
+    /**
+     * Runs `fn` with every Language Server request it makes, directly or through other
+     * components, scheduled as background work.
+     */
+    runInBackground<T>(fn: () => Promise<T>): Promise<T> {
+        return this.priorityContext.run('background', fn);
+    }
+
+    get currentPriority(): RequestPriority {
+        return this.priorityContext.getStore() ?? 'interactive';
+    }
+
+    /**
+     * False while requests of `priority` would be held back (server starting, backing off after
+     * timeouts). Callers with a non-LS fallback use it to skip the wait.
+     */
+    canServe(priority: RequestPriority = this.currentPriority): boolean {
+        return priority === 'interactive' || (this.ready && Date.now() >= this.backoffUntil);
+    }
+
+    schedule<T>(task: () => PromiseLike<T>, options: ScheduleOptions = {}): Promise<T> {
+        const priority = options.priority ?? this.currentPriority;
+        const signal = options.signal ?? currentCancellation();
+        if (signal?.aborted) {
+            return Promise.reject(new CancellationError());
+        }
+
+        const shared = options.key !== undefined ? this.pending.get(options.key) : undefined;
+        if (shared) {
+            this.stats.coalesced++;
+            shared.cancellation.join(signal);
+            // Navigation joining a queued background request pulls it forward
+            if (priority === 'interactive' && shared.priority === 'background' && !shared.started &&
+                this.background.remove(shared)) {
+                shared.priority = 'interactive';
+                this.interactive.push(shared);
+                this.pump();
+            }
+            return raceCancellation(shared.promise as Promise<T>, signal);
+        }
+
+        let resolve!: (value: unknown) => void;
+        let reject!: (error: unknown) => void;
+        const promise = new Promise<unknown>((res, rej) => {
+            resolve = res;
+            reject = rej;
+        });
+        const request: ScheduledRequest = {
+            key: options.key,
+            task,
+            priority,
+            timeoutMs: options.timeoutMs ?? this.options.timeoutMs,
+            started: false,
+            cancellation: new SharedCancellation(),
+            promise,
+            resolve,
+            reject
+        };
+        request.cancellation.join(signal);
+        request.cancellation.signal.addEventListener('abort', () => this.drop(request), { once: true });
+        if (request.key !== undefined) {
+            this.pending.set(request.key, request);
+        }
+        (priority === 'interactive' ? this.interactive : this.background).push(request);
+        this.pump();
+        return raceCancellation(promise as Promise<T>, signal);
+    }
+
+    getStats(): LanguageServerSchedulerStats {
+        return {
+            window: Math.floor(this.window),
+            inFlight: this.inFlight,
+            queuedInteractive: this.interactive.length,
+            queuedBackground: this.background.length,
+            ...this.stats,
+            meanLatencyMs: Math.round(this.stats.meanLatencyMs),
+            backoffMs: this.backoffMs
+        };
+    }
+
+    /**
+     * Every caller of a request gave up on it. Queued, it never reaches the server; started, it
+     * keeps its slot until the server answers, the load is real either way.
+     */
+    private drop(request: ScheduledRequest): void {
+        if (request.started) {
+            return;
+        }
+        if (request.key !== undefined && this.pending.get(request.key) === request) {
+            this.pending.delete(request.key);
+        }
+        if ((request.priority === 'interactive' ? this.interactive : this.background).remove(request)) {
+            this.stats.cancelled++;
+            request.reject(new CancellationError());
+        }
+    }
+
+    private pump(): void {
+        while (this.inFlight < Math.floor(this.window)) {
+            const request = this.interactive.shift() ?? this.nextBackground();
+            if (!request) {
+                return;
+            }
+            this.start(request);
+        }
+    }
+
+    private nextBackground(): ScheduledRequest | undefined {
+        if (this.background.length === 0 || !this.ready) {
+            return undefined;
+        }
+        const now = Date.now();
+        if (now < this.backoffUntil) {
+            this.wakeAt(this.backoffUntil - now);
+            return undefined;
+        }
+        // The last slot of the window is kept for navigation
+        if (this.window >= 2 && this.inFlight >= Math.floor(this.window) - 1) {
+            return undefined;
+        }
+        return this.background.shift();
+    }
+
+    private wakeAt(delayMs: number): void {
+        if (this.wakeTimer) {
+            return;
+        }
+        this.wakeTimer = setTimeout(() => {
+            this.wakeTimer = undefined;
+            this.pump();
+        }, delayMs);
+    }
+
+    private start(request: ScheduledRequest): void {
+        request.started = true;
+        this.inFlight++;
+        const startTime = Date.now();
+        let settled = false;
+
+        const finish = (outcome: 'ok' | 'failed' | 'timeout', value: unknown) => {
+            if (settled) {
+                return;
+            }
+            settled = true;
+            clearTimeout(timer);
+            request.cancellation.dispose();
+            this.inFlight--;
+            if (request.key !== undefined && this.pending.get(request.key) === request) {
+                this.pending.delete(request.key);
+            }
+            this.adapt(outcome, Date.now() - startTime);
+            if (outcome === 'ok') {
+                request.resolve(value);
+            } else {
+                request.reject(value);
+            }
+            this.pump();
+        };
+
+        // The server keeps working on a timed-out request, but its slot is handed back: a hung
+        // request must not stall the window for good
+        const timer = setTimeout(() => finish('timeout', new LanguageServerTimeoutError(request.timeoutMs)), request.timeoutMs);
+        Promise.resolve()
+            .then(request.task)
+            .then(value => finish('ok', value), error => finish('failed', error));
+    }
+
+    private adapt(outcome: 'ok' | 'failed' | 'timeout', latencyMs: number): void {
+        if (outcome === 'timeout') {
+            this.stats.timeouts++;
+            this.decrease(Date.now());
+            this.backoffMs = Math.min(this.options.maxBackoffMs, this.backoffMs > 0 ? this.backoffMs * 2 : INITIAL_BACKOFF_MS);
+            this.backoffUntil = Date.now() + this.backoffMs;
+            return;
+        }
+
+        this.stats.completed++;
+        this.stats.meanLatencyMs = this.stats.completed === 1
+            ? latencyMs
+            : this.stats.meanLatencyMs + (latencyMs - this.stats.meanLatencyMs) * LATENCY_SMOOTHING;
+        if (outcome === 'failed') {
+            // Errors come back fast ("no provider", cancelled) and say nothing about load
+            this.stats.failures++;
+            return;
+        }
+
+        this.backoffMs = 0;
+        if (latencyMs > this.options.targetLatencyMs) {
+            // Requests started together come back slow together, count that as one signal
+            const now = Date.now();
+            if (now - this.lastDecrease >= latencyMs) {
+                this.decrease(now);
+            }
+        } else {
+            this.window = Math.min(this.options.maxWindow, this.window + 1 / Math.floor(this.window));
+        }
+    }
+
+    private decrease(now: number): void {
+        this.window = Math.max(1, this.window / 2);
+        this.lastDecrease = now;
+    }
+}
+
+// Shared by every Language Server client of the extension, the server is one
+export const languageServerScheduler = new LanguageServerScheduler();
@@ -0,0 +1,301 @@
+import * as fs from 'fs';
+import * as path from 'path';
+
+export type BuildSystem = 'maven' | 'gradle';
+
+export interface BuildModule {
+    // Maven groupId:artifactId, Gradle project path (":core:api")
+    id: string;
+    name: string;
+    dir: string;
+    buildSystem: BuildSystem;
+    // Ids of the modules of the same build this module depends on
+    dependencies: string[];
+}
+
+export interface ModuleGraph {
+    rootDir: string;
+    modules: BuildModule[];
+}
+
+/**
+ * Reads the module structure of the Maven or Gradle build in `rootDir`: modules declared by
+ * pom.xml `<modules>` (recursively) or by settings.gradle(.kts) `include`, and the dependencies
+ * between them. Only build files are read, nothing is executed, so modules added by build
+ * logic (plugins, computed includes) are not seen. Without a build file in `rootDir` its direct
+ * sub-directories are tried, for workspaces holding several builds side by side.
+ */
+export async function discoverBuildModules(rootDir: string): Promise<ModuleGraph> {
+    rootDir = path.resolve(rootDir);
+    let modules = await readBuild(rootDir);
+
+    if (modules.length === 0) {
+        let entries: fs.Dirent[] = [];
+        try {
+            entries = await fs.promises.readdir(rootDir, { withFileTypes: true });
+        } catch {
+            // Reported as "no modules" by the caller
+        }
+        for (const entry of entries) {
+            if (entry.isDirectory() && !entry.name.startsWith('.')) {
+                modules = modules.concat(await readBuild(path.join(rootDir, entry.name)));
+            }
+        }
+    }
+    return { rootDir, modules };
+}
+
+async function readBuild(dir: string): Promise<BuildModule[]> {
+    if (await firstExisting(dir, ['settings.gradle', 'settings.gradle.kts'])) {
+        return readGradleBuild(dir);
+    }
+    if (await firstExisting(dir, ['pom.xml'])) {
+        return readMavenBuild(dir);
+    }
+    return [];
+}
+
+// ---- Maven ----
+
+interface PomInfo {
+    groupId: string;
+    artifactId: string;
+    name: string;
+    packaging: string;
+    modules: string[];
+    dependencies: string[];
+}
+
+async function readMavenBuild(rootDir: string): Promise<BuildModule[]> {
+    const poms = new Map<string, PomInfo>();
+    const queue = [rootDir];
+    while (queue.length > 0) {
+        const dir = queue.shift()!;
+        if (poms.has(dir)) {
+            continue;
+        }
+        const pom = await readPom(path.join(dir, 'pom.xml'));
+        if (!pom) {
+            continue;
+        }
+        poms.set(dir, pom);
+        for (const module of pom.modules) {
+            // <module> names a directory, or occasionally the pom file itself
+            const modulePath = path.resolve(dir, module);
+            queue.push(modulePath.endsWith('.xml') ? path.dirname(modulePath) : modulePath);
+        }
+    }
+
+    const known = new Set(Array.from(poms.values()).map(pom => `${pom.groupId}:${pom.artifactId}`));
+    const modules: BuildModule[] = [];
+    for (const [dir, pom] of poms) {
+        // Aggregator and parent poms hold no code
+        if (pom.packaging === 'pom') {
+            continue;
+        }
+        const id = `${pom.groupId}:${pom.artifactId}`;
+        modules.push({
+            id,
+            name: pom.artifactId,
+            dir,
+            buildSystem: 'maven',
+            dependencies: unique(pom.dependencies.filter(dependency => dependency !== id && known.has(dependency)))
+        });
+    }
+    return modules;
+}
+
+async function readPom(pomPath: string): Promise<PomInfo | undefined> {
+    let content: string;
+    try {
+        content = await fs.promises.readFile(pomPath, 'utf8');
+    } catch {
+        return undefined;
+    }
+
+    const project = parseXml(content).find(element => element.name === 'project');
+    if (!project) {
+        console.warn(`Not a Maven project file: ${pomPath}`);
+        return undefined;
+    }
+
+    const parent = child(project, 'parent');
+    const groupId = childText(project, 'groupId') || (parent && childText(parent, 'groupId')) || '';
+    const artifactId = childText(project, 'artifactId') || path.basename(path.dirname(pomPath));
+    const properties: { [name: string]: string } = {
+        'project.groupId': groupId,
+        'pom.groupId': groupId,
+        'project.parent.groupId': (parent && childText(parent, 'groupId')) || groupId
+    };
+    const resolve = (value: string) => value.replace(/\$\{([^}]+)\}/g, (match, name) => properties[name] ?? match);
+
+    // Modules of profiles count too, a build usually activates them somewhere
+    const moduleLists = [child(project, 'modules'), ...children(child(project, 'profiles'), 'profile').map(profile => child(profile, 'modules'))];
+    const modules = moduleLists.flatMap(list => children(list, 'module').map(module => module.text.trim()).filter(Boolean));
+
+    const dependencies = children(child(project, 'dependencies'), 'dependency')
+        .map(dependency => `${resolve(childText(dependency, 'groupId') || groupId)}:${resolve(childText(dependency, 'artifactId'))}`);
+
+    return {
+        groupId,
+        artifactId,
+        name: childText(project, 'name') || artifactId,
+        packaging: childText(project, 'packaging') || 'jar',
+        modules,
+        dependencies
+    };
+}
+
+interface XmlElement {
+    name: string;
+    text: string;
+    children: XmlElement[];
+}
+
+/**
+ * Just enough XML for build files: elements and their text. Attributes, namespaces and
+ * processing instructions are skipped.
+ */
+function parseXml(content: string): XmlElement[] {
+    const root: XmlElement = { name: '', text: '', children: [] };
+    const stack = [root];
+    const tokenRegex = /<!--[\s\S]*?-->|<!\[CDATA\[([\s\S]*?)\]\]>|<[?!][^>]*>|<\/([^\s>]+)\s*>|<([^\s/>]+)[^>]*?(\/?)>|([^<]+)/g;
+    let token: RegExpExecArray | null;
+    while ((token = tokenRegex.exec(content)) !== null) {
+        const current = stack[stack.length - 1];
+        if (token[1] !== undefined) {
+            current.text += token[1];
+        } else if (token[2] !== undefined) {
+            // Tolerate stray closing tags instead of failing on a malformed file
+            const index = stack.map(element => element.name).lastIndexOf(localName(token[2]));
+            if (index > 0) {
+                stack.length = index;
+            }
+        } else if (token[3] !== undefined) {
+            const element: XmlElement = { name: localName(token[3]), text: '', children: [] };
+            current.children.push(element);
+            if (!token[4]) {
+                stack.push(element);
+            }
+        } else if (token[5] !== undefined) {
+            current.text += decodeEntities(token[5]);
+        }
+    }
+    return root.children;
+}
+
+function localName(name: string): string {
+    return name.substring(name.indexOf(':') + 1);
+}
+
+function decodeEntities(text: string): string {
+    return text.replace(/&lt;/g, '<').replace(/&gt;/g, '>').replace(/&quot;/g, '"').replace(/&apos;/g, '\'').replace(/&amp;/g, '&');
+}
+
+function child(element: XmlElement | undefined, name: string): XmlElement | undefined {
+    return element?.children.find(candidate => candidate.name === name);
+}
+
+function children(element: XmlElement | undefined, name: string): XmlElement[] {
+    return element ? element.children.filter(candidate => candidate.name === name) : [];
+}
+
+function childText(element: XmlElement, name: string): string {
+    return child(element, name)?.text.trim() || '';
+}
+
+// ---- Gradle ----
+
+async function readGradleBuild(rootDir: string): Promise<BuildModule[]> {
+    const settingsFile = (await firstExisting(rootDir, ['settings.gradle', 'settings.gradle.kts']))!;
+    const settings = stripComments(await fs.promises.readFile(settingsFile, 'utf8'));
+
+    const rootName = /rootProject\.name\s*=\s*['"]([^'"]+)['"]/.exec(settings)?.[1] ?? path.basename(rootDir);
+    const projectPaths = new Set<string>();
+    // include 'a', ':b:c' / include("a", "b") / include(listOf(...)), possibly over several lines
+    const includeRegex = /\binclude\s*\(?((?:\s*(?:listOf\s*\()?\s*['"][^'"]+['"]\s*\)?\s*,?)+)/g;
+    let include: RegExpExecArray | null;
+    while ((include = includeRegex.exec(settings)) !== null) {
+        for (const literal of include[1].matchAll(/['"]([^'"]+)['"]/g)) {
+            const projectPath = literal[1].startsWith(':') ? literal[1] : `:${literal[1]}`;
+            // Including :a:b includes :a as well
+            const segments = projectPath.split(':').filter(Boolean);
+            for (let i = 1; i <= segments.length; i++) {
+                projectPaths.add(':' + segments.slice(0, i).join(':'));
+            }
+        }
+    }
+
+    const projectDirs = new Map<string, string>();
+    for (const projectPath of projectPaths) {
+        projectDirs.set(projectPath, path.join(rootDir, ...projectPath.split(':').filter(Boolean)));
+    }
+    // project(':a').projectDir = file('libs/a') / File(rootDir, "libs/a")
+    const projectDirRegex = /project\(\s*['"]([^'"]+)['"]\s*\)\.projectDir\s*=\s*(?:new\s+)?(?:file|File)\(\s*(?:(?:rootDir|settingsDir)\s*,\s*)?['"]([^'"]+)['"]/g;
+    for (const match of settings.matchAll(projectDirRegex)) {
+        const projectPath = match[1].startsWith(':') ? match[1] : `:${match[1]}`;
+        if (projectDirs.has(projectPath)) {
+            projectDirs.set(projectPath, path.resolve(rootDir, match[2]));
+        }
+    }
+
+    // The root project only counts when it has code of its own
+    if (await firstExisting(rootDir, ['src'])) {
+        projectDirs.set(':', rootDir);
+    }
+
+    const modules: BuildModule[] = [];
+    for (const [projectPath, dir] of projectDirs) {
+        const buildFile = await firstExisting(dir, ['build.gradle', 'build.gradle.kts']);
+        const buildScript = buildFile ? stripComments(await fs.promises.readFile(buildFile, 'utf8')) : '';
+        const dependencies: string[] = [];
+        for (const match of buildScript.matchAll(/\bproject\(\s*(?:path\s*[:=]\s*)?['"](:[^'"]*)['"]/g)) {
+            dependencies.push(match[1]);
+        }
+        // Type-safe project accessors: projects.coreApi -> :core-api
+        for (const match of buildScript.matchAll(/\bprojects\.([\w.]+)/g)) {
+            const accessor = match[1].split('.').map(normalizeAccessor).join(':');
+            const target = Array.from(projectDirs.keys()).find(candidate =>
+                candidate.split(':').filter(Boolean).map(normalizeAccessor).join(':') === accessor);
+            if (target) {
+                dependencies.push(target);
+            }
+        }
+
+        modules.push({
+            id: projectPath,
+            name: projectPath === ':' ? rootName : projectPath.substring(projectPath.lastIndexOf(':') + 1),
+            dir,
+            buildSystem: 'gradle',
+            dependencies: unique(dependencies.filter(dependency => dependency !== projectPath && projectDirs.has(dependency)))
+        });
+    }
+    return modules;
+}
+
+function normalizeAccessor(name: string): string {
+    return name.replace(/[-_]/g, '').toLowerCase();
+}
+
+function stripComments(script: string): string {
+    return script.replace(/\/\*[\s\S]*?\*\//g, '').replace(/(^|[^:'"])\/\/.*$/gm, '$1');
+}
+
+// ---- helpers ----
+
+async function firstExisting(dir: string, names: string[]): Promise<string | undefined> {
+    for (const name of names) {
+        const candidate = path.join(dir, name);
+        try {
+            await fs.promises.access(candidate);
+            return candidate;
+        } catch {
+            // Try the next name
+        }
+    }
+    return undefined;
+}
+
+function unique<T>(items: T[]): T[] {
+    return Array.from(new Set(items));
+}
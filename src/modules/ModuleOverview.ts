@@ -0,0 +1,143 @@
+import * as path from 'path';
+import { BuildModule, ModuleGraph } from './BuildModules';
+import { TypeDeclaration } from '../index/SubtypeIndex';
+
+export interface ModuleTypeCounts {
+    classes: number;
+    interfaces: number;
+    enums: number;
+    records: number;
+}
+
+export interface ModuleSummary {
+    module: BuildModule;
+    counts: ModuleTypeCounts;
+    files: number;
+}
+
+export interface ModuleOverview {
+    rootDir: string;
+    modules: ModuleSummary[];
+    // Build dependencies between modules, by module id
+    dependencies: { from: string, to: string }[];
+    // extends / implements from types of one module to types of another, per module pair
+    hierarchy: { from: string, to: string, count: number }[];
+}
+
+/**
+ * The parts of the workspace type index the module summary reads.
+ */
+export interface TypeIndexView {
+    getDeclarations(): Iterable<TypeDeclaration>;
+    resolveSupertype(declaration: TypeDeclaration, reference: string): TypeDeclaration | undefined;
+}
+
+/**
+ * Maps files to the innermost module directory containing them.
+ */
+export class ModuleLocator {
+    private modulesByDir = new Map<string, BuildModule>();
+
+    constructor(modules: BuildModule[]) {
+        for (const module of modules) {
+            this.modulesByDir.set(normalizePath(module.dir), module);
+        }
+    }
+
+    locate(filePath: string): BuildModule | undefined {
+        let dir = path.dirname(normalizePath(filePath));
+        while (true) {
+            const module = this.modulesByDir.get(dir);
+            if (module) {
+                return module;
+            }
+            const parent = path.dirname(dir);
+            if (parent === dir) {
+                return undefined;
+            }
+            dir = parent;
+        }
+    }
+}
+
+/**
+ * Module-level summary of the workspace: type counts per module and the build and type
+ * hierarchy dependencies between modules. Built from type headers only; no class of any
+ * module is parsed until that module is expanded.
+ */
+export function summarizeModules(graph: ModuleGraph, index: TypeIndexView): ModuleOverview {
+    const locator = new ModuleLocator(graph.modules);
+    const summaries = new Map<string, ModuleSummary & { fileSet: Set<string> }>();
+    for (const module of graph.modules) {
+        summaries.set(module.id, { module, counts: { classes: 0, interfaces: 0, enums: 0, records: 0 }, files: 0, fileSet: new Set() });
+    }
+
+    const hierarchyCounts = new Map<string, { from: string, to: string, count: number }>();
+    for (const declaration of index.getDeclarations()) {
+        const module = locator.locate(declaration.filePath);
+        if (!module) {
+            continue;
+        }
+        const summary = summaries.get(module.id)!;
+        summary.fileSet.add(declaration.filePath);
+        switch (declaration.kind) {
+            case 'interface':
+                summary.counts.interfaces++;
+                break;
+            case 'enum':
+                summary.counts.enums++;
+                break;
+            case 'record':
+                summary.counts.records++;
+                break;
+            default:
+                summary.counts.classes++;
+        }
+
+        for (const reference of declaration.supertypes) {
+            const supertype = index.resolveSupertype(declaration, reference);
+            const targetModule = supertype && locator.locate(supertype.filePath);
+            if (!targetModule || targetModule === module) {
+                continue;
+            }
+            const key = `${module.id}\0${targetModule.id}`;
+            const existing = hierarchyCounts.get(key);
+            if (existing) {
+                existing.count++;
+            } else {
+                hierarchyCounts.set(key, { from: module.id, to: targetModule.id, count: 1 });
+            }
+        }
+    }
+
+    const modules: ModuleSummary[] = [];
+    for (const { module, counts, fileSet } of summaries.values()) {
+        modules.push({ module, counts, files: fileSet.size });
+    }
+    return {
+        rootDir: graph.rootDir,
+        modules,
+        dependencies: graph.modules.flatMap(module => module.dependencies.map(to => ({ from: module.id, to }))),
+        hierarchy: Array.from(hierarchyCounts.values())
+    };
+}
+
+/**
+ * Source files of the types declared in `module`, read from the type index when the module
+ * is expanded rather than kept for every module.
+ */
+export function getModuleFiles(module: BuildModule, modules: BuildModule[], index: TypeIndexView): string[] {
+    const locator = new ModuleLocator(modules);
+    const files = new Set<string>();
+    for (const declaration of index.getDeclarations()) {
+        if (locator.locate(declaration.filePath) === module) {
+            files.add(declaration.filePath);
+        }
+    }
+    return Array.from(files);
+}
+
+function normalizePath(filePath: string): string {
+    const normalized = path.normalize(filePath).replace(/[\\/]+$/, '');
+    return process.platform === 'win32' ? normalized.toLowerCase() : normalized;
+}
@@ -2,11 +2,25 @@ import * as vscode from 'vscode';
 import { exec } from 'child_process';
 import * as path from 'path';
 import * as fs from 'fs';
-import { SystemClassParser, SystemClassInfo } from './SystemClassParser';
-import { JavaLanguageServerClient, ClassInfoResult } from '../languageserver/JavaLanguageServerClient';
-
-// Import java-parser (will be installed via npm)
-// const javaParser = require('java-parser');
+import { SystemClassParser, SystemClassInfo, isJdkClassName } from './SystemClassParser';
+import { JavaLanguageServerClient, ClassInfoResult, ClassInfoCacheStats } from '../languageserver/JavaLanguageServerClient';
+import { ClassModelCache, ClassModelCacheStats, ParserTier } from '../cache/ClassModelCache';
+import { mapWithConcurrency, CancellationSignal, DEFAULT_PARSE_CONCURRENCY } from '../util/concurrency';
+import { cancellationSignalOf, currentCancellation, isCancellationError, throwIfCancelled } from '../util/cancellation';
+import { JavaParserWorkerPool } from './ast/JavaParserWorkerPool';
+import { SubtypeIndex, TypeDeclaration } from '../index/SubtypeIndex';
+import { tracer } from '../trace/Tracer';
+import { languageServerScheduler } from '../languageserver/LanguageServerScheduler';
+import { MemberTableBuilder, compactClassStructure, modifierFlagsOf, pooledString, withMemberTable } from './MemberTable';
+import {
+    ClassGraphIndex, ClassNeighbor, ClassRelationKind, ALL_RELATION_KINDS, getTypeReferences, qualifiedNameOf
+} from '../graph/ClassGraphIndex';
+
+// Supertypes are always shown up to the top of the hierarchy, whatever the depth
+const SUPERTYPE_RELATIONS: readonly ClassRelationKind[] = ['extends', 'implements'];
+
+// Keeps a depth setting on a hub class from producing an unreadable diagram
+const MAX_RELATED_CLASSES = 150;
 
 export interface JavaField {
     name: string;
@@ -56,64 +70,156 @@ export interface JavaClassStructure {
 export class JavaCodeParser {
     private systemParser: SystemClassParser;
     private languageServerClient: JavaLanguageServerClient;
+    private modelCache: ClassModelCache;
+    // AST backend (java-parser) running in worker threads, created on first use
+    private astWorkerPool: JavaParserWorkerPool | undefined;
+    // Workspace supertype → subtypes index, built on the first subtype query
+    private subtypeIndex = new SubtypeIndex();
+    // Relations of every class parsed so far, queried for the related classes of single-file diagrams
+    private classGraph = new ClassGraphIndex();
+    // Files whose cached fallback result was parsed again this session, a missing Language
+    // Server must not turn every cache hit into a parse
+    private reparsedFallbacks = new Set<string>();
+
+    /**
+     * `languageServerClient` is shared with the webview navigation; its owner initializes and
+     * disposes it.
+     */
+    constructor(context: vscode.ExtensionContext, languageServerClient: JavaLanguageServerClient) {
+        const storageDir = context.globalStorageUri ? context.globalStorageUri.fsPath : undefined;
+        this.systemParser = new SystemClassParser(storageDir ? path.join(storageDir, 'system-class-cache') : undefined);
+        this.languageServerClient = languageServerClient;
+        this.modelCache = new ClassModelCache(storageDir ? path.join(storageDir, 'class-model-cache') : undefined);
+    }
+    
+    getCacheStats(): ClassModelCacheStats {
+        return this.modelCache.getStats();
+    }
 
-    constructor(context: vscode.ExtensionContext) {
-        this.systemParser = new SystemClassParser();
-        this.languageServerClient = new JavaLanguageServerClient(context);
+    getClassInfoCacheStats(): ClassInfoCacheStats {
+        return this.languageServerClient.getCacheStats();
     }
 
-    async initialize(): Promise<void> {
-        try {
-            await this.languageServerClient.initialize();
-            console.log('Java Language Server client initialized successfully');
-        } catch (error) {
-            console.warn('Failed to initialize Language Server client, falling back to basic parsing:', error);
-        }
+    /**
+     * Drops the cached model of a file that was deleted or is known to be stale.
+     */
+    invalidateFile(filePath: string): void {
+        this.modelCache.invalidate(filePath);
+        this.reparsedFallbacks.delete(filePath);
+        this.classGraph.removeFile(filePath);
     }
-    
+
+    /**
+     * All workspace types extending or implementing `typeName`, transitively.
+     */
+    async findAllSubtypes(typeName: string): Promise<TypeDeclaration[]> {
+        await this.subtypeIndex.ensureBuilt();
+        return this.subtypeIndex.getAllSubtypes(typeName);
+    }
+
+    /**
+     * Type headers of every workspace Java file, built on first use.
+     */
+    async getTypeIndex(): Promise<SubtypeIndex> {
+        await this.subtypeIndex.ensureBuilt();
+        return this.subtypeIndex;
+    }
+
+    dispose(): void {
+        this.subtypeIndex.dispose();
+        this.classGraph.clear();
+        this.astWorkerPool?.dispose();
+        this.systemParser.dispose();
+        this.modelCache.dispose();
+    }
+
+    /**
+     * Parses one file: model cache, then Language Server, java-parser and regex fallbacks, then
+     * the system class enhancement. Rejects with a CancellationError once the surrounding
+     * runCancellable signal is aborted, without falling back and without caching anything.
+     */
     async parseJavaFile(javaCode: string, filePath: string): Promise<JavaClassStructure> {
-        // First, try to parse with Language Server for better accuracy
-        let classStructure: JavaClassStructure;
+        return tracer.span('parse', 'parser', async span => {
+            // Unchanged files are served from the persistent model cache
+            const contentHash = ClassModelCache.hashContent(javaCode);
+            const cached = this.modelCache.get(filePath, contentHash);
+            if (cached && !this.shouldReparseFallback(filePath, cached.tier)) {
+                span.count('cacheHits');
+                this.classGraph.update(cached.structure);
+                return cached.structure;
+            }
 
-        try {
-            classStructure = await this.parseWithLanguageServer(javaCode, filePath);
-        } catch (error) {
-            // Reduce console noise - only show brief message
-            console.log('Language Server parsing failed, falling back to alternative parsing');
+            // First, try to parse with Language Server for better accuracy
+            let classStructure: JavaClassStructure;
+            let tier: ParserTier = 'languageServer';
+
+            throwIfCancelled();
             try {
-                classStructure = await this.parseWithJavaParser(javaCode, filePath);
-            } catch (error2) {
-                console.log('Java-parser failed, falling back to regex parsing:', error2);
-                classStructure = await this.parseWithRegex(javaCode, filePath);
+                classStructure = await this.parseWithLanguageServer(javaCode, filePath);
+            } catch (error) {
+                throwIfCancelled();
+                // Reduce console noise - only show brief message
+                tracer.log('Language Server parsing failed, falling back to alternative parsing');
+                try {
+                    classStructure = await this.parseWithJavaParser(javaCode, filePath);
+                    tier = 'javaParser';
+                    span.count('javaParserFallbacks');
+                } catch (error2) {
+                    throwIfCancelled();
+                    tracer.log('Java-parser failed, falling back to regex parsing:', error2);
+                    classStructure = await this.parseWithRegex(javaCode, filePath);
+                    tier = 'regex';
+                    span.count('regexFallbacks');
+                }
             }
-        }
 
-        // Enhance with system class information
-        await this.enhanceWithSystemInfo(classStructure);
+            // Enhance with system class information
+            await this.enhanceWithSystemInfo(classStructure);
+            // Members go into a columnar table once parsing is done, the model may live for the whole session
+            classStructure = compactClassStructure(classStructure);
 
-        return classStructure;
+            this.modelCache.set(filePath, contentHash, classStructure, tier);
+            this.classGraph.update(classStructure);
+
+            return classStructure;
+        });
     }
     
+    /**
+     * A fallback result is parsed once more, per session, as soon as the Language Server can
+     * serve background work again; results parsed while it was busy are not kept for good.
+     */
+    private shouldReparseFallback(filePath: string, tier: ParserTier): boolean {
+        if (tier === 'languageServer' || this.reparsedFallbacks.has(filePath) || !languageServerScheduler.canServe()) {
+            return false;
+        }
+        this.reparsedFallbacks.add(filePath);
+        return true;
+    }
+
     private async parseWithLanguageServer(javaCode: string, filePath: string): Promise<JavaClassStructure> {
         try {
+            // While jdt.ls is still starting or backing off, bulk parsing goes straight to the
+            // AST fallback instead of queueing behind it
+            if (!languageServerScheduler.canServe()) {
+                throw new Error('Language Server busy');
+            }
+
             // Open the document in VSCode to get Language Server support
-            const document = await vscode.workspace.openTextDocument(vscode.Uri.file(filePath));
+            const document = await this.languageServerClient.openDocument(vscode.Uri.file(filePath));
 
             // Get document symbols from Language Server
-            const symbols = await vscode.commands.executeCommand<vscode.DocumentSymbol[]>(
-                'vscode.executeDocumentSymbolProvider',
-                document.uri
-            );
+            const symbols = await this.languageServerClient.getDocumentSymbols(document.uri);
 
             if (!symbols || symbols.length === 0) {
-                console.log('No symbols found in document, Language Server may not be ready');
+                tracer.log('No symbols found in document, Language Server may not be ready');
                 throw new Error('No symbols found in document');
             }
 
             // Find the main class symbol
             const classSymbol = this.findMainClassSymbol(symbols);
             if (!classSymbol) {
-                console.log('No class symbol found in symbols:', symbols.map(s => s.name));
+                tracer.log('No class symbol found in symbols:', symbols.map(s => s.name));
                 throw new Error('No class symbol found');
             }
 
@@ -121,20 +227,20 @@ export class JavaCodeParser {
             return await this.convertSymbolsToClassStructure(classSymbol, document, symbols);
 
         } catch (error) {
-            console.error('Language Server parsing failed:', error);
+            tracer.log('Language Server parsing failed:', error);
             throw error;
         }
     }
 
     private async parseWithJavaParser(javaCode: string, filePath: string): Promise<JavaClassStructure> {
-        // Note: This would use the java-parser library when available
-        // For now, we'll use regex parsing as fallback
-        return this.parseWithRegex(javaCode, filePath);
-
-        /* When java-parser is properly integrated:
-        const ast = javaParser.parse(javaCode);
-        return this.convertAstToClassStructure(ast, filePath);
-        */
+        // The AST is built and converted off the extension host thread
+        if (!this.astWorkerPool) {
+            const configuredWorkers = vscode.workspace.getConfiguration('javaClassDiagram').get<number>('parserWorkers', 0);
+            this.astWorkerPool = new JavaParserWorkerPool(
+                configuredWorkers > 0 ? Math.floor(configuredWorkers) : JavaParserWorkerPool.defaultSize()
+            );
+        }
+        return this.astWorkerPool.parse(javaCode, filePath);
     }
     
     private async parseWithRegex(javaCode: string, filePath: string): Promise<JavaClassStructure> {
@@ -237,6 +343,11 @@ export class JavaCodeParser {
             const fullClassName = classStructure.packageName ? 
                 `${classStructure.packageName}.${classStructure.className}` : 
                 classStructure.className;
+
+            // Workspace types are not on javap's class path, keep what the parser found
+            if (!isJdkClassName(fullClassName)) {
+                return;
+            }
             
             // Check if it's a system class
             classStructure.isSystemClass = await this.systemParser.isSystemClass(fullClassName);
@@ -260,6 +371,9 @@ export class JavaCodeParser {
             }
             
         } catch (error) {
+            if (isCancellationError(error)) {
+                throw error;
+            }
             console.log('Enhanced parsing not available, using basic parsing:', error);
         }
     }
@@ -403,17 +517,40 @@ export class JavaCodeParser {
         document: vscode.TextDocument,
         allSymbols: vscode.DocumentSymbol[]
     ): Promise<JavaClassStructure> {
+        const classStructure = this.convertSymbolToClassStructure(
+            classSymbol,
+            this.extractPackageNameFromDocument(document),
+            document.uri.fsPath,
+            this.extractImportsFromDocument(document)
+        );
+
+        // Try to get inheritance information using Language Server
+        await this.enhanceWithLanguageServerInfo(classStructure);
+
+        return classStructure;
+    }
+
+    /**
+     * Members of a type symbol; nested Class / Interface / Enum symbols become innerClasses,
+     * at any depth, like the AST parser reports them.
+     */
+    private convertSymbolToClassStructure(
+        classSymbol: vscode.DocumentSymbol,
+        packageName: string,
+        filePath: string,
+        imports: string[]
+    ): JavaClassStructure {
         const classStructure: JavaClassStructure = {
             className: classSymbol.name,
-            packageName: this.extractPackageNameFromDocument(document),
-            filePath: document.uri.fsPath,
+            packageName,
+            filePath,
             classType: this.getClassType(classSymbol.kind),
             interfaces: [],
             fields: [],
             methods: [],
             constructors: [],
             innerClasses: [],
-            imports: this.extractImportsFromDocument(document),
+            imports,
             annotations: [],
             inheritanceHierarchy: [],
             allInterfaces: [],
@@ -441,14 +578,11 @@ export class JavaCodeParser {
                 case vscode.SymbolKind.Class:
                 case vscode.SymbolKind.Interface:
                 case vscode.SymbolKind.Enum:
-                    // Handle inner classes recursively if needed
+                    classStructure.innerClasses.push(this.convertSymbolToClassStructure(child, packageName, filePath, imports));
                     break;
             }
         }
 
-        // Try to get inheritance information using Language Server
-        await this.enhanceWithLanguageServerInfo(classStructure, document);
-
         return classStructure;
     }
 
@@ -501,7 +635,7 @@ export class JavaCodeParser {
         };
     }
 
-    private async enhanceWithLanguageServerInfo(classStructure: JavaClassStructure, document: vscode.TextDocument): Promise<void> {
+    private async enhanceWithLanguageServerInfo(classStructure: JavaClassStructure): Promise<void> {
         try {
             const fullClassName = classStructure.packageName ?
                 `${classStructure.packageName}.${classStructure.className}` :
@@ -539,11 +673,20 @@ export class JavaCodeParser {
             }
 
         } catch (error) {
+            if (isCancellationError(error)) {
+                throw error;
+            }
             console.log('Could not enhance with Language Server info:', error);
         }
     }
 
-    async parseJavaFileWithRelatedClasses(javaCode: string, filePath: string): Promise<{
+    /**
+     * Parses a file together with the classes around it: its supertypes up to the top of the
+     * hierarchy plus every class within `depth` hops over inheritance, field and method
+     * signature relations. Workspace classes of the slice are parsed (and served from the model
+     * cache) into the class graph index, then the slice is read from the index.
+     */
+    async parseJavaFileWithRelatedClasses(javaCode: string, filePath: string, depth: number = getRelatedClassDepth()): Promise<{
         mainClass: JavaClassStructure,
         relatedClasses: JavaClassStructure[]
     }> {
@@ -551,40 +694,108 @@ export class JavaCodeParser {
         const relatedClasses: JavaClassStructure[] = [];
 
         try {
-            const fullClassName = mainClass.packageName ?
-                `${mainClass.packageName}.${mainClass.className}` :
-                mainClass.className;
-
-            // 只获取直接相关的类（继承链和依赖），不包含整个包
-            const relatedClassInfos = await this.getDirectlyRelatedClasses(
-                fullClassName,
-                path.dirname(filePath),
-                mainClass.packageName
-            );
+            await tracer.span('resolveRelations', 'relations', async span => {
+                const loaded = new Map<string, JavaClassStructure>([[path.normalize(filePath), mainClass]]);
+                await this.loadRelatedClasses(mainClass, SUPERTYPE_RELATIONS, Infinity, loaded);
+                await this.loadRelatedClasses(mainClass, ALL_RELATION_KINDS, depth, loaded);
+                span.count('classesLoaded', loaded.size - 1);
+
+                const mainName = qualifiedNameOf(mainClass);
+                const neighbors = new Map<string, ClassNeighbor>();
+                for (const neighbor of [
+                    ...this.classGraph.getNeighborhood(mainName, { depth: Infinity, kinds: SUPERTYPE_RELATIONS }),
+                    ...this.classGraph.getNeighborhood(mainName, { depth, maxClasses: MAX_RELATED_CLASSES })
+                ]) {
+                    if (!neighbors.has(neighbor.qualifiedName)) {
+                        neighbors.set(neighbor.qualifiedName, neighbor);
+                    }
+                }
 
-            for (const classInfo of relatedClassInfos) {
-                // 更严格的过滤：比较完整的类名（包名+类名）
-                const classFullName = classInfo.packageName ?
-                    `${classInfo.packageName}.${classInfo.className}` :
-                    classInfo.className;
-                const mainFullName = mainClass.packageName ?
-                    `${mainClass.packageName}.${mainClass.className}` :
-                    mainClass.className;
+                // Library supertypes are not in the index, the Language Server still knows their members
+                const external = Array.from(neighbors.values()).filter(neighbor => !neighbor.structure);
+                const externalInfos = await mapWithConcurrency(external, DEFAULT_PARSE_CONCURRENCY,
+                    neighbor => this.languageServerClient.getClassInfo(neighbor.qualifiedName), cancellationSignalOf(currentCancellation()));
+                external.forEach((neighbor, index) => {
+                    const classInfo = externalInfos[index];
+                    if (classInfo) {
+                        neighbor.structure = this.convertClassInfoToJavaClassStructure(classInfo);
+                    }
+                });
 
-                if (classFullName !== mainFullName) {
-                    const relatedClass = this.convertClassInfoToJavaClassStructure(classInfo);
-                    relatedClasses.push(relatedClass);
+                for (const neighbor of neighbors.values()) {
+                    if (neighbor.structure && qualifiedNameOf(neighbor.structure) !== mainName) {
+                        relatedClasses.push(neighbor.structure);
+                    }
                 }
-            }
-
+                span.count('relatedClasses', relatedClasses.length);
+            });
         } catch (error) {
+            if (isCancellationError(error)) {
+                throw error;
+            }
             console.log('Could not get related classes:', error);
         }
 
         return { mainClass, relatedClasses };
     }
 
-    async parseJavaFolderWithAllClasses(folderPath: string): Promise<{
+    /**
+     * Parses the workspace classes reachable from `start` over `kinds` within `depth` hops into
+     * the class graph index. The type header index maps references to files, so only the
+     * classes of the slice are read.
+     */
+    private async loadRelatedClasses(
+        start: JavaClassStructure,
+        kinds: readonly ClassRelationKind[],
+        depth: number,
+        loaded: Map<string, JavaClassStructure>
+    ): Promise<void> {
+        const typeIndex = await this.getTypeIndex();
+        const visited = new Set<string>([path.normalize(start.filePath)]);
+        let frontier = [start];
+        for (let distance = 0; distance < depth && frontier.length > 0; distance++) {
+            throwIfCancelled();
+            const files: string[] = [];
+            for (const structure of frontier) {
+                for (const reference of getTypeReferences(structure)) {
+                    if (!kinds.includes(reference.kind)) {
+                        continue;
+                    }
+                    const declaration = typeIndex.resolveType(structure.filePath, reference.typeName);
+                    const file = declaration && path.normalize(declaration.filePath);
+                    if (file && !visited.has(file)) {
+                        visited.add(file);
+                        files.push(file);
+                    }
+                }
+            }
+
+            const parsed = await mapWithConcurrency(files, DEFAULT_PARSE_CONCURRENCY, async file => {
+                const known = loaded.get(file);
+                if (known) {
+                    return known;
+                }
+                try {
+                    const structure = await this.parseJavaFile(await fs.promises.readFile(file, 'utf8'), file);
+                    loaded.set(file, structure);
+                    return structure;
+                } catch (error) {
+                    if (isCancellationError(error)) {
+                        throw error;
+                    }
+                    console.log(`Could not parse related class ${file}:`, error);
+                    return undefined;
+                }
+            }, cancellationSignalOf(currentCancellation()));
+            frontier = parsed.filter((structure): structure is JavaClassStructure => structure !== undefined);
+        }
+    }
+
+    async parseJavaFolderWithAllClasses(
+        folderPath: string,
+        concurrency: number = DEFAULT_PARSE_CONCURRENCY,
+        token: CancellationSignal | undefined = cancellationSignalOf(currentCancellation())
+    ): Promise<{
         mainClasses: JavaClassStructure[],
         relatedClasses: JavaClassStructure[]
     }> {
@@ -593,31 +804,43 @@ export class JavaCodeParser {
 
         try {
             // 读取文件夹中的所有 Java 文件
-            const files = fs.readdirSync(folderPath);
+            const files = await fs.promises.readdir(folderPath);
             const javaFiles = files.filter(file => file.endsWith('.java'));
 
-            // 解析所有 Java 文件
-            for (const javaFile of javaFiles) {
+            // 并发解析所有 Java 文件，结果保持文件顺序
+            const parsed = await mapWithConcurrency(javaFiles, concurrency, async javaFile => {
                 try {
                     const filePath = path.join(folderPath, javaFile);
-                    const javaCode = fs.readFileSync(filePath, 'utf8');
-                    const classStructure = await this.parseJavaFile(javaCode, filePath);
-                    mainClasses.push(classStructure);
+                    const javaCode = await fs.promises.readFile(filePath, 'utf8');
+                    return await languageServerScheduler.runInBackground(() => this.parseJavaFile(javaCode, filePath));
                 } catch (error) {
-                    console.log(`Error parsing ${javaFile}:`, error);
-                    continue;
+                    if (!isCancellationError(error)) {
+                        console.log(`Error parsing ${javaFile}:`, error);
+                    }
+                    return undefined;
+                }
+            }, token);
+
+            for (const classStructure of parsed) {
+                if (classStructure) {
+                    mainClasses.push(classStructure);
                 }
             }
 
             // 获取所有类的相关系统类
-            for (const mainClass of mainClasses) {
+            const systemClassLists = await mapWithConcurrency(mainClasses, concurrency, mainClass => {
                 const fullClassName = mainClass.packageName ?
                     `${mainClass.packageName}.${mainClass.className}` :
                     mainClass.className;
-
-                const systemClasses = await this.getSystemClassesOnly(fullClassName);
-                for (const systemClass of systemClasses) {
-                    if (!relatedClasses.some(rc => rc.className === systemClass.className && rc.packageName === systemClass.packageName)) {
+                return this.getSystemClassesOnly(fullClassName);
+            }, token);
+
+            const relatedNames = new Set<string>();
+            for (const systemClasses of systemClassLists) {
+                for (const systemClass of systemClasses || []) {
+                    const qualifiedName = qualifiedNameOf(systemClass);
+                    if (!relatedNames.has(qualifiedName)) {
+                        relatedNames.add(qualifiedName);
                         relatedClasses.push(systemClass);
                     }
                 }
@@ -630,471 +853,41 @@ export class JavaCodeParser {
         return { mainClasses, relatedClasses };
     }
 
+    /**
+     * Builds the member table straight from the Language Server info, without an intermediate
+     * JavaField / JavaMethod object per member.
+     */
     private convertClassInfoToJavaClassStructure(classInfo: ClassInfoResult): JavaClassStructure {
-        return {
-            className: classInfo.className,
-            packageName: classInfo.packageName,
+        const members = new MemberTableBuilder();
+        for (const field of classInfo.fields) {
+            members.addField(field.name, field.type, modifierFlagsOf(field.modifiers));
+        }
+        for (const method of classInfo.methods) {
+            members.addMethod(method.name, method.returnType, modifierFlagsOf(method.modifiers), method.parameters, method.exceptions);
+        }
+        for (const constructor of classInfo.constructors) {
+            members.addConstructor(constructor.name, constructor.returnType, modifierFlagsOf(constructor.modifiers), constructor.parameters, constructor.exceptions);
+        }
+
+        const interfaces = classInfo.interfaces.map(pooledString);
+        return withMemberTable({
+            className: pooledString(classInfo.className),
+            packageName: pooledString(classInfo.packageName),
             filePath: classInfo.location?.uri || '',
             classType: classInfo.isInterface ? 'interface' :
                       classInfo.isEnum ? 'enum' :
                       classInfo.isAbstract ? 'abstract class' : 'class',
-            superClass: classInfo.superClass,
-            interfaces: classInfo.interfaces,
-            fields: classInfo.fields.map(field => ({
-                name: field.name,
-                type: field.type,
-                visibility: this.parseVisibility(field.modifiers),
-                isStatic: field.modifiers.includes('static'),
-                isFinal: field.modifiers.includes('final'),
-                annotations: []
-            })),
-            methods: classInfo.methods.map(method => ({
-                name: method.name,
-                returnType: method.returnType,
-                parameters: method.parameters.map(param => ({
-                    name: param.name,
-                    type: param.type
-                })),
-                visibility: this.parseVisibility(method.modifiers),
-                isStatic: method.modifiers.includes('static'),
-                isAbstract: method.modifiers.includes('abstract'),
-                isFinal: method.modifiers.includes('final'),
-                annotations: [],
-                exceptions: method.exceptions
-            })),
-            constructors: classInfo.constructors.map(constructor => ({
-                name: constructor.name,
-                returnType: constructor.returnType,
-                parameters: constructor.parameters.map(param => ({
-                    name: param.name,
-                    type: param.type
-                })),
-                visibility: this.parseVisibility(constructor.modifiers),
-                isStatic: constructor.modifiers.includes('static'),
-                isAbstract: constructor.modifiers.includes('abstract'),
-                isFinal: constructor.modifiers.includes('final'),
-                annotations: [],
-                exceptions: constructor.exceptions
-            })),
+            superClass: pooledString(classInfo.superClass),
+            interfaces,
             innerClasses: [],
             imports: [],
             annotations: [],
             inheritanceHierarchy: [],
-            allInterfaces: classInfo.interfaces,
+            allInterfaces: interfaces,
             isSystemClass: !classInfo.location?.uri.startsWith('file:')
-        };
-    }
-
-    private parseVisibility(modifiers: string[]): 'public' | 'private' | 'protected' | 'package' {
-        if (modifiers.includes('public')) return 'public';
-        if (modifiers.includes('private')) return 'private';
-        if (modifiers.includes('protected')) return 'protected';
-        return 'package';
-    }
-
-    private async getCompleteInheritanceHierarchy(className: string): Promise<ClassInfoResult[]> {
-        const allRelatedClasses: ClassInfoResult[] = [];
-        const processedClasses = new Set<string>();
-
-        // 获取主类信息
-        const mainClassInfo = await this.languageServerClient.getClassInfo(className);
-        if (mainClassInfo) {
-            allRelatedClasses.push(mainClassInfo);
-            processedClasses.add(className);
-        }
-
-        // 递归获取继承层次结构
-        await this.collectInheritanceHierarchy(className, allRelatedClasses, processedClasses, 5);
-
-        return allRelatedClasses;
-    }
-
-    private async collectInheritanceHierarchy(
-        className: string,
-        allClasses: ClassInfoResult[],
-        processedClasses: Set<string>,
-        maxDepth: number
-    ): Promise<void> {
-        if (maxDepth <= 0 || processedClasses.has(className)) {
-            return;
-        }
-
-        const classInfo = await this.languageServerClient.getClassInfo(className);
-        if (!classInfo) {
-            return;
-        }
-
-        // 添加当前类（如果还没有添加）
-        if (!allClasses.some(c => c.className === classInfo.className && c.packageName === classInfo.packageName)) {
-            allClasses.push(classInfo);
-        }
-        processedClasses.add(className);
-
-        // 递归处理父类
-        if (classInfo.superClass && !processedClasses.has(classInfo.superClass)) {
-            await this.collectInheritanceHierarchy(classInfo.superClass, allClasses, processedClasses, maxDepth - 1);
-        }
-
-        // 递归处理接口
-        for (const interfaceName of classInfo.interfaces) {
-            if (!processedClasses.has(interfaceName)) {
-                await this.collectInheritanceHierarchy(interfaceName, allClasses, processedClasses, maxDepth - 1);
-            }
-        }
-
-        // 查找子类（在工作区中搜索）
-        await this.findSubclasses(className, allClasses, processedClasses, maxDepth - 1);
-    }
-
-    private async findSubclasses(
-        parentClassName: string,
-        allClasses: ClassInfoResult[],
-        processedClasses: Set<string>,
-        maxDepth: number
-    ): Promise<void> {
-        if (maxDepth <= 0) return;
-
-        try {
-            // 搜索所有类符号
-            const allSymbols = await vscode.commands.executeCommand<vscode.SymbolInformation[]>(
-                'vscode.executeWorkspaceSymbolProvider',
-                ''
-            );
-
-            if (!allSymbols) return;
-
-            // 过滤出类符号
-            const classSymbols = allSymbols.filter(symbol =>
-                symbol.kind === vscode.SymbolKind.Class ||
-                symbol.kind === vscode.SymbolKind.Interface ||
-                symbol.kind === vscode.SymbolKind.Enum
-            );
-
-            // 检查每个类是否继承自父类
-            for (const symbol of classSymbols.slice(0, 20)) { // 限制数量避免性能问题
-                if (processedClasses.has(symbol.name)) continue;
-
-                try {
-                    const document = await vscode.workspace.openTextDocument(symbol.location.uri);
-                    const text = document.getText();
-
-                    // 简单的文本搜索来查找继承关系
-                    const simpleParentName = parentClassName.includes('.') ?
-                        parentClassName.split('.').pop() : parentClassName;
-
-                    const extendsRegex = new RegExp(`extends\\s+${simpleParentName}\\b`);
-                    const implementsRegex = new RegExp(`implements\\s+[^{]*\\b${simpleParentName}\\b`);
-
-                    if (extendsRegex.test(text) || implementsRegex.test(text)) {
-                        const childClassInfo = await this.languageServerClient.getClassInfo(symbol.name);
-                        if (childClassInfo && !allClasses.some(c => c.className === childClassInfo.className)) {
-                            allClasses.push(childClassInfo);
-                            processedClasses.add(symbol.name);
-                        }
-                    }
-                } catch (error) {
-                    // 忽略无法访问的文件
-                    continue;
-                }
-            }
-        } catch (error) {
-            console.log('Error finding subclasses:', error);
-        }
-    }
-
-    private async getPackageClasses(packageName: string, directoryPath: string): Promise<JavaClassStructure[]> {
-        const packageClasses: JavaClassStructure[] = [];
-
-        try {
-            // 读取同一目录下的所有 Java 文件
-            const files = fs.readdirSync(directoryPath);
-            const javaFiles = files.filter(file => file.endsWith('.java'));
-
-            for (const javaFile of javaFiles) {
-                try {
-                    const filePath = path.join(directoryPath, javaFile);
-                    const javaCode = fs.readFileSync(filePath, 'utf8');
-
-                    // 解析文件
-                    const classStructure = await this.parseJavaFile(javaCode, filePath);
-
-                    // 检查是否属于同一包
-                    if (classStructure.packageName === packageName) {
-                        packageClasses.push(classStructure);
-                    }
-                } catch (error) {
-                    console.log(`Error parsing ${javaFile}:`, error);
-                    continue;
-                }
-            }
-        } catch (error) {
-            console.log('Error reading package directory:', error);
-        }
-
-        return packageClasses;
-    }
-
-    private async getDirectlyRelatedClasses(className: string, baseDir?: string, packageName?: string): Promise<ClassInfoResult[]> {
-        const relatedClasses: ClassInfoResult[] = [];
-        const processedClasses = new Set<string>();
-
-        // 获取主类信息
-        let mainClassInfo = await this.languageServerClient.getClassInfo(className);
-        if (!mainClassInfo && baseDir && packageName) {
-            // 兜底：尝试从同包目录读取并解析类名
-            const simpleName = className.includes('.') ? className.split('.').pop()! : className;
-            const fallback = this.tryParseLocalClassHeader(baseDir, simpleName);
-            if (fallback) {
-                mainClassInfo = fallback;
-            }
-        }
-
-        if (mainClassInfo) {
-            relatedClasses.push(mainClassInfo);
-            processedClasses.add(className);
-        }
-
-        // 获取完整的继承链（这对于理解类关系很重要）
-        await this.collectInheritanceChainWithFallback(className, relatedClasses, processedClasses, baseDir, packageName);
-
-        // 获取直接的字段依赖（但不包含同包的无关类）
-        await this.collectFieldDependencies(className, relatedClasses, processedClasses);
-
-        return relatedClasses;
-    }
-
-    private async collectInheritanceChain(
-        className: string,
-        relatedClasses: ClassInfoResult[],
-        processedClasses: Set<string>
-    ): Promise<void> {
-        const classInfo = await this.languageServerClient.getClassInfo(className);
-        if (!classInfo) {
-            return;
-        }
-
-        await this.collectInheritanceChainCore(classInfo, relatedClasses, processedClasses);
-    }
-
-    private async collectInheritanceChainWithFallback(
-        className: string,
-        relatedClasses: ClassInfoResult[],
-        processedClasses: Set<string>,
-        baseDir?: string,
-        packageName?: string
-    ): Promise<void> {
-        // 优先使用语言服务
-        let classInfo = await this.languageServerClient.getClassInfo(className);
-        if (!classInfo && baseDir && packageName) {
-            const simple = className.includes('.') ? className.split('.').pop()! : className;
-            const local = this.tryParseLocalClassHeader(baseDir, simple, packageName);
-            if (local) classInfo = local;
-        }
-        if (!classInfo) return;
-        await this.collectInheritanceChainCore(classInfo, relatedClasses, processedClasses, baseDir, packageName);
-    }
-
-    private async collectInheritanceChainCore(
-        classInfo: ClassInfoResult,
-        relatedClasses: ClassInfoResult[],
-        processedClasses: Set<string>,
-        baseDir?: string,
-        packageName?: string
-    ): Promise<void> {
-        const className = classInfo.className;
-        // 递归获取完整的继承链（父类链）
-        if (classInfo.superClass && !processedClasses.has(classInfo.superClass)) {
-            console.log(`Found superclass for ${className}: ${classInfo.superClass}`);
-            let superClassInfo = await this.languageServerClient.getClassInfo(classInfo.superClass);
-            if (!superClassInfo && baseDir && packageName) {
-                const simple = classInfo.superClass.includes('.') ? classInfo.superClass.split('.').pop()! : classInfo.superClass;
-                const local = this.tryParseLocalClassHeader(baseDir, simple, packageName);
-                if (local) superClassInfo = local;
-            }
-            if (superClassInfo) {
-                console.log(`Successfully got info for superclass: ${classInfo.superClass}`);
-                relatedClasses.push(superClassInfo);
-                processedClasses.add(classInfo.superClass);
-
-                // 递归获取父类的父类，直到系统类或没有父类
-                if (!this.isSystemClassName(classInfo.superClass)) {
-                    console.log(`Recursively getting inheritance chain for: ${classInfo.superClass}`);
-                    await this.collectInheritanceChainCore(superClassInfo, relatedClasses, processedClasses, baseDir, packageName);
-                }
-            } else {
-                console.log(`Could not get info for superclass: ${classInfo.superClass}`);
-            }
-        } else if (classInfo.superClass) {
-            console.log(`Superclass ${classInfo.superClass} already processed for ${className}`);
-        } else {
-            console.log(`No superclass found for ${className}`);
-        }
-
-        // 获取直接实现的接口
-        for (const interfaceName of classInfo.interfaces) {
-            if (!processedClasses.has(interfaceName)) {
-                const interfaceInfo = await this.languageServerClient.getClassInfo(interfaceName);
-                if (interfaceInfo) {
-                    relatedClasses.push(interfaceInfo);
-                    processedClasses.add(interfaceName);
-                }
-            }
-        }
-    }
-
-    private tryParseLocalClassHeader(baseDir: string, simpleName: string, packageName?: string): ClassInfoResult | null {
-        try {
-            const filePath = path.join(baseDir, `${simpleName}.java`);
-            if (!fs.existsSync(filePath)) return null;
-            const text = fs.readFileSync(filePath, 'utf8');
-
-            // 检查是否是接口
-            const isInterface = new RegExp(`interface\\s+${simpleName}`, 'i').test(text);
-
-            let superClass: string | undefined;
-            let interfaces: string[] = [];
-
-            if (isInterface) {
-                // 解析接口继承 - 改进泛型处理
-                const interfaceExtendsMatch = new RegExp(`interface\\s+${simpleName}(?:\\s+extends\\s+([^{]+))?`, 'i').exec(text);
-                if (interfaceExtendsMatch && interfaceExtendsMatch[1]) {
-                    const extendsClause = interfaceExtendsMatch[1].trim();
-                    const parentInterfaces = this.splitWithGenerics(extendsClause);
-                    if (parentInterfaces.length > 0) {
-                        superClass = parentInterfaces[0].trim(); // 主要父接口
-                        if (parentInterfaces.length > 1) {
-                            interfaces = parentInterfaces.slice(1).map(i => i.trim()); // 其他父接口
-                        }
-                    }
-                }
-            } else {
-                // 解析类继承 - 使用更精确的方法处理泛型
-                // 首先找到完整的类声明
-                const classLineMatch = new RegExp(`class\\s+${simpleName}[^{]*`, 'i').exec(text);
-                if (classLineMatch) {
-                    const classDeclaration = classLineMatch[0];
-
-                    // 解析 extends 部分
-                    const extendsMatch = /extends\s+(.+?)(?:\s+implements|$)/i.exec(classDeclaration);
-                    if (extendsMatch) {
-                        superClass = this.extractCompleteGenericType(extendsMatch[1].trim());
-                    }
-
-                    // 解析 implements 部分
-                    const implementsMatch = /implements\s+(.+)$/i.exec(classDeclaration);
-                    if (implementsMatch) {
-                        interfaces = this.splitWithGenerics(implementsMatch[1]);
-                    }
-                }
-            }
-
-            const isAbstract = new RegExp(`abstract\\s+(class|interface)\\s+${simpleName}`, 'i').test(text);
-
-            return {
-                className: simpleName,
-                packageName: packageName || this.extractPackageFromSource(text) || '',
-                superClass,
-                interfaces,
-                fields: [],
-                methods: [],
-                constructors: [],
-                isAbstract,
-                isInterface,
-                isEnum: false,
-                location: { uri: filePath, range: { start: { line: 0, character: 0 }, end: { line: 0, character: 0 } } }
-            } as unknown as ClassInfoResult;
-        } catch {
-            return null;
-        }
-    }
-
-    private extractPackageFromSource(text: string): string | null {
-        const m = /package\s+([a-zA-Z0-9_.]+);/.exec(text);
-        return m ? m[1] : null;
-    }
-
-    private splitWithGenerics(typeList: string): string[] {
-        const result: string[] = [];
-        let current = '';
-        let angleBracketDepth = 0;
-
-        for (const char of typeList) {
-            if (char === '<') {
-                angleBracketDepth++;
-            } else if (char === '>') {
-                angleBracketDepth--;
-            }
-
-            if (char === ',' && angleBracketDepth === 0) {
-                result.push(current.trim());
-                current = '';
-            } else {
-                current += char;
-            }
-        }
-
-        if (current.trim()) {
-            result.push(current.trim());
-        }
-
-        return result.filter(s => s.length > 0);
-    }
-
-    private extractCompleteGenericType(typeString: string): string {
-        // 确保泛型括号匹配完整
-        let angleBracketDepth = 0;
-        let result = '';
-        let hasGeneric = false;
-
-        for (let i = 0; i < typeString.length; i++) {
-            const char = typeString[i];
-            result += char;
-
-            if (char === '<') {
-                angleBracketDepth++;
-                hasGeneric = true;
-            } else if (char === '>') {
-                angleBracketDepth--;
-                if (angleBracketDepth === 0 && hasGeneric) {
-                    // 找到完整的泛型类型，停止处理
-                    break;
-                }
-            } else if (char === ' ' && angleBracketDepth === 0 && hasGeneric) {
-                // 如果已经有完整的泛型，遇到空格就停止
-                result = result.slice(0, -1); // 移除最后的空格
-                break;
-            }
-        }
-
-        return result.trim();
+        }, members.build());
     }
 
-    private async collectFieldDependencies(
-        className: string,
-        relatedClasses: ClassInfoResult[],
-        processedClasses: Set<string>
-    ): Promise<void> {
-        const classInfo = await this.languageServerClient.getClassInfo(className);
-        if (!classInfo) {
-            return;
-        }
-
-        // 只添加字段类型中的自定义类（限制数量，排除同包类）
-        for (const field of classInfo.fields.slice(0, 2)) { // 减少到2个以避免图表过于复杂
-            const fieldType = this.extractSimpleClassName(field.type);
-            if (fieldType && !this.isPrimitiveType(fieldType) && !processedClasses.has(fieldType)) {
-                const fieldClassInfo = await this.languageServerClient.getClassInfo(fieldType);
-
-                // 只包含系统类或不同包的类，避免包含同包的无关类
-                if (fieldClassInfo &&
-                    (this.isSystemClassName(fieldType) ||
-                     fieldClassInfo.packageName !== classInfo.packageName)) {
-                    relatedClasses.push(fieldClassInfo);
-                    processedClasses.add(fieldType);
-                }
-            }
-        }
-    }
 
     private async getSystemClassesOnly(className: string): Promise<JavaClassStructure[]> {
         const systemClasses: JavaClassStructure[] = [];
@@ -1123,7 +916,9 @@ export class JavaCodeParser {
             }
 
         } catch (error) {
-            console.log('Error getting system classes:', error);
+            if (!isCancellationError(error)) {
+                console.log('Error getting system classes:', error);
+            }
         }
 
         return systemClasses;
@@ -1168,21 +963,12 @@ export class JavaCodeParser {
         ];
         return interfaces.includes(className);
     }
+}
 
-    private extractSimpleClassName(type: string): string | null {
-        // Remove generics and array brackets
-        const cleanType = type.replace(/<.*>/g, '').replace(/\[\]/g, '');
-
-        // Skip primitive types and common generic types
-        if (this.isPrimitiveType(cleanType) || cleanType === 'T' || cleanType === 'E' || cleanType === 'K' || cleanType === 'V') {
-            return null;
-        }
-
-        return cleanType;
-    }
-
-    private isPrimitiveType(type: string): boolean {
-        const primitives = ['int', 'long', 'double', 'float', 'boolean', 'char', 'byte', 'short', 'void'];
-        return primitives.includes(type);
-    }
-}
\ No newline at end of file
+/**
+ * Relation hops from the class of a single-file diagram to the related classes shown with it.
+ */
+function getRelatedClassDepth(): number {
+    const configured = vscode.workspace.getConfiguration('javaClassDiagram').get<number>('relatedClassDepth', 1);
+    return Math.max(0, Math.floor(configured));
+}
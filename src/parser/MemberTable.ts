@@ -0,0 +1,496 @@
+import type { JavaClassStructure, JavaField, JavaMethod, JavaParameter } from './JavaCodeParser';
+import { NameInterner } from '../graph/CompactGraph';
+
+type Visibility = JavaField['visibility'];
+
+// Modifier bits; visibility takes the two low bits
+const VISIBILITIES: readonly Visibility[] = ['public', 'private', 'protected', 'package'];
+const VISIBILITY_MASK = 0b11;
+const STATIC = 1 << 2;
+const FINAL = 1 << 3;
+const ABSTRACT = 1 << 4;
+
+// Header: field, method and constructor counts, then one column of `memberCount` slots each
+const HEADER_SIZE = 3;
+// Name id in the low bits, modifier bits above
+const NAME = 0;
+const TYPE = 1;
+// Offset of the member's variable-length part: annotations, then parameters and exceptions for methods
+const EXTRA = 2;
+const COLUMN_COUNT = 3;
+// 64M distinct strings, leaving 5 bits for the modifiers
+const NAME_BITS = 26;
+const NAME_MASK = (1 << NAME_BITS) - 1;
+
+// Stands for a type the parser left undefined
+const NO_STRING = -1;
+
+// Row lists of MemberTableBuilder, in table order
+const FIELD_ROWS = 0;
+const METHOD_ROWS = 1;
+const CONSTRUCTOR_ROWS = 2;
+
+/**
+ * Every name, type and annotation string of every member table, stored once for the whole
+ * extension. Member vocabularies repeat across classes (String, List<Order>, @Override), so the
+ * pool stays small next to the tables pointing into it.
+ */
+const strings = new NameInterner();
+
+function internString(value: string): number {
+    const id = strings.idOf(value);
+    // A substring of the parsed source would keep the whole file alive, store a flat copy instead
+    return id >= 0 ? id : strings.intern((' ' + value).slice(1));
+}
+
+/**
+ * Shared instance of `value` from the string pool, for the per-class strings next to the members.
+ */
+export function pooledString<T extends string | undefined>(value: T): T {
+    return (value === undefined ? value : strings.nameOf(internString(value))) as T;
+}
+
+export function modifierFlags(visibility: Visibility, isStatic: boolean, isFinal: boolean, isAbstract: boolean): number {
+    const visibilityBits = VISIBILITIES.indexOf(visibility);
+    return (visibilityBits >= 0 ? visibilityBits : VISIBILITY_MASK) | (isStatic ? STATIC : 0) | (isFinal ? FINAL : 0) | (isAbstract ? ABSTRACT : 0);
+}
+
+/**
+ * Flags of a Language Server / javap modifier list (['public', 'static', ...]).
+ */
+export function modifierFlagsOf(modifiers: readonly string[]): number {
+    const visibility = modifiers.includes('public') ? 'public' :
+        modifiers.includes('private') ? 'private' :
+        modifiers.includes('protected') ? 'protected' : 'package';
+    return modifierFlags(visibility, modifiers.includes('static'), modifiers.includes('final'), modifiers.includes('abstract'));
+}
+
+/**
+ * Collects members as rows of pool ids and lays them out as a MemberTable. Rows are kept per
+ * member kind so the table can be filled in fields, methods, constructors order whatever the
+ * order they are added in.
+ */
+export class MemberTableBuilder {
+    private rows: number[][] = [[], [], []];
+    private counts = [0, 0, 0];
+
+    addField(name: string, type: string, flags: number, annotations: readonly string[] = []): this {
+        this.addRow(FIELD_ROWS, name, type, flags, annotations);
+        return this;
+    }
+
+    addMethod(name: string, returnType: string, flags: number, parameters: readonly JavaParameter[],
+        exceptions: readonly string[] = [], annotations: readonly string[] = []): this {
+        this.addRow(METHOD_ROWS, name, returnType, flags, annotations, parameters, exceptions);
+        return this;
+    }
+
+    addConstructor(name: string, returnType: string, flags: number, parameters: readonly JavaParameter[],
+        exceptions: readonly string[] = [], annotations: readonly string[] = []): this {
+        this.addRow(CONSTRUCTOR_ROWS, name, returnType, flags, annotations, parameters, exceptions);
+        return this;
+    }
+
+    build(): MemberTable {
+        const memberCount = this.counts[0] + this.counts[1] + this.counts[2];
+        // Each row is [name and flags, type, ...variable part]
+        const extraSize = this.rows.reduce((size, rows, kind) => size + rows.length - this.counts[kind] * 2, 0);
+
+        const data = new Int32Array(HEADER_SIZE + memberCount * COLUMN_COUNT + extraSize);
+        data.set(this.counts);
+        let member = 0;
+        let extraOffset = HEADER_SIZE + memberCount * COLUMN_COUNT;
+        for (let kind = 0; kind < this.rows.length; kind++) {
+            const rows = this.rows[kind];
+            let i = 0;
+            while (i < rows.length) {
+                data[column(NAME, memberCount) + member] = rows[i++];
+                data[column(TYPE, memberCount) + member] = rows[i++];
+                data[column(EXTRA, memberCount) + member] = extraOffset;
+                const extraEnd = i + extraLength(rows, i, kind !== FIELD_ROWS);
+                for (; i < extraEnd; i++) {
+                    data[extraOffset++] = rows[i];
+                }
+                member++;
+            }
+        }
+        return new MemberTable(data);
+    }
+
+    private addRow(kind: number, name: string, type: string, flags: number, annotations: readonly string[],
+        parameters?: readonly JavaParameter[], exceptions?: readonly string[]): void {
+        const row = this.rows[kind];
+        row.push(internString(name) | flags << NAME_BITS, type === undefined ? NO_STRING : internString(type));
+        pushStrings(row, annotations);
+        if (parameters) {
+            row.push(parameters.length);
+            for (const parameter of parameters) {
+                row.push(internString(parameter.name), internString(parameter.type));
+            }
+            pushStrings(row, exceptions);
+        }
+        this.counts[kind]++;
+    }
+}
+
+// Missing lists (older parsers leave exceptions out) are stored empty
+function pushStrings(row: number[], values: readonly string[] | undefined): void {
+    row.push(values ? values.length : 0);
+    for (const value of values || []) {
+        row.push(internString(value));
+    }
+}
+
+function column(index: number, memberCount: number): number {
+    return HEADER_SIZE + index * memberCount;
+}
+
+// Length of the variable part starting at `start`: annotations, then parameters and exceptions for methods
+function extraLength(data: ArrayLike<number>, start: number, isMethod: boolean): number {
+    let end = start + 1 + data[start];
+    if (isMethod) {
+        end += 1 + data[end] * 2;
+        end += 1 + data[end];
+    }
+    return end - start;
+}
+
+/**
+ * Fields, methods and constructors of one class in a single Int32Array: fixed-width columns
+ * (name with the modifier bits, type, offset of the variable part) followed by the annotation,
+ * parameter and exception lists, every string being an id in the shared pool. A field costs
+ * 16 bytes, a method 24 plus 8 per parameter, against a few hundred for the object graph.
+ *
+ * Members are read through FieldView / MethodView objects created on access, which implement
+ * JavaField / JavaMethod so the diagram generators consume them unchanged.
+ */
+export class MemberTable {
+    constructor(private readonly data: Int32Array) {}
+
+    static fromMembers(fields: readonly JavaField[], methods: readonly JavaMethod[], constructors: readonly JavaMethod[]): MemberTable {
+        const builder = new MemberTableBuilder();
+        for (const field of fields) {
+            builder.addField(field.name, field.type, modifierFlags(field.visibility, field.isStatic, field.isFinal, false), field.annotations);
+        }
+        for (const method of methods) {
+            builder.addMethod(method.name, method.returnType, flagsOfMethod(method), method.parameters, method.exceptions, method.annotations);
+        }
+        for (const constructor of constructors) {
+            builder.addConstructor(constructor.name, constructor.returnType, flagsOfMethod(constructor), constructor.parameters, constructor.exceptions, constructor.annotations);
+        }
+        return builder.build();
+    }
+
+    get fieldCount(): number {
+        return this.data[0];
+    }
+
+    get methodCount(): number {
+        return this.data[1];
+    }
+
+    get constructorCount(): number {
+        return this.data[2];
+    }
+
+    get byteLength(): number {
+        return this.data.byteLength;
+    }
+
+    fields(): JavaField[] {
+        const views: JavaField[] = [];
+        for (let member = 0; member < this.fieldCount; member++) {
+            views.push(new FieldView(this, member));
+        }
+        return views;
+    }
+
+    methods(): JavaMethod[] {
+        return this.methodViews(this.fieldCount, this.methodCount);
+    }
+
+    constructors(): JavaMethod[] {
+        return this.methodViews(this.fieldCount + this.methodCount, this.constructorCount);
+    }
+
+    flags(member: number): number {
+        return this.data[column(NAME, this.memberCount) + member] >>> NAME_BITS;
+    }
+
+    name(member: number): string {
+        return strings.nameOf(this.data[column(NAME, this.memberCount) + member] & NAME_MASK);
+    }
+
+    type(member: number): string {
+        // NO_STRING reads back as undefined
+        return strings.nameOf(this.data[column(TYPE, this.memberCount) + member]);
+    }
+
+    annotations(member: number): string[] {
+        return this.readStrings(this.extraOffset(member));
+    }
+
+    parameters(member: number): JavaParameter[] {
+        let offset = this.parametersOffset(member);
+        const parameters: JavaParameter[] = [];
+        for (let count = this.data[offset++]; count > 0; count--) {
+            parameters.push({ name: strings.nameOf(this.data[offset++]), type: strings.nameOf(this.data[offset++]) });
+        }
+        return parameters;
+    }
+
+    exceptions(member: number): string[] {
+        const offset = this.parametersOffset(member);
+        return this.readStrings(offset + 1 + this.data[offset] * 2);
+    }
+
+    private get memberCount(): number {
+        return this.data[0] + this.data[1] + this.data[2];
+    }
+
+    private extraOffset(member: number): number {
+        return this.data[column(EXTRA, this.memberCount) + member];
+    }
+
+    private parametersOffset(member: number): number {
+        const offset = this.extraOffset(member);
+        return offset + 1 + this.data[offset];
+    }
+
+    private readStrings(offset: number): string[] {
+        const values: string[] = [];
+        for (let i = 1; i <= this.data[offset]; i++) {
+            values.push(strings.nameOf(this.data[offset + i]));
+        }
+        return values;
+    }
+
+    private methodViews(first: number, count: number): JavaMethod[] {
+        const views: JavaMethod[] = [];
+        for (let member = first; member < first + count; member++) {
+            views.push(new MethodView(this, member));
+        }
+        return views;
+    }
+}
+
+function flagsOfMethod(method: JavaMethod): number {
+    return modifierFlags(method.visibility, method.isStatic, method.isFinal, method.isAbstract);
+}
+
+/**
+ * JavaField backed by a row of a MemberTable. Two fields and no copies: the strings come
+ * from the shared pool on every read.
+ */
+class FieldView implements JavaField {
+    constructor(private readonly table: MemberTable, private readonly member: number) {}
+
+    get name(): string {
+        return this.table.name(this.member);
+    }
+
+    get type(): string {
+        return this.table.type(this.member);
+    }
+
+    get visibility(): Visibility {
+        return VISIBILITIES[this.table.flags(this.member) & VISIBILITY_MASK];
+    }
+
+    get isStatic(): boolean {
+        return (this.table.flags(this.member) & STATIC) !== 0;
+    }
+
+    get isFinal(): boolean {
+        return (this.table.flags(this.member) & FINAL) !== 0;
+    }
+
+    get annotations(): string[] {
+        return this.table.annotations(this.member);
+    }
+
+    // Cache shards and webview messages get the plain object shape
+    toJSON(): JavaField {
+        return {
+            name: this.name,
+            type: this.type,
+            visibility: this.visibility,
+            isStatic: this.isStatic,
+            isFinal: this.isFinal,
+            annotations: this.annotations
+        };
+    }
+}
+
+class MethodView implements JavaMethod {
+    constructor(private readonly table: MemberTable, private readonly member: number) {}
+
+    get name(): string {
+        return this.table.name(this.member);
+    }
+
+    get returnType(): string {
+        return this.table.type(this.member);
+    }
+
+    get parameters(): JavaParameter[] {
+        return this.table.parameters(this.member);
+    }
+
+    get visibility(): Visibility {
+        return VISIBILITIES[this.table.flags(this.member) & VISIBILITY_MASK];
+    }
+
+    get isStatic(): boolean {
+        return (this.table.flags(this.member) & STATIC) !== 0;
+    }
+
+    get isAbstract(): boolean {
+        return (this.table.flags(this.member) & ABSTRACT) !== 0;
+    }
+
+    get isFinal(): boolean {
+        return (this.table.flags(this.member) & FINAL) !== 0;
+    }
+
+    get annotations(): string[] {
+        return this.table.annotations(this.member);
+    }
+
+    get exceptions(): string[] {
+        return this.table.exceptions(this.member);
+    }
+
+    toJSON(): JavaMethod {
+        return {
+            name: this.name,
+            returnType: this.returnType,
+            parameters: this.parameters,
+            visibility: this.visibility,
+            isStatic: this.isStatic,
+            isAbstract: this.isAbstract,
+            isFinal: this.isFinal,
+            annotations: this.annotations,
+            exceptions: this.exceptions
+        };
+    }
+}
+
+type ClassHeader = Omit<JavaClassStructure, 'fields' | 'methods' | 'constructors'>;
+
+/**
+ * JavaClassStructure whose fields, methods and constructors live in a MemberTable. The member
+ * lists are getters on the prototype returning fresh view arrays, so every instance shares one
+ * shape; assigning a new list rebuilds the table. JSON.stringify goes through toJSON, which
+ * yields the plain structure.
+ */
+class CompactClassStructure implements JavaClassStructure {
+    className: string;
+    packageName: string;
+    filePath: string;
+    classType: JavaClassStructure['classType'];
+    superClass?: string;
+    interfaces: string[];
+    innerClasses: JavaClassStructure[];
+    imports: string[];
+    annotations: string[];
+    inheritanceHierarchy: string[];
+    allInterfaces: string[];
+    isSystemClass: boolean;
+
+    constructor(header: ClassHeader, public memberTable: MemberTable) {
+        this.className = header.className;
+        this.packageName = header.packageName;
+        this.filePath = header.filePath;
+        this.classType = header.classType;
+        this.superClass = header.superClass;
+        this.interfaces = header.interfaces;
+        this.innerClasses = header.innerClasses;
+        this.imports = header.imports;
+        this.annotations = header.annotations;
+        this.inheritanceHierarchy = header.inheritanceHierarchy;
+        this.allInterfaces = header.allInterfaces;
+        this.isSystemClass = header.isSystemClass;
+    }
+
+    get fields(): JavaField[] {
+        return this.memberTable.fields();
+    }
+
+    set fields(fields: JavaField[]) {
+        this.memberTable = MemberTable.fromMembers(fields, this.methods, this.constructors);
+    }
+
+    get methods(): JavaMethod[] {
+        return this.memberTable.methods();
+    }
+
+    set methods(methods: JavaMethod[]) {
+        this.memberTable = MemberTable.fromMembers(this.fields, methods, this.constructors);
+    }
+
+    get constructors(): JavaMethod[] {
+        return this.memberTable.constructors();
+    }
+
+    set constructors(constructors: JavaMethod[]) {
+        this.memberTable = MemberTable.fromMembers(this.fields, this.methods, constructors);
+    }
+
+    toJSON(): JavaClassStructure {
+        return {
+            className: this.className,
+            packageName: this.packageName,
+            filePath: this.filePath,
+            classType: this.classType,
+            superClass: this.superClass,
+            interfaces: this.interfaces,
+            fields: this.fields,
+            methods: this.methods,
+            constructors: this.constructors,
+            innerClasses: this.innerClasses,
+            imports: this.imports,
+            annotations: this.annotations,
+            inheritanceHierarchy: this.inheritanceHierarchy,
+            allInterfaces: this.allInterfaces,
+            isSystemClass: this.isSystemClass
+        };
+    }
+}
+
+/**
+ * Member table behind a structure built by compactClassStructure or withMemberTable,
+ * undefined for plain ones.
+ */
+export function getMemberTable(structure: JavaClassStructure): MemberTable | undefined {
+    return structure instanceof CompactClassStructure ? structure.memberTable : undefined;
+}
+
+export function withMemberTable(header: ClassHeader, table: MemberTable): JavaClassStructure {
+    return new CompactClassStructure(header, table);
+}
+
+/**
+ * Compact copy of a parsed structure, inner classes included: members move into a MemberTable
+ * and the per-class strings (package, supertypes, imports, annotations) into the shared pool.
+ * Parsers build plain structures; this is applied once parsing is done, before the structure
+ * is cached or indexed. An already compact structure shares its table with the copy.
+ */
+export function compactClassStructure(structure: JavaClassStructure): JavaClassStructure {
+    const table = getMemberTable(structure) ??
+        MemberTable.fromMembers(structure.fields, structure.methods, structure.constructors);
+    return withMemberTable({
+        className: pooledString(structure.className),
+        packageName: pooledString(structure.packageName),
+        filePath: structure.filePath,
+        classType: structure.classType,
+        superClass: pooledString(structure.superClass),
+        interfaces: structure.interfaces.map(pooledString),
+        innerClasses: structure.innerClasses.map(compactClassStructure),
+        imports: structure.imports.map(pooledString),
+        annotations: structure.annotations.map(pooledString),
+        inheritanceHierarchy: structure.inheritanceHierarchy.map(pooledString),
+        allInterfaces: structure.allInterfaces.map(pooledString),
+        isSystemClass: structure.isSystemClass
+    }, table);
+}
@@ -1,7 +1,56 @@
-import { exec } from 'child_process';
+import { execFile } from 'child_process';
 import { promisify } from 'util';
+import * as fs from 'fs';
+import * as os from 'os';
+import * as path from 'path';
+import * as zlib from 'zlib';
+import { tracer } from '../trace/Tracer';
+import { SharedCancellation, currentCancellation, isCancellationError, raceCancellation, throwIfCancelled } from '../util/cancellation';
 
-const execAsync = promisify(exec);
+const execFileAsync = promisify(execFile);
+
+// Bump when SystemClassInfo, parseJavapOutput or what is persisted change
+const CACHE_FORMAT_VERSION = 2;
+
+// Class names passed to one javap process; JVM startup dominates small batches
+const MAX_CLASSES_PER_JAVAP = 64;
+
+// javap processes running at the same time
+const MAX_JAVAP_PROCESSES = 2;
+
+// Lookups arriving within this window share a javap batch
+const BATCH_WINDOW_MS = 15;
+
+const JAVAP_TIMEOUT_MS = 30000;
+
+// New cache entries are written back in the background after this delay
+const FLUSH_DELAY_MS = 2000;
+
+// Packages of the JDK's own modules; nothing else is on javap's class path outside the workspace
+const JDK_PACKAGE_PREFIXES = [
+    'java.', 'javax.', 'jdk.', 'sun.', 'com.sun.', 'org.w3c.dom.', 'org.xml.sax.', 'org.ietf.jgss.', 'netscape.javascript.'
+];
+
+// What javap prints to stderr for a name that is not on its class path
+const CLASS_NOT_FOUND = /^Error: class not found: (\S+)\s*$/gm;
+
+interface PendingLookup {
+    // Also removes the abort listener, the lookup is settled either way
+    resolve: (info: SystemClassInfo | null) => void;
+    // Aborted once every caller waiting for the class is cancelled
+    signal: AbortSignal;
+}
+
+interface InFlightLookup {
+    promise: Promise<SystemClassInfo | null>;
+    cancellation: SharedCancellation;
+}
+
+interface JdkCacheFile {
+    version: number;
+    jdk: string;
+    classes: { [className: string]: SystemClassInfo | null };
+}
 
 export interface SystemClassInfo {
     className: string;
@@ -43,43 +92,80 @@ export interface SystemParameterInfo {
     type: string;
 }
 
+/**
+ * Whether `className` is a qualified name in one of the JDK's packages. Workspace and library
+ * types are never found by javap (it runs outside the workspace), so they are not worth a process.
+ */
+export function isJdkClassName(className: string): boolean {
+    return JDK_PACKAGE_PREFIXES.some(prefix => className.startsWith(prefix));
+}
+
 export class SystemClassParser {
-    
+    // Parsed javap results of this JDK, null for names javap reported as not found
+    private classes = new Map<string, SystemClassInfo | null>();
+    private inFlight = new Map<string, InFlightLookup>();
+    private batchQueue = new Map<string, PendingLookup[]>();
+    private batchTimer: NodeJS.Timeout | undefined;
+    private activeProcesses = 0;
+    private processWaiters: (() => void)[] = [];
+    private jdkVersion: Promise<string | undefined> | undefined;
+    // Set once `javap -version` answered, the cache file is named after it
+    private resolvedJdkVersion: string | undefined;
+    private diskCacheLoaded: Promise<void> | undefined;
+    private dirty = false;
+    private flushTimer: NodeJS.Timeout | undefined;
+    private javapUnavailable = false;
+
+    /**
+     * @param storageDir directory for the per-JDK metadata cache; nothing is persisted without it
+     */
+    constructor(private storageDir?: string) {}
+
     /**
      * Get enhanced class information using javap command
-     * This provides complete inheritance hierarchy and system class details
+     * This provides complete inheritance hierarchy and system class details.
+     * Rejects with a CancellationError once the surrounding runCancellable signal is aborted;
+     * a javap batch is killed when every lookup waiting for it is cancelled.
      */
     async getSystemClassInfo(className: string): Promise<SystemClassInfo | null> {
+        const signal = currentCancellation();
         try {
-            // Try different javap options to get comprehensive information
-            const commands = [
-                `javap -public -protected -package -private -s -verbose ${className}`,
-                `javap -public -s ${className}`,
-                `javap -public ${className}`
-            ];
-            
-            let stdout = '';
-            let success = false;
-            
-            for (const command of commands) {
-                try {
-                    const result = await execAsync(command, { timeout: 10000 });
-                    stdout = result.stdout;
-                    success = true;
-                    break;
-                } catch (error) {
-                    // Try next command if current one fails
-                    continue;
-                }
-            }
-            
-            if (!success || !stdout) {
+            // Anything else (generics, option-like strings, workspace types) is not worth a javap run
+            if (!/^[A-Za-z_$][\w$.]*$/.test(className) || !isJdkClassName(className)) {
                 return null;
             }
-            
-            return this.parseJavapOutput(stdout, className);
-            
+
+            await this.loadDiskCache();
+
+            if (this.classes.has(className)) {
+                const known = this.classes.get(className)!;
+                return known ? structuredClone(known) : null;
+            }
+
+            throwIfCancelled(signal);
+            let pending = this.inFlight.get(className);
+            if (!pending || pending.cancellation.signal.aborted) {
+                const cancellation = new SharedCancellation();
+                const started: InFlightLookup = { promise: this.enqueue(className, cancellation.signal), cancellation };
+                pending = started;
+                this.inFlight.set(className, started);
+                const settle = () => {
+                    cancellation.dispose();
+                    if (this.inFlight.get(className) === started) {
+                        this.inFlight.delete(className);
+                    }
+                };
+                started.promise.then(settle, settle);
+            }
+            pending.cancellation.join(signal);
+
+            const info = await raceCancellation(pending.promise, signal);
+            return info ? structuredClone(info) : null;
+
         } catch (error) {
+            if (isCancellationError(error)) {
+                throw error;
+            }
             console.error(`Error getting system class info for ${className}:`, error);
             return null;
         }
@@ -114,12 +200,8 @@ export class SystemClassParser {
      * Check if a class exists in the system classpath
      */
     async isSystemClass(className: string): Promise<boolean> {
-        try {
-            const result = await execAsync(`javap ${className}`, { timeout: 5000 });
-            return result.stdout.length > 0;
-        } catch (error) {
-            return false;
-        }
+        // Answered from the same (cached) lookup as getSystemClassInfo
+        return (await this.getSystemClassInfo(className)) !== null;
     }
     
     /**
@@ -142,7 +224,280 @@ export class SystemClassParser {
         
         return Array.from(interfaces);
     }
-    
+
+    /**
+     * Writes newly resolved classes to the per-JDK cache file synchronously.
+     */
+    flush(): void {
+        if (this.flushTimer) {
+            clearTimeout(this.flushTimer);
+            this.flushTimer = undefined;
+        }
+
+        const jdk = this.resolvedJdkVersion;
+        if (!this.dirty || !this.storageDir || !jdk) {
+            return;
+        }
+        this.dirty = false;
+
+        const file: JdkCacheFile = { version: CACHE_FORMAT_VERSION, jdk, classes: Object.fromEntries(this.classes) };
+        try {
+            fs.mkdirSync(this.storageDir, { recursive: true });
+            fs.writeFileSync(this.getCachePath(jdk), zlib.gzipSync(JSON.stringify(file)));
+        } catch (error) {
+            console.warn('Cannot write JDK class cache:', error);
+        }
+    }
+
+    dispose(): void {
+        if (this.batchTimer) {
+            clearTimeout(this.batchTimer);
+            this.batchTimer = undefined;
+        }
+        this.flush();
+    }
+
+    private enqueue(className: string, signal: AbortSignal): Promise<SystemClassInfo | null> {
+        return new Promise(resolve => {
+            // Nobody waits for it any more, the name does not go into a batch
+            const onAbort = () => {
+                const lookups = this.batchQueue.get(className);
+                if (!lookups || !lookups.includes(pending)) {
+                    return;
+                }
+                const remaining = lookups.filter(lookup => lookup !== pending);
+                if (remaining.length > 0) {
+                    this.batchQueue.set(className, remaining);
+                } else {
+                    this.batchQueue.delete(className);
+                }
+                resolve(null);
+            };
+            const pending: PendingLookup = {
+                resolve: info => {
+                    signal.removeEventListener('abort', onAbort);
+                    resolve(info);
+                },
+                signal
+            };
+            signal.addEventListener('abort', onAbort, { once: true });
+
+            const waiting = this.batchQueue.get(className);
+            if (waiting) {
+                waiting.push(pending);
+            } else {
+                this.batchQueue.set(className, [pending]);
+            }
+
+            if (!this.batchTimer) {
+                this.batchTimer = setTimeout(() => {
+                    this.batchTimer = undefined;
+                    this.flushBatchQueue();
+                }, BATCH_WINDOW_MS);
+            }
+        });
+    }
+
+    private flushBatchQueue(): void {
+        const queued = new Map(this.batchQueue);
+        this.batchQueue.clear();
+
+        const names = Array.from(queued.keys());
+        for (let i = 0; i < names.length; i += MAX_CLASSES_PER_JAVAP) {
+            const batch = names.slice(i, i + MAX_CLASSES_PER_JAVAP);
+            // The process is killed once no lookup of the batch is waiting any more
+            const cancellation = new SharedCancellation();
+            for (const name of batch) {
+                for (const lookup of queued.get(name) || []) {
+                    cancellation.join(lookup.signal);
+                }
+            }
+            this.runBatch(batch, cancellation.signal).then(results => {
+                cancellation.dispose();
+                for (const name of batch) {
+                    const info = results.get(name) ?? null;
+                    for (const lookup of queued.get(name) || []) {
+                        lookup.resolve(info);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Runs one javap process for a batch of class names. Never rejects;
+     * names javap could not resolve map to null. Aborting `signal` kills the process.
+     * Only printed classes and names javap reported as not found are remembered: a killed,
+     * timed out or otherwise failed run says nothing about the names it did not print.
+     */
+    private async runBatch(classNames: string[], signal: AbortSignal): Promise<Map<string, SystemClassInfo | null>> {
+        const results = new Map<string, SystemClassInfo | null>();
+        if (this.javapUnavailable) {
+            return results;
+        }
+
+        await this.acquireProcessSlot();
+        if (signal.aborted) {
+            this.releaseProcessSlot();
+            return results;
+        }
+        let stdout = '';
+        let stderr = '';
+        try {
+            const startTime = Date.now();
+            // Run outside the workspace so only the JDK itself is on the class path
+            const result = await tracer.span('javap', 'javap', async span => {
+                span.count('javapClasses', classNames.length);
+                return execFileAsync(
+                    'javap',
+                    ['-public', ...classNames],
+                    { timeout: JAVAP_TIMEOUT_MS, maxBuffer: 64 * 1024 * 1024, cwd: os.tmpdir(), signal }
+                );
+            });
+            stdout = result.stdout;
+            stderr = result.stderr;
+            tracer.log(`javap resolved batch of ${classNames.length} classes in ${Date.now() - startTime}ms`);
+        } catch (error: any) {
+            if (error && error.code === 'ENOENT') {
+                console.warn('javap not found on PATH, system class details are unavailable');
+                this.javapUnavailable = true;
+                return results;
+            }
+            // javap exits non-zero when some names are unknown, the others are still printed
+            stdout = (error && typeof error.stdout === 'string') ? error.stdout : '';
+            // A killed run may have printed half a not-found list, trust none of it
+            stderr = (error && typeof error.stderr === 'string' && !error.killed && !error.signal && !isCancellationError(error)) ? error.stderr : '';
+        } finally {
+            this.releaseProcessSlot();
+        }
+
+        const sections = this.splitJavapSections(stdout);
+        const notFound = new Set(Array.from(stderr.matchAll(CLASS_NOT_FOUND), match => match[1]));
+        for (const className of classNames) {
+            const section = sections.get(this.normalizeBinaryName(className));
+            const info = section ? this.parseJavapOutput(section, className) : null;
+            results.set(className, info);
+
+            if (info || notFound.has(className)) {
+                this.classes.set(className, info);
+                this.markDirty();
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Splits the output of a multi-class javap run into one section per class,
+     * keyed by the class name (nested classes with '.' instead of '$').
+     */
+    private splitJavapSections(output: string): Map<string, string> {
+        const sections = new Map<string, string>();
+        let currentName: string | undefined;
+        let currentLines: string[] = [];
+
+        for (const line of output.split(/\r?\n/)) {
+            if (!currentName) {
+                const declaration = /^[\w\s]*?\b(?:class|interface|enum|record)\s+([\w.$]+)/.exec(line);
+                if (declaration && line.trimEnd().endsWith('{')) {
+                    currentName = this.normalizeBinaryName(declaration[1]);
+                    currentLines = [line];
+                }
+                continue;
+            }
+
+            if (line.startsWith('}')) {
+                sections.set(currentName, currentLines.join('\n'));
+                currentName = undefined;
+            } else {
+                currentLines.push(line);
+            }
+        }
+        return sections;
+    }
+
+    private normalizeBinaryName(className: string): string {
+        return className.replace(/\$/g, '.');
+    }
+
+    private async acquireProcessSlot(): Promise<void> {
+        if (this.activeProcesses < MAX_JAVAP_PROCESSES) {
+            this.activeProcesses++;
+            return;
+        }
+        await new Promise<void>(resolve => this.processWaiters.push(resolve));
+    }
+
+    private releaseProcessSlot(): void {
+        // Hand the slot straight to the next waiter
+        const next = this.processWaiters.shift();
+        if (next) {
+            next();
+        } else {
+            this.activeProcesses--;
+        }
+    }
+
+    private getJdkVersion(): Promise<string | undefined> {
+        if (!this.jdkVersion) {
+            this.jdkVersion = execFileAsync('javap', ['-version'], { timeout: JAVAP_TIMEOUT_MS })
+                .then(result => {
+                    this.resolvedJdkVersion = result.stdout.trim() || undefined;
+                    return this.resolvedJdkVersion;
+                })
+                .catch(() => undefined);
+        }
+        return this.jdkVersion;
+    }
+
+    private loadDiskCache(): Promise<void> {
+        if (!this.diskCacheLoaded) {
+            this.diskCacheLoaded = this.readDiskCache();
+        }
+        return this.diskCacheLoaded;
+    }
+
+    private async readDiskCache(): Promise<void> {
+        if (!this.storageDir) {
+            return;
+        }
+
+        const jdk = await this.getJdkVersion();
+        if (!jdk) {
+            return;
+        }
+
+        try {
+            const data = await fs.promises.readFile(this.getCachePath(jdk));
+            const file = JSON.parse(zlib.gunzipSync(data).toString('utf8')) as JdkCacheFile;
+            if (file.version !== CACHE_FORMAT_VERSION || file.jdk !== jdk || !file.classes) {
+                return;
+            }
+            for (const [className, info] of Object.entries(file.classes)) {
+                if (!this.classes.has(className)) {
+                    this.classes.set(className, info);
+                }
+            }
+            console.log(`Loaded ${this.classes.size} JDK ${jdk} classes from cache`);
+        } catch (error: any) {
+            // Missing or corrupt cache file, start cold
+            if (error?.code !== 'ENOENT') {
+                console.warn('Ignoring unreadable JDK class cache:', error);
+            }
+        }
+    }
+
+    private markDirty(): void {
+        this.dirty = true;
+        if (!this.flushTimer && this.storageDir) {
+            this.flushTimer = setTimeout(() => this.flush(), FLUSH_DELAY_MS);
+        }
+    }
+
+    private getCachePath(jdk: string): string {
+        const safeVersion = jdk.replace(/[^\w.-]+/g, '_');
+        return path.join(this.storageDir!, `jdk-classes-v${CACHE_FORMAT_VERSION}-${safeVersion}.json.gz`);
+    }
+
     private parseJavapOutput(javapOutput: string, className: string): SystemClassInfo {
         const lines = javapOutput.split('\n');
         const classInfo: SystemClassInfo = {
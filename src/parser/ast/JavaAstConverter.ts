@@ -0,0 +1,464 @@
+import * as path from 'path';
+import type { JavaClassStructure, JavaField, JavaMethod, JavaParameter } from '../JavaCodeParser';
+
+// This module runs inside parser worker threads: it must not import 'vscode' at runtime.
+
+interface CstToken {
+    image: string;
+    startOffset: number;
+    tokenType?: { name: string };
+}
+
+interface CstNode {
+    name: string;
+    children: { [key: string]: CstElement[] };
+}
+
+type CstElement = CstNode | CstToken;
+
+type Visibility = 'public' | 'private' | 'protected' | 'package';
+
+interface MemberContext {
+    // Members of interfaces are implicitly public (and fields static final)
+    inInterface: boolean;
+}
+
+let javaParserModule: { parse(text: string): CstNode } | undefined;
+
+/**
+ * Loads java-parser, throwing if the dependency is not available.
+ */
+export function loadJavaParser(): { parse(text: string): CstNode } {
+    if (!javaParserModule) {
+        // eslint-disable-next-line @typescript-eslint/no-var-requires
+        javaParserModule = require('java-parser');
+    }
+    return javaParserModule!;
+}
+
+/**
+ * Parses Java source with java-parser and converts the primary type declaration
+ * (the one matching the file name, else the first) into a JavaClassStructure.
+ * Throws if the source cannot be parsed so callers can fall back to regex parsing.
+ */
+export function convertJavaSourceToClassStructure(javaCode: string, filePath: string): JavaClassStructure {
+    const cst = loadJavaParser().parse(javaCode);
+    const unit = child(cst, 'ordinaryCompilationUnit');
+    if (!unit) {
+        throw new Error('Not an ordinary compilation unit');
+    }
+
+    const packageDeclaration = child(unit, 'packageDeclaration');
+    const packageName = packageDeclaration ? tokenImages(packageDeclaration, 'Identifier').join('.') : '';
+    const imports = children(unit, 'importDeclaration')
+        .map(importDeclaration => importText(importDeclaration))
+        .filter(imp => imp.length > 0);
+
+    const typeDeclarations: JavaClassStructure[] = [];
+    for (const typeDeclaration of children(unit, 'typeDeclaration')) {
+        const structure = convertTypeDeclaration(typeDeclaration, packageName, filePath);
+        if (structure) {
+            typeDeclarations.push(structure);
+        }
+    }
+
+    if (typeDeclarations.length === 0) {
+        throw new Error('No type declaration found');
+    }
+
+    const fileBaseName = path.basename(filePath, '.java');
+    const mainClass = typeDeclarations.find(type => type.className === fileBaseName) || typeDeclarations[0];
+    mainClass.imports = imports;
+    return mainClass;
+}
+
+function convertTypeDeclaration(node: CstNode, packageName: string, filePath: string): JavaClassStructure | undefined {
+    const classDeclaration = child(node, 'classDeclaration');
+    if (classDeclaration) {
+        return convertClassDeclaration(classDeclaration, packageName, filePath);
+    }
+    const interfaceDeclaration = child(node, 'interfaceDeclaration');
+    if (interfaceDeclaration) {
+        return convertInterfaceDeclaration(interfaceDeclaration, packageName, filePath);
+    }
+    return undefined;
+}
+
+function createStructure(className: string, packageName: string, filePath: string): JavaClassStructure {
+    return {
+        className,
+        packageName,
+        filePath,
+        classType: 'class',
+        interfaces: [],
+        fields: [],
+        methods: [],
+        constructors: [],
+        innerClasses: [],
+        imports: [],
+        annotations: [],
+        inheritanceHierarchy: [],
+        allInterfaces: [],
+        isSystemClass: false
+    };
+}
+
+function convertClassDeclaration(node: CstNode, packageName: string, filePath: string): JavaClassStructure | undefined {
+    const modifiers = readModifiers(children(node, 'classModifier'));
+    const normalClass = child(node, 'normalClassDeclaration');
+    const enumDeclaration = child(node, 'enumDeclaration');
+    const recordDeclaration = child(node, 'recordDeclaration');
+    const declaration = normalClass || enumDeclaration || recordDeclaration;
+    if (!declaration) {
+        return undefined;
+    }
+
+    const className = typeIdentifier(declaration);
+    if (!className) {
+        return undefined;
+    }
+
+    const structure = createStructure(className, packageName, filePath);
+    structure.annotations = modifiers.annotations;
+
+    const superinterfaces = child(declaration, 'superinterfaces');
+    if (superinterfaces) {
+        structure.interfaces = interfaceTypes(superinterfaces);
+    }
+
+    if (normalClass) {
+        structure.classType = modifiers.keywords.has('abstract') ? 'abstract class' : 'class';
+        const superclass = child(normalClass, 'superclass');
+        if (superclass) {
+            const classType = child(superclass, 'classType');
+            structure.superClass = typeText(classType || superclass).replace(/^extends\s+/, '');
+        }
+        const classBody = child(normalClass, 'classBody');
+        if (classBody) {
+            convertClassBodyDeclarations(children(classBody, 'classBodyDeclaration'), structure, { inInterface: false });
+        }
+    } else if (enumDeclaration) {
+        structure.classType = 'enum';
+        const enumBody = child(enumDeclaration, 'enumBody');
+        const bodyDeclarations = enumBody ? child(enumBody, 'enumBodyDeclarations') : undefined;
+        if (bodyDeclarations) {
+            convertClassBodyDeclarations(children(bodyDeclarations, 'classBodyDeclaration'), structure, { inInterface: false });
+        }
+    } else if (recordDeclaration) {
+        structure.classType = 'class';
+        const recordBody = child(recordDeclaration, 'recordBody');
+        if (recordBody) {
+            const bodyDeclarations = children(recordBody, 'recordBodyDeclaration')
+                .map(declarationNode => child(declarationNode, 'classBodyDeclaration'))
+                .filter((declarationNode): declarationNode is CstNode => declarationNode !== undefined);
+            convertClassBodyDeclarations(bodyDeclarations, structure, { inInterface: false });
+        }
+    }
+
+    return structure;
+}
+
+function convertInterfaceDeclaration(node: CstNode, packageName: string, filePath: string): JavaClassStructure | undefined {
+    const modifiers = readModifiers(children(node, 'interfaceModifier'));
+    const normalInterface = child(node, 'normalInterfaceDeclaration');
+    const annotationInterface = child(node, 'annotationInterfaceDeclaration') || child(node, 'annotationTypeDeclaration');
+    const declaration = normalInterface || annotationInterface;
+    if (!declaration) {
+        return undefined;
+    }
+
+    const className = typeIdentifier(declaration);
+    if (!className) {
+        return undefined;
+    }
+
+    const structure = createStructure(className, packageName, filePath);
+    structure.classType = 'interface';
+    structure.annotations = modifiers.annotations;
+
+    if (normalInterface) {
+        // Same convention as the Language Server path: the first parent interface is the
+        // "superclass", any further ones are listed as interfaces
+        const extendsInterfaces = child(normalInterface, 'extendsInterfaces');
+        if (extendsInterfaces) {
+            const parents = interfaceTypes(extendsInterfaces);
+            if (parents.length > 0) {
+                structure.superClass = parents[0];
+                structure.interfaces = parents.slice(1);
+            }
+        }
+
+        const interfaceBody = child(normalInterface, 'interfaceBody');
+        if (interfaceBody) {
+            for (const memberDeclaration of children(interfaceBody, 'interfaceMemberDeclaration')) {
+                convertInterfaceMember(memberDeclaration, structure);
+            }
+        }
+    }
+
+    return structure;
+}
+
+function convertClassBodyDeclarations(declarations: CstNode[], structure: JavaClassStructure, context: MemberContext): void {
+    for (const declaration of declarations) {
+        const constructorDeclaration = child(declaration, 'constructorDeclaration');
+        if (constructorDeclaration) {
+            structure.constructors.push(convertConstructor(constructorDeclaration, structure.className));
+            continue;
+        }
+
+        const memberDeclaration = child(declaration, 'classMemberDeclaration');
+        if (!memberDeclaration) {
+            continue;
+        }
+
+        const fieldDeclaration = child(memberDeclaration, 'fieldDeclaration');
+        if (fieldDeclaration) {
+            structure.fields.push(...convertFields(fieldDeclaration, children(fieldDeclaration, 'fieldModifier'), context));
+            continue;
+        }
+
+        const methodDeclaration = child(memberDeclaration, 'methodDeclaration');
+        if (methodDeclaration) {
+            structure.methods.push(convertMethod(methodDeclaration, children(methodDeclaration, 'methodModifier'), context));
+            continue;
+        }
+
+        convertInnerType(memberDeclaration, structure);
+    }
+}
+
+function convertInterfaceMember(memberDeclaration: CstNode, structure: JavaClassStructure): void {
+    const context: MemberContext = { inInterface: true };
+
+    const constantDeclaration = child(memberDeclaration, 'constantDeclaration');
+    if (constantDeclaration) {
+        structure.fields.push(...convertFields(constantDeclaration, children(constantDeclaration, 'constantModifier'), context));
+        return;
+    }
+
+    const methodDeclaration = child(memberDeclaration, 'interfaceMethodDeclaration');
+    if (methodDeclaration) {
+        structure.methods.push(convertMethod(methodDeclaration, children(methodDeclaration, 'interfaceMethodModifier'), context));
+        return;
+    }
+
+    convertInnerType(memberDeclaration, structure);
+}
+
+function convertInnerType(memberDeclaration: CstNode, structure: JavaClassStructure): void {
+    const innerClass = child(memberDeclaration, 'classDeclaration');
+    const innerInterface = child(memberDeclaration, 'interfaceDeclaration');
+    const inner = innerClass ?
+        convertClassDeclaration(innerClass, structure.packageName, structure.filePath) :
+        innerInterface ? convertInterfaceDeclaration(innerInterface, structure.packageName, structure.filePath) : undefined;
+    if (inner) {
+        structure.innerClasses.push(inner);
+    }
+}
+
+function convertFields(declaration: CstNode, modifierNodes: CstNode[], context: MemberContext): JavaField[] {
+    const modifiers = readModifiers(modifierNodes);
+    const unannType = child(declaration, 'unannType');
+    const type = unannType ? typeText(unannType) : 'unknown';
+    const declaratorList = child(declaration, 'variableDeclaratorList');
+    const fields: JavaField[] = [];
+
+    for (const declarator of declaratorList ? children(declaratorList, 'variableDeclarator') : []) {
+        const declaratorId = child(declarator, 'variableDeclaratorId');
+        const name = declaratorId ? tokenImages(declaratorId, 'Identifier')[0] : undefined;
+        if (!name) {
+            continue;
+        }
+        // C-style array declarators: int values[];
+        const dims = declaratorId && child(declaratorId, 'dims') ? typeText(child(declaratorId, 'dims')!) : '';
+
+        fields.push({
+            name,
+            type: type + dims,
+            visibility: context.inInterface ? 'public' : modifiers.visibility,
+            isStatic: context.inInterface || modifiers.keywords.has('static'),
+            isFinal: context.inInterface || modifiers.keywords.has('final'),
+            annotations: modifiers.annotations
+        });
+    }
+
+    return fields;
+}
+
+function convertMethod(declaration: CstNode, modifierNodes: CstNode[], context: MemberContext): JavaMethod {
+    const modifiers = readModifiers(modifierNodes);
+    const header = child(declaration, 'methodHeader');
+    const declarator = header ? child(header, 'methodDeclarator') : undefined;
+    const result = header ? child(header, 'result') : undefined;
+    const body = child(declaration, 'methodBody');
+
+    // Interface methods without a body (and without default/static/private) are abstract
+    const hasBody = body !== undefined && child(body, 'block') !== undefined;
+    const isAbstract = modifiers.keywords.has('abstract') ||
+        (context.inInterface && !hasBody && !modifiers.keywords.has('static') && !modifiers.keywords.has('default'));
+
+    return {
+        name: declarator ? tokenImages(declarator, 'Identifier')[0] || '' : '',
+        returnType: result ? typeText(result) : 'void',
+        parameters: declarator ? convertParameters(child(declarator, 'formalParameterList')) : [],
+        visibility: context.inInterface && modifiers.visibility === 'package' ? 'public' : modifiers.visibility,
+        isStatic: modifiers.keywords.has('static'),
+        isAbstract,
+        isFinal: modifiers.keywords.has('final'),
+        annotations: modifiers.annotations,
+        exceptions: convertThrows(header ? child(header, 'throws') : undefined)
+    };
+}
+
+function convertConstructor(declaration: CstNode, className: string): JavaMethod {
+    const modifiers = readModifiers(children(declaration, 'constructorModifier'));
+    const declarator = child(declaration, 'constructorDeclarator');
+
+    return {
+        name: className,
+        returnType: className,
+        parameters: declarator ? convertParameters(child(declarator, 'formalParameterList')) : [],
+        visibility: modifiers.visibility,
+        isStatic: false,
+        isAbstract: false,
+        isFinal: false,
+        annotations: modifiers.annotations,
+        exceptions: convertThrows(child(declaration, 'throws'))
+    };
+}
+
+function convertParameters(parameterList: CstNode | undefined): JavaParameter[] {
+    if (!parameterList) {
+        return [];
+    }
+
+    const parameters: JavaParameter[] = [];
+    for (const formalParameter of children(parameterList, 'formalParameter')) {
+        const regular = child(formalParameter, 'variableParaRegularParameter');
+        if (regular) {
+            const unannType = child(regular, 'unannType');
+            const declaratorId = child(regular, 'variableDeclaratorId');
+            parameters.push({
+                name: declaratorId ? tokenImages(declaratorId, 'Identifier')[0] || '' : '',
+                type: unannType ? typeText(unannType) : 'unknown'
+            });
+            continue;
+        }
+
+        const variableArity = child(formalParameter, 'variableArityParameter');
+        if (variableArity) {
+            const unannType = child(variableArity, 'unannType');
+            parameters.push({
+                name: tokenImages(variableArity, 'Identifier')[0] || '',
+                type: (unannType ? typeText(unannType) : 'unknown') + '...'
+            });
+        }
+    }
+    return parameters;
+}
+
+function convertThrows(throwsNode: CstNode | undefined): string[] {
+    const exceptionTypeList = throwsNode ? child(throwsNode, 'exceptionTypeList') : undefined;
+    return exceptionTypeList ? children(exceptionTypeList, 'exceptionType').map(typeText) : [];
+}
+
+function interfaceTypes(node: CstNode): string[] {
+    const interfaceTypeList = child(node, 'interfaceTypeList');
+    return interfaceTypeList ? children(interfaceTypeList, 'interfaceType').map(typeText) : [];
+}
+
+function typeIdentifier(declaration: CstNode): string | undefined {
+    const identifierNode = child(declaration, 'typeIdentifier');
+    return identifierNode ? tokenImages(identifierNode, 'Identifier')[0] : undefined;
+}
+
+function importText(importDeclaration: CstNode): string {
+    const name = child(importDeclaration, 'packageOrTypeName');
+    if (!name) {
+        return '';
+    }
+    const qualifiedName = tokenImages(name, 'Identifier').join('.');
+    return importDeclaration.children['Star'] ? `${qualifiedName}.*` : qualifiedName;
+}
+
+function readModifiers(modifierNodes: CstNode[]): { visibility: Visibility, keywords: Set<string>, annotations: string[] } {
+    const keywords = new Set<string>();
+    const annotations: string[] = [];
+
+    for (const modifier of modifierNodes) {
+        const annotation = child(modifier, 'annotation');
+        if (annotation) {
+            annotations.push(typeText(annotation));
+            continue;
+        }
+        for (const token of collectTokens(modifier)) {
+            keywords.add(token.image);
+        }
+    }
+
+    const visibility: Visibility = keywords.has('public') ? 'public' :
+        keywords.has('private') ? 'private' :
+        keywords.has('protected') ? 'protected' : 'package';
+
+    return { visibility, keywords, annotations };
+}
+
+/**
+ * Rebuilds compact source text from a subtree's tokens. Comments are not part of the
+ * token stream, so types spanning comments still come out clean.
+ */
+function typeText(node: CstNode): string {
+    let text = '';
+    let previous = '';
+    for (const token of collectTokens(node)) {
+        const image = token.image;
+        if (previous && /[\w$]$/.test(previous) && /^[\w$@?]/.test(image)) {
+            text += ' ';
+        } else if (previous === ',') {
+            text += ' ';
+        }
+        text += image;
+        previous = image;
+    }
+    return text;
+}
+
+function collectTokens(node: CstNode): CstToken[] {
+    const tokens: CstToken[] = [];
+    const visit = (element: CstElement) => {
+        if (isNode(element)) {
+            for (const key of Object.keys(element.children)) {
+                for (const nested of element.children[key]) {
+                    visit(nested);
+                }
+            }
+        } else {
+            tokens.push(element);
+        }
+    };
+    visit(node);
+    return tokens.sort((a, b) => a.startOffset - b.startOffset);
+}
+
+function isNode(element: CstElement): element is CstNode {
+    return (element as CstNode).children !== undefined;
+}
+
+function child(node: CstNode, name: string): CstNode | undefined {
+    const elements = node.children[name];
+    if (!elements) {
+        return undefined;
+    }
+    return elements.find(isNode) as CstNode | undefined;
+}
+
+function children(node: CstNode, name: string): CstNode[] {
+    const elements = node.children[name];
+    return elements ? elements.filter(isNode) as CstNode[] : [];
+}
+
+function tokenImages(node: CstNode, tokenName: string): string[] {
+    const elements = node.children[tokenName];
+    return elements ? elements.filter(element => !isNode(element)).map(element => (element as CstToken).image) : [];
+}
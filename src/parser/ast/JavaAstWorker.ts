@@ -0,0 +1,28 @@
+import { parentPort } from 'worker_threads';
+import { convertJavaSourceToClassStructure, loadJavaParser } from './JavaAstConverter';
+
+export interface AstParseRequest {
+    id: number;
+    javaCode: string;
+    filePath: string;
+}
+
+export interface AstParseResponse {
+    id: number;
+    result?: unknown;
+    error?: string;
+}
+
+// Fail the worker at startup if java-parser is missing, so the pool stops using it
+loadJavaParser();
+
+// Worker thread entry point: parses one compilation unit per message
+parentPort?.on('message', (request: AstParseRequest) => {
+    const response: AstParseResponse = { id: request.id };
+    try {
+        response.result = convertJavaSourceToClassStructure(request.javaCode, request.filePath);
+    } catch (error) {
+        response.error = error instanceof Error ? error.message : String(error);
+    }
+    parentPort!.postMessage(response);
+});
@@ -0,0 +1,187 @@
+import * as os from 'os';
+import * as path from 'path';
+import { Worker } from 'worker_threads';
+import type { JavaClassStructure } from '../JavaCodeParser';
+import type { AstParseRequest, AstParseResponse } from './JavaAstWorker';
+import { CancellationError, currentCancellation } from '../../util/cancellation';
+
+// A parse that takes longer than this is assumed to be stuck; the worker is recycled
+const PARSE_TIMEOUT_MS = 15000;
+
+interface PendingParse {
+    request: AstParseRequest;
+    resolve: (structure: JavaClassStructure) => void;
+    reject: (error: Error) => void;
+}
+
+interface PoolWorker {
+    worker: Worker;
+    current?: PendingParse;
+    timer?: NodeJS.Timeout;
+    // True once the worker answered at least one request
+    started: boolean;
+}
+
+/**
+ * Pool of worker threads running the java-parser AST backend, so parsing large
+ * folders never blocks the extension host thread.
+ */
+export class JavaParserWorkerPool {
+    private workers: PoolWorker[] = [];
+    private queue: PendingParse[] = [];
+    private nextId = 1;
+    private disposed = false;
+    // Set once a worker failed to start (e.g. java-parser is missing); later parses fail fast
+    private startupError: Error | undefined;
+
+    constructor(private size: number = JavaParserWorkerPool.defaultSize()) {}
+
+    static defaultSize(): number {
+        // Leave one core to the extension host and the Language Server
+        return Math.max(1, Math.min(4, os.cpus().length - 1));
+    }
+
+    /**
+     * A parse still queued when the surrounding runCancellable signal is aborted is dropped; one a
+     * worker already runs is finished, it is bounded by a single file.
+     */
+    parse(javaCode: string, filePath: string): Promise<JavaClassStructure> {
+        if (this.disposed) {
+            return Promise.reject(new Error('Parser worker pool is disposed'));
+        }
+        if (this.startupError) {
+            return Promise.reject(this.startupError);
+        }
+        const signal = currentCancellation();
+        if (signal?.aborted) {
+            return Promise.reject(new CancellationError());
+        }
+
+        return new Promise<JavaClassStructure>((resolve, reject) => {
+            const onAbort = () => {
+                const index = this.queue.indexOf(pending);
+                if (index >= 0) {
+                    this.queue.splice(index, 1);
+                    reject(new CancellationError());
+                }
+            };
+            // Folder runs share one signal, settled parses must not stay attached to it
+            const pending: PendingParse = {
+                request: { id: this.nextId++, javaCode, filePath },
+                resolve: structure => {
+                    signal?.removeEventListener('abort', onAbort);
+                    resolve(structure);
+                },
+                reject: error => {
+                    signal?.removeEventListener('abort', onAbort);
+                    reject(error);
+                }
+            };
+            this.queue.push(pending);
+            signal?.addEventListener('abort', onAbort, { once: true });
+            this.dispatch();
+        });
+    }
+
+    dispose(): void {
+        this.disposed = true;
+        for (const pending of this.queue) {
+            pending.reject(new Error('Parser worker pool is disposed'));
+        }
+        this.queue = [];
+        for (const poolWorker of this.workers) {
+            this.finish(poolWorker, undefined, new Error('Parser worker pool is disposed'));
+            poolWorker.worker.terminate();
+        }
+        this.workers = [];
+    }
+
+    private dispatch(): void {
+        while (this.queue.length > 0) {
+            let idle = this.workers.find(poolWorker => !poolWorker.current);
+            if (!idle && this.workers.length < this.size) {
+                idle = this.spawn();
+            }
+            if (!idle) {
+                return;
+            }
+
+            const pending = this.queue.shift()!;
+            idle.current = pending;
+            idle.timer = setTimeout(() => this.recycle(idle!, new Error(`Parsing ${pending.request.filePath} timed out`)), PARSE_TIMEOUT_MS);
+            idle.worker.postMessage(pending.request);
+        }
+    }
+
+    private spawn(): PoolWorker {
+        const worker = new Worker(path.join(__dirname, 'JavaAstWorker.js'));
+        const poolWorker: PoolWorker = { worker, started: false };
+
+        worker.on('message', (response: AstParseResponse) => {
+            poolWorker.started = true;
+            if (!poolWorker.current || poolWorker.current.request.id !== response.id) {
+                return;
+            }
+            if (response.error) {
+                this.finish(poolWorker, undefined, new Error(response.error));
+            } else {
+                this.finish(poolWorker, response.result as JavaClassStructure);
+            }
+            this.dispatch();
+        });
+
+        worker.on('error', error => {
+            // Errors thrown while loading the worker script or java-parser itself
+            if (!poolWorker.started) {
+                this.startupError = error;
+            }
+            this.recycle(poolWorker, error);
+        });
+
+        worker.on('exit', () => {
+            this.workers = this.workers.filter(other => other !== poolWorker);
+            if (poolWorker.current) {
+                this.finish(poolWorker, undefined, new Error('Parser worker exited unexpectedly'));
+            }
+        });
+
+        // Idle workers must not keep the extension host alive on shutdown
+        worker.unref();
+        this.workers.push(poolWorker);
+        return poolWorker;
+    }
+
+    private recycle(poolWorker: PoolWorker, error: Error): void {
+        this.finish(poolWorker, undefined, error);
+        this.workers = this.workers.filter(other => other !== poolWorker);
+        poolWorker.worker.terminate();
+
+        if (this.startupError) {
+            // Nothing will ever succeed, fail the queue instead of respawning
+            for (const pending of this.queue) {
+                pending.reject(this.startupError);
+            }
+            this.queue = [];
+        } else {
+            this.dispatch();
+        }
+    }
+
+    private finish(poolWorker: PoolWorker, structure?: JavaClassStructure, error?: Error): void {
+        const pending = poolWorker.current;
+        if (poolWorker.timer) {
+            clearTimeout(poolWorker.timer);
+            poolWorker.timer = undefined;
+        }
+        poolWorker.current = undefined;
+
+        if (!pending) {
+            return;
+        }
+        if (structure) {
+            pending.resolve(structure);
+        } else {
+            pending.reject(error || new Error('Parsing failed'));
+        }
+    }
+}
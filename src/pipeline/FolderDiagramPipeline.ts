@@ -0,0 +1,187 @@
+import * as fs from 'fs';
+import * as path from 'path';
+import { JavaCodeParser, JavaClassStructure } from '../parser/JavaCodeParser';
+import { PlantUMLGenerator } from '../plantuml/PlantUMLGenerator';
+import { ClassDiagramWebviewProvider } from '../webview/ClassDiagramWebviewProvider';
+import { buildClassGraph } from '../graph/ClassGraph';
+import { discoverFiles, FileDiscoveryOptions } from '../util/fileDiscovery';
+import { CancellationSignal, mapConcurrentStream } from '../util/concurrency';
+import { tracer } from '../trace/Tracer';
+import { languageServerScheduler } from '../languageserver/LanguageServerScheduler';
+import { isCancellationError } from '../util/cancellation';
+
+// The first partial diagram goes out once this many classes are parsed...
+const FIRST_UPDATE_CLASSES = 20;
+// ...or this long after the first class, whichever comes first
+const FIRST_UPDATE_DELAY_MS = 500;
+// Minimum time between two partial updates; a PlantUML update also waits for the previous render
+const PARTIAL_UPDATE_INTERVAL_MS = 1500;
+
+export type FolderViewMode = 'plantuml' | 'packageOverview' | 'graph';
+
+// Views only ever get bigger while classes stream in, so a view is never switched back
+const VIEW_RANK: { [mode in FolderViewMode]: number } = { plantuml: 0, packageOverview: 1, graph: 2 };
+
+export interface FolderPipelineOptions {
+    title: string;
+    discovery: FileDiscoveryOptions;
+    // Files read and parsed at the same time
+    concurrency: number;
+    // View for the files discovered and classes parsed so far
+    chooseView: (discoveredFiles: number, classStructures: JavaClassStructure[]) => FolderViewMode;
+    token?: CancellationSignal;
+    onProgress?: (parsedFiles: number, discoveredFiles: number) => void;
+}
+
+export interface FolderPipelineResult {
+    // In discovery order, so repeated runs produce the same diagram
+    classStructures: JavaClassStructure[];
+    errors: { file: string, error: string }[];
+    discoveredFiles: number;
+    cancelled: boolean;
+    // False when nothing was shown, or the panel was closed while classes streamed in
+    shown: boolean;
+}
+
+/**
+ * Generates a folder diagram as a stream: discover → read → parse → resolve → emit. Files are
+ * parsed while discovery is still running and the panel shows a partial diagram that fills in
+ * as classes arrive. Each stage only pulls from the one before it when it has capacity, and
+ * partial updates are throttled, so a slow renderer or Language Server slows the stream down
+ * instead of queueing work. One run at a time per instance.
+ */
+export class FolderDiagramPipeline {
+    private view: FolderViewMode | undefined;
+    private panelClosed = false;
+    private publishing: Promise<void> | undefined;
+    private lastPublish = 0;
+    private publishedCount = 0;
+
+    constructor(
+        private javaParser: JavaCodeParser,
+        private plantUMLGenerator: PlantUMLGenerator,
+        private webviewProvider: ClassDiagramWebviewProvider
+    ) {}
+
+    async run(folderPath: string, options: FolderPipelineOptions): Promise<FolderPipelineResult> {
+        const results: (JavaClassStructure | undefined)[] = [];
+        const errors: { file: string, error: string }[] = [];
+        let discoveredFiles = 0;
+        let parsedFiles = 0;
+        let parsedClasses = 0;
+        let firstClassTime = 0;
+        this.view = undefined;
+        this.panelClosed = false;
+        this.lastPublish = 0;
+        this.publishedCount = 0;
+
+        const discovered = async function* () {
+            for await (const filePath of discoverFiles(folderPath, options.discovery)) {
+                discoveredFiles++;
+                tracer.count('files');
+                yield filePath;
+            }
+        };
+
+        const stream = mapConcurrentStream(discovered(), options.concurrency, async filePath => {
+            try {
+                const javaCode = await tracer.span('readFile', 'io', () => fs.promises.readFile(filePath, 'utf8'));
+                // Folder runs yield the Language Server to navigation and the open editors
+                return await languageServerScheduler.runInBackground(() => this.javaParser.parseJavaFile(javaCode, filePath));
+            } catch (error) {
+                // Files in flight when the run is cancelled are not parse errors
+                if (isCancellationError(error)) {
+                    return undefined;
+                }
+                console.error(`Error parsing ${filePath}:`, error);
+                errors.push({ file: path.basename(filePath), error: error instanceof Error ? error.message : String(error) });
+                // Continue with other files
+                return undefined;
+            }
+        }, options.token);
+
+        for await (const { index, value } of stream) {
+            parsedFiles++;
+            results[index] = value;
+            options.onProgress?.(parsedFiles, discoveredFiles);
+            if (!value) {
+                continue;
+            }
+
+            parsedClasses++;
+            const now = Date.now();
+            firstClassTime = firstClassTime || now;
+            const due = this.publishedCount === 0
+                ? parsedClasses >= FIRST_UPDATE_CLASSES || now - firstClassTime >= FIRST_UPDATE_DELAY_MS
+                : now - this.lastPublish >= PARTIAL_UPDATE_INTERVAL_MS;
+            if (due && !this.publishing && !this.panelClosed) {
+                const partial = results.filter((structure): structure is JavaClassStructure => structure !== undefined);
+                this.publishing = this.publish(partial, discoveredFiles, options)
+                    .catch(error => console.warn('Partial diagram update failed:', error))
+                    .finally(() => {
+                        this.publishing = undefined;
+                        this.lastPublish = Date.now();
+                    });
+            }
+        }
+
+        await this.publishing;
+        const classStructures = results.filter((structure): structure is JavaClassStructure => structure !== undefined);
+        const cancelled = options.token?.isCancellationRequested === true;
+        // A cancelled run keeps the partial diagram it already shows. The final update is sent
+        // even without new classes: partial diagrams are in completion order, this one is not
+        if (classStructures.length > 0 && !cancelled && !this.panelClosed) {
+            await this.publish(classStructures, discoveredFiles, options);
+        }
+
+        return {
+            classStructures,
+            errors,
+            discoveredFiles,
+            cancelled,
+            shown: this.publishedCount > 0 && !this.panelClosed
+        };
+    }
+
+    private async publish(classStructures: JavaClassStructure[], discoveredFiles: number, options: FolderPipelineOptions): Promise<void> {
+        await tracer.span('publish', 'render', async span => {
+            span.count('classes', classStructures.length);
+
+            // Closing the panel while classes stream in ends the updates, the panel is not reopened
+            if (this.view !== undefined && !this.webviewProvider.hasOpenPanel()) {
+                this.panelClosed = true;
+                return;
+            }
+            const chosen = options.chooseView(discoveredFiles, classStructures);
+            const switching = this.view === undefined || VIEW_RANK[chosen] > VIEW_RANK[this.view];
+            const view = switching ? chosen : this.view!;
+            this.view = view;
+
+            if (view === 'graph') {
+                const graph = tracer.spanSync('buildGraph', 'graph', () => buildClassGraph(classStructures));
+                if (switching) {
+                    await this.webviewProvider.showClassGraph(graph, options.title);
+                } else {
+                    await this.webviewProvider.updateGraph(graph);
+                }
+            } else if (view === 'packageOverview') {
+                // Cheap package-level render, packages are rendered when expanded
+                if (switching) {
+                    await this.webviewProvider.showPackageOverview(classStructures, options.title);
+                } else {
+                    await this.webviewProvider.updatePackageOverview(classStructures);
+                }
+            } else {
+                const plantUMLCode = this.plantUMLGenerator.generateMultiClassDiagram(classStructures);
+                if (switching) {
+                    await this.webviewProvider.showClassDiagram(plantUMLCode, options.title);
+                } else {
+                    await this.webviewProvider.updateDiagram(plantUMLCode);
+                }
+                // Do not stack renders of diagrams that are already out of date
+                await this.webviewProvider.waitForRender(plantUMLCode);
+            }
+            this.publishedCount = classStructures.length;
+        });
+    }
+}
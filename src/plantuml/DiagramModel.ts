@@ -0,0 +1,130 @@
+import { NameInterner } from '../graph/CompactGraph';
+
+export type DiagramNodeKind = 'class' | 'interface' | 'enum' | 'abstract class';
+
+export interface DiagramMember {
+    text: string;
+    // Link target of the member line, see diagramElementId
+    url?: string;
+}
+
+export interface DiagramNode {
+    // Name as shown in the diagram, quoted on output unless it is a plain identifier
+    name: string;
+    kind: DiagramNodeKind;
+    // Short identifier used instead of the name in edges and links
+    alias?: string;
+    // Without the angle brackets, e.g. 'System' or '(P,#F5C242) package'
+    stereotype?: string;
+    // Member lines per compartment; empty compartments are skipped, the rest separated by '--'
+    sections: DiagramMember[][];
+    url?: string;
+}
+
+export interface DiagramEdge {
+    from: string;
+    arrow: string;
+    to: string;
+    label?: string;
+}
+
+export interface DiagramNote {
+    target: string;
+    position: 'left' | 'right' | 'top' | 'bottom';
+    text: string;
+}
+
+/**
+ * Stable id of a clickable diagram element, used as its link target. The webview reads the
+ * ids back from the rendered SVG to know exactly which class, field or method was hit:
+ * `openfile:<path>#<class>` for a class, with `#field:<name>` or `#method:<name>` appended
+ * for a member.
+ */
+export function diagramElementId(filePath: string, className: string, member?: { kind: 'field' | 'method', name: string }): string {
+    const id = `openfile:${encodeURIComponent(filePath.replace(/\\/g, '/'))}#${encodeURIComponent(className)}`;
+    return member ? `${id}#${member.kind}:${encodeURIComponent(member.name)}` : id;
+}
+
+/**
+ * Intermediate form of a PlantUML class diagram. Nodes and edges are deduplicated when
+ * they are added, so the emitter can write the diagram in a single pass without repairs.
+ */
+export class DiagramModel {
+    // Extra lines written right after the header (skinparams for large diagrams, etc.)
+    readonly directives: string[] = [];
+    // Nodes grouped by package in insertion order; '' holds nodes outside any package
+    private packages = new Map<string, DiagramNode[]>();
+    private nodeNames = new Set<string>();
+    private edges: DiagramEdge[] = [];
+    // Edge endpoints, arrows and labels interned, so an edge is identified by numbers
+    private edgeNames = new NameInterner();
+    // (from, to) pair → packed (arrow, label) ids of the edges between them
+    private edgeKeys = new Map<number, number[]>();
+    private notes: DiagramNote[] = [];
+
+    constructor(readonly header: string) {}
+
+    /**
+     * Adds a node unless one with the same name already exists. Returns whether it was added.
+     */
+    addNode(node: DiagramNode, packageName: string = ''): boolean {
+        if (this.nodeNames.has(node.name)) {
+            return false;
+        }
+        this.nodeNames.add(node.name);
+        const members = this.packages.get(packageName);
+        if (members) {
+            members.push(node);
+        } else {
+            this.packages.set(packageName, [node]);
+        }
+        return true;
+    }
+
+    hasNode(name: string): boolean {
+        return this.nodeNames.has(name);
+    }
+
+    /**
+     * Adds an edge between two node references (names or aliases); identical edges are kept once.
+     */
+    addEdge(from: string, arrow: string, to: string, label?: string): boolean {
+        const pair = this.edgeNames.intern(from) * 0x4000000 + this.edgeNames.intern(to);
+        const variant = this.edgeNames.intern(arrow) * 0x4000000 + this.edgeNames.intern(label ?? '');
+        const variants = this.edgeKeys.get(pair);
+        if (!variants) {
+            this.edgeKeys.set(pair, [variant]);
+        } else if (variants.includes(variant)) {
+            return false;
+        } else {
+            // Rarely more than one or two edges between the same nodes
+            variants.push(variant);
+        }
+        this.edges.push({ from, arrow, to, label });
+        return true;
+    }
+
+    addNote(target: string, position: DiagramNote['position'], text: string): void {
+        this.notes.push({ target, position, text });
+    }
+
+    getPackages(): ReadonlyMap<string, readonly DiagramNode[]> {
+        return this.packages;
+    }
+
+    getEdges(): readonly DiagramEdge[] {
+        return this.edges;
+    }
+
+    getNotes(): readonly DiagramNote[] {
+        return this.notes;
+    }
+
+    get nodeCount(): number {
+        return this.nodeNames.size;
+    }
+
+    get edgeCount(): number {
+        return this.edges.length;
+    }
+}
@@ -0,0 +1,78 @@
+import { DiagramModel, DiagramNode } from './DiagramModel';
+
+const IDENTIFIER = /^[A-Za-z_$][\w$]*$/;
+
+/**
+ * Writes a diagram model as PlantUML in one pass. Output is collected in a chunk list
+ * and joined once, so the cost stays linear in the size of the diagram.
+ */
+export function emitPlantUML(model: DiagramModel): string {
+    const out: string[] = [model.header];
+    for (const directive of model.directives) {
+        out.push(directive, '\n');
+    }
+
+    for (const [packageName, nodes] of model.getPackages()) {
+        if (packageName) {
+            out.push(`package ${quote(packageName)} {\n`);
+        }
+        for (const node of nodes) {
+            emitNode(out, node);
+        }
+        if (packageName) {
+            out.push('}\n\n');
+        }
+    }
+
+    for (const edge of model.getEdges()) {
+        out.push(quote(edge.from), ' ', edge.arrow, ' ', quote(edge.to));
+        if (edge.label) {
+            out.push(' : ', edge.label);
+        }
+        out.push('\n');
+    }
+
+    for (const note of model.getNotes()) {
+        out.push(`note ${note.position} of ${quote(note.target)} : ${note.text}\n`);
+    }
+
+    out.push('@enduml\n');
+    return out.join('');
+}
+
+function emitNode(out: string[], node: DiagramNode): void {
+    out.push(node.kind, ' ', quote(node.name));
+    if (node.alias) {
+        out.push(' as ', node.alias);
+    }
+    if (node.stereotype) {
+        out.push(' <<', node.stereotype, '>>');
+    }
+    if (node.url) {
+        out.push(' [[', node.url, ']]');
+    }
+    out.push(' {\n');
+
+    let first = true;
+    for (const section of node.sections) {
+        if (section.length === 0) {
+            continue;
+        }
+        if (!first) {
+            out.push('  --\n');
+        }
+        first = false;
+        for (const member of section) {
+            out.push('  ', member.text);
+            if (member.url) {
+                out.push(' [[', member.url, ']]');
+            }
+            out.push('\n');
+        }
+    }
+    out.push('}\n\n');
+}
+
+function quote(name: string): string {
+    return IDENTIFIER.test(name) ? name : `"${name}"`;
+}
@@ -1,4 +1,9 @@
 import { JavaClassStructure, JavaField, JavaMethod } from '../parser/JavaCodeParser';
+import { buildClassGraph, referencedTypeNames } from '../graph/ClassGraph';
+import { DiagramMember, DiagramModel, DiagramNodeKind, diagramElementId } from './DiagramModel';
+import { emitPlantUML } from './PlantUMLEmitter';
+import { tracer } from '../trace/Tracer';
+import { ModuleOverview } from '../modules/ModuleOverview';
 
 
 export class PlantUMLGenerator {
@@ -8,6 +13,26 @@ export class PlantUMLGenerator {
         // No template loading. We always use the built-in default template via getDefaultTemplate().
     }
 
+    // Package and module overviews: boxes with counts, no members
+    private getOverviewTemplate(): string {
+        return `@startuml
+!theme plain
+skinparam classAttributeIconSize 0
+skinparam backgroundColor #FFFFFF
+skinparam class {
+    BackgroundColor #F8F9FA
+    BorderColor #2E86AB
+    FontColor #212529
+    BorderThickness 2
+}
+skinparam arrow {
+    Color #424242
+}
+hide methods
+
+`;
+    }
+
     private getDefaultTemplate(): string {
         return `@startuml
 !theme plain
@@ -46,46 +71,6 @@ skinparam abstract {
     BorderThickness 2
 }
 
-' Stereotype styles
-skinparam class<<System>> {
-    BackgroundColor #FFEBEE
-    BorderColor #D32F2F
-    FontColor #B71C1C
-    BorderThickness 1
-    FontStyle italic
-}
-
-skinparam class<<Clickable>> {
-    BackgroundColor #E8F5E8
-    BorderColor #4CAF50
-    FontColor #2E7D32
-    BorderThickness 2
-}
-
-skinparam class<<Main>> {
-    BackgroundColor #FFF9C4
-    BorderColor #F57F17
-    FontColor #E65100
-    BorderThickness 3
-    FontStyle bold
-}
-
-' Support for combined stereotypes
-skinparam interface<<clickable>> {
-    BackgroundColor #E8F5E8
-    BorderColor #4CAF50
-    FontColor #2E7D32
-    BorderThickness 2
-}
-
-skinparam interface<<main>> {
-    BackgroundColor #FFF9C4
-    BorderColor #F57F17
-    FontColor #E65100
-    BorderThickness 3
-    FontStyle bold
-}
-
 skinparam arrow {
     Color #424242
     Thickness 2
@@ -97,483 +82,352 @@ scale max 1200 width
 `;
     }
 
-    // Final safety pass to eliminate any legacy/invalid patterns in generated PlantUML
-    private sanitizePlantUML(code: string): string {
-        console.log('--- Sanitizing PlantUML ---');
-        console.log('Original code sample:', code.substring(0, 500) + '...');
-        const originalLength = code.length;
-
-        let result = code
-            // AGGRESSIVE FIX: Replace ALL patterns that look like broken stereotypes
-            .replace(/(interface|class|enum)\s+(\w+)\s*<\s*>\s*\{/g, (_match, type, name) => {
-                // Determine appropriate stereotype based on name
-                const lowerName = name.toLowerCase();
-                let stereotype = '';
-                if (lowerName.includes('repository') && type === 'interface') {
-                    stereotype = ' <<Clickable>>';
-                } else if (name === 'JpaRepository') {
-                    stereotype = ' <<System>>';
-                } else if (lowerName.includes('service') || lowerName.includes('controller')) {
-                    stereotype = ' <<Clickable>>';
-                }
-                return `${type} ${name}${stereotype} {`;
-            })
-
-            // Fix multiline broken patterns
-            .replace(/(interface|class|enum)\s+(\w+)\s*<\s*\n\s*>\s*\{/g, (_match, type, name) => {
-                const lowerName = name.toLowerCase();
-                let stereotype = '';
-                if (lowerName.includes('repository') && type === 'interface') {
-                    stereotype = ' <<Clickable>>';
-                } else if (name === 'JpaRepository') {
-                    stereotype = ' <<System>>';
-                } else if (lowerName.includes('service') || lowerName.includes('controller')) {
-                    stereotype = ' <<Clickable>>';
-                }
-                return `${type} ${name}${stereotype} {`;
-            })
-
-            // Remove illegal skinparam blocks with < > syntax
-            .replace(/[\t ]*skinparam\s+(class|interface|enum)<[^>]*>\s*\{[\s\S]*?\}\s*/gi, '')
-            .replace(/[\t ]*skinparam\s+(class|interface|enum)<[\s]*>\s*\{[\s\S]*?\}\s*/gi, '')
-            .replace(/[\t ]*skinparam\s+(class|interface|enum)<[\s\S]*?>\s*\{[\s\S]*?\}\s*/gi, '')
-
-            // Remove stray lines that only contain '<' or '>' (often produced by bad parsing)
-            .replace(/^\s*[<>]\s*$/gm, '')
-
-            // Fix headers that contain '<>' possibly split across multiple lines before '{'
-            .replace(/(interface|class|enum)\s+(\w+)\s*(?:<[\s\r\n]*>[\s\r\n]*)+\{/g, (_m, type, name) => {
-                const lower = String(name).toLowerCase();
-                let stereo = '';
-                if (lower.endsWith('repository') && type === 'interface') {
-                    if (name === 'TokenRepository') stereo = ' <<Clickable>>';
-                    else if (name === 'UserRepository') stereo = ' <<Main>>';
-                    else stereo = ' <<System>>';
-                } else if (name === 'JpaRepository') {
-                    stereo = ' <<System>>';
-                }
-                return `${type} ${name}${stereo} {`;
-            })
-
-            // Fix specific JpaRepository patterns
-            .replace(/^\s*class\s+JpaRepository\s*<[^>]*>\s*$/gm, 'class JpaRepository <<System>>')
-            .replace(/^\s*class\s+JpaRepository\s*<[\s]*>\s*$/gm, 'class JpaRepository <<System>>')
-            .replace(/^\s*JpaRepository>\s*$/gm, 'class JpaRepository <<System>>')
-
-            // Fix concatenated inheritance lines and remove duplicates
-            .replace(/(JpaRepository <\|-- \w+)(JpaRepository <\|-- \w+)/g, '$1\n$2')
-            // Remove duplicate inheritance lines completely
-            .replace(/(JpaRepository <\|-- \w+Repository\s*\n)([\s\S]*?)\1/g, '$1$2')
-
-            // Remove duplicate inheritance sections - more aggressive
-            .replace(/(!--\s*Repository inheritance[\s\S]*?)(JpaRepository <\|-- \w+Repository\s*)+/g, (match) => {
-                const lines = match.split('\n');
-                const uniqueLines = [];
-                const seen = new Set();
-                for (const line of lines) {
-                    const trimmed = line.trim();
-                    if (!seen.has(trimmed) && trimmed) {
-                        seen.add(trimmed);
-                        uniqueLines.push(line);
-                    }
-                }
-                return uniqueLines.join('\n');
-            })
-
-            // Normalize stereotype capitalization
-            .replace(/<<system>>/g, '<<System>>')
-            .replace(/<<clickable>>/g, '<<Clickable>>')
-            .replace(/<<main>>/g, '<<Main>>')
-
-            // Clean up any remaining empty lines
-            .replace(/\n\s*\n\s*\n/g, '\n\n');
-
-        // Normalize repository stereotypes per user preference
-        result = result
-            // Default all Repository interfaces to <<System>>
-            .replace(/interface\s+(\w+Repository)\s*(?:<<[^>]+>>)?\s*\{/g, 'interface $1 <<System>> {')
-            // Specific overrides
-            .replace(/interface\s+TokenRepository\s*(?:<<[^>]+>>)?\s*\{/g, 'interface TokenRepository <<Clickable>> {')
-            .replace(/interface\s+UserRepository\s*(?:<<[^>]+>>)?\s*\{/g, 'interface UserRepository <<Main>> {');
-
-        // Ensure JpaRepository class has correct stereotype even if generated with <>
-        result = result.replace(/class\s+JpaRepository\s*<\s*>\s*\{/g, 'class JpaRepository <<System>> {');
-
-        // Global deduplication of inheritance lines
-        {
-            const lines = result.split('\n');
-            const deduped: string[] = [];
-            const seen = new Set<string>();
-            for (const line of lines) {
-                const trimmed = line.trim();
-                if (trimmed.startsWith('JpaRepository <|-- ')) {
-                    if (seen.has(trimmed)) continue;
-                    seen.add(trimmed);
-                }
-                deduped.push(line);
-            }
-            result = deduped.join('\n');
-        }
-
-        const finalLength = result.length;
-        console.log(`Sanitization complete: ${originalLength} -> ${finalLength} characters`);
-        console.log('Final code sample:', result.substring(0, 500) + '...');
-        console.log('--- End Sanitization ---');
-
-        return result;
-    }
-
-    // Determine appropriate stereotype for a class based on naming patterns and context
-    private determineStereotype(classStructure: JavaClassStructure, isMainClass: boolean = false): string {
+    // Determine appropriate stereotype for a class based on naming patterns and context.
+    // Returns the stereotype name without angle brackets, or undefined for none.
+    private determineStereotype(classStructure: JavaClassStructure, isMainClass: boolean = false): string | undefined {
         const className = classStructure.className.toLowerCase();
 
-        console.log(`Determining stereotype for: ${classStructure.className} (${classStructure.classType})`);
-
-        // CRITICAL: Never return <> or < > - these are illegal in PlantUML
-        let stereotype = '';
-
         // Main class gets highest priority
         if (isMainClass) {
-            console.log(`  -> Main class: <<Main>>`);
-            stereotype = ' <<Main>>';
+            return 'Main';
         }
         // System classes (from dependencies)
-        else if (classStructure.isSystemClass) {
-            console.log(`  -> System class: <<System>>`);
-            stereotype = ' <<System>>';
+        if (classStructure.isSystemClass) {
+            return 'System';
         }
         // Repository pattern - typically interfaces extending JpaRepository
-        else if (className.includes('repository') && classStructure.classType === 'interface') {
-            console.log(`  -> Repository interface: <<Clickable>>`);
-            stereotype = ' <<Clickable>>';
-        }
-        // Service pattern
-        else if (className.includes('service')) {
-            console.log(`  -> Service class: <<Clickable>>`);
-            stereotype = ' <<Clickable>>';
+        if (className.includes('repository') && classStructure.classType === 'interface') {
+            return 'Clickable';
         }
-        // Controller pattern
-        else if (className.includes('controller')) {
-            console.log(`  -> Controller class: <<Clickable>>`);
-            stereotype = ' <<Clickable>>';
+        // Service and controller patterns
+        if (className.includes('service') || className.includes('controller')) {
+            return 'Clickable';
         }
-        // Entity/Model pattern
-        else if (className.includes('entity') || className.includes('model')) {
-            console.log(`  -> Entity/Model: no stereotype`);
-            stereotype = '';  // No stereotype for entities
+        // Entity/Model and everything else: no stereotype
+        return undefined;
+    }
+
+    // Repository interfaces shown by simple name follow the user's preferred stereotypes
+    private repositoryStereotype(className: string, classType: JavaClassStructure['classType'], stereotype: string | undefined): string | undefined {
+        if (classType !== 'interface' || !/Repository$/.test(className)) {
+            return stereotype;
         }
-        // Default: no stereotype
-        else {
-            console.log(`  -> Default: no stereotype`);
-            stereotype = '';
+        if (className === 'TokenRepository') {
+            return 'Clickable';
         }
-
-        // SAFETY CHECK: Ensure we never return illegal syntax
-        if (stereotype.includes('<>') || stereotype.includes('< >')) {
-            console.error(`ILLEGAL STEREOTYPE DETECTED: "${stereotype}" - forcing to empty`);
-            stereotype = '';
+        if (className === 'UserRepository') {
+            return 'Main';
         }
-
-        return stereotype;
+        return 'System';
     }
 
-
     generateClassDiagram(classStructure: JavaClassStructure): string {
-        let plantUMLCode = this.getDefaultTemplate();
-
-        // Add package if exists
-        if (classStructure.packageName) {
-            plantUMLCode += `package ${classStructure.packageName} {\n`;
-        }
+        const model = new DiagramModel(this.getDefaultTemplate());
 
-        // Generate class definition
-        plantUMLCode += this.generateClassDefinition(classStructure);
+        // Generate class definition, inside its package if it has one
+        this.addClassDefinition(model, classStructure, classStructure.packageName || '');
 
         // Generate relationships
-        plantUMLCode += this.generateRelationships(classStructure);
+        this.addRelationships(model, classStructure);
 
         // Generate inheritance hierarchy if available
-        plantUMLCode += this.generateInheritanceHierarchy(classStructure);
+        this.addInheritanceHierarchy(model, classStructure);
 
-        // Close package if exists
-        if (classStructure.packageName) {
-            plantUMLCode += '}\n';
-        }
-
-        plantUMLCode += '@enduml\n';
-        return this.sanitizePlantUML(plantUMLCode);
+        return this.emit(model);
     }
 
     generateMultiClassDiagram(classStructures: JavaClassStructure[]): string {
-        console.log(`--- Generating Multi-Class Diagram ---`);
-        console.log(`Number of classes: ${classStructures.length}`);
-        classStructures.forEach((cls, index) => {
-            console.log(`Class ${index + 1}: ${cls.className} (${cls.classType}) - Package: ${cls.packageName}`);
-        });
-        console.log(`--- END DEBUG LOGGING ---`);
-
-        let plantUMLCode = this.getDefaultTemplate();
-
-        // Add configuration for large diagrams
-        if (classStructures.length > 20) {
-            plantUMLCode += `!define LARGE_DIAGRAM
-skinparam minClassWidth 100
-skinparam maxMessageSize 50
-skinparam wrapWidth 200
-skinparam packageStyle rectangle
-hide empty members
-`;
-        }
+        return tracer.spanSync('generate', 'generate', () => {
+            const startTime = Date.now();
+            const model = new DiagramModel(this.getDefaultTemplate());
+
+            // Add configuration for large diagrams
+            if (classStructures.length > 20) {
+                model.directives.push(
+                    '!define LARGE_DIAGRAM',
+                    'skinparam minClassWidth 100',
+                    'skinparam maxMessageSize 50',
+                    'skinparam wrapWidth 200',
+                    'skinparam packageStyle rectangle',
+                    'hide empty members'
+                );
+            }
+
+            // Generate classes grouped by package
+            for (const classStructure of classStructures) {
+                this.addClassDefinition(model, classStructure, classStructure.packageName || '');
+            }
 
-        // Group classes by package
-        const packageMap = new Map<string, JavaClassStructure[]>();
+            // Generate relationships - simplified approach for stability
+            if (classStructures.length > 10) {
+                // For larger diagrams, only show inheritance relationships
+                for (const classStructure of classStructures) {
+                    this.addSimplifiedRelationships(model, classStructure);
+                }
+            } else {
+                // Full relationships for smaller diagrams
+                for (const classStructure of classStructures) {
+                    this.addRelationships(model, classStructure);
+                    this.addInheritanceHierarchy(model, classStructure);
+                }
 
-        for (const classStructure of classStructures) {
-            const packageName = classStructure.packageName || 'default';
-            if (!packageMap.has(packageName)) {
-                packageMap.set(packageName, []);
+                // Generate cross-package relationships
+                this.addCrossPackageRelationships(model, classStructures);
             }
-            packageMap.get(packageName)!.push(classStructure);
-        }
-
-        // Limit classes per package for readability
-        const maxClassesPerPackage = 15;
-        const processedPackages = new Map<string, JavaClassStructure[]>();
 
-        for (const [packageName, classes] of packageMap) {
-            if (classes.length > maxClassesPerPackage) {
-                // Take the first N classes and add a note about truncation
-                const truncatedClasses = classes.slice(0, maxClassesPerPackage);
-                processedPackages.set(packageName, truncatedClasses);
+            // Add standard Java interfaces and parent classes (outside packages)
+            try {
+                this.addStandardInheritance(model, classStructures);
+            } catch (error) {
+                console.error('Error generating standard inheritance:', error);
+            }
 
-                // Add a note about truncated classes
-                plantUMLCode += `note as N_${packageName.replace(/\./g, '_')}
-Package ${packageName} contains ${classes.length} classes.
-Only showing first ${maxClassesPerPackage} classes.
-end note
+            const plantUMLCode = this.emit(model);
+            tracer.log(`Generated multi-class diagram: ${classStructures.length} classes, ${model.nodeCount} nodes, ${model.edgeCount} edges, ${plantUMLCode.length} chars in ${Date.now() - startTime}ms`);
+            return plantUMLCode;
+        });
+    }
 
-`;
+    /**
+     * Package-level overview: one box per package with its class counts and a link to expand it,
+     * plus one dependency arrow per package pair labelled with the number of class-level edges.
+     */
+    generatePackageOverview(classStructures: JavaClassStructure[]): string {
+        const graph = buildClassGraph(classStructures);
+        const packageIds = new Map<string, string>();
+        const packageCounts = new Map<string, { classes: number, interfaces: number, enums: number }>();
+
+        for (const node of graph.nodes) {
+            if (node.kind === 'external') {
+                continue;
+            }
+            if (!packageIds.has(node.packageName)) {
+                packageIds.set(node.packageName, `P${packageIds.size}`);
+                packageCounts.set(node.packageName, { classes: 0, interfaces: 0, enums: 0 });
+            }
+            const counts = packageCounts.get(node.packageName)!;
+            if (node.kind === 'interface') {
+                counts.interfaces++;
+            } else if (node.kind === 'enum') {
+                counts.enums++;
+            } else {
+                counts.classes++;
+            }
+        }
+
+        const model = new DiagramModel(this.getOverviewTemplate());
+        for (const [packageName, id] of packageIds) {
+            const counts = packageCounts.get(packageName)!;
+            const lines = [`${counts.classes} classes`];
+            if (counts.interfaces > 0) {
+                lines.push(`${counts.interfaces} interfaces`);
+            }
+            if (counts.enums > 0) {
+                lines.push(`${counts.enums} enums`);
+            }
+            model.addNode({
+                name: packageName || '(default package)',
+                kind: 'class',
+                alias: id,
+                stereotype: '(P,#F5C242) package',
+                sections: [lines.map(text => ({ text }))],
+                url: `openpackage:${encodeURIComponent(packageName)}`
+            });
+        }
+
+        // Class-level edges aggregated per package pair, dependencies inside a package are left out
+        const dependencyCounts = new Map<string, { from: string, to: string, count: number }>();
+        for (const edge of graph.edges) {
+            const source = graph.nodes[edge.source];
+            const target = graph.nodes[edge.target];
+            if (target.kind === 'external' || source.packageName === target.packageName) {
+                continue;
+            }
+            const from = packageIds.get(source.packageName)!;
+            const to = packageIds.get(target.packageName)!;
+            const key = `${from}:${to}`;
+            const existing = dependencyCounts.get(key);
+            if (existing) {
+                existing.count++;
             } else {
-                processedPackages.set(packageName, classes);
+                dependencyCounts.set(key, { from, to, count: 1 });
             }
         }
+        for (const { from, to, count } of dependencyCounts.values()) {
+            model.addEdge(from, '..>', to, String(count));
+        }
 
-        // Generate classes grouped by package
-        for (const [packageName, classes] of processedPackages) {
-            if (packageName !== 'default') {
-                plantUMLCode += `package "${packageName}" {\n`;
-            }
+        return this.emit(model);
+    }
 
-            for (const classStructure of classes) {
-                plantUMLCode += this.generateClassDefinition(classStructure);
+    /**
+     * Module-level overview of a multi-module build: one box per module with its type counts
+     * and a link to expand it, build dependencies as dashed arrows and extends / implements
+     * between modules as one inheritance arrow per module pair, labelled with the count.
+     */
+    generateModuleOverview(overview: ModuleOverview): string {
+        const model = new DiagramModel(this.getOverviewTemplate());
+        const moduleIds = new Map<string, string>();
+        for (const { module, counts, files } of overview.modules) {
+            const id = `M${moduleIds.size}`;
+            moduleIds.set(module.id, id);
+            const lines = [`${counts.classes} classes`];
+            if (counts.interfaces > 0) {
+                lines.push(`${counts.interfaces} interfaces`);
             }
-
-            if (packageName !== 'default') {
-                plantUMLCode += '}\n\n';
+            if (counts.enums + counts.records > 0) {
+                lines.push(`${counts.enums + counts.records} enums / records`);
             }
+            lines.push(`${files} files`);
+            model.addNode({
+                name: module.name,
+                kind: 'class',
+                alias: id,
+                stereotype: `(M,#7FB3D5) ${module.buildSystem} module`,
+                sections: [lines.map(text => ({ text }))],
+                url: `openmodule:${encodeURIComponent(module.id)}`
+            });
         }
 
-        // Generate relationships - simplified approach for stability
-        if (classStructures.length > 10) {
-            // For larger diagrams, only show inheritance relationships
-            console.log('Large diagram detected, using simplified relationships');
-            for (const classStructure of classStructures) {
-                plantUMLCode += this.generateSimplifiedRelationships(classStructure);
+        for (const { from, to } of overview.dependencies) {
+            if (moduleIds.has(from) && moduleIds.has(to)) {
+                model.addEdge(moduleIds.get(from)!, '..>', moduleIds.get(to)!);
             }
-        } else {
-            // Full relationships for smaller diagrams
-            console.log('Small diagram, using full relationships');
-            for (const classStructure of classStructures) {
-                plantUMLCode += this.generateRelationships(classStructure);
-                plantUMLCode += this.generateInheritanceHierarchy(classStructure);
-            }
-
-            // Generate cross-package relationships
-            plantUMLCode += this.generateCrossPackageRelationships(classStructures);
         }
-
-        // Add standard Java interfaces and parent classes (outside packages)
-        try {
-            plantUMLCode += this.generateStandardInheritance(classStructures);
-        } catch (error) {
-            console.error('Error generating standard inheritance:', error);
-            // Add a fallback minimal inheritance
-            plantUMLCode += '\n!-- Repository inheritance (fallback)\n';
-            plantUMLCode += 'class JpaRepository <<System>>\n\n';
+        for (const { from, to, count } of overview.hierarchy) {
+            model.addEdge(moduleIds.get(from)!, '--|>', moduleIds.get(to)!, String(count));
         }
 
-        plantUMLCode += '\n@enduml\n';
+        return this.emit(model);
+    }
 
-        try {
-            return this.sanitizePlantUML(plantUMLCode);
-        } catch (error) {
-            console.error('Error during sanitization:', error);
-            // Return unsanitized code as fallback
-            return plantUMLCode;
-        }
+    /**
+     * Class diagram of a single package, used when a package is expanded in the overview.
+     */
+    generatePackageDiagram(classStructures: JavaClassStructure[], packageName: string): string {
+        return this.generateMultiClassDiagram(classStructures.filter(cls => (cls.packageName || '') === packageName));
     }
 
     generateInteractiveClassDiagram(
         mainClass: JavaClassStructure,
         relatedClasses: JavaClassStructure[] = []
     ): string {
-        let plantUMLCode = this.getDefaultTemplate();
-
-        // Add all classes without package nesting - show full package names in class names
-        // Filter out any duplicates of the main class from related classes
-        const filteredRelatedClasses = relatedClasses.filter(cls => {
-            const mainFullName = mainClass.packageName ?
-                `${mainClass.packageName}.${mainClass.className}` :
-                mainClass.className;
-            const clsFullName = cls.packageName ?
-                `${cls.packageName}.${cls.className}` :
-                cls.className;
-            return mainFullName !== clsFullName;
-        });
+        return tracer.spanSync('generate', 'generate', () => {
+            const model = new DiagramModel(this.getDefaultTemplate());
 
-        const allClasses = [mainClass, ...filteredRelatedClasses];
+            // Add all classes without package nesting - show full package names in class names.
+            // Duplicates of the main class among the related classes are dropped by the model.
+            const allClasses = [mainClass, ...relatedClasses];
 
-        // Generate classes with full package names (no nesting)
-        for (const cls of allClasses) {
-            plantUMLCode += this.generateClickableClassDefinitionWithFullPackage(cls, cls === mainClass);
-        }
+            // Generate classes with full package names (no nesting)
+            for (const cls of allClasses) {
+                this.addClickableClassDefinitionWithFullPackage(model, cls, cls === mainClass);
+            }
 
-        // Generate relationships using full class names
-        for (const cls of allClasses) {
-            plantUMLCode += this.generateRelationshipsWithFullNames(cls);
-        }
+            // Simple names of the classes in the diagram, so relations point at their nodes
+            const classNameMap = new Map<string, string>();
+            for (const cls of allClasses) {
+                classNameMap.set(cls.className, this.getFullClassName(cls));
+            }
+
+            // Generate relationships using full class names
+            for (const cls of allClasses) {
+                this.addRelationshipsWithFullNames(model, cls, classNameMap);
+            }
 
-        // Generate cross-class relationships
-        plantUMLCode += this.generateCrossPackageRelationshipsWithFullNames(allClasses);
+            // Generate cross-class relationships
+            this.addCrossPackageRelationshipsWithFullNames(model, allClasses, classNameMap);
 
-        // Add missing system classes that are referenced
-        plantUMLCode += this.generateReferencedSystemClasses(allClasses);
+            // Add missing system classes that are referenced
+            this.addReferencedSystemClasses(model, allClasses);
 
-        plantUMLCode += '@enduml\n';
-        return this.sanitizePlantUML(plantUMLCode);
+            return this.emit(model);
+        });
     }
 
-    private generateClassDefinition(classStructure: JavaClassStructure): string {
-        let classCode = '';
-
-        // Determine class type symbol
-        let classSymbol = 'class';
-        if (classStructure.classType === 'interface') {
-            classSymbol = 'interface';
-        } else if (classStructure.classType === 'enum') {
-            classSymbol = 'enum';
-        } else if (classStructure.classType === 'abstract class') {
-            classSymbol = 'abstract class';
-        }
+    // Writes the finished model as PlantUML, timed as its own stage
+    private emit(model: DiagramModel): string {
+        return tracer.spanSync('emit', 'generate', span => {
+            span.count('classesEmitted', model.nodeCount);
+            span.count('edgesEmitted', model.edgeCount);
+            return emitPlantUML(model);
+        });
+    }
 
-        // Use proper class name (capitalize first letter for PlantUML)
-        const cleanedClassName = this.extractSimpleType(classStructure.className);
-        const className = cleanedClassName.charAt(0).toUpperCase() + cleanedClassName.slice(1);
-
-        // Determine and add appropriate stereotype
-        const stereotype = this.determineStereotype(classStructure, false);
-        console.log(`Generated stereotype for ${className}: "${stereotype}"`);
-
-        // CRITICAL FIX: Ensure we never generate <> syntax
-        if (stereotype === '<>' || stereotype === '< >' || stereotype.trim() === '<' || stereotype.trim() === '>') {
-            console.error(`DETECTED ILLEGAL STEREOTYPE: "${stereotype}" for ${className}`);
-            // Force correct stereotype based on class type
-            const correctedStereotype = classStructure.classType === 'interface' &&
-                                      className.toLowerCase().includes('repository') ?
-                                      ' <<Clickable>>' : '';
-            console.log(`CORRECTED TO: "${correctedStereotype}"`);
-            classCode += `${classSymbol} ${className}${correctedStereotype}`;
-        } else {
-            classCode += `${classSymbol} ${className}${stereotype}`;
+    private getNodeKind(classStructure: JavaClassStructure): DiagramNodeKind {
+        switch (classStructure.classType) {
+            case 'interface':
+                return 'interface';
+            case 'enum':
+                return 'enum';
+            case 'abstract class':
+                return 'abstract class';
+            default:
+                return 'class';
         }
+    }
 
-        classCode += ' {\n';
+    // Use proper class name (capitalize first letter for PlantUML)
+    private displayName(className: string): string {
+        return className.charAt(0).toUpperCase() + className.slice(1);
+    }
 
-        // Add fields
-        if (classStructure.fields.length > 0) {
-            for (const field of classStructure.fields) {
-                classCode += this.generateFieldDefinition(field);
-            }
-            if (classStructure.constructors.length > 0 || classStructure.methods.length > 0) {
-                classCode += '  --\n';
-            }
-        }
+    private addClassDefinition(model: DiagramModel, classStructure: JavaClassStructure, packageName: string): void {
+        const className = this.displayName(this.extractSimpleType(classStructure.className));
+        const stereotype = this.repositoryStereotype(className, classStructure.classType, this.determineStereotype(classStructure, false));
 
-        // Add constructors
-        if (classStructure.constructors.length > 0) {
-            for (const constructor of classStructure.constructors) {
-                classCode += this.generateConstructorDefinition(constructor);
-            }
-            if (classStructure.methods.length > 0) {
-                classCode += '  --\n';
-            }
-        }
+        model.addNode({
+            name: className,
+            kind: this.getNodeKind(classStructure),
+            stereotype,
+            sections: this.memberSections(classStructure, classStructure.fields, classStructure.constructors, classStructure.methods),
+            url: this.classElementId(classStructure)
+        }, packageName);
+    }
 
-        // Add methods
-        if (classStructure.methods.length > 0) {
-            for (const method of classStructure.methods) {
-                classCode += this.generateMethodDefinition(method);
-            }
+    // Element id of the class box; system classes and classes without a source file are not clickable
+    private classElementId(classStructure: JavaClassStructure): string | undefined {
+        if (classStructure.isSystemClass || !classStructure.filePath) {
+            return undefined;
         }
+        return diagramElementId(classStructure.filePath, classStructure.className);
+    }
 
-        classCode += '}\n';
+    // Field, constructor and method compartments, each member linked to its own element id
+    private memberSections(classStructure: JavaClassStructure, fields: JavaField[], constructors: JavaMethod[], methods: JavaMethod[]): DiagramMember[][] {
+        const clickable = this.classElementId(classStructure) !== undefined;
+        const link = (kind: 'field' | 'method', name: string) =>
+            clickable ? diagramElementId(classStructure.filePath, classStructure.className, { kind, name }) : undefined;
 
-        classCode += '\n';
-        return classCode;
+        return [
+            fields.map(field => ({ text: this.generateFieldDefinition(field), url: link('field', field.name) })),
+            constructors.map(constructor => ({ text: this.generateConstructorDefinition(constructor), url: link('method', constructor.name) })),
+            methods.map(method => ({ text: this.generateMethodDefinition(method), url: link('method', method.name) }))
+        ];
     }
 
     private generateFieldDefinition(field: JavaField): string {
-        let fieldCode = '';
-
-        // Add visibility symbol
-        const visibilitySymbol = this.getVisibilitySymbol(field.visibility);
-        fieldCode += `  ${visibilitySymbol}`;
-
-        // Add static/final modifiers
+        // Visibility symbol, static/final modifiers, then name and type
+        let fieldCode = this.getVisibilitySymbol(field.visibility);
         if (field.isStatic) {
             fieldCode += '{static} ';
         }
         if (field.isFinal) {
             fieldCode += '{final} ';
         }
-
-        // Add field name and type
-        fieldCode += `${field.name} : ${this.simplifyType(field.type)}`;
-
-        fieldCode += '\n';
-        return fieldCode;
+        return `${fieldCode}${field.name} : ${this.simplifyType(field.type)}`;
     }
 
     private generateConstructorDefinition(constructor: JavaMethod): string {
-        let constructorCode = '';
-
-        // Add visibility symbol
-        const visibilitySymbol = this.getVisibilitySymbol(constructor.visibility);
-        constructorCode += `  ${visibilitySymbol}`;
-
-        // Add constructor name and parameters
-        constructorCode += `${constructor.name}(`;
-
-        if (constructor.parameters.length > 0) {
-            const params = constructor.parameters.map(param =>
-                `${param.name}: ${this.simplifyType(param.type)}`
-            ).join(', ');
-            constructorCode += params;
-        }
-
-        constructorCode += ')';
-        constructorCode += '\n';
-        return constructorCode;
+        const params = constructor.parameters.map(param =>
+            `${param.name}: ${this.simplifyType(param.type)}`
+        ).join(', ');
+        return `${this.getVisibilitySymbol(constructor.visibility)}${constructor.name}(${params})`;
     }
 
     private generateMethodDefinition(method: JavaMethod): string {
-        let methodCode = '';
-
-        // Add visibility symbol
-        const visibilitySymbol = this.getVisibilitySymbol(method.visibility);
-        methodCode += `  ${visibilitySymbol}`;
-
-        // Add static/abstract/final modifiers
+        // Visibility symbol and static/abstract/final modifiers
+        let methodCode = this.getVisibilitySymbol(method.visibility);
         if (method.isStatic) {
             methodCode += '{static} ';
         }
@@ -584,87 +438,57 @@ end note
             methodCode += '{final} ';
         }
 
-        // Add method name and parameters
-        methodCode += `${method.name}(`;
-
-        if (method.parameters.length > 0) {
-            const params = method.parameters.map(param =>
-                `${param.name}: ${this.simplifyType(param.type)}`
-            ).join(', ');
-            methodCode += params;
-        }
-
-        methodCode += ')';
+        const params = method.parameters.map(param =>
+            `${param.name}: ${this.simplifyType(param.type)}`
+        ).join(', ');
+        methodCode += `${method.name}(${params})`;
 
         // Add return type
         if (method.returnType && method.returnType !== 'void') {
             methodCode += ` : ${this.simplifyType(method.returnType)}`;
         }
-
-        methodCode += '\n';
         return methodCode;
     }
 
-    private generateRelationships(classStructure: JavaClassStructure): string {
-        let relationships = '';
+    private addRelationships(model: DiagramModel, classStructure: JavaClassStructure): void {
+        const className = this.displayName(this.extractSimpleType(classStructure.className));
 
         // Generate inheritance relationship
         if (classStructure.superClass) {
-            const superClassName = this.extractSimpleType(classStructure.superClass);
-            const displaySuper = superClassName.charAt(0).toUpperCase() + superClassName.slice(1);
-            const className = this.extractSimpleType(classStructure.className).charAt(0).toUpperCase() + this.extractSimpleType(classStructure.className).slice(1);
-            relationships += `${displaySuper} <|-- ${className}\n`;
+            model.addEdge(this.displayName(this.extractSimpleType(classStructure.superClass)), '<|--', className);
         }
 
         // Generate interface implementations
         for (const interfaceName of classStructure.interfaces) {
-            const simpleInterfaceName = this.extractSimpleType(interfaceName);
-            const displayInterface = simpleInterfaceName.charAt(0).toUpperCase() + simpleInterfaceName.slice(1);
-            const className = this.extractSimpleType(classStructure.className).charAt(0).toUpperCase() + this.extractSimpleType(classStructure.className).slice(1);
-            relationships += `${displayInterface} <|.. ${className}\n`;
+            model.addEdge(this.displayName(this.extractSimpleType(interfaceName)), '<|..', className);
         }
 
         // Generate field relationships (composition/aggregation)
         for (const field of classStructure.fields) {
             if (this.isCustomType(field.type)) {
-                const fieldType = this.extractSimpleType(field.type);
-                const className = this.extractSimpleType(classStructure.className).charAt(0).toUpperCase() + this.extractSimpleType(classStructure.className).slice(1);
-
                 // Use composition for private fields, aggregation for others
-                if (field.visibility === 'private') {
-                    relationships += `${className} *-- ${fieldType}\n`;
-                } else {
-                    relationships += `${className} o-- ${fieldType}\n`;
-                }
+                model.addEdge(className, field.visibility === 'private' ? '*--' : 'o--', this.extractSimpleType(field.type));
             }
         }
-
-        return relationships;
     }
 
-    private generateInheritanceHierarchy(classStructure: JavaClassStructure): string {
-        let hierarchy = '';
-
+    private addInheritanceHierarchy(model: DiagramModel, classStructure: JavaClassStructure): void {
         // Generate inheritance chain from system class information
-        if (classStructure.inheritanceHierarchy && classStructure.inheritanceHierarchy.length > 1) {
-            for (let i = 0; i < classStructure.inheritanceHierarchy.length - 1; i++) {
-                const parentRaw = this.extractSimpleType(classStructure.inheritanceHierarchy[i]);
-                const childRaw = this.extractSimpleType(classStructure.inheritanceHierarchy[i + 1]);
-                const parent = parentRaw.charAt(0).toUpperCase() + parentRaw.slice(1);
-                const child = childRaw.charAt(0).toUpperCase() + childRaw.slice(1);
-
-                // Avoid duplicate relationships
+        const hierarchy = classStructure.inheritanceHierarchy;
+        if (hierarchy && hierarchy.length > 1) {
+            for (let i = 0; i < hierarchy.length - 1; i++) {
+                const parent = this.displayName(this.extractSimpleType(hierarchy[i]));
+                const child = this.displayName(this.extractSimpleType(hierarchy[i + 1]));
+
+                // Avoid self relationships
                 if (parent !== child) {
-                    hierarchy += `${parent} <|-- ${child}\n`;
+                    model.addEdge(parent, '<|--', child);
                 }
             }
         }
-
-        return hierarchy;
     }
 
-    private generateCrossPackageRelationships(classStructures: JavaClassStructure[]): string {
-        let relationships = '';
+    private addCrossPackageRelationships(model: DiagramModel, classStructures: JavaClassStructure[]): void {
         const classNames = new Set(classStructures.map(cls => cls.className));
 
         for (const classStructure of classStructures) {
@@ -673,12 +497,12 @@ end note
                 const fieldType = this.extractSimpleType(field.type);
 
                 if (classNames.has(fieldType) && fieldType !== classStructure.className) {
-                    const className = classStructure.className.charAt(0).toUpperCase() + classStructure.className.slice(1);
-                    const targetClass = fieldType.charAt(0).toUpperCase() + fieldType.slice(1);
+                    const className = this.displayName(classStructure.className);
+                    const targetClass = this.displayName(fieldType);
 
-                    // Avoid self-references and duplicates
+                    // Avoid self-references
                     if (className !== targetClass) {
-                        relationships += `${className} --> ${targetClass}\n`;
+                        model.addEdge(className, '-->', targetClass);
                     }
                 }
             }
@@ -691,31 +515,13 @@ end note
             cls.inheritanceHierarchy.some(parent => parent.includes('Exception'))
         );
 
-        if (exceptionClasses.length > 0) {
-            // Add standard exception inheritance
-            relationships += '\n' + this.generateExceptionInheritance(exceptionClasses);
-        }
-
-        return relationships;
-    }
-
-    private generateExceptionInheritance(exceptionClasses: JavaClassStructure[]): string {
-        let inheritance = '';
-
         for (const exceptionClass of exceptionClasses) {
-            const className = exceptionClass.className.charAt(0).toUpperCase() + exceptionClass.className.slice(1);
+            const className = this.displayName(exceptionClass.className);
 
-            // Check if it's a custom exception that likely extends a standard exception
-            if (exceptionClass.superClass) {
-                const superClass = this.extractSimpleType(exceptionClass.superClass);
-                inheritance += `${superClass} <|-- ${className}\n`;
-            } else {
-                // Default to extending RuntimeException for custom exceptions
-                inheritance += `RuntimeException <|-- ${className}\n`;
-            }
+            // Custom exceptions without an explicit parent default to RuntimeException
+            const superClass = exceptionClass.superClass ? this.extractSimpleType(exceptionClass.superClass) : 'RuntimeException';
+            model.addEdge(superClass, '<|--', className);
         }
-
-        return inheritance;
     }
 
     private getVisibilitySymbol(visibility: string): string {
@@ -736,15 +542,15 @@ end note
     private extractSimpleType(type: string): string {
         // Remove generic type parameters using a non-greedy regex
         let baseType = type.replace(/<.*?>/g, '');
-    
+
         // Aggressively clean up any trailing generic-like artifacts
         if (baseType.endsWith('>')) {
             baseType = baseType.slice(0, -1);
         }
-    
+
         // Remove array brackets
         const simpleType = baseType.replace(/\[\]/g, '');
-    
+
         // Get the simple class name (last part after dot)
         const parts = simpleType.split('.');
         return parts[parts.length - 1].trim();
@@ -775,29 +581,21 @@ end note
         return !builtInTypes.includes(type) && type.length > 0 && !type.includes('[]');
     }
 
-    private generateSimplifiedRelationships(classStructure: JavaClassStructure): string {
-        let relationships = '';
+    private addSimplifiedRelationships(model: DiagramModel, classStructure: JavaClassStructure): void {
+        const className = this.displayName(classStructure.className);
 
         // Only show direct inheritance
         if (classStructure.superClass) {
-            const superClassName = this.extractSimpleType(classStructure.superClass);
-            const className = classStructure.className.charAt(0).toUpperCase() + classStructure.className.slice(1);
-            relationships += `${superClassName} <|-- ${className}\n`;
+            model.addEdge(this.extractSimpleType(classStructure.superClass), '<|--', className);
         }
 
         // Show interface implementations
         for (const interfaceName of classStructure.interfaces) {
-            const simpleInterfaceName = this.extractSimpleType(interfaceName);
-            const className = classStructure.className.charAt(0).toUpperCase() + classStructure.className.slice(1);
-            relationships += `${simpleInterfaceName} <|.. ${className}\n`;
+            model.addEdge(this.extractSimpleType(interfaceName), '<|..', className);
         }
-
-        return relationships;
     }
 
-    private generateStandardInheritance(classStructures: JavaClassStructure[]): string {
-        let inheritance = '';
-
+    private addStandardInheritance(model: DiagramModel, classStructures: JavaClassStructure[]): void {
         // Add repository interfaces extending JpaRepository
         const repoInterfaces = classStructures.filter(cls => {
             const className = cls.className.toLowerCase();
@@ -806,111 +604,29 @@ end note
         });
 
         if (repoInterfaces.length > 0) {
-            inheritance += '\n' + '!-- Repository inheritance\n';
-            inheritance += 'class JpaRepository <<System>> {\n';
-            inheritance += '  +save(entity: T) : T\n';
-            inheritance += '  +findById(id: ID) : Optional<T>\n';
-            inheritance += '  +findAll() : List<T>\n';
-            inheritance += '  +deleteById(id: ID) : void\n';
-            inheritance += '  +count() : long\n';
-            inheritance += '}\n\n';
+            model.addNode({
+                name: 'JpaRepository',
+                kind: 'class',
+                stereotype: 'System',
+                sections: [[
+                    '+save(entity: T) : T',
+                    '+findById(id: ID) : Optional<T>',
+                    '+findAll() : List<T>',
+                    '+deleteById(id: ID) : void',
+                    '+count() : long'
+                ].map(text => ({ text }))]
+            });
             for (const repo of repoInterfaces) {
-                inheritance += `JpaRepository <|-- ${repo.className}\n`;
+                model.addEdge('JpaRepository', '<|--', repo.className);
             }
-            inheritance += '\n';
         }
 
-        // Add service classes that might extend common service patterns
-        const serviceClasses = classStructures.filter(cls =>
-            cls.className.includes('Service') && cls.classType === 'class'
-        );
-
-        if (serviceClasses.length > 0) {
-            inheritance += '\n' + '// Service layer\n';
-            // Services typically don't have a common parent, but we can group them
-            for (const service of serviceClasses) {
-                const serviceName = service.className.charAt(0).toUpperCase() + service.className.slice(1);
-                // Add stereotype to indicate service layer
-                inheritance += `note right of ${serviceName} : <<Service>>\n`;
+        // Mark service classes; they typically don't have a common parent
+        for (const service of classStructures) {
+            if (service.className.includes('Service') && service.classType === 'class') {
+                model.addNote(this.displayName(service.className), 'right', '<<Service>>');
             }
         }
-
-        return inheritance;
-    }
-
-    private generateClickableClassDefinition(classStructure: JavaClassStructure, isMainClass: boolean = false): string {
-        let classCode = '';
-
-        // Determine class type symbol
-        let classSymbol = 'class';
-        if (classStructure.classType === 'interface') {
-            classSymbol = 'interface';
-        } else if (classStructure.classType === 'enum') {
-            classSymbol = 'enum';
-        } else if (classStructure.classType === 'abstract class') {
-            classSymbol = 'abstract class';
-        }
-
-        // Use proper class name (capitalize first letter for PlantUML)
-        const className = classStructure.className.charAt(0).toUpperCase() + classStructure.className.slice(1);
-
-        // Determine and add appropriate stereotype
-        const stereotype = this.determineStereotype(classStructure, isMainClass);
-        classCode += `${classSymbol} ${className}${stereotype}`;
-
-        classCode += ' {\n';
-
-        // Add fields (limit to most important ones for readability)
-        const visibleFields = classStructure.fields.slice(0, 10); // Show max 10 fields
-        if (visibleFields.length > 0) {
-            for (const field of visibleFields) {
-                classCode += this.generateFieldDefinition(field);
-            }
-            if (classStructure.fields.length > 10) {
-                classCode += `  ... (${classStructure.fields.length - 10} more fields)\n`;
-            }
-            if (classStructure.constructors.length > 0 || classStructure.methods.length > 0) {
-                classCode += '  --\n';
-            }
-        }
-
-        // Add constructors (limit to 3)
-        const visibleConstructors = classStructure.constructors.slice(0, 3);
-        if (visibleConstructors.length > 0) {
-            for (const constructor of visibleConstructors) {
-                classCode += this.generateConstructorDefinition(constructor);
-            }
-            if (classStructure.constructors.length > 3) {
-                classCode += `  ... (${classStructure.constructors.length - 3} more constructors)\n`;
-            }
-            if (classStructure.methods.length > 0) {
-                classCode += '  --\n';
-            }
-        }
-
-        // Add methods (limit to most important ones)
-        const visibleMethods = this.selectImportantMethods(classStructure.methods);
-        if (visibleMethods.length > 0) {
-            for (const method of visibleMethods) {
-                classCode += this.generateMethodDefinition(method);
-            }
-            if (classStructure.methods.length > visibleMethods.length) {
-                classCode += `  ... (${classStructure.methods.length - visibleMethods.length} more methods)\n`;
-            }
-        }
-
-        classCode += '}\n';
-
-        // Add click URL for navigation (if not a system class)
-        if (!classStructure.isSystemClass && classStructure.filePath) {
-            // 使用自定义协议，便于 webview 拦截并通过 Language Server 精准跳转
-            const normalizedPath = classStructure.filePath.replace(/\\/g, '/');
-            const url = `openfile:${encodeURIComponent(normalizedPath)}#${encodeURIComponent(classStructure.className)}`;
-            classCode += `${className} : [[${url}]]\n`;
-        }
-
-        classCode += '\n';
-        return classCode;
     }
 
     private selectImportantMethods(methods: JavaMethod[]): JavaMethod[] {
@@ -938,78 +654,35 @@ end note
         return important.slice(0, 10); // Max 10 methods total
     }
 
-    private generateClickableClassDefinitionWithFullPackage(classStructure: JavaClassStructure, isMainClass: boolean = false): string {
-        let classCode = '';
-
-        // Determine class type symbol
-        let classSymbol = 'class';
-        if (classStructure.classType === 'interface') {
-            classSymbol = 'interface';
-        } else if (classStructure.classType === 'enum') {
-            classSymbol = 'enum';
-        } else if (classStructure.classType === 'abstract class') {
-            classSymbol = 'abstract class';
-        }
-
-        // Create full class name with package (like intersystems style)
+    private addClickableClassDefinitionWithFullPackage(model: DiagramModel, classStructure: JavaClassStructure, isMainClass: boolean = false): void {
+        // Full class name with package (like intersystems style)
         const fullClassName = this.getFullClassName(classStructure);
 
-        // Determine and add appropriate stereotype
-        const stereotype = this.determineStereotype(classStructure, isMainClass);
-        classCode += `${classSymbol} "${fullClassName}"${stereotype}`;
-
-        classCode += ' {\n';
-
-        // Add fields (limit to most important ones for readability)
-        const visibleFields = classStructure.fields.slice(0, 8); // Reduce for better readability
-        if (visibleFields.length > 0) {
-            for (const field of visibleFields) {
-                classCode += this.generateFieldDefinition(field);
-            }
-            if (classStructure.fields.length > 8) {
-                classCode += `  ... (${classStructure.fields.length - 8} more fields)\n`;
-            }
-            if (classStructure.constructors.length > 0 || classStructure.methods.length > 0) {
-                classCode += '  --\n';
-            }
-        }
-
-        // Add constructors (limit to 2)
-        const visibleConstructors = classStructure.constructors.slice(0, 2);
-        if (visibleConstructors.length > 0) {
-            for (const constructor of visibleConstructors) {
-                classCode += this.generateConstructorDefinition(constructor);
-            }
-            if (classStructure.constructors.length > 2) {
-                classCode += `  ... (${classStructure.constructors.length - 2} more constructors)\n`;
-            }
-            if (classStructure.methods.length > 0) {
-                classCode += '  --\n';
-            }
-        }
-
-        // Add methods (limit to most important ones)
+        // Fields, constructors and methods, limited to the most important ones for readability
         const visibleMethods = this.selectImportantMethods(classStructure.methods).slice(0, 6);
-        if (visibleMethods.length > 0) {
-            for (const method of visibleMethods) {
-                classCode += this.generateMethodDefinition(method);
-            }
-            if (classStructure.methods.length > visibleMethods.length) {
-                classCode += `  ... (${classStructure.methods.length - visibleMethods.length} more methods)\n`;
-            }
+        const [fields, constructors, methods] = this.memberSections(
+            classStructure,
+            classStructure.fields.slice(0, 8),
+            classStructure.constructors.slice(0, 2),
+            visibleMethods
+        );
+        if (classStructure.fields.length > 8) {
+            fields.push({ text: `... (${classStructure.fields.length - 8} more fields)` });
         }
-
-        classCode += '}\n';
-
-        // Add click URL for navigation (if not a system class)
-        if (!classStructure.isSystemClass && classStructure.filePath) {
-            const normalizedPath = classStructure.filePath.replace(/\\/g, '/');
-            const url = `openfile:${encodeURIComponent(normalizedPath)}#${encodeURIComponent(classStructure.className)}`;
-            classCode += `"${fullClassName}" : [[${url}]]\n`;
+        if (classStructure.constructors.length > 2) {
+            constructors.push({ text: `... (${classStructure.constructors.length - 2} more constructors)` });
+        }
+        if (classStructure.methods.length > visibleMethods.length) {
+            methods.push({ text: `... (${classStructure.methods.length - visibleMethods.length} more methods)` });
         }
 
-        classCode += '\n';
-        return classCode;
+        model.addNode({
+            name: fullClassName,
+            kind: this.getNodeKind(classStructure),
+            stereotype: this.determineStereotype(classStructure, isMainClass),
+            sections: [fields, constructors, methods],
+            url: this.classElementId(classStructure)
+        });
     }
 
     private getFullClassName(classStructure: JavaClassStructure): string {
@@ -1019,37 +692,24 @@ end note
         return classStructure.className;
     }
 
-    private generateReferencedSystemClasses(classStructures: JavaClassStructure[]): string {
-        let systemClasses = '';
-        const referencedSystemClasses = new Set<string>();
-
-        // Collect all referenced system classes
+    private addReferencedSystemClasses(model: DiagramModel, classStructures: JavaClassStructure[]): void {
+        // Collect all referenced system classes: superclasses and interfaces
         for (const cls of classStructures) {
-            // Add superclass if it's a system class
-            if (cls.superClass && this.isSystemClassName(cls.superClass)) {
-                referencedSystemClasses.add(this.getFullClassNameFromType(cls.superClass));
-            }
-
-            // Add interfaces if they're system classes
-            for (const iface of cls.interfaces) {
-                if (this.isSystemClassName(iface)) {
-                    referencedSystemClasses.add(this.getFullClassNameFromType(iface));
+            const referenced = cls.superClass ? [cls.superClass, ...cls.interfaces] : cls.interfaces;
+            for (const typeName of referenced) {
+                if (!this.isSystemClassName(typeName)) {
+                    continue;
                 }
+                // Simple definitions for system classes with full names
+                const systemClass = this.getFullClassNameFromType(typeName);
+                model.addNode({
+                    name: systemClass,
+                    kind: this.isKnownInterface(systemClass) ? 'interface' : 'class',
+                    stereotype: 'System',
+                    sections: []
+                });
             }
         }
-
-        // Generate simple definitions for system classes with full names
-        for (const systemClass of referencedSystemClasses) {
-            const isInterface = this.isKnownInterface(systemClass);
-
-            if (isInterface) {
-                systemClasses += `interface "${systemClass}" <<System>> {\n}\n`;
-            } else {
-                systemClasses += `class "${systemClass}" <<System>> {\n}\n`;
-            }
-        }
-
-        return systemClasses;
     }
 
     private isSystemClassName(className: string): boolean {
@@ -1069,44 +729,47 @@ end note
         return interfaces.includes(className);
     }
 
-    private generateRelationshipsWithFullNames(classStructure: JavaClassStructure): string {
-        let relationships = '';
-        const fullClassName = this.getFullClassName(classStructure);
+    private addRelationshipsWithFullNames(model: DiagramModel, classStructure: JavaClassStructure, classNameMap: Map<string, string>): void {
+        const fullClassName = this.formatClassNameForPlantUML(this.getFullClassName(classStructure));
+        // Classes of the diagram by their node name, anything else by its best known full name
+        const fullNameOf = (type: string) =>
+            classNameMap.get(this.extractSimpleType(type)) ?? this.getFullClassNameFromType(type);
 
         // Generate inheritance relationship
         if (classStructure.superClass) {
-            const superClassName = this.getFullClassNameFromType(classStructure.superClass);
             // 确保父类名称正确格式化
-            const formattedSuperClass = this.formatClassNameForPlantUML(superClassName);
-            const formattedCurrentClass = this.formatClassNameForPlantUML(fullClassName);
-            relationships += `"${formattedSuperClass}" <|-- "${formattedCurrentClass}"\n`;
+            const superClassName = this.formatClassNameForPlantUML(fullNameOf(classStructure.superClass));
+            model.addEdge(superClassName, '<|--', fullClassName);
         }
 
         // Generate interface implementations
         for (const interfaceName of classStructure.interfaces) {
-            const fullInterfaceName = this.getFullClassNameFromType(interfaceName);
-            const formattedInterface = this.formatClassNameForPlantUML(fullInterfaceName);
-            const formattedCurrentClass = this.formatClassNameForPlantUML(fullClassName);
-            relationships += `"${formattedInterface}" <|.. "${formattedCurrentClass}"\n`;
+            const formattedInterface = this.formatClassNameForPlantUML(fullNameOf(interfaceName));
+            model.addEdge(formattedInterface, '<|..', fullClassName);
         }
 
-        // Generate field relationships (composition/aggregation) - simplified for clarity
-        for (const field of classStructure.fields.slice(0, 2)) { // Limit to avoid clutter
-            if (this.isCustomType(field.type)) {
-                const fieldType = this.getFullClassNameFromType(field.type);
-                const formattedFieldType = this.formatClassNameForPlantUML(fieldType);
-                const formattedCurrentClass = this.formatClassNameForPlantUML(fullClassName);
+        // Generate field relationships (composition/aggregation); the related classes are already
+        // limited to the configured relation depth, so every field is drawn
+        for (const field of classStructure.fields) {
+            const genericStart = field.type.indexOf('<');
+            const rawType = genericStart >= 0 ? field.type.substring(0, genericStart).trim() : field.type;
+            if (this.isCustomType(rawType)) {
+                const formattedFieldType = this.formatClassNameForPlantUML(fullNameOf(rawType));
 
                 // Use composition for private fields, aggregation for others
-                if (field.visibility === 'private') {
-                    relationships += `"${formattedCurrentClass}" *-- "${formattedFieldType}"\n`;
-                } else {
-                    relationships += `"${formattedCurrentClass}" o-- "${formattedFieldType}"\n`;
+                model.addEdge(fullClassName, field.visibility === 'private' ? '*--' : 'o--', formattedFieldType);
+            }
+
+            // Element types of collections and other generic fields, when they are in the diagram
+            if (genericStart >= 0) {
+                for (const typeArgument of referencedTypeNames(field.type.substring(genericStart))) {
+                    const target = classNameMap.get(this.extractSimpleType(typeArgument));
+                    if (target && target !== fullClassName) {
+                        model.addEdge(fullClassName, 'o--', target);
+                    }
                 }
             }
         }
-
-        return relationships;
     }
 
     private formatClassNameForPlantUML(className: string): string {
@@ -1114,66 +777,47 @@ end note
         return className.trim();
     }
 
-    private generateCrossPackageRelationshipsWithFullNames(classStructures: JavaClassStructure[]): string {
-        let relationships = '';
-        const classNameMap = new Map<string, string>();
-        const processedRelationships = new Set<string>();
-
-        // Build a map of simple class names to full class names
-        for (const cls of classStructures) {
-            classNameMap.set(cls.className, this.getFullClassName(cls));
-        }
-
-        // Generate inheritance relationships between classes in the diagram
+    private addCrossPackageRelationshipsWithFullNames(
+        model: DiagramModel,
+        classStructures: JavaClassStructure[],
+        classNameMap: Map<string, string>
+    ): void {
+        // Generate relationships between classes in the diagram; the model drops duplicates
         for (const classStructure of classStructures) {
             const fullClassName = this.getFullClassName(classStructure);
 
             // Check for inheritance relationships with other classes in the diagram
             if (classStructure.superClass) {
-                const superSimpleName = this.extractSimpleType(classStructure.superClass);
-                if (classNameMap.has(superSimpleName)) {
-                    const superFullName = classNameMap.get(superSimpleName)!;
-                    const relationshipKey = `${superFullName}|--|${fullClassName}`;
-
-                    if (!processedRelationships.has(relationshipKey)) {
-                        relationships += `"${superFullName}" <|-- "${fullClassName}"\n`;
-                        processedRelationships.add(relationshipKey);
-                    }
+                const superFullName = classNameMap.get(this.extractSimpleType(classStructure.superClass));
+                if (superFullName) {
+                    model.addEdge(superFullName, '<|--', fullClassName);
                 }
             }
 
             // Check for interface implementations with other classes in the diagram
             for (const interfaceName of classStructure.interfaces) {
-                const interfaceSimpleName = this.extractSimpleType(interfaceName);
-                if (classNameMap.has(interfaceSimpleName)) {
-                    const interfaceFullName = classNameMap.get(interfaceSimpleName)!;
-                    const relationshipKey = `${interfaceFullName}..|${fullClassName}`;
-
-                    if (!processedRelationships.has(relationshipKey)) {
-                        relationships += `"${interfaceFullName}" <|.. "${fullClassName}"\n`;
-                        processedRelationships.add(relationshipKey);
-                    }
+                const interfaceFullName = classNameMap.get(this.extractSimpleType(interfaceName));
+                if (interfaceFullName) {
+                    model.addEdge(interfaceFullName, '<|..', fullClassName);
                 }
             }
 
-            // Check for field relationships with other classes in the diagram
-            for (const field of classStructure.fields.slice(0, 2)) { // Limit to avoid clutter
-                const fieldType = this.extractSimpleType(field.type);
-
-                if (classNameMap.has(fieldType) && fieldType !== classStructure.className) {
-                    const targetFullName = classNameMap.get(fieldType)!;
-                    const relationshipKey = `${fullClassName}-->${targetFullName}`;
+            // Field types are drawn as composition/aggregation by addRelationshipsWithFullNames.
+            // Types only used in method signatures become dependencies.
+            const fieldTypes = new Set(classStructure.fields.flatMap(field =>
+                referencedTypeNames(field.type).map(typeName => this.extractSimpleType(typeName))));
+            for (const method of [...classStructure.constructors, ...classStructure.methods]) {
+                for (const type of [method.returnType, ...method.parameters.map(parameter => parameter.type)]) {
+                    const typeName = this.extractSimpleType(type || '');
+                    const targetFullName = classNameMap.get(typeName);
 
-                    // Avoid self-references and duplicates
-                    if (fullClassName !== targetFullName && !processedRelationships.has(relationshipKey)) {
-                        relationships += `"${fullClassName}" --> "${targetFullName}" : uses\n`;
-                        processedRelationships.add(relationshipKey);
+                    // Avoid self-references
+                    if (targetFullName && !fieldTypes.has(typeName) && fullClassName !== targetFullName) {
+                        model.addEdge(fullClassName, '..>', targetFullName, 'uses');
                     }
                 }
             }
         }
-
-        return relationships;
     }
 
     private getFullClassNameFromType(type: string): string {
@@ -1207,4 +851,4 @@ end note
 
         return systemClassMap[type] || type;
     }
-}
\ No newline at end of file
+}
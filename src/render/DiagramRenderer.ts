@@ -0,0 +1,23 @@
+/**
+ * Turns PlantUML source into SVG markup.
+ */
+export interface DiagramRenderer {
+    readonly name: string;
+    // Everything besides the source that decides the output (server URL, jar version); part of the SVG cache key
+    readonly cacheNamespace: string;
+    render(plantUMLCode: string): Promise<string>;
+    dispose(): void;
+}
+
+/**
+ * Rendering failed in a way the user can act on (bad configuration, syntax error).
+ */
+export class DiagramRenderError extends Error {
+    /**
+     * @param svg Error image the renderer produced (PlantUML draws syntax errors), shown but never cached
+     */
+    constructor(message: string, readonly svg?: string) {
+        super(message);
+        this.name = 'DiagramRenderError';
+    }
+}
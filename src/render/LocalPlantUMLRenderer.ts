@@ -0,0 +1,226 @@
+import * as fs from 'fs';
+import { spawn, ChildProcessWithoutNullStreams } from 'child_process';
+import { DiagramRenderer, DiagramRenderError } from './DiagramRenderer';
+
+// Printed by PlantUML after every diagram in pipe mode, frames the SVG documents on stdout
+const PIPE_DELIMITER = '___JAVA_CLASS_DIAGRAM_END___';
+
+// Large diagrams take a while in dot; anything beyond this is considered hung
+const RENDER_TIMEOUT_MS = 60000;
+
+export interface LocalPlantUMLOptions {
+    javaPath: string;
+    plantUMLJar: string;
+    // Graphviz dot executable, PlantUML searches PATH when not set
+    graphvizDot?: string;
+}
+
+interface RenderJob {
+    plantUMLCode: string;
+    resolve: (svg: string) => void;
+    reject: (error: Error) => void;
+}
+
+/**
+ * Renders with a long-lived `java -jar plantuml.jar -pipe` process. The JVM and
+ * PlantUML start once; every diagram after that costs only layout and SVG output.
+ * Diagrams are written to stdin one at a time and read back up to the pipe delimiter.
+ */
+export class LocalPlantUMLRenderer implements DiagramRenderer {
+    readonly name = 'local';
+    readonly cacheNamespace: string;
+    private process: ChildProcessWithoutNullStreams | undefined;
+    private queue: RenderJob[] = [];
+    private current: RenderJob | undefined;
+    private stdoutBuffer = '';
+    private stderrBuffer = '';
+    private timer: NodeJS.Timeout | undefined;
+    private disposed = false;
+
+    constructor(private options: LocalPlantUMLOptions) {
+        // A replaced plantuml.jar (or another dot) may lay out the same source differently
+        this.cacheNamespace = ['local', options.plantUMLJar, jarVersion(options.plantUMLJar), options.graphvizDot || ''].join('\0');
+    }
+
+    /**
+     * Starts the renderer process ahead of the first diagram.
+     */
+    warmUp(): void {
+        if (!this.disposed) {
+            this.ensureProcess();
+        }
+    }
+
+    render(plantUMLCode: string): Promise<string> {
+        if (this.disposed) {
+            return Promise.reject(new DiagramRenderError('Renderer is disposed'));
+        }
+        return new Promise<string>((resolve, reject) => {
+            this.queue.push({ plantUMLCode, resolve, reject });
+            this.next();
+        });
+    }
+
+    dispose(): void {
+        this.disposed = true;
+        const error = new DiagramRenderError('Renderer is disposed');
+        this.current?.reject(error);
+        this.current = undefined;
+        this.queue.forEach(job => job.reject(error));
+        this.queue = [];
+        this.stopProcess();
+    }
+
+    private next(): void {
+        if (this.current || this.queue.length === 0) {
+            return;
+        }
+
+        let child: ChildProcessWithoutNullStreams;
+        try {
+            child = this.ensureProcess();
+        } catch (error) {
+            const failure = new DiagramRenderError(`Cannot start PlantUML: ${error instanceof Error ? error.message : String(error)}`);
+            this.queue.forEach(job => job.reject(failure));
+            this.queue = [];
+            return;
+        }
+
+        this.current = this.queue.shift()!;
+        this.stderrBuffer = '';
+        this.timer = setTimeout(() => {
+            this.fail(new DiagramRenderError(`PlantUML did not answer within ${RENDER_TIMEOUT_MS / 1000}s`));
+            // The process state is unknown now, start a fresh one for the next diagram
+            this.stopProcess();
+            this.next();
+        }, RENDER_TIMEOUT_MS);
+
+        child.stdin.write(normalizeSource(this.current.plantUMLCode), 'utf8');
+    }
+
+    private ensureProcess(): ChildProcessWithoutNullStreams {
+        if (this.process) {
+            return this.process;
+        }
+
+        const args = [
+            '-Djava.awt.headless=true',
+            '-jar', this.options.plantUMLJar,
+            '-pipe',
+            '-tsvg',
+            '-charset', 'UTF-8',
+            '-pipedelimitor', PIPE_DELIMITER
+        ];
+        if (this.options.graphvizDot) {
+            args.push('-graphvizdot', this.options.graphvizDot);
+        }
+
+        const child = spawn(this.options.javaPath, args, { stdio: 'pipe', windowsHide: true });
+        child.stdout.setEncoding('utf8');
+        child.stderr.setEncoding('utf8');
+        child.stdout.on('data', (chunk: string) => this.onStdout(chunk));
+        child.stderr.on('data', (chunk: string) => {
+            this.stderrBuffer += chunk;
+        });
+        child.on('error', error => {
+            if (this.process === child) {
+                this.process = undefined;
+            }
+            this.fail(new DiagramRenderError(`Cannot start PlantUML (${this.options.javaPath}): ${error.message}`));
+            this.queue.forEach(job => job.reject(new DiagramRenderError(`Cannot start PlantUML: ${error.message}`)));
+            this.queue = [];
+        });
+        child.on('exit', code => {
+            if (this.process !== child) {
+                return;
+            }
+            this.process = undefined;
+            this.stdoutBuffer = '';
+            if (this.current) {
+                const details = this.stderrBuffer.trim();
+                this.fail(new DiagramRenderError(`PlantUML exited with code ${code}${details ? `: ${details}` : ''}`));
+            }
+            this.next();
+        });
+
+        console.log(`Started local PlantUML renderer: ${this.options.javaPath} ${args.join(' ')}`);
+        this.process = child;
+        this.stdoutBuffer = '';
+        return child;
+    }
+
+    private onStdout(chunk: string): void {
+        this.stdoutBuffer += chunk;
+
+        let end: number;
+        while ((end = this.stdoutBuffer.indexOf(PIPE_DELIMITER)) >= 0) {
+            const output = this.stdoutBuffer.substring(0, end).trim();
+            this.stdoutBuffer = this.stdoutBuffer.substring(end + PIPE_DELIMITER.length).replace(/^\r?\n/, '');
+
+            const job = this.current;
+            this.clearTimer();
+            this.current = undefined;
+            if (job) {
+                const svgStart = output.indexOf('<svg');
+                if (svgStart >= 0) {
+                    job.resolve(output.substring(svgStart));
+                } else {
+                    const details = (output || this.stderrBuffer).trim();
+                    job.reject(new DiagramRenderError(`PlantUML could not render the diagram${details ? `: ${details}` : ''}`));
+                }
+            }
+            this.next();
+        }
+    }
+
+    private fail(error: Error): void {
+        this.clearTimer();
+        const job = this.current;
+        this.current = undefined;
+        job?.reject(error);
+    }
+
+    private clearTimer(): void {
+        if (this.timer) {
+            clearTimeout(this.timer);
+            this.timer = undefined;
+        }
+    }
+
+    private stopProcess(): void {
+        const child = this.process;
+        this.process = undefined;
+        this.stdoutBuffer = '';
+        if (child) {
+            child.stdin.end();
+            child.kill();
+        }
+    }
+}
+
+/**
+ * PlantUML in pipe mode renders a block once it reads @enduml, so every
+ * request must be a complete, newline-terminated block.
+ */
+function normalizeSource(plantUMLCode: string): string {
+    let source = plantUMLCode.trim();
+    if (!source.startsWith('@start')) {
+        source = `@startuml\n${source}`;
+    }
+    if (!/@end\w+$/.test(source)) {
+        source = `${source}\n@enduml`;
+    }
+    return `${source}\n`;
+}
+
+/**
+ * Size and modification time of the jar, enough to tell a replaced or upgraded plantuml.jar apart.
+ */
+function jarVersion(jarPath: string): string {
+    try {
+        const stat = fs.statSync(jarPath);
+        return `${stat.size}:${stat.mtimeMs}`;
+    } catch {
+        return '';
+    }
+}
@@ -0,0 +1,186 @@
+import * as vscode from 'vscode';
+import * as fs from 'fs';
+import * as path from 'path';
+import { SvgCache, SvgCacheStats } from '../cache/SvgCache';
+import { DiagramRenderer, DiagramRenderError } from './DiagramRenderer';
+import { LocalPlantUMLRenderer } from './LocalPlantUMLRenderer';
+import { ServerPlantUMLRenderer } from './ServerPlantUMLRenderer';
+import { sanitizeSvg } from './SvgSanitizer';
+import { tracer } from '../trace/Tracer';
+
+export type RendererMode = 'auto' | 'local' | 'server';
+
+const DEFAULT_SERVER_URL = 'https://www.plantuml.com/plantuml';
+
+/**
+ * Picks the renderer from the `javaClassDiagram.renderer` setting and renders
+ * PlantUML to SVG in the extension host.
+ *
+ * - local: warm `plantuml.jar -pipe` process, works offline
+ * - server: POST to a PlantUML server
+ * - auto: local when a plantuml.jar can be found, server otherwise
+ */
+export class PlantUMLRenderService implements vscode.Disposable {
+    private renderer: DiagramRenderer | undefined;
+    private inFlight = new Map<string, Promise<string>>();
+    private configListener: vscode.Disposable;
+    private svgCache: SvgCache;
+
+    constructor(private context: vscode.ExtensionContext) {
+        const storageDir = context.globalStorageUri?.fsPath;
+        this.svgCache = new SvgCache(storageDir ? path.join(storageDir, 'svg-cache') : undefined);
+        this.configListener = vscode.workspace.onDidChangeConfiguration(event => {
+            if (event.affectsConfiguration('javaClassDiagram')) {
+                // Recreated with the new settings on the next render
+                this.renderer?.dispose();
+                this.renderer = undefined;
+            }
+        });
+    }
+
+    /**
+     * Renders PlantUML source to SVG markup. Unchanged diagrams come from the SVG cache,
+     * identical concurrent requests share one render.
+     */
+    render(plantUMLCode: string): Promise<string> {
+        let renderer: DiagramRenderer;
+        try {
+            renderer = this.getRenderer();
+        } catch (error) {
+            return Promise.reject(error);
+        }
+
+        // The renderer is part of the key: local and server output differ, and so do jars and servers
+        const key = SvgCache.hashSource(plantUMLCode, renderer.cacheNamespace);
+        const pending = this.inFlight.get(key);
+        if (pending) {
+            return pending;
+        }
+
+        const promise = this.renderCached(renderer, key, plantUMLCode);
+        this.inFlight.set(key, promise);
+        const settle = () => {
+            if (this.inFlight.get(key) === promise) {
+                this.inFlight.delete(key);
+            }
+        };
+        promise.then(settle, settle);
+        return promise;
+    }
+
+    getCacheStats(): SvgCacheStats {
+        return this.svgCache.getStats();
+    }
+
+    /**
+     * Starts the local renderer process so the first diagram does not pay for JVM startup.
+     */
+    warmUp(): void {
+        try {
+            const renderer = this.getRenderer();
+            if (renderer instanceof LocalPlantUMLRenderer) {
+                renderer.warmUp();
+            }
+        } catch (error) {
+            console.warn('Failed to warm up PlantUML renderer:', error);
+        }
+    }
+
+    dispose(): void {
+        this.configListener.dispose();
+        this.renderer?.dispose();
+        this.renderer = undefined;
+        this.inFlight.clear();
+    }
+
+    private renderCached(renderer: DiagramRenderer, key: string, plantUMLCode: string): Promise<string> {
+        return tracer.span('render', 'render', async span => {
+            const startTime = Date.now();
+            let svg = await this.svgCache.get(key);
+            if (svg !== undefined) {
+                span.count('cacheHits');
+                tracer.log(`Diagram served from SVG cache in ${Date.now() - startTime}ms (${svg.length} chars)`);
+            } else {
+                let rendered: string;
+                try {
+                    rendered = await renderer.render(plantUMLCode);
+                } catch (error) {
+                    if (error instanceof DiagramRenderError && error.svg !== undefined) {
+                        // Error images (and whatever the status was) are shown once, never cached
+                        span.count('renderErrors');
+                        tracer.log(`${renderer.name} renderer answered with an error image: ${error.message}`);
+                        return sanitizeSvg(error.svg);
+                    }
+                    throw error;
+                }
+                // The server may be remote and the webview inserts the markup, only sanitized SVG is kept
+                svg = sanitizeSvg(rendered);
+                span.count('rendered');
+                console.log(`Rendered diagram with ${renderer.name} renderer in ${Date.now() - startTime}ms (${svg.length} chars)`);
+                this.svgCache.set(key, svg);
+            }
+
+            const stats = this.svgCache.getStats();
+            tracer.log(`SVG cache: ${(stats.hitRate * 100).toFixed(1)}% hit rate (${stats.memoryHits} memory hits, ${stats.diskHits} disk hits, ${stats.misses} misses), ` +
+                `${stats.memoryEntries} in memory (${(stats.memoryBytes / 1024).toFixed(0)} KB), ${stats.diskEntries} on disk (${(stats.diskBytes / 1024).toFixed(0)} KB)`);
+            return svg;
+        });
+    }
+
+    private getRenderer(): DiagramRenderer {
+        if (!this.renderer) {
+            this.renderer = this.createRenderer();
+        }
+        return this.renderer;
+    }
+
+    private createRenderer(): DiagramRenderer {
+        const config = vscode.workspace.getConfiguration('javaClassDiagram');
+        const mode = config.get<RendererMode>('renderer', 'auto');
+        const serverUrl = config.get<string>('plantumlServerUrl', DEFAULT_SERVER_URL) || DEFAULT_SERVER_URL;
+
+        if (mode === 'server') {
+            return new ServerPlantUMLRenderer(serverUrl);
+        }
+
+        const plantUMLJar = this.findPlantUMLJar(config.get<string>('plantumlJar', ''));
+        if (!plantUMLJar) {
+            if (mode === 'local') {
+                throw new DiagramRenderError('Local rendering needs plantuml.jar. Set javaClassDiagram.plantumlJar to its path.');
+            }
+            console.log('No plantuml.jar found, rendering diagrams with the PlantUML server');
+            return new ServerPlantUMLRenderer(serverUrl);
+        }
+
+        return new LocalPlantUMLRenderer({
+            javaPath: findJavaExecutable(config.get<string>('javaPath', '')),
+            plantUMLJar,
+            graphvizDot: config.get<string>('graphvizDot', '') || process.env.GRAPHVIZ_DOT || undefined
+        });
+    }
+
+    private findPlantUMLJar(configured: string | undefined): string | undefined {
+        const candidates = [
+            configured,
+            process.env.PLANTUML_JAR,
+            path.join(this.context.extensionPath, 'resources', 'plantuml.jar')
+        ];
+        return candidates.find((candidate): candidate is string => !!candidate && fs.existsSync(candidate));
+    }
+}
+
+function findJavaExecutable(configured: string | undefined): string {
+    if (configured) {
+        return configured;
+    }
+    const executable = process.platform === 'win32' ? 'java.exe' : 'java';
+    const javaHome = vscode.workspace.getConfiguration('java').get<string>('jdt.ls.java.home') || process.env.JAVA_HOME;
+    if (javaHome) {
+        const candidate = path.join(javaHome, 'bin', executable);
+        if (fs.existsSync(candidate)) {
+            return candidate;
+        }
+    }
+    // Resolved from PATH by spawn
+    return executable;
+}
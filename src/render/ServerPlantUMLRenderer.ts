@@ -0,0 +1,62 @@
+import * as http from 'http';
+import * as https from 'https';
+import { DiagramRenderer, DiagramRenderError } from './DiagramRenderer';
+
+const REQUEST_TIMEOUT_MS = 30000;
+
+/**
+ * Renders through a PlantUML server. The source is POSTed from the extension host,
+ * so there is no URL length limit and the webview needs no network access.
+ */
+export class ServerPlantUMLRenderer implements DiagramRenderer {
+    readonly name = 'server';
+    readonly cacheNamespace: string;
+    private serverUrl: string;
+
+    constructor(serverUrl: string) {
+        this.serverUrl = serverUrl.replace(/\/+$/, '');
+        // Servers run different PlantUML versions, their output is not interchangeable
+        this.cacheNamespace = `server\0${this.serverUrl}`;
+    }
+
+    render(plantUMLCode: string): Promise<string> {
+        const url = new URL(`${this.serverUrl}/svg`);
+        const body = Buffer.from(plantUMLCode, 'utf8');
+        const transport = url.protocol === 'http:' ? http : https;
+
+        return new Promise<string>((resolve, reject) => {
+            const request = transport.request(url, {
+                method: 'POST',
+                headers: {
+                    'Content-Type': 'text/plain; charset=utf-8',
+                    'Content-Length': body.length
+                },
+                timeout: REQUEST_TIMEOUT_MS
+            }, response => {
+                const chunks: Buffer[] = [];
+                response.on('data', (chunk: Buffer) => chunks.push(chunk));
+                response.on('end', () => {
+                    const text = Buffer.concat(chunks).toString('utf8');
+                    const svgStart = text.indexOf('<svg');
+                    const status = response.statusCode || 0;
+                    if (status >= 200 && status < 300 && svgStart >= 0) {
+                        resolve(text.substring(svgStart));
+                    } else if (svgStart >= 0) {
+                        // PlantUML answers syntax errors with an error image and a 400 status: worth showing, not a result
+                        reject(new DiagramRenderError(`PlantUML server returned ${status}`, text.substring(svgStart)));
+                    } else {
+                        reject(new DiagramRenderError(`PlantUML server returned ${status} without an SVG`));
+                    }
+                });
+                response.on('error', reject);
+            });
+            request.on('timeout', () => request.destroy(new DiagramRenderError(`PlantUML server did not answer within ${REQUEST_TIMEOUT_MS / 1000}s`)));
+            request.on('error', error => reject(error instanceof DiagramRenderError ? error : new DiagramRenderError(`PlantUML server request failed: ${error.message}`)));
+            request.end(body);
+        });
+    }
+
+    dispose(): void {
+        // Stateless
+    }
+}
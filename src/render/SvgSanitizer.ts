@@ -0,0 +1,139 @@
+// Elements that run script or embed other documents; dropped with everything inside them
+const DROPPED_ELEMENTS = new Set(['script', 'foreignobject', 'iframe', 'frame', 'object', 'embed', 'handler']);
+
+// URL schemes that run script when followed or loaded
+const SCRIPT_URL = /^(?:javascript|vbscript|data:text\/html)/;
+
+const OPEN_TAG = /<([A-Za-z][\w:.-]*)((?:\s+[^\s"'<>\/=]+(?:\s*=\s*(?:"[^"]*"|'[^']*'|[^\s"'=<>`]+))?)*)\s*(\/?)>/y;
+const CLOSE_TAG = /<\/([A-Za-z][\w:.-]*)\s*>/y;
+const ATTRIBUTE = /([^\s"'<>\/=]+)(?:\s*=\s*("[^"]*"|'[^']*'|[^\s"'=<>`]+))?/g;
+
+/**
+ * Makes rendered SVG safe to insert with innerHTML: drops script, foreignObject and embedding
+ * elements, event handler attributes (on*) and attributes whose value is a javascript: (or
+ * similar) URL. Markup that is not a well-formed tag is escaped instead of passed through, so
+ * nothing reaches the HTML parser in a shape this function did not look at. The diagram links
+ * (openclass:, openpackage:, ...) are kept.
+ */
+export function sanitizeSvg(markup: string): string {
+    let output = '';
+    let position = 0;
+
+    while (position < markup.length) {
+        const lt = markup.indexOf('<', position);
+        if (lt < 0) {
+            output += markup.substring(position);
+            break;
+        }
+        output += markup.substring(position, lt);
+
+        if (markup.startsWith('<!--', lt)) {
+            // Comments carry nothing the diagram needs
+            position = skipPast(markup, lt, '-->');
+            continue;
+        }
+        if (markup.startsWith('<![CDATA[', lt)) {
+            const end = skipPast(markup, lt, ']]>');
+            output += markup.substring(lt, end);
+            position = end;
+            continue;
+        }
+        if (markup.startsWith('<?', lt) || markup.startsWith('<!', lt)) {
+            // XML declaration, doctype
+            position = skipPast(markup, lt, '>');
+            continue;
+        }
+
+        CLOSE_TAG.lastIndex = lt;
+        const close = CLOSE_TAG.exec(markup);
+        if (close) {
+            if (!DROPPED_ELEMENTS.has(close[1].toLowerCase())) {
+                output += close[0];
+            }
+            position = CLOSE_TAG.lastIndex;
+            continue;
+        }
+
+        OPEN_TAG.lastIndex = lt;
+        const open = OPEN_TAG.exec(markup);
+        if (!open) {
+            output += '&lt;';
+            position = lt + 1;
+            continue;
+        }
+        position = OPEN_TAG.lastIndex;
+
+        const name = open[1];
+        if (DROPPED_ELEMENTS.has(name.toLowerCase())) {
+            if (!open[3]) {
+                position = skipElement(markup, position, name);
+            }
+            continue;
+        }
+        output += `<${name}${sanitizeAttributes(open[2])}${open[3] ? '/' : ''}>`;
+    }
+
+    return output;
+}
+
+function sanitizeAttributes(attributes: string): string {
+    let output = '';
+    for (const match of attributes.matchAll(ATTRIBUTE)) {
+        const name = match[1];
+        const rawValue = match[2];
+        if (/^on/i.test(name)) {
+            continue;
+        }
+        if (rawValue !== undefined) {
+            const value = rawValue.startsWith('"') || rawValue.startsWith("'") ? rawValue.slice(1, -1) : rawValue;
+            if (SCRIPT_URL.test(normalizeUrl(value))) {
+                continue;
+            }
+            output += ` ${name}="${value.replace(/"/g, '&quot;')}"`;
+        } else {
+            output += ` ${name}`;
+        }
+    }
+    return output;
+}
+
+/**
+ * Decodes character references and drops whitespace and control characters, the way browsers
+ * read a URL before looking at its scheme ("java&#x09;script:" is still javascript:).
+ */
+function normalizeUrl(value: string): string {
+    return value
+        .replace(/&#x([0-9a-f]+);?/gi, (_match, hex: string) => String.fromCodePoint(Math.min(parseInt(hex, 16), 0x10FFFF)))
+        .replace(/&#(\d+);?/g, (_match, decimal: string) => String.fromCodePoint(Math.min(parseInt(decimal, 10), 0x10FFFF)))
+        .replace(/&colon;/gi, ':')
+        .replace(/&(?:tab|newline);/gi, '')
+        .replace(/[\u0000- \u007F-\u009F]/g, '')
+        .toLowerCase();
+}
+
+function skipPast(markup: string, from: number, terminator: string): number {
+    const end = markup.indexOf(terminator, from);
+    return end < 0 ? markup.length : end + terminator.length;
+}
+
+/**
+ * Position after the close tag of `name` (nested elements of the same name included), or the
+ * end of the markup when it is never closed.
+ */
+function skipElement(markup: string, from: number, name: string): number {
+    const tags = new RegExp(`<(/?)${name.replace(/[.]/g, '\\.')}(?=[\\s/>])[^>]*>`, 'gi');
+    tags.lastIndex = from;
+    let depth = 1;
+    let match: RegExpExecArray | null;
+    while ((match = tags.exec(markup)) !== null) {
+        if (match[1]) {
+            depth--;
+        } else if (!match[0].endsWith('/>')) {
+            depth++;
+        }
+        if (depth === 0) {
+            return tags.lastIndex;
+        }
+    }
+    return markup.length;
+}
@@ -0,0 +1,265 @@
+import { AsyncLocalStorage } from 'async_hooks';
+import { performance } from 'perf_hooks';
+
+export interface SpanCounters {
+    [counter: string]: number;
+}
+
+export interface SpanRecord {
+    name: string;
+    category: string;
+    // Milliseconds since the start of the trace
+    start: number;
+    duration: number;
+    // Row in the trace viewer; concurrent spans get their own rows so nesting stays valid
+    lane: number;
+    counters: SpanCounters;
+}
+
+// Traces still waiting for detached work (e.g. a render started by the command) are closed after this
+const TRACE_SETTLE_TIMEOUT_MS = 60000;
+// Completed traces kept for export
+const MAX_COMPLETED_TRACES = 20;
+
+/**
+ * A timed section of a trace. Counters roll up: counting in a span also counts in every
+ * enclosing span, so a parse span shows the Language Server calls made while parsing.
+ */
+export class Span {
+    readonly counters: SpanCounters = {};
+    private ended = false;
+
+    constructor(
+        readonly trace: Trace | undefined,
+        readonly parent: Span | undefined,
+        readonly name: string,
+        readonly category: string,
+        readonly start: number,
+        readonly lane: number
+    ) {}
+
+    count(counter: string, amount: number = 1): void {
+        for (let span: Span | undefined = this; span; span = span.parent) {
+            span.counters[counter] = (span.counters[counter] || 0) + amount;
+        }
+    }
+
+    end(): void {
+        if (this.ended) {
+            return;
+        }
+        this.ended = true;
+        this.trace?.endSpan(this);
+    }
+}
+
+/**
+ * All spans recorded while generating one diagram.
+ */
+export class Trace {
+    readonly spans: SpanRecord[] = [];
+    readonly startTime = performance.now();
+    readonly startedAt = new Date();
+    private openSpans = 0;
+    // Innermost open span of every lane
+    private laneTops: (Span | undefined)[] = [];
+    private rootDuration: number | undefined;
+    private completed = false;
+
+    constructor(readonly label: string, private onComplete: (trace: Trace) => void) {}
+
+    startSpan(parent: Span | undefined, name: string, category: string): Span {
+        let lane = parent && this.laneTops[parent.lane] === parent ? parent.lane : this.laneTops.indexOf(undefined);
+        if (lane < 0) {
+            lane = this.laneTops.length;
+        }
+        const span = new Span(this, parent, name, category, performance.now() - this.startTime, lane);
+        this.laneTops[lane] = span;
+        this.openSpans++;
+        return span;
+    }
+
+    endSpan(span: Span): void {
+        const duration = performance.now() - this.startTime - span.start;
+        this.spans.push({
+            name: span.name,
+            category: span.category,
+            start: span.start,
+            duration,
+            lane: span.lane,
+            counters: span.counters
+        });
+        if (this.laneTops[span.lane] === span) {
+            this.laneTops[span.lane] = span.parent && span.parent.lane === span.lane ? span.parent : undefined;
+        }
+        this.openSpans--;
+        if (!span.parent) {
+            this.rootDuration = duration;
+            if (this.openSpans > 0) {
+                setTimeout(() => this.complete(), TRACE_SETTLE_TIMEOUT_MS).unref();
+            }
+        }
+        if (this.rootDuration !== undefined && this.openSpans === 0) {
+            this.complete();
+        }
+    }
+
+    // Time of the traced command itself, without detached work finishing later
+    get duration(): number {
+        return this.rootDuration ?? performance.now() - this.startTime;
+    }
+
+    /**
+     * Trace-event JSON (chrome://tracing, Perfetto) with one complete event per span.
+     */
+    toChromeTraceEvents(pid: number = 1): object[] {
+        const startMicros = Math.round(this.startedAt.getTime() * 1000);
+        const events: object[] = [{ name: 'process_name', ph: 'M', pid, tid: 0, args: { name: this.label } }];
+        for (const span of this.spans) {
+            events.push({
+                name: span.name,
+                cat: span.category,
+                ph: 'X',
+                ts: startMicros + Math.round(span.start * 1000),
+                dur: Math.round(span.duration * 1000),
+                pid,
+                tid: span.lane,
+                args: span.counters
+            });
+        }
+        return events;
+    }
+
+    /**
+     * Per-stage table: how often each span ran, total and longest time, summed counters.
+     */
+    summarize(): string {
+        const stages = new Map<string, { count: number, total: number, max: number, counters: SpanCounters }>();
+        for (const span of this.spans) {
+            const stage = stages.get(span.name) || { count: 0, total: 0, max: 0, counters: {} };
+            stage.count++;
+            stage.total += span.duration;
+            stage.max = Math.max(stage.max, span.duration);
+            for (const [counter, value] of Object.entries(span.counters)) {
+                stage.counters[counter] = (stage.counters[counter] || 0) + value;
+            }
+            stages.set(span.name, stage);
+        }
+
+        const lines = [`[${this.startedAt.toLocaleTimeString()}] ${this.label}: ${Math.round(this.duration)}ms`];
+        lines.push(`  ${'stage'.padEnd(24)}${'count'.padStart(7)}${'total'.padStart(11)}${'max'.padStart(10)}  counters`);
+        // Concurrent spans overlap, so totals of a stage can exceed the wall-clock time
+        const sorted = Array.from(stages.entries()).sort((a, b) => b[1].total - a[1].total);
+        for (const [name, stage] of sorted) {
+            const counters = Object.entries(stage.counters).map(([counter, value]) => `${counter}=${value}`).join(' ');
+            lines.push(`  ${name.padEnd(24)}${String(stage.count).padStart(7)}${`${Math.round(stage.total)}ms`.padStart(11)}${`${Math.round(stage.max)}ms`.padStart(10)}  ${counters}`);
+        }
+        return lines.join('\n');
+    }
+
+    private complete(): void {
+        if (this.completed) {
+            return;
+        }
+        this.completed = true;
+        this.onComplete(this);
+    }
+}
+
+/**
+ * Structured tracing for diagram generation. `trace()` opens a trace around a command; inside
+ * it `span()` times a stage and `count()` adds to the innermost open span. The active span
+ * follows the async call chain, so deeply nested code (Language Server queries, javap) needs no
+ * extra parameters. Outside a trace spans and counters are no-ops.
+ */
+export class Tracer {
+    private storage = new AsyncLocalStorage<Span>();
+    private completedTraces: Trace[] = [];
+    private listeners: ((trace: Trace) => void)[] = [];
+    private verbose = false;
+
+    async trace<T>(label: string, fn: () => Promise<T>): Promise<T> {
+        const trace = new Trace(label, completed => this.completeTrace(completed));
+        const root = trace.startSpan(undefined, 'total', 'command');
+        try {
+            return await this.storage.run(root, fn);
+        } finally {
+            root.end();
+        }
+    }
+
+    async span<T>(name: string, category: string, fn: (span: Span) => Promise<T>): Promise<T> {
+        const span = this.startSpan(name, category);
+        try {
+            return await this.storage.run(span, () => fn(span));
+        } finally {
+            span.end();
+        }
+    }
+
+    spanSync<T>(name: string, category: string, fn: (span: Span) => T): T {
+        const span = this.startSpan(name, category);
+        try {
+            return this.storage.run(span, () => fn(span));
+        } finally {
+            span.end();
+        }
+    }
+
+    count(counter: string, amount: number = 1): void {
+        this.storage.getStore()?.count(counter, amount);
+    }
+
+    onDidCompleteTrace(listener: (trace: Trace) => void): void {
+        this.listeners.push(listener);
+    }
+
+    getCompletedTraces(): readonly Trace[] {
+        return this.completedTraces;
+    }
+
+    /**
+     * All completed traces as one trace-event file, one process per trace.
+     */
+    exportChromeTrace(): string {
+        const traceEvents = this.completedTraces.flatMap((trace, index) => trace.toChromeTraceEvents(index + 1));
+        return JSON.stringify({ traceEvents, displayTimeUnit: 'ms' });
+    }
+
+    setVerbose(verbose: boolean): void {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Detailed per-item logging, only written when `javaClassDiagram.verboseLogging` is on.
+     */
+    log(message: string, ...details: unknown[]): void {
+        if (this.verbose) {
+            console.log(message, ...details);
+        }
+    }
+
+    private startSpan(name: string, category: string): Span {
+        const parent = this.storage.getStore();
+        if (!parent || !parent.trace) {
+            return new Span(undefined, undefined, name, category, 0, 0);
+        }
+        return parent.trace.startSpan(parent, name, category);
+    }
+
+    private completeTrace(trace: Trace): void {
+        this.completedTraces.push(trace);
+        if (this.completedTraces.length > MAX_COMPLETED_TRACES) {
+            this.completedTraces.shift();
+        }
+        for (const listener of this.listeners) {
+            try {
+                listener(trace);
+            } catch (error) {
+                console.error('Trace listener failed:', error);
+            }
+        }
+    }
+}
+
+export const tracer = new Tracer();
@@ -0,0 +1,185 @@
+import { AsyncLocalStorage } from 'async_hooks';
+import type { CancellationSignal } from './concurrency';
+
+/**
+ * Thrown (or rejected with) by work that stopped because its signal was aborted. Catch blocks
+ * that fall back to another strategy rethrow it instead, a cancelled parse must not go on with
+ * the next parser.
+ */
+export class CancellationError extends Error {
+    constructor(message: string = 'Operation cancelled') {
+        super(message);
+        this.name = 'CancellationError';
+    }
+}
+
+export function isCancellationError(error: unknown): boolean {
+    // child_process and fetch reject with an AbortError when their signal fires
+    return error instanceof CancellationError || (error instanceof Error && error.name === 'AbortError');
+}
+
+/**
+ * Minimal view of vscode.CancellationToken, the extension host only hands those to commands.
+ */
+export interface CancellationTokenLike extends CancellationSignal {
+    onCancellationRequested(listener: () => void): { dispose(): void };
+}
+
+const ambientSignal = new AsyncLocalStorage<AbortSignal>();
+
+/**
+ * Runs `fn` with `signal` as the cancellation of everything it calls, directly or through other
+ * components (parser, Language Server client, javap batches), the same way the scheduler
+ * carries request priorities. Without a signal `fn` keeps the surrounding one.
+ */
+export function runCancellable<T>(signal: AbortSignal | undefined, fn: () => Promise<T>): Promise<T> {
+    return signal ? ambientSignal.run(signal, fn) : fn();
+}
+
+export function currentCancellation(): AbortSignal | undefined {
+    return ambientSignal.getStore();
+}
+
+export function throwIfCancelled(signal: AbortSignal | undefined = currentCancellation()): void {
+    if (signal?.aborted) {
+        throw new CancellationError();
+    }
+}
+
+/**
+ * Settles with `promise`, or rejects with a CancellationError as soon as `signal` is aborted.
+ * The work behind `promise` is not stopped, callers use this to stop waiting for shared work.
+ */
+export function raceCancellation<T>(promise: Promise<T>, signal: AbortSignal | undefined = currentCancellation()): Promise<T> {
+    if (!signal) {
+        return promise;
+    }
+    if (signal.aborted) {
+        return Promise.reject(new CancellationError());
+    }
+    return new Promise<T>((resolve, reject) => {
+        const onAbort = () => reject(new CancellationError());
+        signal.addEventListener('abort', onAbort, { once: true });
+        promise.then(value => {
+            signal.removeEventListener('abort', onAbort);
+            resolve(value);
+        }, error => {
+            signal.removeEventListener('abort', onAbort);
+            reject(error);
+        });
+    });
+}
+
+export function abortSignalOf(token: CancellationTokenLike): AbortSignal {
+    const controller = new AbortController();
+    if (token.isCancellationRequested) {
+        controller.abort();
+    } else {
+        const listener = token.onCancellationRequested(() => {
+            listener.dispose();
+            controller.abort();
+        });
+    }
+    return controller.signal;
+}
+
+/**
+ * For the helpers that poll a token (mapWithConcurrency, mapConcurrentStream).
+ */
+export function cancellationSignalOf(signal: AbortSignal | undefined): CancellationSignal | undefined {
+    return signal && { get isCancellationRequested() { return signal.aborted; } };
+}
+
+/**
+ * Aborted as soon as any of `signals` is.
+ */
+export function anySignal(...signals: (AbortSignal | undefined)[]): AbortSignal {
+    const controller = new AbortController();
+    const sources = signals.filter((signal): signal is AbortSignal => signal !== undefined);
+    const abort = () => {
+        for (const source of sources) {
+            source.removeEventListener('abort', abort);
+        }
+        controller.abort();
+    };
+    if (sources.some(source => source.aborted)) {
+        controller.abort();
+    } else {
+        for (const source of sources) {
+            source.addEventListener('abort', abort, { once: true });
+        }
+    }
+    return controller.signal;
+}
+
+/**
+ * Cancellation of work shared by several callers (deduplicated lookups, coalesced requests):
+ * aborted once every caller that joined has been cancelled. A caller without a signal keeps
+ * the work alive for good.
+ */
+export class SharedCancellation {
+    private controller = new AbortController();
+    private waiting = 0;
+    private pinned = false;
+    private detachers: (() => void)[] = [];
+
+    get signal(): AbortSignal {
+        return this.controller.signal;
+    }
+
+    join(signal: AbortSignal | undefined): void {
+        if (this.controller.signal.aborted || this.pinned) {
+            return;
+        }
+        if (!signal) {
+            this.pinned = true;
+            this.dispose();
+            return;
+        }
+        if (signal.aborted) {
+            // Nothing to wait for, the caller is gone already
+            if (this.waiting === 0) {
+                this.controller.abort();
+            }
+            return;
+        }
+        this.waiting++;
+        const onAbort = () => {
+            if (--this.waiting === 0 && !this.pinned) {
+                this.dispose();
+                this.controller.abort();
+            }
+        };
+        signal.addEventListener('abort', onAbort, { once: true });
+        this.detachers.push(() => signal.removeEventListener('abort', onAbort));
+    }
+
+    /**
+     * Stops listening to the callers' signals, once the shared work has settled.
+     */
+    dispose(): void {
+        for (const detach of this.detachers) {
+            detach();
+        }
+        this.detachers = [];
+    }
+}
+
+/**
+ * Cancels the previous run whenever a new one begins, for work where only the latest request
+ * matters: the diagram of the file the user clicked last, the newest live update.
+ */
+export class SupersedingCancellation {
+    private controller: AbortController | undefined;
+
+    begin(): AbortSignal {
+        this.controller?.abort();
+        this.controller = new AbortController();
+        return this.controller.signal;
+    }
+
+    cancel(): void {
+        this.controller?.abort();
+        this.controller = undefined;
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Minimal view of vscode.CancellationToken so this helper stays usable outside the extension host.
+ */
+export interface CancellationSignal {
+    readonly isCancellationRequested: boolean;
+}
+
+export const DEFAULT_PARSE_CONCURRENCY = 8;
+
+/**
+ * Runs `worker` over `items` with at most `limit` calls in flight and returns the results
+ * in input order. Once `token` is cancelled no further items are started; slots of items
+ * that never ran are left undefined.
+ */
+export async function mapWithConcurrency<T, R>(
+    items: readonly T[],
+    limit: number,
+    worker: (item: T, index: number) => Promise<R>,
+    token?: CancellationSignal
+): Promise<(R | undefined)[]> {
+    const results: (R | undefined)[] = new Array(items.length);
+    let nextIndex = 0;
+
+    const runLane = async (): Promise<void> => {
+        while (nextIndex < items.length && !token?.isCancellationRequested) {
+            const index = nextIndex++;
+            results[index] = await worker(items[index], index);
+        }
+    };
+
+    const laneCount = Math.max(1, Math.min(Math.floor(limit) || 1, items.length));
+    const lanes: Promise<void>[] = [];
+    for (let i = 0; i < laneCount; i++) {
+        lanes.push(runLane());
+    }
+    await Promise.all(lanes);
+
+    return results;
+}
+
+export interface StreamResult<T, R> {
+    index: number;
+    item: T;
+    value: R;
+}
+
+/**
+ * Streaming form of `mapWithConcurrency`: items are pulled from `source` only while fewer than
+ * `limit` calls are in flight, so a slow worker holds the producer back instead of buffering
+ * everything it produces. Results are yielded as they complete, with the index of their item.
+ * Once `token` is cancelled no further items are pulled; calls in flight are still yielded.
+ */
+export async function* mapConcurrentStream<T, R>(
+    source: AsyncIterable<T>,
+    limit: number,
+    worker: (item: T, index: number) => Promise<R>,
+    token?: CancellationSignal
+): AsyncGenerator<StreamResult<T, R>> {
+    const iterator = source[Symbol.asyncIterator]();
+    const laneCount = Math.max(1, Math.floor(limit) || 1);
+    const inFlight = new Map<number, Promise<StreamResult<T, R>>>();
+    let nextIndex = 0;
+    let exhausted = false;
+
+    try {
+        while (true) {
+            while (!exhausted && inFlight.size < laneCount && !token?.isCancellationRequested) {
+                const next = await iterator.next();
+                if (next.done) {
+                    exhausted = true;
+                    break;
+                }
+                const index = nextIndex++;
+                const item = next.value;
+                inFlight.set(index, worker(item, index).then(value => ({ index, item, value })));
+            }
+            if (inFlight.size === 0) {
+                return;
+            }
+            const settled = await Promise.race(inFlight.values());
+            inFlight.delete(settled.index);
+            yield settled;
+        }
+    } finally {
+        await iterator.return?.();
+    }
+}
@@ -0,0 +1,377 @@
+import * as fs from 'fs';
+import * as path from 'path';
+import { CancellationSignal } from './concurrency';
+
+export const DEFAULT_DISCOVERY_CONCURRENCY = 16;
+
+// Found paths the consumer has not taken yet; directory reads pause above this
+const MAX_BUFFERED_PATHS = 4096;
+
+// Never useful to walk, whatever the ignore files say
+const ALWAYS_SKIPPED_DIRECTORIES = new Set(['node_modules']);
+
+export interface FileDiscoveryOptions {
+    // File name suffix of the reported files
+    extension?: string;
+    // Glob patterns in files.exclude syntax, relative to `excludeBase`
+    excludeGlobs?: string[];
+    // Directory the exclude globs are relative to, defaults to the walked folder
+    excludeBase?: string;
+    // Honor .gitignore files and .git/info/exclude
+    useGitIgnore?: boolean;
+    // Directories read at the same time
+    concurrency?: number;
+    token?: CancellationSignal;
+}
+
+interface IgnoreRule {
+    // Directory the pattern is relative to, forward slashes and a trailing slash
+    base: string;
+    regex: RegExp;
+    negate: boolean;
+    directoryOnly: boolean;
+}
+
+interface DirectoryTask {
+    dir: string;
+    rules: IgnoreRule[];
+}
+
+/**
+ * Walks `root` and yields every file ending in `options.extension` as soon as its directory has
+ * been read. Directories are read asynchronously, `concurrency` at a time, and without a depth
+ * limit. Ignored directories (.gitignore, files.exclude, hidden directories) are not entered at
+ * all. Symbolic links to directories are not followed, like git does, so link cycles cannot loop.
+ */
+export async function* discoverFiles(root: string, options: FileDiscoveryOptions = {}): AsyncGenerator<string> {
+    root = path.resolve(root);
+    const extension = options.extension ?? '.java';
+    const useGitIgnore = options.useGitIgnore !== false;
+    const concurrency = Math.max(1, Math.floor(options.concurrency ?? DEFAULT_DISCOVERY_CONCURRENCY));
+    const excludeRules = (options.excludeGlobs || [])
+        .map(glob => compileExcludeGlob(glob, options.excludeBase ?? root))
+        .filter((rule): rule is IgnoreRule => rule !== undefined);
+
+    const initialRules = useGitIgnore ? await loadAncestorIgnoreRules(root) : [];
+    const pending: DirectoryTask[] = [{ dir: root, rules: initialRules }];
+    const found: string[] = [];
+    let active = 0;
+    let stopped = false;
+    let wake: (() => void) | undefined;
+
+    const isExcluded = (fullPath: string, isDirectory: boolean, rules: IgnoreRule[]) =>
+        matchesRules(excludeRules, fullPath, isDirectory) || matchesRules(rules, fullPath, isDirectory);
+
+    const readDirectory = async (task: DirectoryTask): Promise<void> => {
+        let entries: fs.Dirent[];
+        try {
+            entries = await fs.promises.readdir(task.dir, { withFileTypes: true });
+        } catch (error) {
+            console.warn(`Cannot read directory ${task.dir}: ${error}`);
+            return;
+        }
+
+        let rules = task.rules;
+        if (useGitIgnore && entries.some(entry => entry.name === '.gitignore' && !entry.isDirectory())) {
+            const ownRules = await readIgnoreFile(path.join(task.dir, '.gitignore'), task.dir);
+            if (ownRules.length > 0) {
+                rules = rules.concat(ownRules);
+            }
+        }
+
+        for (const entry of entries) {
+            const fullPath = path.join(task.dir, entry.name);
+            if (entry.isDirectory()) {
+                if (entry.name.startsWith('.') || ALWAYS_SKIPPED_DIRECTORIES.has(entry.name) || isExcluded(fullPath, true, rules)) {
+                    continue;
+                }
+                pending.push({ dir: fullPath, rules });
+            } else if ((entry.isFile() || entry.isSymbolicLink()) && entry.name.endsWith(extension)) {
+                if (!isExcluded(fullPath, false, rules)) {
+                    found.push(fullPath);
+                }
+            }
+        }
+    };
+
+    const pump = () => {
+        while (!stopped && !options.token?.isCancellationRequested &&
+            active < concurrency && pending.length > 0 && found.length < MAX_BUFFERED_PATHS) {
+            // Depth first keeps the pending list short on wide trees
+            const task = pending.pop()!;
+            active++;
+            readDirectory(task).finally(() => {
+                active--;
+                const resume = wake;
+                wake = undefined;
+                resume?.();
+            });
+        }
+    };
+
+    try {
+        while (true) {
+            pump();
+            if (found.length > 0) {
+                const batch = found.splice(0, found.length);
+                for (const filePath of batch) {
+                    yield filePath;
+                }
+                continue;
+            }
+            if (active === 0 && (pending.length === 0 || options.token?.isCancellationRequested)) {
+                return;
+            }
+            await new Promise<void>(resolve => { wake = resolve; });
+        }
+    } finally {
+        // Consumer stopped early: reads in flight finish, nothing new starts
+        stopped = true;
+    }
+}
+
+/**
+ * Collects `discoverFiles` into an array; `onProgress` gets the running count.
+ */
+export async function collectFiles(
+    root: string,
+    options: FileDiscoveryOptions = {},
+    onProgress?: (count: number) => void
+): Promise<string[]> {
+    const files: string[] = [];
+    for await (const filePath of discoverFiles(root, options)) {
+        files.push(filePath);
+        onProgress?.(files.length);
+    }
+    return files;
+}
+
+/**
+ * Whether `discoverFiles(root, options)` would leave `filePath` out: outside `root`, another
+ * extension, or below a hidden, always skipped, excluded or ignored directory, or excluded
+ * itself. For single paths reported by file system watchers, which see everything.
+ */
+export async function isExcludedPath(root: string, filePath: string, options: FileDiscoveryOptions = {}): Promise<boolean> {
+    root = path.resolve(root);
+    const relative = path.relative(root, path.resolve(filePath));
+    if (!relative || relative.startsWith('..') || path.isAbsolute(relative)) {
+        return true;
+    }
+    if (!filePath.endsWith(options.extension ?? '.java')) {
+        return true;
+    }
+
+    const useGitIgnore = options.useGitIgnore !== false;
+    const excludeRules = (options.excludeGlobs || [])
+        .map(glob => compileExcludeGlob(glob, options.excludeBase ?? root))
+        .filter((rule): rule is IgnoreRule => rule !== undefined);
+    let rules = useGitIgnore ? await loadAncestorIgnoreRules(root) : [];
+    const isExcluded = (fullPath: string, isDirectory: boolean) =>
+        matchesRules(excludeRules, fullPath, isDirectory) || matchesRules(rules, fullPath, isDirectory);
+
+    // Same checks as the walk, one directory at a time from the root down
+    const segments = relative.split(path.sep);
+    let dir = root;
+    for (let i = 0; i < segments.length; i++) {
+        if (useGitIgnore) {
+            rules = rules.concat(await readIgnoreFile(path.join(dir, '.gitignore'), dir));
+        }
+        const fullPath = path.join(dir, segments[i]);
+        const isDirectory = i < segments.length - 1;
+        if (isDirectory && (segments[i].startsWith('.') || ALWAYS_SKIPPED_DIRECTORIES.has(segments[i]))) {
+            return true;
+        }
+        if (isExcluded(fullPath, isDirectory)) {
+            return true;
+        }
+        dir = fullPath;
+    }
+    return false;
+}
+
+function matchesRules(rules: IgnoreRule[], fullPath: string, isDirectory: boolean): boolean {
+    if (rules.length === 0) {
+        return false;
+    }
+    const posixPath = toPosix(fullPath);
+    let ignored = false;
+    for (const rule of rules) {
+        // Later rules win; only rules that could flip the current outcome need testing
+        if (rule.negate !== ignored || (rule.directoryOnly && !isDirectory)) {
+            continue;
+        }
+        if (!posixPath.startsWith(rule.base)) {
+            continue;
+        }
+        if (rule.regex.test(posixPath.substring(rule.base.length))) {
+            ignored = !rule.negate;
+        }
+    }
+    return ignored;
+}
+
+/**
+ * .gitignore files between the repository root and `root` (exclusive) plus .git/info/exclude,
+ * outermost first. Outside a repository ancestor ignore files do not apply.
+ */
+async function loadAncestorIgnoreRules(root: string): Promise<IgnoreRule[]> {
+    const ancestors: string[] = [];
+    let dir = path.resolve(root);
+    while (!(await pathExists(path.join(dir, '.git')))) {
+        const parent = path.dirname(dir);
+        if (parent === dir) {
+            return [];
+        }
+        dir = parent;
+        ancestors.unshift(dir);
+    }
+
+    const repositoryRoot = dir;
+    const rules = await readIgnoreFile(path.join(repositoryRoot, '.git', 'info', 'exclude'), repositoryRoot);
+    for (const ancestor of ancestors) {
+        rules.push(...await readIgnoreFile(path.join(ancestor, '.gitignore'), ancestor));
+    }
+    return rules;
+}
+
+async function readIgnoreFile(filePath: string, base: string): Promise<IgnoreRule[]> {
+    let content: string;
+    try {
+        content = await fs.promises.readFile(filePath, 'utf8');
+    } catch {
+        return [];
+    }
+    return parseGitIgnore(content, base);
+}
+
+/**
+ * Rules of one .gitignore file located in `base`.
+ */
+function parseGitIgnore(content: string, base: string): IgnoreRule[] {
+    const rules: IgnoreRule[] = [];
+    for (const rawLine of content.split(/\r?\n/)) {
+        // Trailing spaces are ignored unless escaped
+        let line = rawLine.replace(/(?<!\\)\s+$/, '');
+        if (!line || line.startsWith('#')) {
+            continue;
+        }
+
+        let negate = false;
+        if (line.startsWith('!')) {
+            negate = true;
+            line = line.substring(1);
+        } else if (line.startsWith('\\!') || line.startsWith('\\#')) {
+            line = line.substring(1);
+        }
+
+        let directoryOnly = false;
+        if (line.endsWith('/')) {
+            directoryOnly = true;
+            line = line.replace(/\/+$/, '');
+        }
+        if (!line) {
+            continue;
+        }
+
+        // A slash anywhere but the end anchors the pattern to the .gitignore directory
+        const anchored = line.includes('/');
+        line = line.replace(/^\/+/, '');
+        const source = globToRegExpSource(line, false);
+        rules.push({
+            base: directoryBase(base),
+            regex: new RegExp(anchored ? `^${source}$` : `^(?:.*/)?${source}$`),
+            negate,
+            directoryOnly
+        });
+    }
+    return rules;
+}
+
+function compileExcludeGlob(glob: string, base: string): IgnoreRule | undefined {
+    const pattern = glob.trim().replace(/^\.\//, '').replace(/\/+$/, '');
+    if (!pattern) {
+        return undefined;
+    }
+    return {
+        base: directoryBase(base),
+        regex: new RegExp(`^${globToRegExpSource(pattern, true)}$`),
+        negate: false,
+        directoryOnly: false
+    };
+}
+
+/**
+ * Glob to regular expression source: `**` spans directories, `*` and `?` stay within one,
+ * `[...]` is a character class and, for files.exclude globs, `{a,b}` an alternation.
+ */
+function globToRegExpSource(glob: string, braces: boolean): string {
+    let source = '';
+    let braceDepth = 0;
+    for (let i = 0; i < glob.length; i++) {
+        const char = glob[i];
+        if (char === '*') {
+            if (glob[i + 1] === '*') {
+                const atSegmentStart = i === 0 || glob[i - 1] === '/';
+                i++;
+                if (glob[i + 1] === '/' && atSegmentStart) {
+                    // "**/" matches zero or more directories
+                    source += '(?:.*/)?';
+                    i++;
+                } else {
+                    source += '.*';
+                }
+            } else {
+                source += '[^/]*';
+            }
+        } else if (char === '?') {
+            source += '[^/]';
+        } else if (char === '[') {
+            const end = glob.indexOf(']', i + 2);
+            if (end < 0) {
+                source += '\\[';
+                continue;
+            }
+            let body = glob.substring(i + 1, end).replace(/\\/g, '\\\\');
+            if (body.startsWith('!')) {
+                body = '^' + body.substring(1);
+            }
+            source += `[${body}]`;
+            i = end;
+        } else if (char === '\\' && i + 1 < glob.length) {
+            source += escapeRegExp(glob[++i]);
+        } else if (braces && char === '{') {
+            braceDepth++;
+            source += '(?:';
+        } else if (braces && char === '}' && braceDepth > 0) {
+            braceDepth--;
+            source += ')';
+        } else if (braces && char === ',' && braceDepth > 0) {
+            source += '|';
+        } else {
+            source += escapeRegExp(char);
+        }
+    }
+    return source + ')'.repeat(braceDepth);
+}
+
+function escapeRegExp(text: string): string {
+    return text.replace(/[.*+?^${}()|[\]\\/]/g, '\\$&');
+}
+
+function toPosix(filePath: string): string {
+    return filePath.replace(/\\/g, '/');
+}
+
+function directoryBase(dir: string): string {
+    const base = toPosix(path.resolve(dir));
+    return base.endsWith('/') ? base : base + '/';
+}
+
+async function pathExists(filePath: string): Promise<boolean> {
+    try {
+        await fs.promises.access(filePath);
+        return true;
+    } catch {
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+import * as vscode from 'vscode';
+import { CancellationSignal } from './concurrency';
+import { collectFiles, isExcludedPath, FileDiscoveryOptions } from './fileDiscovery';
+
+/**
+ * Java files below `folderPath`, skipping what .gitignore and files.exclude leave out.
+ */
+export async function findJavaFiles(folderPath: string, token?: CancellationSignal): Promise<string[]> {
+    return collectFiles(folderPath, getDiscoveryOptions(folderPath, token));
+}
+
+/**
+ * Whether `findJavaFiles(folderPath)` would leave `filePath` out. File system watchers report
+ * build output and excluded folders too, this keeps them out of what was built from the walk.
+ */
+export function isExcludedJavaFile(folderPath: string, filePath: string): Promise<boolean> {
+    return isExcludedPath(folderPath, filePath, getDiscoveryOptions(folderPath));
+}
+
+/**
+ * Discovery options for a workspace folder (or a folder inside one): the user's files.exclude
+ * globs plus .gitignore files, the same exclusions the Explorer and git apply.
+ */
+export function getDiscoveryOptions(folderPath: string, token?: CancellationSignal): FileDiscoveryOptions {
+    const folderUri = vscode.Uri.file(folderPath);
+    // files.exclude globs are relative to the workspace folder, not to the folder being walked
+    const workspaceFolder = vscode.workspace.getWorkspaceFolder(folderUri);
+    const excludes = vscode.workspace.getConfiguration('files', folderUri).get<{ [glob: string]: unknown }>('exclude', {});
+    return {
+        extension: '.java',
+        excludeGlobs: Object.keys(excludes).filter(glob => excludes[glob] === true),
+        excludeBase: workspaceFolder?.uri.fsPath ?? folderPath,
+        useGitIgnore: true,
+        token
+    };
+}
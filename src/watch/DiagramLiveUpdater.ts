@@ -0,0 +1,287 @@
+import * as vscode from 'vscode';
+import * as path from 'path';
+import * as fs from 'fs';
+import { JavaCodeParser, JavaClassStructure } from '../parser/JavaCodeParser';
+import { PlantUMLGenerator } from '../plantuml/PlantUMLGenerator';
+import { ClassDiagramWebviewProvider } from '../webview/ClassDiagramWebviewProvider';
+import { buildClassGraph } from '../graph/ClassGraph';
+import { languageServerScheduler } from '../languageserver/LanguageServerScheduler';
+import { SupersedingCancellation, isCancellationError, runCancellable } from '../util/cancellation';
+import { tracer } from '../trace/Tracer';
+import { isExcludedJavaFile } from '../util/workspaceDiscovery';
+
+// Saves usually arrive in bursts (format on save, multi-file refactors)
+const DEBOUNCE_MS = 300;
+
+interface FolderSession {
+    kind: 'folder';
+    folderPath: string;
+    // Class structures by file path, in the order they were first parsed
+    structures: Map<string, JavaClassStructure>;
+}
+
+interface FileSession {
+    kind: 'file';
+    mainFile: string;
+    // Files of the related classes shown in the diagram
+    relatedFiles: Set<string>;
+}
+
+type DiagramSession = FolderSession | FileSession;
+
+/**
+ * Keeps the open class diagram in sync with the Java sources it was built from.
+ * Only the compilation units reported by the file system watcher are re-parsed;
+ * everything else comes from the in-memory session and the class model cache.
+ */
+export class DiagramLiveUpdater implements vscode.Disposable {
+    private session: DiagramSession | undefined;
+    private watcher: vscode.FileSystemWatcher | undefined;
+    private pendingChanges = new Map<string, 'changed' | 'deleted'>();
+    private debounceTimer: NodeJS.Timeout | undefined;
+    private processing: Promise<void> | undefined;
+    // A new diagram (or disposing) cancels the update of the previous one
+    private updates = new SupersedingCancellation();
+
+    constructor(
+        private javaParser: JavaCodeParser,
+        private plantUMLGenerator: PlantUMLGenerator,
+        private webviewProvider: ClassDiagramWebviewProvider
+    ) {}
+
+    trackFolder(folderPath: string, classStructures: JavaClassStructure[]): void {
+        const structures = new Map<string, JavaClassStructure>();
+        for (const structure of classStructures) {
+            structures.set(this.normalizePath(structure.filePath), structure);
+        }
+        this.startSession({ kind: 'folder', folderPath: this.normalizePath(folderPath), structures });
+    }
+
+    trackFile(mainFile: string, relatedClasses: JavaClassStructure[]): void {
+        const relatedFiles = new Set<string>();
+        for (const relatedClass of relatedClasses) {
+            const filePath = this.toFsPath(relatedClass.filePath);
+            if (filePath) {
+                relatedFiles.add(filePath);
+            }
+        }
+        this.startSession({ kind: 'file', mainFile: this.normalizePath(mainFile), relatedFiles });
+    }
+
+    dispose(): void {
+        if (this.debounceTimer) {
+            clearTimeout(this.debounceTimer);
+            this.debounceTimer = undefined;
+        }
+        this.updates.cancel();
+        this.watcher?.dispose();
+        this.watcher = undefined;
+        this.session = undefined;
+        this.pendingChanges.clear();
+    }
+
+    private startSession(session: DiagramSession): void {
+        if (!vscode.workspace.getConfiguration('javaClassDiagram').get<boolean>('liveUpdate', true)) {
+            this.dispose();
+            return;
+        }
+
+        this.updates.cancel();
+        this.session = session;
+        this.pendingChanges.clear();
+
+        if (!this.watcher) {
+            this.watcher = vscode.workspace.createFileSystemWatcher('**/*.java');
+            this.watcher.onDidChange(uri => this.enqueue(uri, 'changed'));
+            this.watcher.onDidCreate(uri => this.enqueue(uri, 'changed'));
+            this.watcher.onDidDelete(uri => this.enqueue(uri, 'deleted'));
+        }
+    }
+
+    private enqueue(uri: vscode.Uri, change: 'changed' | 'deleted'): void {
+        const filePath = this.normalizePath(uri.fsPath);
+
+        // Stale cache entries must go even if no diagram depends on the file
+        if (change === 'deleted') {
+            this.javaParser.invalidateFile(filePath);
+        }
+
+        const session = this.session;
+        if (!session || !this.isRelevant(session, filePath)) {
+            return;
+        }
+        if (session.kind === 'folder' && change !== 'deleted') {
+            // The folder diagram never read ignored or excluded files, saves there must not add them
+            isExcludedJavaFile(session.folderPath, filePath).then(excluded => {
+                if (!excluded && this.session === session) {
+                    this.schedule(filePath, change);
+                }
+            }, error => console.warn(`Live update could not check ${filePath}:`, error));
+            return;
+        }
+        this.schedule(filePath, change);
+    }
+
+    private schedule(filePath: string, change: 'changed' | 'deleted'): void {
+        this.pendingChanges.set(filePath, change);
+        if (this.debounceTimer) {
+            clearTimeout(this.debounceTimer);
+        }
+        this.debounceTimer = setTimeout(() => {
+            this.debounceTimer = undefined;
+            this.flushChanges();
+        }, DEBOUNCE_MS);
+    }
+
+    private isRelevant(session: DiagramSession, filePath: string): boolean {
+        if (session.kind === 'folder') {
+            return filePath.startsWith(session.folderPath + path.sep);
+        }
+        return filePath === session.mainFile || session.relatedFiles.has(filePath);
+    }
+
+    private flushChanges(): void {
+        // Changes arriving while an update runs are picked up by the next round
+        if (this.processing) {
+            this.processing.then(() => this.flushChanges());
+            return;
+        }
+        if (this.pendingChanges.size === 0) {
+            return;
+        }
+
+        const changes = new Map(this.pendingChanges);
+        this.pendingChanges.clear();
+
+        this.processing = runCancellable(this.updates.begin(), () => this.applyChanges(changes))
+            .catch(error => {
+                if (!isCancellationError(error)) {
+                    console.error('Live diagram update failed:', error);
+                }
+            })
+            .finally(() => {
+                this.processing = undefined;
+            });
+    }
+
+    private async applyChanges(changes: Map<string, 'changed' | 'deleted'>): Promise<void> {
+        const session = this.session;
+        if (!session) {
+            return;
+        }
+
+        // The panel was closed since the diagram was generated
+        if (!this.webviewProvider.hasOpenPanel()) {
+            this.dispose();
+            return;
+        }
+
+        const startTime = Date.now();
+        let plantUMLCode: string;
+
+        if (session.kind === 'folder') {
+            // Packages whose classes changed; saves that leave every model as it was stop here
+            const changedPackages = new Set<string>();
+            for (const [filePath, change] of changes) {
+                const previous = session.structures.get(filePath);
+                if (change === 'deleted' || !fs.existsSync(filePath)) {
+                    if (previous) {
+                        session.structures.delete(filePath);
+                        changedPackages.add(previous.packageName || '');
+                    }
+                    continue;
+                }
+
+                try {
+                    const javaCode = await fs.promises.readFile(filePath, 'utf8');
+                    const structure = await languageServerScheduler.runInBackground(() => this.javaParser.parseJavaFile(javaCode, filePath));
+                    if (previous && isSameModel(previous, structure)) {
+                        continue;
+                    }
+                    session.structures.set(filePath, structure);
+                    changedPackages.add(structure.packageName || '');
+                    if (previous) {
+                        changedPackages.add(previous.packageName || '');
+                    }
+                } catch (error) {
+                    if (isCancellationError(error)) {
+                        throw error;
+                    }
+                    console.warn(`Live update could not parse ${filePath}:`, error);
+                }
+            }
+
+            if (session.structures.size === 0) {
+                return;
+            }
+            if (changedPackages.size === 0) {
+                tracer.log(`Live update: ${changes.size} file(s) saved, diagram unchanged`);
+                return;
+            }
+            if (this.webviewProvider.isShowingGraph()) {
+                // The graph view lays itself out, it only needs the new data
+                if (this.session === session) {
+                    await this.webviewProvider.updateGraph(buildClassGraph(Array.from(session.structures.values())));
+                    console.log(`Live graph update for ${changes.size} file(s) took ${Date.now() - startTime}ms`);
+                }
+                return;
+            }
+            if (this.webviewProvider.isShowingPackageOverview()) {
+                if (this.session === session) {
+                    await this.webviewProvider.updatePackageOverview(Array.from(session.structures.values()), changedPackages);
+                    console.log(`Live package overview update for ${changes.size} file(s) took ${Date.now() - startTime}ms`);
+                }
+                return;
+            }
+            plantUMLCode = this.plantUMLGenerator.generateMultiClassDiagram(Array.from(session.structures.values()));
+        } else {
+            if (!fs.existsSync(session.mainFile)) {
+                return;
+            }
+
+            const javaCode = await fs.promises.readFile(session.mainFile, 'utf8');
+            const { mainClass, relatedClasses } = await this.javaParser.parseJavaFileWithRelatedClasses(javaCode, session.mainFile);
+
+            // The set of related classes may have changed with the edit
+            session.relatedFiles.clear();
+            for (const relatedClass of relatedClasses) {
+                const filePath = this.toFsPath(relatedClass.filePath);
+                if (filePath) {
+                    session.relatedFiles.add(filePath);
+                }
+            }
+            plantUMLCode = this.plantUMLGenerator.generateInteractiveClassDiagram(mainClass, relatedClasses);
+        }
+
+        // A newer session may have started while we were parsing
+        if (this.session !== session) {
+            return;
+        }
+
+        await this.webviewProvider.updateDiagram(plantUMLCode);
+        console.log(`Live diagram update for ${changes.size} file(s) took ${Date.now() - startTime}ms`);
+    }
+
+    private toFsPath(fileRef: string): string | undefined {
+        if (!fileRef) {
+            return undefined;
+        }
+        if (fileRef.startsWith('file:')) {
+            return this.normalizePath(vscode.Uri.parse(fileRef).fsPath);
+        }
+        return path.isAbsolute(fileRef) ? this.normalizePath(fileRef) : undefined;
+    }
+
+    private normalizePath(filePath: string): string {
+        const normalized = path.normalize(filePath).replace(/[\\/]+$/, '');
+        return process.platform === 'win32' ? normalized.toLowerCase() : normalized;
+    }
+}
+
+/**
+ * Same parsed model before and after a save. Compact structures serialize their member tables
+ * as plain lists, so this compares what the diagrams are generated from.
+ */
+function isSameModel(previous: JavaClassStructure, next: JavaClassStructure): boolean {
+    return JSON.stringify(previous) === JSON.stringify(next);
+}
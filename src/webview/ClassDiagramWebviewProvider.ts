@@ -1,88 +1,367 @@
 import * as vscode from 'vscode';
 import { JavaLanguageServerClient } from '../languageserver/JavaLanguageServerClient';
+import { PlantUMLRenderService } from '../render/PlantUMLRenderService';
+import { ClassGraph, diffClassGraphs } from '../graph/ClassGraph';
+import { buildRTree, searchRTree } from '../graph/SpatialIndex';
+import { JavaClassStructure } from '../parser/JavaCodeParser';
+import { PlantUMLGenerator } from '../plantuml/PlantUMLGenerator';
+import { getClassGraphWebviewContent } from './ClassGraphWebviewContent';
+import { contentSecurityPolicy, createNonce, escapeHtml, scriptStringLiteral } from './ContentSecurityPolicy';
+import { ModuleOverview } from '../modules/ModuleOverview';
+
+// Expanded modules whose classes are kept, the least recently expanded one is dropped first
+const MAX_LOADED_MODULES = 4;
+
+/**
+ * Where a module overview gets the classes of a module when it is expanded.
+ */
+export interface ModuleTileSource {
+    loadModule(moduleId: string): Promise<JavaClassStructure[]>;
+    // Modules with more classes open as a package overview of the module
+    packageOverviewThreshold: number;
+}
 
 export class ClassDiagramWebviewProvider {
     private context: vscode.ExtensionContext;
     private currentPanel: vscode.WebviewPanel | undefined;
     private languageServerClient: JavaLanguageServerClient;
-
-    constructor(context: vscode.ExtensionContext) {
+    private renderService: PlantUMLRenderService;
+    // What the panel currently shows; the graph view asks for its data once loaded
+    private viewMode: 'plantuml' | 'graph' = 'plantuml';
+    private currentGraph: ClassGraph | undefined;
+    // Source of the PlantUML view, a live update producing the same source renders nothing
+    private currentPlantUMLCode: string | undefined;
+    // Classes behind a package overview, expanded packages are generated from these on demand
+    private overviewStructures: JavaClassStructure[] | undefined;
+    // Module overview: classes are loaded per module when its tile is expanded
+    private moduleSource: ModuleTileSource | undefined;
+    private loadedModules = new Map<string, Promise<JavaClassStructure[]>>();
+    private plantUMLGenerator = new PlantUMLGenerator();
+
+    /**
+     * Navigation goes through the parser's Language Server client, initialized by the
+     * extension with the first diagram request.
+     */
+    constructor(context: vscode.ExtensionContext, languageServerClient: JavaLanguageServerClient) {
         this.context = context;
-        this.languageServerClient = new JavaLanguageServerClient(context);
-        // 初始化Language Server客户端
-        this.initializeLanguageServer();
+        this.languageServerClient = languageServerClient;
+        this.renderService = new PlantUMLRenderService(context);
+        context.subscriptions.push(this.renderService);
     }
 
-    private async initializeLanguageServer(): Promise<void> {
-        try {
-            await this.languageServerClient.initialize();
-            console.log('Language Server client initialized for webview navigation');
-        } catch (error) {
-            console.error('Failed to initialize Language Server client:', error);
+    async showClassDiagram(plantUMLCode: string, title: string): Promise<void> {
+        // Start rendering while the webview loads, the webview's request joins this render
+        this.prerender(plantUMLCode);
+
+        const panel = this.revealPanel(title);
+        this.viewMode = 'plantuml';
+        this.currentPlantUMLCode = plantUMLCode;
+        this.currentGraph = undefined;
+        this.overviewStructures = undefined;
+        this.clearModules();
+
+        // Update webview content
+        panel.webview.html = this.getWebviewContent(plantUMLCode, title, panel.webview.cspSource);
+    }
+
+    /**
+     * Shows a class graph laid out and drawn by the webview itself. Used for folders too
+     * large for PlantUML; the graph is sent once the webview reports it is ready.
+     */
+    async showClassGraph(graph: ClassGraph, title: string): Promise<void> {
+        const panel = this.revealPanel(title);
+        this.viewMode = 'graph';
+        this.currentPlantUMLCode = undefined;
+        this.currentGraph = graph;
+        this.overviewStructures = undefined;
+        this.clearModules();
+        panel.webview.html = getClassGraphWebviewContent(title, panel.webview.cspSource);
+    }
+
+    /**
+     * Replaces the graph in an open graph view, keeping its pan and zoom. Only a change of
+     * nodes or edges is laid out again; changed members just redraw their boxes.
+     */
+    async updateGraph(graph: ClassGraph): Promise<boolean> {
+        if (!this.currentPanel || this.viewMode !== 'graph') {
+            return false;
+        }
+        const previous = this.currentGraph;
+        this.currentGraph = graph;
+        if (previous) {
+            const diff = diffClassGraphs(previous, graph);
+            if (diff.sameStructure) {
+                return diff.changedNodes.length === 0 ||
+                    this.currentPanel.webview.postMessage({ command: 'updateGraphNodes', nodes: diff.changedNodes });
+            }
         }
+        return this.currentPanel.webview.postMessage({ command: 'renderGraph', graph });
     }
 
-    async showClassDiagram(plantUMLCode: string, title: string): Promise<void> {
+    /**
+     * Shows the package-level overview of a large folder. Packages are expanded in the webview,
+     * each one is generated and rendered as its own tile only when asked for.
+     */
+    async showPackageOverview(classStructures: JavaClassStructure[], title: string): Promise<void> {
+        await this.showClassDiagram(this.plantUMLGenerator.generatePackageOverview(classStructures), title);
+        this.overviewStructures = classStructures;
+    }
+
+    /**
+     * Regenerates the overview of an open package overview. Expanded tiles of `changedPackages`
+     * are requested again, all of them when it is not given.
+     */
+    async updatePackageOverview(classStructures: JavaClassStructure[], changedPackages?: ReadonlySet<string>): Promise<boolean> {
+        if (!this.currentPanel || !this.overviewStructures) {
+            return false;
+        }
+        this.overviewStructures = classStructures;
+        const updated = await this.updateDiagram(this.plantUMLGenerator.generatePackageOverview(classStructures));
+        if (!updated || changedPackages?.size === 0) {
+            return updated;
+        }
+        return this.currentPanel.webview.postMessage({
+            command: 'tilesChanged',
+            packages: changedPackages && Array.from(changedPackages)
+        });
+    }
+
+    /**
+     * Shows the module overview of a multi-module build. Only the summary is held; the classes
+     * of a module are loaded when its tile is expanded and dropped again when it is collapsed,
+     * so memory follows what is on screen rather than the size of the build.
+     */
+    async showModuleOverview(overview: ModuleOverview, title: string, source: ModuleTileSource): Promise<void> {
+        await this.showClassDiagram(this.plantUMLGenerator.generateModuleOverview(overview), title);
+        this.moduleSource = source;
+    }
+
+    isShowingPackageOverview(): boolean {
+        return this.currentPanel !== undefined && this.overviewStructures !== undefined;
+    }
+
+    isShowingGraph(): boolean {
+        return this.currentPanel !== undefined && this.viewMode === 'graph';
+    }
+
+    private revealPanel(title: string): vscode.WebviewPanel {
         // Create or show webview panel
         if (this.currentPanel) {
+            this.currentPanel.title = `Class Diagram - ${title}`;
             this.currentPanel.reveal();
-        } else {
-            this.currentPanel = vscode.window.createWebviewPanel(
-                'javaClassDiagram',
-                `Class Diagram - ${title}`,
-                vscode.ViewColumn.Two,
-                {
-                    enableScripts: true,
-                    retainContextWhenHidden: true,
-                    localResourceRoots: [
-                        vscode.Uri.joinPath(this.context.extensionUri, 'resources')
-                    ]
+            return this.currentPanel;
+        }
+
+        const panel = vscode.window.createWebviewPanel(
+            'javaClassDiagram',
+            `Class Diagram - ${title}`,
+            vscode.ViewColumn.Two,
+            {
+                enableScripts: true,
+                retainContextWhenHidden: true,
+                localResourceRoots: [
+                    vscode.Uri.joinPath(this.context.extensionUri, 'resources')
+                ]
+            }
+        );
+        this.currentPanel = panel;
+
+        // Handle panel disposal
+        panel.onDidDispose(() => {
+            this.currentPanel = undefined;
+            this.currentGraph = undefined;
+            this.overviewStructures = undefined;
+            this.clearModules();
+        });
+
+        // Handle messages from webview
+        panel.webview.onDidReceiveMessage(
+            async message => {
+                try {
+                    switch (message.command) {
+                        case 'renderDiagram':
+                            await this.renderDiagram(message.plantUMLCode, message.requestId);
+                            break;
+                        case 'expandTile':
+                            await this.renderTile(message.kind, message.name, message.scope, message.requestId);
+                            break;
+                        case 'collapseTile':
+                            if (message.kind === 'module') {
+                                this.loadedModules.delete(message.name);
+                            }
+                            break;
+                        case 'graphReady':
+                            if (this.currentGraph) {
+                                await panel.webview.postMessage({ command: 'renderGraph', graph: this.currentGraph });
+                            }
+                            break;
+                        case 'navigateToClass':
+                            await this.navigateToClass(message.className, message.filePath);
+                            break;
+                        case 'navigateToMethod':
+                            await this.navigateToMethod(message.className, message.methodName, message.filePath);
+                            break;
+                        case 'navigateToField':
+                            await this.navigateToField(message.className, message.fieldName, message.filePath);
+                            break;
+                        default:
+                            console.warn(`Unknown command: ${message.command}`);
+                    }
+                } catch (error) {
+                    console.error('Error handling webview message:', error);
+                    vscode.window.showErrorMessage(`处理导航请求时出错: ${error instanceof Error ? error.message : '未知错误'}`);
                 }
-            );
+            },
+            undefined,
+            this.context.subscriptions
+        );
+        return panel;
+    }
+
+    hasOpenPanel(): boolean {
+        return this.currentPanel !== undefined;
+    }
+
+    /**
+     * Pushes new PlantUML source into the open panel without rebuilding the webview.
+     */
+    async updateDiagram(plantUMLCode: string): Promise<boolean> {
+        if (!this.currentPanel || this.viewMode !== 'plantuml') {
+            return false;
+        }
+        if (plantUMLCode === this.currentPlantUMLCode) {
+            // Edits that do not show in the diagram (bodies, comments, formatting)
+            return true;
+        }
+        this.currentPlantUMLCode = plantUMLCode;
+        this.prerender(plantUMLCode);
+        return this.currentPanel.webview.postMessage({ command: 'updateDiagram', plantUMLCode });
+    }
+
+    /**
+     * Resolves once `plantUMLCode` is rendered, joining the render started by show/update.
+     * Failures are reported by the webview, callers only use this to pace their updates.
+     */
+    async waitForRender(plantUMLCode: string): Promise<void> {
+        try {
+            await this.renderService.render(plantUMLCode);
+        } catch {
+            // Shown in the panel when the webview asks for the diagram
+        }
+    }
 
-            // Handle panel disposal
-            this.currentPanel.onDidDispose(() => {
-                this.currentPanel = undefined;
+    /**
+     * Renders the diagram in the extension host and sends the SVG back to the webview.
+     */
+    private async renderDiagram(plantUMLCode: string, requestId: number): Promise<void> {
+        const panel = this.currentPanel;
+        if (!panel) {
+            return;
+        }
+        try {
+            const svg = await this.renderService.render(plantUMLCode);
+            await panel.webview.postMessage({ command: 'diagramRendered', requestId, svg });
+        } catch (error) {
+            console.error('Failed to render diagram:', error);
+            await panel.webview.postMessage({
+                command: 'renderError',
+                requestId,
+                message: error instanceof Error ? error.message : String(error)
             });
+        }
+    }
 
-            // Handle messages from webview
-            this.currentPanel.webview.onDidReceiveMessage(
-                async message => {
-                    try {
-                        switch (message.command) {
-                            case 'navigateToClass':
-                                await this.navigateToClass(message.className, message.filePath);
-                                break;
-                            case 'navigateToMethod':
-                                await this.navigateToMethod(message.className, message.methodName, message.filePath);
-                                break;
-                            case 'navigateToField':
-                                await this.navigateToField(message.className, message.fieldName, message.filePath);
-                                break;
-                            default:
-                                console.warn(`Unknown command: ${message.command}`);
-                        }
-                    } catch (error) {
-                        console.error('Error handling webview message:', error);
-                        vscode.window.showErrorMessage(`处理导航请求时出错: ${error instanceof Error ? error.message : '未知错误'}`);
-                    }
-                },
-                undefined,
-                this.context.subscriptions
-            );
+    /**
+     * Renders one tile of an overview: a package of a package overview, a module of a module
+     * overview or a package inside an expanded module. Tiles go through the SVG cache like
+     * every diagram, so re-expanding an unchanged tile costs a cache lookup.
+     */
+    private async renderTile(kind: 'package' | 'module', name: string, scope: string | undefined, requestId: number): Promise<void> {
+        const panel = this.currentPanel;
+        if (!panel) {
+            return;
         }
+        try {
+            const plantUMLCode = await this.generateTile(kind, name, scope);
+            if (plantUMLCode === undefined) {
+                return;
+            }
+            const svg = await this.renderService.render(plantUMLCode);
+            await panel.webview.postMessage({ command: 'tileRendered', kind, name, scope, requestId, svg });
+        } catch (error) {
+            console.error(`Failed to render ${kind} ${name}:`, error);
+            await panel.webview.postMessage({
+                command: 'tileRenderError',
+                kind,
+                name,
+                scope,
+                requestId,
+                message: error instanceof Error ? error.message : String(error)
+            });
+        }
+    }
 
-        // Update webview content
-        this.currentPanel.webview.html = this.getWebviewContent(plantUMLCode, title);
+    private async generateTile(kind: 'package' | 'module', name: string, scope: string | undefined): Promise<string | undefined> {
+        if (kind === 'package') {
+            const structures = scope !== undefined ? await this.loadModule(scope) : this.overviewStructures;
+            return structures && this.plantUMLGenerator.generatePackageDiagram(structures, name);
+        }
+
+        const source = this.moduleSource;
+        const structures = await this.loadModule(name);
+        if (!source || !structures) {
+            return undefined;
+        }
+        // Large modules open as a package overview, their packages expand within the module
+        const packageCount = new Set(structures.map(structure => structure.packageName || '')).size;
+        return structures.length > source.packageOverviewThreshold && packageCount > 1
+            ? this.plantUMLGenerator.generatePackageOverview(structures)
+            : this.plantUMLGenerator.generateMultiClassDiagram(structures);
+    }
+
+    private loadModule(moduleId: string): Promise<JavaClassStructure[]> | undefined {
+        const source = this.moduleSource;
+        if (!source) {
+            return undefined;
+        }
+        let loading = this.loadedModules.get(moduleId);
+        if (loading) {
+            // Re-inserted below as the most recently used
+            this.loadedModules.delete(moduleId);
+        } else {
+            loading = source.loadModule(moduleId);
+            loading.catch(() => this.loadedModules.delete(moduleId));
+        }
+        this.loadedModules.set(moduleId, loading);
+        while (this.loadedModules.size > MAX_LOADED_MODULES) {
+            this.loadedModules.delete(this.loadedModules.keys().next().value!);
+        }
+        return loading;
+    }
+
+    private clearModules(): void {
+        this.moduleSource = undefined;
+        this.loadedModules.clear();
     }
 
-    private getWebviewContent(plantUMLCode: string, title: string): string {
+    private prerender(plantUMLCode: string): void {
+        this.renderService.warmUp();
+        this.renderService.render(plantUMLCode).catch(() => {
+            // Reported when the webview asks for the diagram
+        });
+    }
+
+    private getWebviewContent(plantUMLCode: string, title: string, cspSource: string): string {
+        const nonce = createNonce();
+        // Class, member and package names end up in both; neither may close a tag or a string
+        const escapedTitle = escapeHtml(title);
         return `<!DOCTYPE html>
 <html lang="en">
 <head>
     <meta charset="UTF-8">
+    ${contentSecurityPolicy(cspSource, nonce)}
     <meta name="viewport" content="width=device-width, initial-scale=1.0">
-    <title>${title}</title>
+    <title>${escapedTitle}</title>
     <style>
         body {
             font-family: -apple-system, BlinkMacSystemFont, 'Segoe UI', Roboto, sans-serif;
@@ -210,24 +489,60 @@ export class ClassDiagramWebviewProvider {
             overflow: auto;
             min-height: 400px;
         }
+        .package-tiles {
+            display: grid;
+            grid-template-columns: repeat(auto-fill, minmax(480px, 1fr));
+            gap: 16px;
+            margin-top: 16px;
+        }
+        .package-tile {
+            border: 1px solid var(--vscode-widget-border);
+            border-radius: 8px;
+            overflow: hidden;
+        }
+        .package-tile-header {
+            display: flex;
+            justify-content: space-between;
+            align-items: center;
+            padding: 6px 12px;
+            font-weight: bold;
+            background-color: var(--vscode-sideBar-background);
+            border-bottom: 1px solid var(--vscode-widget-border);
+        }
+        .package-tile-body {
+            padding: 12px;
+            overflow: auto;
+            max-height: 800px;
+            text-align: center;
+        }
+        .element-highlight {
+            fill: var(--vscode-editor-findMatchHighlightBackground, rgba(255, 200, 0, 0.25));
+            stroke: var(--vscode-focusBorder, #007acc);
+            stroke-width: 1;
+            pointer-events: none;
+        }
+        .package-tile-body svg {
+            max-width: 100%;
+            height: auto;
+        }
     </style>
 </head>
 <body>
     <div class="container">
         <div class="header">
-            <h1 class="title">Java Class Diagram - ${title}</h1>
+            <h1 class="title">Java Class Diagram - ${escapedTitle}</h1>
             <div class="controls">
-                <button class="button" onclick="toggleCode()">Show/Hide Code</button>
-                <button class="button" onclick="downloadSVG()">Download SVG</button>
-                <button class="button" onclick="refreshDiagram()">Refresh</button>
+                <button class="button" data-action="toggleCode">Show/Hide Code</button>
+                <button class="button" data-action="downloadSVG">Download SVG</button>
+                <button class="button" data-action="refreshDiagram">Refresh</button>
             </div>
         </div>
         
         <div class="diagram-container">
             <div class="zoom-controls">
-                <button class="zoom-btn" onclick="zoomIn()" title="Zoom In">+</button>
-                <button class="zoom-btn" onclick="zoomOut()" title="Zoom Out">-</button>
-                <button class="zoom-btn" onclick="resetZoom()" title="Reset Zoom">⌂</button>
+                <button class="zoom-btn" data-action="zoomIn" title="Zoom In">+</button>
+                <button class="zoom-btn" data-action="zoomOut" title="Zoom Out">-</button>
+                <button class="zoom-btn" data-action="resetZoom" title="Reset Zoom">⌂</button>
             </div>
             <div class="loading" id="loading">
                 Generating enhanced diagram...
@@ -235,210 +550,263 @@ export class ClassDiagramWebviewProvider {
             <div id="diagram-content"></div>
         </div>
         
+        <div class="package-tiles" id="package-tiles"></div>
+
         <div class="plantuml-code" id="plantuml-code">
             <h3>PlantUML Code:</h3>
-            <pre>${plantUMLCode}</pre>
+            <pre id="plantuml-source">${escapeHtml(plantUMLCode)}</pre>
         </div>
     </div>
 
-    <script src="https://unpkg.com/plantuml-encoder@1.4.0/dist/plantuml-encoder.min.js"></script>
-    <script>
+    <script nonce="${nonce}">
         const vscode = acquireVsCodeApi();
-        const plantUMLCode = \`${plantUMLCode}\`;
-        
+        let plantUMLCode = ${scriptStringLiteral(plantUMLCode)};
+        const diagramTitle = ${scriptStringLiteral(title)};
+        // Only the newest render request is shown, older answers are dropped
+        let renderRequestId = 0;
+
         function generateDiagram() {
-            try {
-                const loading = document.getElementById('loading');
-                const diagramContent = document.getElementById('diagram-content');
-                
-                loading.style.display = 'flex';
-                diagramContent.innerHTML = '';
-                
-                // Encode PlantUML code
-                const encoded = plantumlEncoder.encode(plantUMLCode);
-                const diagramUrl = \`http://www.plantuml.com/plantuml/svg/\${encoded}\`;
-
-                // Create SVG element
-                const img = document.createElement('img');
-                img.id = 'diagram-svg';
-                img.src = diagramUrl;
-                img.style.userSelect = 'none';
-                img.style.cursor = 'pointer';
-                img.alt = 'Class Diagram';
-                
-                img.onload = function() {
-                    loading.style.display = 'none';
-                    diagramContent.appendChild(img);
-                    
-                    // Add click handlers for interactive elements
-                    addClickHandlers();
-                };
-                
-                img.onerror = function() {
-                    loading.style.display = 'none';
-                    diagramContent.innerHTML = '<div class="error">Failed to generate diagram. Please check your PlantUML code.</div>';
-                };
-                
-            } catch (error) {
-                document.getElementById('loading').style.display = 'none';
-                document.getElementById('diagram-content').innerHTML = 
-                    \`<div class="error">Error generating diagram: \${error.message}</div>\`;
+            document.getElementById('loading').style.display = 'flex';
+            document.getElementById('diagram-content').innerHTML = '';
+
+            // 由扩展进程渲染为 SVG（本地 PlantUML 进程或服务器）
+            renderRequestId++;
+            vscode.postMessage({
+                command: 'renderDiagram',
+                plantUMLCode: plantUMLCode,
+                requestId: renderRequestId
+            });
+        }
+
+        function showDiagram(svgMarkup) {
+            const diagramContent = document.getElementById('diagram-content');
+            diagramContent.innerHTML = svgMarkup;
+
+            const svg = diagramContent.querySelector('svg');
+            document.getElementById('loading').style.display = 'none';
+            if (svg) {
+                svg.id = 'diagram-svg';
+                svg.style.userSelect = 'none';
+
+                // Add click handlers for interactive elements
+                addClickHandlers(svg);
+                applyZoom();
             }
         }
-        
-        function addClickHandlers() {
-            const img = document.getElementById('diagram-svg');
-            if (!img) return;
 
-            img.addEventListener('click', async (e) => {
-                try {
-                    // 获取点击位置相对于图片的坐标
-                    const rect = img.getBoundingClientRect();
-                    const x = e.clientX - rect.left;
-                    const y = e.clientY - rect.top;
-
-                    console.log(\`Click position: (\${x}, \${y})\`);
-
-                    // 从 img.src 反向 decode 出 PlantUML 文本
-                    const src = img.src || '';
-                    const lastSlash = src.lastIndexOf('/');
-                    const encoded = lastSlash >= 0 ? src.substring(lastSlash + 1) : '';
-                    if (!encoded) return;
-
-                    const uml = plantumlEncoder.decode(encoded);
-                    console.log('Decoded PlantUML:', uml);
-
-                    // 解析PlantUML内容，识别点击的元素类型
-                    const clickTarget = analyzeClickTarget(uml, x, y, img.naturalWidth, img.naturalHeight);
-
-                    if (clickTarget) {
-                        console.log('Click target:', clickTarget);
-
-                        switch (clickTarget.type) {
-                            case 'class':
-                                navigateToClass(clickTarget.className, clickTarget.filePath);
-                                break;
-                            case 'method':
-                                navigateToMethod(clickTarget.className, clickTarget.methodName, clickTarget.filePath);
-                                break;
-                            case 'field':
-                                navigateToField(clickTarget.className, clickTarget.fieldName, clickTarget.filePath);
-                                break;
-                            default:
-                                console.log('Unknown click target type:', clickTarget.type);
-                        }
-                    } else {
-                        // 如果无法精确识别，回退到原来的逻辑
-                        const linkRegex = /\[\[openfile:([^#\]]+)#([^\]]+)\]\]/g;
-                        const links = [];
-                        let match;
-                        while ((match = linkRegex.exec(uml)) !== null) {
-                            links.push({ path: decodeURIComponent(match[1]), className: decodeURIComponent(match[2]) });
-                        }
-                        if (links.length > 0) {
-                            const target = links[0];
-                            navigateToClass(target.className, target.path);
-                        }
-                    }
-                } catch (err) {
-                    console.error('Failed to handle click for navigation:', err);
-                }
-            });
+        function showRenderError(message) {
+            document.getElementById('loading').style.display = 'none';
+            const error = document.createElement('div');
+            error.className = 'error';
+            error.textContent = \`Error generating diagram: \${message}\`;
+            const diagramContent = document.getElementById('diagram-content');
+            diagramContent.innerHTML = '';
+            diagramContent.appendChild(error);
         }
 
-        function analyzeClickTarget(uml, clickX, clickY, imgWidth, imgHeight) {
-            // 这是一个简化的实现，实际上需要更复杂的逻辑来解析PlantUML并确定点击位置
-            // 目前我们基于PlantUML内容的文本分析来推断点击目标
-
-            // 解析类定义
-            const classRegex = /class\\s+(\\w+)\\s*\\{([^}]*)\\}/g;
-            const classes = [];
-            let match;
-
-            while ((match = classRegex.exec(uml)) !== null) {
-                const className = match[1];
-                const classBody = match[2];
-
-                // 解析方法和字段
-                const methods = [];
-                const fields = [];
-
-                const lines = classBody.split('\\n');
-                for (const line of lines) {
-                    const trimmedLine = line.trim();
-                    if (trimmedLine.includes('(') && trimmedLine.includes(')')) {
-                        // 可能是方法
-                        const methodMatch = trimmedLine.match(/(\\w+)\\s*\\(/);
-                        if (methodMatch) {
-                            methods.push(methodMatch[1]);
-                        }
-                    } else if (trimmedLine && !trimmedLine.startsWith('--') && !trimmedLine.startsWith('==')) {
-                        // 可能是字段
-                        const fieldMatch = trimmedLine.match(/(\\w+)\\s*:/);
-                        if (fieldMatch) {
-                            fields.push(fieldMatch[1]);
-                        }
-                    }
+        ${buildRTree.toString()}
+
+        ${searchRTree.toString()}
+
+        // Element ids are the link targets written by the generator (see diagramElementId)
+        function parseElementId(href) {
+            const packageMatch = /^openpackage:(.*)$/.exec(href);
+            if (packageMatch) {
+                return { type: 'package', packageName: decodeURIComponent(packageMatch[1]) };
+            }
+            const moduleMatch = /^openmodule:(.*)$/.exec(href);
+            if (moduleMatch) {
+                return { type: 'module', moduleId: decodeURIComponent(moduleMatch[1]) };
+            }
+            const match = /^openfile:([^#]*)#([^#]+)(?:#(field|method):(.+))?$/.exec(href);
+            if (!match) {
+                return null;
+            }
+            return {
+                type: match[3] || 'class',
+                filePath: decodeURIComponent(match[1]),
+                className: decodeURIComponent(match[2]),
+                memberName: match[4] ? decodeURIComponent(match[4]) : undefined
+            };
+        }
+
+        // Linked elements of a rendered diagram and an R-tree over their boxes, built once per render
+        function indexElements(svg) {
+            const startTime = performance.now();
+            const elements = [];
+            const boxes = [];
+            for (const anchor of svg.querySelectorAll('a')) {
+                const target = parseElementId(anchor.getAttribute('href') || anchor.getAttribute('xlink:href') || '');
+                if (!target) {
+                    continue;
+                }
+                const box = anchor.getBBox();
+                if (box.width === 0 && box.height === 0) {
+                    continue;
                 }
+                elements.push({ target, box, area: box.width * box.height });
+                boxes.push({ minX: box.x, minY: box.y, maxX: box.x + box.width, maxY: box.y + box.height });
+            }
+            console.log(\`Indexed \${elements.length} diagram elements in \${Math.round(performance.now() - startTime)}ms\`);
+            return { elements, tree: buildRTree(boxes) };
+        }
 
-                classes.push({
-                    name: className,
-                    methods: methods,
-                    fields: fields
-                });
+        // Innermost element under the pointer: a member line wins over the class box around it
+        function elementAt(svg, index, clientX, clientY) {
+            const matrix = svg.getScreenCTM();
+            if (!matrix) {
+                return null;
+            }
+            const point = new DOMPoint(clientX, clientY).matrixTransform(matrix.inverse());
+            let best = null;
+            for (const id of searchRTree(index.tree, point.x, point.y)) {
+                const element = index.elements[id];
+                if (!best || element.area < best.area) {
+                    best = element;
+                }
             }
+            return best;
+        }
 
-            // 提取文件路径信息
-            const linkRegex = /\[\[openfile:([^#\]]+)#([^\]]+)\]\]/g;
-            const fileLinks = {};
-            while ((match = linkRegex.exec(uml)) !== null) {
-                const filePath = decodeURIComponent(match[1]);
-                const className = decodeURIComponent(match[2]);
-                fileLinks[className] = filePath;
+        // scope: module whose tile the element was clicked in, packages are expanded within it
+        function openElement(target, scope) {
+            switch (target.type) {
+                case 'package':
+                    expandTile('package', target.packageName, scope);
+                    break;
+                case 'module':
+                    expandTile('module', target.moduleId);
+                    break;
+                case 'method':
+                    navigateToMethod(target.className, target.memberName, target.filePath);
+                    break;
+                case 'field':
+                    navigateToField(target.className, target.memberName, target.filePath);
+                    break;
+                default:
+                    navigateToClass(target.className, target.filePath);
             }
+        }
+
+        // Clicks and hovers are resolved through the element index, not the DOM event target
+        function addClickHandlers(svg, scope) {
+            const index = indexElements(svg);
+            const highlight = document.createElementNS('http://www.w3.org/2000/svg', 'rect');
+            highlight.setAttribute('class', 'element-highlight');
+            highlight.style.display = 'none';
+            svg.appendChild(highlight);
+
+            svg.addEventListener('click', e => {
+                // Links are only ever followed through the index
+                e.preventDefault();
+                const element = elementAt(svg, index, e.clientX, e.clientY);
+                if (element) {
+                    openElement(element.target, scope);
+                }
+            });
 
-            // 简化的点击检测：基于点击位置的Y坐标来推断点击的是哪个类的哪个部分
-            // 这里需要更复杂的逻辑来精确定位，目前使用简化版本
-            if (classes.length > 0) {
-                const targetClass = classes[0]; // 简化：使用第一个类
-                const filePath = fileLinks[targetClass.name] || '';
-
-                // 基于Y坐标的简单推断（这需要根据实际的PlantUML渲染结果调整）
-                const relativeY = clickY / imgHeight;
-
-                if (relativeY < 0.3) {
-                    // 点击在类名区域
-                    return {
-                        type: 'class',
-                        className: targetClass.name,
-                        filePath: filePath
-                    };
-                } else if (relativeY < 0.6 && targetClass.fields.length > 0) {
-                    // 点击在字段区域
-                    const fieldIndex = Math.floor((relativeY - 0.3) / 0.3 * targetClass.fields.length);
-                    const fieldName = targetClass.fields[Math.min(fieldIndex, targetClass.fields.length - 1)];
-                    return {
-                        type: 'field',
-                        className: targetClass.name,
-                        fieldName: fieldName,
-                        filePath: filePath
-                    };
-                } else if (targetClass.methods.length > 0) {
-                    // 点击在方法区域
-                    const methodIndex = Math.floor((relativeY - 0.6) / 0.4 * targetClass.methods.length);
-                    const methodName = targetClass.methods[Math.min(methodIndex, targetClass.methods.length - 1)];
-                    return {
-                        type: 'method',
-                        className: targetClass.name,
-                        methodName: methodName,
-                        filePath: filePath
-                    };
+            // One lookup per animation frame, however fast the mouse moves
+            let lastMove = null;
+            svg.addEventListener('mousemove', e => {
+                const scheduled = lastMove !== null;
+                lastMove = e;
+                if (!scheduled) {
+                    requestAnimationFrame(() => {
+                        const element = elementAt(svg, index, lastMove.clientX, lastMove.clientY);
+                        lastMove = null;
+                        showHighlight(svg, highlight, element);
+                    });
                 }
+            });
+            svg.addEventListener('mouseleave', () => showHighlight(svg, highlight, null));
+        }
+
+        function showHighlight(svg, highlight, element) {
+            if (!element) {
+                highlight.style.display = 'none';
+                svg.style.cursor = 'default';
+                return;
             }
+            highlight.setAttribute('x', element.box.x - 1);
+            highlight.setAttribute('y', element.box.y - 1);
+            highlight.setAttribute('width', element.box.width + 2);
+            highlight.setAttribute('height', element.box.height + 2);
+            highlight.style.display = '';
+            svg.style.cursor = 'pointer';
+        }
+
+        // Expanded tiles of an overview (packages, modules, packages inside a module): key -> entry
+        const expandedTiles = new Map();
+        // Rendered tiles, so collapsing and expanding again needs no round trip
+        const tileSvgCache = new Map();
+        let tileRequestId = 0;
+        // Answers to requests older than this were rendered from stale sources
+        let tilesValidFrom = 0;
 
-            return null;
+        function tileKey(kind, name, scope) {
+            return JSON.stringify([kind, scope || '', name]);
         }
-        
+
+        function expandTile(kind, name, scope) {
+            const key = tileKey(kind, name, scope);
+            const existing = expandedTiles.get(key);
+            if (existing) {
+                existing.tile.scrollIntoView({ behavior: 'smooth', block: 'start' });
+                return;
+            }
+
+            const tile = document.createElement('div');
+            tile.className = 'package-tile';
+            const header = document.createElement('div');
+            header.className = 'package-tile-header';
+            const label = document.createElement('span');
+            const displayName = kind === 'module' ? name : (name || '(default package)');
+            label.textContent = scope ? \`\${scope} / \${displayName}\` : displayName;
+            const close = document.createElement('button');
+            close.className = 'button';
+            close.textContent = '✕';
+            close.title = kind === 'module' ? 'Collapse module' : 'Collapse package';
+            close.onclick = () => {
+                expandedTiles.delete(key);
+                tile.remove();
+                // Lets the extension drop the classes it loaded for the tile
+                vscode.postMessage({ command: 'collapseTile', kind, name, scope });
+            };
+            header.appendChild(label);
+            header.appendChild(close);
+            const body = document.createElement('div');
+            body.className = 'package-tile-body';
+            tile.appendChild(header);
+            tile.appendChild(body);
+            document.getElementById('package-tiles').appendChild(tile);
+
+            const entry = { tile, body, kind, name, scope, requestId: 0 };
+            expandedTiles.set(key, entry);
+            if (tileSvgCache.has(key)) {
+                showTile(entry, tileSvgCache.get(key));
+            } else {
+                requestTile(entry);
+            }
+            tile.scrollIntoView({ behavior: 'smooth', block: 'start' });
+        }
+
+        function requestTile(entry) {
+            entry.body.innerHTML = \`<div class="loading">\${entry.kind === 'module' ? 'Loading module...' : 'Rendering package...'}</div>\`;
+            // Tiles are requested independently, the extension renders them concurrently
+            entry.requestId = ++tileRequestId;
+            vscode.postMessage({ command: 'expandTile', kind: entry.kind, name: entry.name, scope: entry.scope, requestId: entry.requestId });
+        }
+
+        function showTile(entry, svgMarkup) {
+            entry.body.innerHTML = svgMarkup;
+            const svg = entry.body.querySelector('svg');
+            if (!svg) {
+                return;
+            }
+            // Packages shown in a module tile expand within that module
+            addClickHandlers(svg, entry.kind === 'module' ? entry.name : entry.scope);
+        }
+
         function toggleCode() {
             const codeElement = document.getElementById('plantuml-code');
             if (codeElement.style.display === 'none' || codeElement.style.display === '') {
@@ -451,10 +819,12 @@ export class ClassDiagramWebviewProvider {
         function downloadSVG() {
             const svg = document.getElementById('diagram-svg');
             if (svg) {
+                const markup = new XMLSerializer().serializeToString(svg);
                 const link = document.createElement('a');
-                link.download = '${title}_class_diagram.svg';
-                link.href = svg.src;
+                link.download = diagramTitle + '_class_diagram.svg';
+                link.href = URL.createObjectURL(new Blob([markup], { type: 'image/svg+xml' }));
                 link.click();
+                setTimeout(() => URL.revokeObjectURL(link.href), 1000);
             }
         }
         
@@ -513,6 +883,12 @@ export class ClassDiagramWebviewProvider {
             });
         }
 
+        // The CSP blocks inline handlers, the toolbar buttons name their action instead
+        const actions = { toggleCode, downloadSVG, refreshDiagram, zoomIn, zoomOut, resetZoom };
+        document.querySelectorAll('[data-action]').forEach(button => {
+            button.addEventListener('click', () => actions[button.dataset.action]());
+        });
+
         // Add keyboard shortcuts
         document.addEventListener('keydown', function(event) {
             if (event.ctrlKey || event.metaKey) {
@@ -534,6 +910,57 @@ export class ClassDiagramWebviewProvider {
             }
         });
         
+        // Live updates pushed by the extension when watched Java files change
+        window.addEventListener('message', event => {
+            const message = event.data;
+            if (!message) {
+                return;
+            }
+            if (message.command === 'diagramRendered' && message.requestId === renderRequestId) {
+                showDiagram(message.svg);
+            } else if (message.command === 'renderError' && message.requestId === renderRequestId) {
+                showRenderError(message.message);
+            } else if (message.command === 'tileRendered' || message.command === 'tileRenderError') {
+                const key = tileKey(message.kind, message.name, message.scope);
+                const entry = expandedTiles.get(key);
+                if (message.command === 'tileRendered' && message.requestId >= tilesValidFrom) {
+                    tileSvgCache.set(key, message.svg);
+                }
+                if (!entry || entry.requestId !== message.requestId) {
+                    return;
+                }
+                if (message.command === 'tileRendered') {
+                    showTile(entry, message.svg);
+                } else {
+                    const error = document.createElement('div');
+                    error.className = 'error';
+                    error.textContent = \`Error rendering \${message.kind}: \${message.message}\`;
+                    entry.body.innerHTML = '';
+                    entry.body.appendChild(error);
+                }
+            } else if (message.command === 'tilesChanged') {
+                // Sources changed: cached tiles of the changed packages (all when not given) are
+                // stale, open ones are rendered again
+                const isStale = (kind, name) => !message.packages || (kind === 'package' && message.packages.includes(name));
+                for (const key of Array.from(tileSvgCache.keys())) {
+                    const [kind, , name] = JSON.parse(key);
+                    if (isStale(kind, name)) {
+                        tileSvgCache.delete(key);
+                    }
+                }
+                tilesValidFrom = tileRequestId + 1;
+                for (const entry of expandedTiles.values()) {
+                    if (isStale(entry.kind, entry.name)) {
+                        requestTile(entry);
+                    }
+                }
+            } else if (message.command === 'updateDiagram' && message.plantUMLCode !== plantUMLCode) {
+                plantUMLCode = message.plantUMLCode;
+                document.getElementById('plantuml-source').textContent = plantUMLCode;
+                generateDiagram();
+            }
+        });
+
         // Generate diagram on load
         generateDiagram();
     </script>
@@ -545,15 +972,22 @@ export class ClassDiagramWebviewProvider {
         try {
             console.log(`Navigating to class: ${className}, filePath: ${filePath}`);
 
+            // The element id names the file of exactly this class: a class with the same simple
+            // name in another package must not win, and the click needs no symbol query
+            if (filePath) {
+                await this.navigateToClassByFilePath(className, filePath);
+                return;
+            }
+
             // 提取简单类名
             const simpleClassName = className.includes('.') ? className.split('.').pop()! : className;
 
-            // 首先尝试使用Language Server精确定位
+            // 没有文件路径时（系统类、依赖中的类）才用Language Server定位
             const location = await this.languageServerClient.findClassLocation(simpleClassName);
 
             if (location) {
                 console.log(`Found class location via Language Server: ${location.uri.toString()}`);
-                const document = await vscode.workspace.openTextDocument(location.uri);
+                const document = await this.languageServerClient.openDocument(location.uri);
                 const editor = await vscode.window.showTextDocument(document, vscode.ViewColumn.Two);
 
                 // 跳转到精确位置
@@ -576,12 +1010,6 @@ export class ClassDiagramWebviewProvider {
                 return;
             }
 
-            // 如果Language Server没有找到，尝试使用文件路径
-            if (filePath && filePath !== '') {
-                await this.navigateToClassByFilePath(className, filePath);
-                return;
-            }
-
             // 最后的备选方案：使用工作区符号搜索
             await this.navigateToClassBySymbolSearch(simpleClassName);
 
@@ -592,6 +1020,18 @@ export class ClassDiagramWebviewProvider {
     }
 
     private async navigateToClassByFilePath(className: string, filePath: string): Promise<void> {
+        const document = await this.languageServerClient.openDocument(this.toFileUri(filePath));
+        const editor = await vscode.window.showTextDocument(document, vscode.ViewColumn.Two);
+
+        const index = this.findClassDeclaration(document.getText(), className);
+        if (index >= 0) {
+            const position = document.positionAt(index);
+            editor.selection = new vscode.Selection(position, position);
+            editor.revealRange(new vscode.Range(position, position), vscode.TextEditorRevealType.InCenter);
+        }
+    }
+
+    private toFileUri(filePath: string): vscode.Uri {
         // 修复文件路径格式问题
         let normalizedPath = filePath;
 
@@ -614,31 +1054,22 @@ export class ClassDiagramWebviewProvider {
         }
 
         console.log(`Attempting to navigate to file: ${normalizedPath}`);
+        return vscode.Uri.file(normalizedPath);
+    }
 
-        const uri = vscode.Uri.file(normalizedPath);
-        const document = await vscode.workspace.openTextDocument(uri);
-        const editor = await vscode.window.showTextDocument(document, vscode.ViewColumn.Two);
-
+    /**
+     * Offset of the declaration of `className` in `text`, matched by its simple name, or -1.
+     */
+    private findClassDeclaration(text: string, className: string): number {
         // 提取简单类名进行搜索
         const simpleClassName = className.includes('.') ? className.split('.').pop() : className;
-
-        // Try to find the class definition and navigate to it
-        const text = document.getText();
-        const classRegex = new RegExp(`(class|interface|enum)\\s+${simpleClassName}\\b`, 'g');
+        const classRegex = new RegExp(`\\b(class|interface|enum|record)\\s+${simpleClassName}\\b`, 'g');
         const match = classRegex.exec(text);
-
-        if (match) {
-            const position = document.positionAt(match.index);
-            editor.selection = new vscode.Selection(position, position);
-            editor.revealRange(new vscode.Range(position, position), vscode.TextEditorRevealType.InCenter);
-        }
+        return match ? match.index : -1;
     }
 
     private async navigateToClassBySymbolSearch(simpleClassName: string): Promise<void> {
-        const symbols = await vscode.commands.executeCommand<vscode.SymbolInformation[]>(
-            'vscode.executeWorkspaceSymbolProvider',
-            simpleClassName
-        );
+        const symbols = await this.languageServerClient.getWorkspaceSymbols(simpleClassName);
 
         if (symbols && symbols.length > 0) {
             const classSymbol = symbols.find(symbol =>
@@ -649,7 +1080,7 @@ export class ClassDiagramWebviewProvider {
             );
 
             if (classSymbol) {
-                const document = await vscode.workspace.openTextDocument(classSymbol.location.uri);
+                const document = await this.languageServerClient.openDocument(classSymbol.location.uri);
                 const editor = await vscode.window.showTextDocument(document, vscode.ViewColumn.Two);
                 editor.selection = new vscode.Selection(classSymbol.location.range.start, classSymbol.location.range.start);
                 editor.revealRange(classSymbol.location.range, vscode.TextEditorRevealType.InCenter);
@@ -665,6 +1096,12 @@ export class ClassDiagramWebviewProvider {
         try {
             console.log(`Navigating to method: ${methodName} in class: ${className}, filePath: ${filePath}`);
 
+            // The file of the class is known, the method is looked up in it
+            if (filePath) {
+                await this.navigateToMethodByRegex(className, methodName, filePath);
+                return;
+            }
+
             // 提取简单类名
             const simpleClassName = className.includes('.') ? className.split('.').pop()! : className;
 
@@ -673,7 +1110,7 @@ export class ClassDiagramWebviewProvider {
 
             if (location) {
                 console.log(`Found method location via Language Server: ${location.uri.toString()}`);
-                const document = await vscode.workspace.openTextDocument(location.uri);
+                const document = await this.languageServerClient.openDocument(location.uri);
                 const editor = await vscode.window.showTextDocument(document, vscode.ViewColumn.Two);
 
                 // 跳转到精确位置
@@ -696,8 +1133,7 @@ export class ClassDiagramWebviewProvider {
                 return;
             }
 
-            // 如果Language Server没有找到，尝试使用传统方法
-            await this.navigateToMethodByRegex(methodName, filePath);
+            throw new Error(`未找到类 ${simpleClassName} 的方法 ${methodName}`);
 
         } catch (error) {
             console.error('Error navigating to method:', error);
@@ -705,13 +1141,14 @@ export class ClassDiagramWebviewProvider {
         }
     }
 
-    private async navigateToMethodByRegex(methodName: string, filePath: string): Promise<void> {
-        const document = await vscode.workspace.openTextDocument(filePath);
+    private async navigateToMethodByRegex(className: string, methodName: string, filePath: string): Promise<void> {
+        const document = await this.languageServerClient.openDocument(this.toFileUri(filePath));
         const editor = await vscode.window.showTextDocument(document, vscode.ViewColumn.Two);
 
-        // Find method declaration using regex
+        // Find method declaration using regex, starting at the class (the file may declare several)
         const text = document.getText();
         const methodRegex = new RegExp(`\\b${methodName}\\s*\\(`, 'g');
+        methodRegex.lastIndex = Math.max(0, this.findClassDeclaration(text, className));
         const match = methodRegex.exec(text);
 
         if (match) {
@@ -727,6 +1164,12 @@ export class ClassDiagramWebviewProvider {
         try {
             console.log(`Navigating to field: ${fieldName} in class: ${className}, filePath: ${filePath}`);
 
+            // The file of the class is known, the field is looked up in it
+            if (filePath) {
+                await this.navigateToFieldByRegex(className, fieldName, filePath);
+                return;
+            }
+
             // 提取简单类名
             const simpleClassName = className.includes('.') ? className.split('.').pop()! : className;
 
@@ -735,7 +1178,7 @@ export class ClassDiagramWebviewProvider {
 
             if (location) {
                 console.log(`Found field location via Language Server: ${location.uri.toString()}`);
-                const document = await vscode.workspace.openTextDocument(location.uri);
+                const document = await this.languageServerClient.openDocument(location.uri);
                 const editor = await vscode.window.showTextDocument(document, vscode.ViewColumn.Two);
 
                 // 跳转到精确位置
@@ -758,8 +1201,7 @@ export class ClassDiagramWebviewProvider {
                 return;
             }
 
-            // 如果Language Server没有找到，尝试使用传统方法
-            await this.navigateToFieldByRegex(fieldName, filePath);
+            throw new Error(`未找到类 ${simpleClassName} 的字段 ${fieldName}`);
 
         } catch (error) {
             console.error('Error navigating to field:', error);
@@ -767,19 +1209,22 @@ export class ClassDiagramWebviewProvider {
         }
     }
 
-    private async navigateToFieldByRegex(fieldName: string, filePath: string): Promise<void> {
-        const document = await vscode.workspace.openTextDocument(filePath);
+    private async navigateToFieldByRegex(className: string, fieldName: string, filePath: string): Promise<void> {
+        const document = await this.languageServerClient.openDocument(this.toFileUri(filePath));
         const editor = await vscode.window.showTextDocument(document, vscode.ViewColumn.Two);
 
-        // Find field declaration using regex
+        // Find field declaration using regex, starting at the class (the file may declare several)
         const text = document.getText();
+        const classStart = Math.max(0, this.findClassDeclaration(text, className));
         // 匹配字段声明，考虑各种修饰符和类型
         const fieldRegex = new RegExp(`\\b(private|protected|public|static|final|volatile|transient)\\s+.*?\\b${fieldName}\\b`, 'g');
+        fieldRegex.lastIndex = classStart;
         let match = fieldRegex.exec(text);
 
         // 如果没找到，尝试更简单的匹配
         if (!match) {
             const simpleFieldRegex = new RegExp(`\\b${fieldName}\\b\\s*[=;]`, 'g');
+            simpleFieldRegex.lastIndex = classStart;
             match = simpleFieldRegex.exec(text);
         }
 
@@ -0,0 +1,752 @@
+import { computeLayeredLayout } from '../graph/LayeredLayout';
+import { contentSecurityPolicy, createNonce, escapeHtml } from './ContentSecurityPolicy';
+
+// Worker body: the layout function plus the message glue. Built once per session.
+const LAYOUT_WORKER_SOURCE = `${computeLayeredLayout.toString()}
+self.onmessage = event => {
+    const startTime = Date.now();
+    const layout = computeLayeredLayout(event.data.nodes, event.data.edges);
+    self.postMessage({ requestId: event.data.requestId, layout, elapsed: Date.now() - startTime });
+};`;
+
+/**
+ * HTML of the graph view used for large folders. The host sends the class graph as data
+ * (`renderGraph`), a Blob worker computes the layered layout and the diagram is drawn on a
+ * canvas. Only nodes and edges inside the viewport are drawn, members only when zoomed in.
+ */
+export function getClassGraphWebviewContent(title: string, cspSource: string): string {
+    const nonce = createNonce();
+    // Safe inside <script>: JSON string literal with "</" escaped
+    const workerSource = JSON.stringify(LAYOUT_WORKER_SOURCE).replace(/<\//g, '<\\/');
+    const inlineLayoutSource = computeLayeredLayout.toString().replace(/<\//g, '<\\/');
+    const escapedTitle = escapeHtml(title);
+
+    return `<!DOCTYPE html>
+<html lang="en">
+<head>
+    <meta charset="UTF-8">
+    ${contentSecurityPolicy(cspSource, nonce)}
+    <meta name="viewport" content="width=device-width, initial-scale=1.0">
+    <title>${escapedTitle}</title>
+    <style>
+        html, body {
+            height: 100%;
+            margin: 0;
+            overflow: hidden;
+        }
+        body {
+            font-family: -apple-system, BlinkMacSystemFont, 'Segoe UI', Roboto, sans-serif;
+            background-color: var(--vscode-editor-background);
+            color: var(--vscode-editor-foreground);
+            display: flex;
+            flex-direction: column;
+        }
+        .header {
+            display: flex;
+            align-items: center;
+            gap: 10px;
+            padding: 8px 12px;
+            border-bottom: 1px solid var(--vscode-widget-border);
+        }
+        .title {
+            font-size: 16px;
+            font-weight: bold;
+            margin: 0;
+            flex: 1;
+            white-space: nowrap;
+            overflow: hidden;
+            text-overflow: ellipsis;
+        }
+        .status {
+            color: var(--vscode-descriptionForeground);
+            font-size: 12px;
+            white-space: nowrap;
+        }
+        .button {
+            background-color: var(--vscode-button-background);
+            color: var(--vscode-button-foreground);
+            border: none;
+            padding: 4px 12px;
+            border-radius: 4px;
+            cursor: pointer;
+            font-size: 13px;
+        }
+        .button:hover {
+            background-color: var(--vscode-button-hoverBackground);
+        }
+        .search {
+            background-color: var(--vscode-input-background);
+            color: var(--vscode-input-foreground);
+            border: 1px solid var(--vscode-input-border, transparent);
+            padding: 4px 6px;
+            font-size: 13px;
+            width: 160px;
+        }
+        .canvas-container {
+            position: relative;
+            flex: 1;
+            min-height: 0;
+        }
+        #graph-canvas {
+            position: absolute;
+            inset: 0;
+            width: 100%;
+            height: 100%;
+            cursor: grab;
+        }
+        .loading {
+            position: absolute;
+            inset: 0;
+            display: flex;
+            justify-content: center;
+            align-items: center;
+            font-size: 16px;
+            color: var(--vscode-descriptionForeground);
+            pointer-events: none;
+        }
+    </style>
+</head>
+<body>
+    <div class="header">
+        <h1 class="title">Java Class Diagram - ${escapedTitle}</h1>
+        <span class="status" id="status"></span>
+        <input class="search" id="search" type="text" placeholder="Find class…">
+        <button class="button" id="zoom-in" title="Zoom In">+</button>
+        <button class="button" id="zoom-out" title="Zoom Out">-</button>
+        <button class="button" id="fit-to-view" title="Fit to window">Fit</button>
+    </div>
+    <div class="canvas-container" id="canvas-container">
+        <canvas id="graph-canvas"></canvas>
+        <div class="loading" id="loading">Loading class graph...</div>
+    </div>
+
+    <script nonce="${nonce}">
+        const vscode = acquireVsCodeApi();
+        const layoutWorkerSource = ${workerSource};
+
+        // Main-thread fallback; the CSP allows no eval, so the function is part of this script
+        ${inlineLayoutSource}
+
+        const KIND_COLORS = {
+            class: '#ADD1B2',
+            interface: '#B4A7E5',
+            enum: '#EB937F',
+            abstract: '#A9DCDF',
+            external: '#DDDDDD'
+        };
+        const KIND_LETTERS = { class: 'C', interface: 'I', enum: 'E', abstract: 'A', external: 'C' };
+        const NODE_FILL = '#FEFECE';
+        const NODE_STROKE = '#A80036';
+        const EDGE_COLOR = '#A80036';
+        const NAME_FONT = 'bold 13px sans-serif';
+        const MEMBER_FONT = '11px sans-serif';
+        const HEADER_HEIGHT = 28;
+        const MEMBER_LINE_HEIGHT = 15;
+        const SECTION_PADDING = 6;
+        const MAX_NODE_WIDTH = 360;
+        const MAX_MEMBER_LINES = 30;
+        const GRID_CELL = 512;
+        // Below this zoom only boxes are drawn, below MEMBER_ZOOM only class names
+        const NAME_ZOOM = 0.25;
+        const MEMBER_ZOOM = 0.6;
+
+        const canvas = document.getElementById('graph-canvas');
+        const ctx = canvas.getContext('2d');
+        const container = document.getElementById('canvas-container');
+
+        let graph = null;
+        // Per node: width, height and the (truncated) lines to draw
+        let boxes = [];
+        let layout = null;
+        let grid = new Map();
+        let nodeEdges = [];
+        let allEdges = [];
+        let visitStamp = new Uint32Array(0);
+        let frameNumber = 0;
+        let scale = 1;
+        let offsetX = 0;
+        let offsetY = 0;
+        let selectedId = -1;
+        let hoveredId = -1;
+        let frameRequested = false;
+        let layoutRequestId = 0;
+        let layoutWorker = null;
+
+        // ---- Layout ----
+
+        function getLayoutWorker() {
+            if (!layoutWorker) {
+                const url = URL.createObjectURL(new Blob([layoutWorkerSource], { type: 'text/javascript' }));
+                layoutWorker = new Worker(url);
+                layoutWorker.onmessage = event => applyLayout(event.data);
+            }
+            return layoutWorker;
+        }
+
+        function requestLayout() {
+            const requestId = ++layoutRequestId;
+            const nodes = boxes.map(box => ({ width: box.width, height: box.height }));
+            // Supertypes above subtypes; associations only pull classes together
+            const edges = graph.edges.map(edge => edge.kind === 'association'
+                ? { from: edge.source, to: edge.target, constraint: false }
+                : { from: edge.target, to: edge.source });
+            setLoading('Laying out ' + nodes.length + ' classes...');
+            try {
+                getLayoutWorker().postMessage({ requestId, nodes, edges });
+            } catch (error) {
+                // Workers unavailable: same function on the main thread
+                console.warn('Layout worker unavailable, laying out on the main thread:', error);
+                setTimeout(() => {
+                    const startTime = Date.now();
+                    const layoutResult = computeLayeredLayout(nodes, edges);
+                    applyLayout({ requestId, layout: layoutResult, elapsed: Date.now() - startTime });
+                }, 0);
+            }
+        }
+
+        function applyLayout(result) {
+            if (result.requestId !== layoutRequestId) {
+                return;
+            }
+            const firstLayout = layout === null;
+            layout = result.layout;
+            buildSpatialIndex();
+            setLoading(null);
+            document.getElementById('status').textContent = graph.nodes.length + ' classes, ' + graph.edges.length +
+                ' relationships, ' + layout.rowCount + ' rows, layout ' + result.elapsed + 'ms';
+            if (firstLayout) {
+                fitToView();
+            } else {
+                requestDraw();
+            }
+        }
+
+        // ---- Graph data ----
+
+        function measureNodes() {
+            ctx.setTransform(1, 0, 0, 1, 0, 0);
+            boxes = graph.nodes.map(measureNode);
+
+            allEdges = graph.edges.map((edge, index) => index);
+            nodeEdges = graph.nodes.map(() => []);
+            graph.edges.forEach((edge, index) => {
+                nodeEdges[edge.source].push(index);
+                nodeEdges[edge.target].push(index);
+            });
+            visitStamp = new Uint32Array(graph.nodes.length);
+        }
+
+        function measureNode(node) {
+            const name = node.kind === 'external' ? node.qualifiedName : node.name;
+            const fields = limitLines(node.fields);
+            const methods = limitLines(node.methods);
+            ctx.font = NAME_FONT;
+            let textWidth = ctx.measureText(name).width + 28;
+            ctx.font = MEMBER_FONT;
+            for (const line of fields.concat(methods)) {
+                textWidth = Math.max(textWidth, ctx.measureText(line).width);
+            }
+            const width = Math.ceil(Math.min(MAX_NODE_WIDTH, Math.max(80, textWidth + 16)));
+            const height = HEADER_HEIGHT + sectionHeight(fields) + sectionHeight(methods);
+            ctx.font = NAME_FONT;
+            const title = truncate(name, width - 36);
+            ctx.font = MEMBER_FONT;
+            return {
+                width,
+                height,
+                title,
+                fields: fields.map(line => truncate(line, width - 12)),
+                methods: methods.map(line => truncate(line, width - 12))
+            };
+        }
+
+        // Live update that kept every node and edge: only the changed boxes are measured again,
+        // the layout is kept unless one of them changed size
+        function updateNodes(nodes) {
+            ctx.setTransform(1, 0, 0, 1, 0, 0);
+            let resized = false;
+            for (const node of nodes) {
+                graph.nodes[node.id] = node;
+                const box = measureNode(node);
+                resized = resized || box.width !== boxes[node.id].width || box.height !== boxes[node.id].height;
+                boxes[node.id] = box;
+            }
+            if (resized || layout === null) {
+                requestLayout();
+            } else {
+                requestDraw();
+            }
+        }
+
+        function limitLines(lines) {
+            if (lines.length <= MAX_MEMBER_LINES) {
+                return lines;
+            }
+            return lines.slice(0, MAX_MEMBER_LINES - 1).concat(['… ' + (lines.length - MAX_MEMBER_LINES + 1) + ' more']);
+        }
+
+        function sectionHeight(lines) {
+            return lines.length * MEMBER_LINE_HEIGHT + SECTION_PADDING;
+        }
+
+        // Uses the current ctx.font
+        function truncate(text, maxWidth) {
+            if (ctx.measureText(text).width <= maxWidth) {
+                return text;
+            }
+            let low = 0;
+            let high = text.length;
+            while (low < high) {
+                const middle = Math.ceil((low + high) / 2);
+                if (ctx.measureText(text.substring(0, middle) + '…').width <= maxWidth) {
+                    low = middle;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return text.substring(0, low) + '…';
+        }
+
+        // Uniform grid over the layout, for culling and hit testing
+        function buildSpatialIndex() {
+            grid = new Map();
+            for (let id = 0; id < boxes.length; id++) {
+                const x0 = Math.floor(layout.x[id] / GRID_CELL);
+                const x1 = Math.floor((layout.x[id] + boxes[id].width) / GRID_CELL);
+                const y0 = Math.floor(layout.y[id] / GRID_CELL);
+                const y1 = Math.floor((layout.y[id] + boxes[id].height) / GRID_CELL);
+                for (let cx = x0; cx <= x1; cx++) {
+                    for (let cy = y0; cy <= y1; cy++) {
+                        const key = cx + ',' + cy;
+                        const cell = grid.get(key);
+                        if (cell) {
+                            cell.push(id);
+                        } else {
+                            grid.set(key, [id]);
+                        }
+                    }
+                }
+            }
+        }
+
+        function nodesInRect(left, top, right, bottom) {
+            frameNumber++;
+            const result = [];
+            const x0 = Math.floor(left / GRID_CELL);
+            const x1 = Math.floor(right / GRID_CELL);
+            const y0 = Math.floor(top / GRID_CELL);
+            const y1 = Math.floor(bottom / GRID_CELL);
+            // Zoomed far out the viewport covers more cells than there are nodes
+            if ((x1 - x0 + 1) * (y1 - y0 + 1) > grid.size) {
+                for (let id = 0; id < boxes.length; id++) {
+                    if (intersects(id, left, top, right, bottom)) {
+                        result.push(id);
+                    }
+                }
+                return result;
+            }
+            for (let cx = x0; cx <= x1; cx++) {
+                for (let cy = y0; cy <= y1; cy++) {
+                    const cell = grid.get(cx + ',' + cy);
+                    if (!cell) {
+                        continue;
+                    }
+                    for (const id of cell) {
+                        if (visitStamp[id] !== frameNumber && intersects(id, left, top, right, bottom)) {
+                            visitStamp[id] = frameNumber;
+                            result.push(id);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        function intersects(id, left, top, right, bottom) {
+            const x = layout.x[id];
+            const y = layout.y[id];
+            return x <= right && x + boxes[id].width >= left && y <= bottom && y + boxes[id].height >= top;
+        }
+
+        function nodeAt(clientX, clientY) {
+            if (!layout) {
+                return -1;
+            }
+            const rect = canvas.getBoundingClientRect();
+            const worldX = (clientX - rect.left - offsetX) / scale;
+            const worldY = (clientY - rect.top - offsetY) / scale;
+            const hits = nodesInRect(worldX, worldY, worldX, worldY);
+            return hits.length > 0 ? hits[hits.length - 1] : -1;
+        }
+
+        // ---- Drawing ----
+
+        function requestDraw() {
+            if (!frameRequested) {
+                frameRequested = true;
+                requestAnimationFrame(draw);
+            }
+        }
+
+        function resizeCanvas() {
+            const dpr = window.devicePixelRatio || 1;
+            canvas.width = Math.max(1, Math.round(container.clientWidth * dpr));
+            canvas.height = Math.max(1, Math.round(container.clientHeight * dpr));
+            requestDraw();
+        }
+
+        function draw() {
+            frameRequested = false;
+            const dpr = window.devicePixelRatio || 1;
+            ctx.setTransform(1, 0, 0, 1, 0, 0);
+            ctx.clearRect(0, 0, canvas.width, canvas.height);
+            if (!layout) {
+                return;
+            }
+            ctx.setTransform(dpr * scale, 0, 0, dpr * scale, dpr * offsetX, dpr * offsetY);
+
+            const left = -offsetX / scale;
+            const top = -offsetY / scale;
+            const right = left + container.clientWidth / scale;
+            const bottom = top + container.clientHeight / scale;
+
+            drawEdges(allEdges, left, top, right, bottom, 1);
+            const visible = nodesInRect(left, top, right, bottom);
+            drawNodes(visible);
+            if (selectedId >= 0) {
+                drawEdges(nodeEdges[selectedId], left, top, right, bottom, 3);
+                drawNodes([selectedId]);
+            }
+        }
+
+        function endpoints(edge) {
+            const s = edge.source;
+            const t = edge.target;
+            const sx = layout.x[s] + boxes[s].width / 2;
+            const tx = layout.x[t] + boxes[t].width / 2;
+            if (layout.row[t] < layout.row[s]) {
+                return [sx, layout.y[s], tx, layout.y[t] + boxes[t].height];
+            }
+            if (layout.row[t] > layout.row[s]) {
+                return [sx, layout.y[s] + boxes[s].height, tx, layout.y[t]];
+            }
+            // Same row: side to side
+            const sy = layout.y[s] + boxes[s].height / 2;
+            const ty = layout.y[t] + boxes[t].height / 2;
+            return tx > sx
+                ? [layout.x[s] + boxes[s].width, sy, layout.x[t], ty]
+                : [layout.x[s], sy, layout.x[t] + boxes[t].width, ty];
+        }
+
+        function drawEdges(edgeIndexes, left, top, right, bottom, lineWidth) {
+            const showHeads = scale >= NAME_ZOOM;
+            const headSize = 10;
+            // One path per edge kind, stroked once
+            for (const kind of ['extends', 'implements', 'association']) {
+                ctx.beginPath();
+                const heads = [];
+                for (const index of edgeIndexes) {
+                    const edge = graph.edges[index];
+                    if (edge.kind !== kind) {
+                        continue;
+                    }
+                    const points = endpoints(edge);
+                    if (Math.max(points[0], points[2]) < left || Math.min(points[0], points[2]) > right ||
+                        Math.max(points[1], points[3]) < top || Math.min(points[1], points[3]) > bottom) {
+                        continue;
+                    }
+                    ctx.moveTo(points[0], points[1]);
+                    ctx.lineTo(points[2], points[3]);
+                    if (showHeads) {
+                        heads.push(points);
+                    }
+                }
+                ctx.strokeStyle = EDGE_COLOR;
+                ctx.lineWidth = lineWidth / Math.min(1, Math.max(scale, 0.2));
+                ctx.globalAlpha = selectedId >= 0 && lineWidth === 1 ? 0.35 : 0.8;
+                ctx.setLineDash(kind === 'implements' ? [6, 4] : []);
+                ctx.stroke();
+                ctx.setLineDash([]);
+
+                if (heads.length > 0) {
+                    ctx.beginPath();
+                    for (const points of heads) {
+                        const angle = Math.atan2(points[3] - points[1], points[2] - points[0]);
+                        const ax = points[2] - headSize * Math.cos(angle - 0.45);
+                        const ay = points[3] - headSize * Math.sin(angle - 0.45);
+                        const bx = points[2] - headSize * Math.cos(angle + 0.45);
+                        const by = points[3] - headSize * Math.sin(angle + 0.45);
+                        ctx.moveTo(ax, ay);
+                        ctx.lineTo(points[2], points[3]);
+                        ctx.lineTo(bx, by);
+                        if (kind !== 'association') {
+                            // Hollow triangle for generalization
+                            ctx.closePath();
+                        }
+                    }
+                    if (kind !== 'association') {
+                        ctx.fillStyle = NODE_FILL;
+                        ctx.fill();
+                    }
+                    ctx.stroke();
+                }
+            }
+            ctx.globalAlpha = 1;
+        }
+
+        function drawNodes(ids) {
+            // Boxes, batched by header color
+            ctx.lineWidth = 1 / Math.min(1, Math.max(scale, 0.2));
+            ctx.beginPath();
+            for (const id of ids) {
+                ctx.rect(layout.x[id], layout.y[id], boxes[id].width, boxes[id].height);
+            }
+            ctx.fillStyle = NODE_FILL;
+            ctx.fill();
+            for (const kind of Object.keys(KIND_COLORS)) {
+                ctx.beginPath();
+                for (const id of ids) {
+                    if (graph.nodes[id].kind === kind) {
+                        ctx.rect(layout.x[id], layout.y[id], boxes[id].width, scale < NAME_ZOOM ? boxes[id].height : HEADER_HEIGHT);
+                    }
+                }
+                ctx.fillStyle = KIND_COLORS[kind];
+                ctx.globalAlpha = scale < NAME_ZOOM ? 1 : 0.35;
+                ctx.fill();
+            }
+            ctx.globalAlpha = 1;
+            ctx.beginPath();
+            for (const id of ids) {
+                ctx.rect(layout.x[id], layout.y[id], boxes[id].width, boxes[id].height);
+            }
+            ctx.strokeStyle = NODE_STROKE;
+            ctx.stroke();
+
+            const highlighted = ids.filter(id => id === selectedId || id === hoveredId);
+            if (highlighted.length > 0) {
+                ctx.beginPath();
+                for (const id of highlighted) {
+                    ctx.rect(layout.x[id], layout.y[id], boxes[id].width, boxes[id].height);
+                }
+                ctx.lineWidth = 3 / Math.min(1, Math.max(scale, 0.2));
+                ctx.strokeStyle = '#007ACC';
+                ctx.stroke();
+            }
+
+            if (scale < NAME_ZOOM) {
+                return;
+            }
+
+            // Class names with the kind letter
+            ctx.textBaseline = 'middle';
+            ctx.font = NAME_FONT;
+            for (const id of ids) {
+                const x = layout.x[id];
+                const y = layout.y[id];
+                const kind = graph.nodes[id].kind;
+                ctx.beginPath();
+                ctx.arc(x + 14, y + HEADER_HEIGHT / 2, 8, 0, Math.PI * 2);
+                ctx.fillStyle = KIND_COLORS[kind];
+                ctx.fill();
+                ctx.fillStyle = '#000000';
+                ctx.textAlign = 'center';
+                ctx.fillText(KIND_LETTERS[kind], x + 14, y + HEADER_HEIGHT / 2 + 1);
+                ctx.textAlign = 'left';
+                ctx.font = kind === 'abstract' || kind === 'interface' ? 'italic ' + NAME_FONT : NAME_FONT;
+                ctx.fillText(boxes[id].title, x + 28, y + HEADER_HEIGHT / 2 + 1);
+                ctx.font = NAME_FONT;
+            }
+
+            if (scale < MEMBER_ZOOM) {
+                return;
+            }
+
+            // Members and the compartment separators
+            ctx.beginPath();
+            for (const id of ids) {
+                const x = layout.x[id];
+                const separator = layout.y[id] + HEADER_HEIGHT + sectionHeight(boxes[id].fields);
+                ctx.moveTo(x, layout.y[id] + HEADER_HEIGHT);
+                ctx.lineTo(x + boxes[id].width, layout.y[id] + HEADER_HEIGHT);
+                ctx.moveTo(x, separator);
+                ctx.lineTo(x + boxes[id].width, separator);
+            }
+            ctx.lineWidth = 1;
+            ctx.strokeStyle = NODE_STROKE;
+            ctx.stroke();
+
+            ctx.font = MEMBER_FONT;
+            ctx.fillStyle = '#000000';
+            ctx.textBaseline = 'top';
+            for (const id of ids) {
+                const x = layout.x[id] + 6;
+                let y = layout.y[id] + HEADER_HEIGHT + SECTION_PADDING / 2;
+                for (const line of boxes[id].fields) {
+                    ctx.fillText(line, x, y);
+                    y += MEMBER_LINE_HEIGHT;
+                }
+                y += SECTION_PADDING;
+                for (const line of boxes[id].methods) {
+                    ctx.fillText(line, x, y);
+                    y += MEMBER_LINE_HEIGHT;
+                }
+            }
+        }
+
+        // ---- View ----
+
+        function fitToView() {
+            if (!layout) {
+                return;
+            }
+            const width = container.clientWidth;
+            const height = container.clientHeight;
+            scale = Math.min(1.5, Math.max(0.005, Math.min(width / (layout.width + 40), height / (layout.height + 40))));
+            offsetX = (width - layout.width * scale) / 2;
+            offsetY = (height - layout.height * scale) / 2;
+            requestDraw();
+        }
+
+        function zoomBy(factor, clientX, clientY) {
+            const rect = canvas.getBoundingClientRect();
+            const anchorX = clientX === undefined ? rect.width / 2 : clientX - rect.left;
+            const anchorY = clientY === undefined ? rect.height / 2 : clientY - rect.top;
+            const newScale = Math.min(4, Math.max(0.005, scale * factor));
+            // Keep the point under the cursor in place
+            offsetX = anchorX - (anchorX - offsetX) * newScale / scale;
+            offsetY = anchorY - (anchorY - offsetY) * newScale / scale;
+            scale = newScale;
+            requestDraw();
+        }
+
+        function centerOn(id) {
+            scale = Math.max(scale, MEMBER_ZOOM);
+            offsetX = container.clientWidth / 2 - (layout.x[id] + boxes[id].width / 2) * scale;
+            offsetY = container.clientHeight / 2 - (layout.y[id] + boxes[id].height / 2) * scale;
+            selectedId = id;
+            requestDraw();
+        }
+
+        function setLoading(text) {
+            const loading = document.getElementById('loading');
+            loading.style.display = text ? 'flex' : 'none';
+            loading.textContent = text || '';
+        }
+
+        let dragStart = null;
+
+        canvas.addEventListener('mousedown', event => {
+            dragStart = { x: event.clientX, y: event.clientY, offsetX, offsetY, moved: false };
+            canvas.style.cursor = 'grabbing';
+        });
+
+        window.addEventListener('mousemove', event => {
+            if (dragStart) {
+                const dx = event.clientX - dragStart.x;
+                const dy = event.clientY - dragStart.y;
+                if (Math.abs(dx) + Math.abs(dy) > 4) {
+                    dragStart.moved = true;
+                }
+                offsetX = dragStart.offsetX + dx;
+                offsetY = dragStart.offsetY + dy;
+                requestDraw();
+            } else if (event.target === canvas) {
+                const id = nodeAt(event.clientX, event.clientY);
+                if (id !== hoveredId) {
+                    hoveredId = id;
+                    canvas.style.cursor = id >= 0 ? 'pointer' : 'grab';
+                    requestDraw();
+                }
+            }
+        });
+
+        window.addEventListener('mouseup', event => {
+            if (!dragStart) {
+                return;
+            }
+            const clicked = !dragStart.moved;
+            dragStart = null;
+            canvas.style.cursor = hoveredId >= 0 ? 'pointer' : 'grab';
+            if (clicked && event.target === canvas) {
+                const id = nodeAt(event.clientX, event.clientY);
+                selectedId = id;
+                requestDraw();
+                if (id >= 0 && graph.nodes[id].filePath) {
+                    vscode.postMessage({
+                        command: 'navigateToClass',
+                        className: graph.nodes[id].name,
+                        filePath: graph.nodes[id].filePath
+                    });
+                }
+            }
+        });
+
+        canvas.addEventListener('wheel', event => {
+            event.preventDefault();
+            zoomBy(Math.exp(-event.deltaY * 0.0015), event.clientX, event.clientY);
+        }, { passive: false });
+
+        document.getElementById('search').addEventListener('keydown', event => {
+            if (event.key !== 'Enter' || !graph || !layout) {
+                return;
+            }
+            const query = event.target.value.trim().toLowerCase();
+            if (!query) {
+                return;
+            }
+            // Exact name first, then the next partial match after the current selection
+            let id = graph.nodes.findIndex(node => node.name.toLowerCase() === query);
+            if (id < 0 || id === selectedId) {
+                const count = graph.nodes.length;
+                for (let i = 1; i <= count; i++) {
+                    const candidate = (Math.max(selectedId, -1) + i) % count;
+                    if (graph.nodes[candidate].name.toLowerCase().includes(query)) {
+                        id = candidate;
+                        break;
+                    }
+                }
+            }
+            if (id >= 0) {
+                centerOn(id);
+            }
+        });
+
+        document.addEventListener('keydown', event => {
+            if ((event.ctrlKey || event.metaKey) && (event.key === '=' || event.key === '+')) {
+                event.preventDefault();
+                zoomBy(1.25);
+            } else if ((event.ctrlKey || event.metaKey) && event.key === '-') {
+                event.preventDefault();
+                zoomBy(0.8);
+            } else if ((event.ctrlKey || event.metaKey) && event.key === '0') {
+                event.preventDefault();
+                fitToView();
+            }
+        });
+
+        document.getElementById('zoom-in').addEventListener('click', () => zoomBy(1.25));
+        document.getElementById('zoom-out').addEventListener('click', () => zoomBy(0.8));
+        document.getElementById('fit-to-view').addEventListener('click', () => fitToView());
+
+        new ResizeObserver(resizeCanvas).observe(container);
+
+        window.addEventListener('message', event => {
+            const message = event.data;
+            if (message && message.command === 'renderGraph') {
+                // Live updates keep the current view; ids may change, so drop the selection
+                graph = message.graph;
+                selectedId = -1;
+                hoveredId = -1;
+                measureNodes();
+                requestLayout();
+            } else if (message && message.command === 'updateGraphNodes' && graph) {
+                updateNodes(message.nodes);
+            }
+        });
+
+        resizeCanvas();
+        vscode.postMessage({ command: 'graphReady' });
+    </script>
+</body>
+</html>`;
+}
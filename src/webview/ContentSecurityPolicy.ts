@@ -0,0 +1,39 @@
+import * as crypto from 'crypto';
+
+export function createNonce(): string {
+    return crypto.randomBytes(16).toString('base64');
+}
+
+/**
+ * CSP meta tag of the diagram webviews. Only the extension's own script block (carrying
+ * `nonce`) runs; inline event handler attributes and script inside rendered SVG do not.
+ * Styles stay inline-capable, PlantUML's SVG styles its elements with style attributes. The
+ * graph view lays out in a Blob worker.
+ */
+export function contentSecurityPolicy(cspSource: string, nonce: string): string {
+    const directives = [
+        `default-src 'none'`,
+        `img-src ${cspSource} data:`,
+        `style-src ${cspSource} 'unsafe-inline'`,
+        `font-src ${cspSource}`,
+        `script-src 'nonce-${nonce}'`,
+        `worker-src blob:`
+    ];
+    return `<meta http-equiv="Content-Security-Policy" content="${directives.join('; ')}">`;
+}
+
+/**
+ * Escapes text for HTML element content and quoted attribute values.
+ */
+export function escapeHtml(text: string): string {
+    return text.replace(/[<>&"']/g, ch => `&#${ch.charCodeAt(0)};`);
+}
+
+/**
+ * JavaScript string literal of `value` that is safe inside a <script> block: JSON quoting
+ * leaves no backtick or `${` to break out of, and "<" is escaped so "</script>" cannot close
+ * the block.
+ */
+export function scriptStringLiteral(value: string): string {
+    return JSON.stringify(value).replace(/</g, '\\u003c').replace(/\u2028/g, '\\u2028').replace(/\u2029/g, '\\u2029');
+}
@@ -0,0 +1,94 @@
+// 类图生成的耗时与内存基准（需先 npm run compile）
+// 用法: node BenchmarkPlantUMLGenerator.js [类数量...]
+const { PlantUMLGenerator } = require('../out/plantuml/PlantUMLGenerator');
+
+function structure(index, packageCount) {
+    const packageName = `bench.pkg${index % packageCount}`;
+    const fields = [];
+    for (let f = 0; f < 6; f++) {
+        fields.push({ name: `field${f}`, type: f % 2 === 0 ? `Entity${(index + f + 1) % 997}` : 'String', visibility: 'private', isStatic: false, isFinal: false });
+    }
+    const methods = [];
+    for (let m = 0; m < 8; m++) {
+        methods.push({
+            name: m < 3 ? `getValue${m}` : `process${m}`,
+            returnType: m % 3 === 0 ? 'void' : 'java.util.List<String>',
+            parameters: [{ name: 'input', type: 'String' }],
+            visibility: 'public',
+            isStatic: false,
+            isAbstract: false,
+            isFinal: false
+        });
+    }
+    return {
+        className: `Entity${index}`,
+        packageName,
+        filePath: `/src/bench/pkg${index % packageCount}/Entity${index}.java`,
+        classType: index % 10 === 0 ? 'interface' : 'class',
+        superClass: index > 0 && index % 3 === 0 ? `Entity${Math.floor(index / 3)}` : undefined,
+        interfaces: index % 10 !== 0 && index >= 10 ? [`Entity${Math.floor(index / 10) * 10}`] : [],
+        fields,
+        methods,
+        constructors: [{ name: `Entity${index}`, returnType: '', parameters: [], visibility: 'public', isStatic: false, isAbstract: false, isFinal: false }],
+        innerClasses: [],
+        imports: [],
+        annotations: [],
+        inheritanceHierarchy: [],
+        allInterfaces: [],
+        isSystemClass: false
+    };
+}
+
+function measure(generator, classes) {
+    if (global.gc) {
+        global.gc();
+    }
+    const heapBefore = process.memoryUsage().heapUsed;
+    const startTime = process.hrtime.bigint();
+    const output = generator.generateMultiClassDiagram(classes);
+    const elapsed = Number(process.hrtime.bigint() - startTime) / 1e6;
+    const heapDelta = (process.memoryUsage().heapUsed - heapBefore) / (1024 * 1024);
+    return { elapsed, heapDelta, length: output.length };
+}
+
+function runBenchmark() {
+    console.log('=== PlantUML Generator Benchmark ===\n');
+
+    const sizes = process.argv.length > 2 ? process.argv.slice(2).map(Number) : [100, 500, 1000, 2000, 5000];
+    const generator = new PlantUMLGenerator();
+    const log = console.log;
+    const results = [];
+
+    for (const size of sizes) {
+        const classes = [];
+        for (let i = 0; i < size; i++) {
+            classes.push(structure(i, Math.max(1, Math.round(size / 25))));
+        }
+
+        // 预热一次，再取三次中的最小值；生成器自身的日志在测量期间关闭
+        console.log = () => {};
+        let best;
+        try {
+            for (let run = 0; run < 4; run++) {
+                const result = measure(generator, classes);
+                if (run > 0 && (!best || result.elapsed < best.elapsed)) {
+                    best = result;
+                }
+            }
+        } finally {
+            console.log = log;
+        }
+        results.push({ size, ...best });
+        console.log(`${String(size).padStart(6)} classes: ${best.elapsed.toFixed(1).padStart(8)}ms  ${(best.elapsed * 1000 / size).toFixed(1).padStart(7)}µs/class  heap ${best.heapDelta.toFixed(1).padStart(6)}MB  ${(best.length / 1024).toFixed(0)}KB output`);
+    }
+
+    // 每个类的耗时不应随规模明显增长
+    const first = results[0];
+    const last = results[results.length - 1];
+    const growth = (last.elapsed / last.size) / (first.elapsed / first.size);
+    const linear = growth < 3;
+    console.log(`\n${linear ? '✅' : '❌'} Per-class cost grows ${growth.toFixed(2)}x from ${first.size} to ${last.size} classes`);
+    return linear;
+}
+
+runBenchmark();
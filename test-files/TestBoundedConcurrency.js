@@ -0,0 +1,88 @@
+// 测试有界并发解析管道（src/util/concurrency.ts，需先 npm run compile）
+const { mapWithConcurrency, mapConcurrentStream } = require('../out/util/concurrency');
+
+async function testBoundedConcurrency() {
+    console.log('=== Testing Bounded Concurrency Pipeline ===\n');
+
+    const sleep = ms => new Promise(resolve => setTimeout(resolve, ms));
+    let allPassed = true;
+
+    // 测试1: 结果顺序与输入一致，且并发数不超过上限
+    {
+        const files = Array.from({ length: 20 }, (_, i) => `File${i}.java`);
+        let inFlight = 0;
+        let maxInFlight = 0;
+        const results = await mapWithConcurrency(files, 4, async (file, index) => {
+            inFlight++;
+            maxInFlight = Math.max(maxInFlight, inFlight);
+            // 反向延迟，让后面的文件先完成
+            await sleep(20 - index);
+            inFlight--;
+            return file.replace('.java', '');
+        });
+
+        const ordered = results.every((r, i) => r === `File${i}`);
+        const bounded = maxInFlight <= 4 && maxInFlight > 1;
+        console.log(`Test 1: ordered=${ordered}, maxInFlight=${maxInFlight}`);
+        console.log(`  Result: ${ordered && bounded ? '✅ PASS' : '❌ FAIL'}`);
+        allPassed = allPassed && ordered && bounded;
+    }
+
+    // 测试2: 取消后不再启动新任务
+    {
+        const token = { isCancellationRequested: false };
+        let started = 0;
+        const results = await mapWithConcurrency(Array.from({ length: 50 }, (_, i) => i), 5, async item => {
+            started++;
+            if (started === 10) {
+                token.isCancellationRequested = true;
+            }
+            await sleep(5);
+            return item;
+        }, token);
+
+        const stopped = started < 50 && Array.from(results).filter(r => r === undefined).length === 50 - started;
+        console.log(`Test 2: started=${started} of 50 before cancellation`);
+        console.log(`  Result: ${stopped ? '✅ PASS' : '❌ FAIL'}`);
+        allPassed = allPassed && stopped;
+    }
+
+    // 测试3: 流式版本只在有空闲槽位时拉取输入
+    {
+        let pulled = 0;
+        async function* source() {
+            for (let i = 0; i < 12; i++) {
+                pulled++;
+                yield i;
+            }
+        }
+        let inFlight = 0;
+        let maxInFlight = 0;
+        let maxAhead = 0;
+        let yielded = 0;
+        const seen = [];
+        for await (const result of mapConcurrentStream(source(), 3, async item => {
+            inFlight++;
+            maxInFlight = Math.max(maxInFlight, inFlight);
+            await sleep(5 + (item % 3) * 5);
+            inFlight--;
+            return item * 2;
+        })) {
+            yielded++;
+            maxAhead = Math.max(maxAhead, pulled - yielded);
+            seen.push(result.value === result.item * 2 ? result.index : -1);
+        }
+
+        const complete = seen.slice().sort((a, b) => a - b).every((index, i) => index === i) && seen.length === 12;
+        const bounded = maxInFlight <= 3 && maxAhead <= 3;
+        console.log(`Test 3: results=${seen.length}, maxInFlight=${maxInFlight}, maxAhead=${maxAhead}`);
+        console.log(`  Result: ${complete && bounded ? '✅ PASS' : '❌ FAIL'}`);
+        allPassed = allPassed && complete && bounded;
+    }
+
+    console.log(`\nOverall Result: ${allPassed ? '✅ ALL TESTS PASSED' : '❌ SOME TESTS FAILED'}`);
+    console.log('\n=== Bounded Concurrency Test Complete ===');
+}
+
+// 运行测试
+testBoundedConcurrency();
@@ -0,0 +1,172 @@
+// 测试端到端取消：调度队列丢弃、共享请求的引用计数、新生成取代旧生成、javap 进程被终止（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const {
+    CancellationError, SharedCancellation, SupersedingCancellation, anySignal, currentCancellation, isCancellationError, runCancellable
+} = require('../out/util/cancellation');
+const { LanguageServerScheduler } = require('../out/languageserver/LanguageServerScheduler');
+const { SystemClassParser } = require('../out/parser/SystemClassParser');
+
+const sleep = ms => new Promise(resolve => setTimeout(resolve, ms));
+
+function isAlive(pid) {
+    try {
+        process.kill(pid, 0);
+        return true;
+    } catch {
+        return false;
+    }
+}
+
+// Stand-in for javap on PATH: records its pid, answers after `delaySeconds`.
+// Names containing Missing are reported as not found, names containing Broken are silently skipped
+function installFakeJavap(dir, delaySeconds) {
+    const script = path.join(dir, 'javap');
+    fs.writeFileSync(script, [
+        '#!/bin/sh',
+        `echo $$ >> "${path.join(dir, 'pids')}"`,
+        `sleep ${delaySeconds}`,
+        'status=0',
+        'for name in "$@"; do',
+        '  case "$name" in',
+        '    -*) continue;;',
+        '    *Missing*) echo "Error: class not found: $name" >&2; status=1; continue;;',
+        '    *Broken*) status=1; continue;;',
+        '  esac',
+        '  echo "public class $name {"',
+        '  echo "  public $name();"',
+        '  echo "}"',
+        'done',
+        'exit $status'
+    ].join('\n'));
+    fs.chmodSync(script, 0o755);
+    return () => fs.existsSync(path.join(dir, 'pids'))
+        ? fs.readFileSync(path.join(dir, 'pids'), 'utf8').trim().split('\n').map(Number)
+        : [];
+}
+
+async function testCancellation() {
+    console.log('=== Testing Cancellation ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: 取消信号随异步调用链传递，新生成取消旧生成
+    const generations = new SupersedingCancellation();
+    const first = generations.begin();
+    const seen = await runCancellable(first, async () => {
+        await sleep(1);
+        return currentCancellation();
+    });
+    check('The signal follows the async call chain', seen === first && currentCancellation() === undefined);
+    const second = generations.begin();
+    check('A new generation cancels the previous one', first.aborted && !second.aborted);
+    const controller = new AbortController();
+    const combined = anySignal(second, controller.signal);
+    controller.abort();
+    check('A combined signal fires with any of its sources', combined.aborted && !second.aborted);
+
+    // 测试2: 共享工作在所有调用方都取消后才取消
+    const shared = new SharedCancellation();
+    const callerA = new AbortController();
+    const callerB = new AbortController();
+    shared.join(callerA.signal);
+    shared.join(callerB.signal);
+    callerA.abort();
+    const afterOne = shared.signal.aborted;
+    callerB.abort();
+    check('Shared work is cancelled by its last caller only', !afterOne && shared.signal.aborted);
+    const pinned = new SharedCancellation();
+    const callerC = new AbortController();
+    pinned.join(callerC.signal);
+    pinned.join(undefined);
+    callerC.abort();
+    check('A caller without a signal keeps shared work alive', !pinned.signal.aborted);
+
+    // 测试3: 调度器丢弃已取消的排队请求，合并请求保留给仍在等待的调用方
+    const scheduler = new LanguageServerScheduler({ initialWindow: 1, maxWindow: 1 });
+    const calls = [];
+    const request = (label, ms = 20) => async () => {
+        calls.push(label);
+        await sleep(ms);
+        return label;
+    };
+    const running = scheduler.schedule(request('running'));
+    const queuedController = new AbortController();
+    const queued = scheduler.schedule(request('queued'), { signal: queuedController.signal });
+    const keptController = new AbortController();
+    const leaving = scheduler.schedule(request('shared'), { key: 'A.java', signal: keptController.signal });
+    const staying = scheduler.schedule(request('shared'), { key: 'A.java' });
+    queuedController.abort();
+    keptController.abort();
+    const queuedError = await queued.catch(error => error);
+    const leavingError = await leaving.catch(error => error);
+    await running;
+    check('Cancelled callers are released at once', queuedError instanceof CancellationError && leavingError instanceof CancellationError);
+    check('A request every caller left never reaches the server', !calls.includes('queued') && scheduler.getStats().cancelled === 1);
+    check('A shared request still serves the remaining caller', await staying === 'shared');
+    const ambientError = await runCancellable(AbortSignal.abort(), () => scheduler.schedule(request('late'))).catch(error => error);
+    check('Requests pick up the surrounding signal', isCancellationError(ambientError) && !calls.includes('late'));
+
+    // 测试4: 取消的 javap 批次被终止且不写入缓存，仍有调用方等待时照常完成
+    if (process.platform === 'win32') {
+        console.log('⏭️  javap process tests need a POSIX shell');
+    } else {
+        const binDir = fs.mkdtempSync(path.join(os.tmpdir(), 'fake-javap-'));
+        const originalPath = process.env.PATH;
+        process.env.PATH = `${binDir}${path.delimiter}${originalPath}`;
+        try {
+            const pids = installFakeJavap(binDir, 2);
+            const parser = new SystemClassParser();
+            const lookup = new AbortController();
+            const started = Date.now();
+            const pending = runCancellable(lookup.signal, () => parser.getSystemClassInfo('java.lang.Slow'));
+            await sleep(200);
+            lookup.abort();
+            const error = await pending.catch(reason => reason);
+            const releasedAfter = Date.now() - started;
+            await sleep(100);
+            check('Cancelling a lookup rejects it without waiting for javap', isCancellationError(error) && releasedAfter < 1000, `${releasedAfter}ms`);
+            check('The javap process of a cancelled batch is killed', pids().length === 1 && !isAlive(pids()[0]));
+            check('A killed batch caches nothing', !parser['classes'].has('java.lang.Slow'));
+
+            installFakeJavap(binDir, 0.3);
+            const leaver = new AbortController();
+            const cancelledLookup = runCancellable(leaver.signal, () => parser.getSystemClassInfo('java.lang.Shared')).catch(reason => reason);
+            const keptLookup = parser.getSystemClassInfo('java.lang.Shared');
+            await sleep(50);
+            leaver.abort();
+            const info = await keptLookup;
+            check('A batch keeps running while one lookup still waits', isCancellationError(await cancelledLookup) &&
+                info !== null && info.className === 'Shared' && pids().length === 2);
+
+            // 测试5: 只有 JDK 包名才调用 javap，只缓存明确的“找不到类”
+            installFakeJavap(binDir, 0);
+            check('Workspace types never start javap', await parser.getSystemClassInfo('demo.Workspace') === null &&
+                await parser.getSystemClassInfo('Workspace') === null && pids().length === 2);
+            const [missing, broken, found] = await Promise.all([
+                parser.getSystemClassInfo('java.lang.Missing'),
+                parser.getSystemClassInfo('java.lang.Broken'),
+                parser.getSystemClassInfo('java.lang.Found')
+            ]);
+            check('One failed batch still answers every name', missing === null && broken === null && found?.className === 'Found' && pids().length === 3);
+            check('Names javap reported as not found are cached as misses', parser['classes'].get('java.lang.Missing') === null);
+            check('Unprinted names of a failed run are not cached', !parser['classes'].has('java.lang.Broken'));
+            parser.dispose();
+        } finally {
+            process.env.PATH = originalPath;
+            fs.rmSync(binDir, { recursive: true, force: true });
+        }
+    }
+
+    console.log(allPassed ? '\n🎉 All cancellation tests passed!' : '\n❌ Some cancellation tests failed');
+    return allPassed;
+}
+
+testCancellation();
@@ -0,0 +1,126 @@
+// 测试字节码读取：JAR/JMOD 中央目录与 class 文件解析（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { execFileSync } = require('child_process');
+const { JarReader } = require('../out/bytecode/JarReader');
+const { parseClassFile, SignatureReader, simpleNameOf } = require('../out/bytecode/ClassFileReader');
+
+function findJdkArchive() {
+    const candidates = [];
+    const javaHome = process.env.JAVA_HOME;
+    if (javaHome) {
+        candidates.push(javaHome);
+    }
+    try {
+        const javaPath = execFileSync(process.platform === 'win32' ? 'where' : 'which', ['java']).toString().split(/\r?\n/)[0].trim();
+        candidates.push(path.dirname(path.dirname(fs.realpathSync(javaPath))));
+    } catch {
+        // java not on PATH
+    }
+
+    for (const home of candidates) {
+        for (const archive of [path.join(home, 'jmods', 'java.base.jmod'), path.join(home, 'jre', 'lib', 'rt.jar'), path.join(home, 'lib', 'rt.jar')]) {
+            if (fs.existsSync(archive)) {
+                return archive;
+            }
+        }
+    }
+    return undefined;
+}
+
+async function testClassFileReader() {
+    console.log('=== Testing Class File / JAR Reader ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: 签名解析
+    const fieldType = new SignatureReader('Ljava/util/Map<Ljava/lang/String;Ljava/util/List<+Ljava/lang/Number;>;>;').readType();
+    check('Generic field signature', fieldType === 'Map<String, List<? extends Number>>', fieldType);
+
+    const method = new SignatureReader('<T:Ljava/lang/Object;ID::Ljava/io/Serializable;>(TID;[I)Ljava/util/Optional<TT;>;^Ljava/io/IOException;').readMethod();
+    check('Generic method signature', JSON.stringify(method) === JSON.stringify({
+        parameters: ['ID', 'int[]'], returnType: 'Optional<T>', exceptions: ['IOException']
+    }), JSON.stringify(method));
+    check('Nested class simple names', simpleNameOf('java/util/Map$Entry') === 'Entry');
+
+    // 测试2: 读取 JDK 归档（java.base.jmod 或 rt.jar）
+    const archivePath = findJdkArchive();
+    if (!archivePath) {
+        console.log('⚠️  No JDK archive found, skipping archive tests');
+    } else {
+        let startTime = Date.now();
+        const reader = await JarReader.open(archivePath, name => name.endsWith('.class'));
+        const directoryTime = Date.now() - startTime;
+        check('Central directory lists the class entries', reader.size > 1000, `${reader.size} classes in ${directoryTime}ms`);
+
+        const prefix = archivePath.endsWith('.jmod') ? 'classes/' : '';
+        startTime = Date.now();
+        const arrayList = parseClassFile(await reader.read(`${prefix}java/util/ArrayList.class`));
+        const readTime = Date.now() - startTime;
+        check('ArrayList super class', arrayList.superClass === 'java/util/AbstractList', `${readTime}ms`);
+        check('ArrayList interfaces', arrayList.interfaces.includes('java/util/List') && arrayList.interfaces.includes('java/util/RandomAccess'));
+        check('ArrayList generic signature', /^<E:Ljava\/lang\/Object;>Ljava\/util\/AbstractList<TE;>;/.test(arrayList.signature || ''));
+        check('ArrayList methods', arrayList.methods.some(m => m.name === 'add') && arrayList.methods.some(m => m.name === '<init>'));
+
+        const mapEntry = parseClassFile(await reader.read(`${prefix}java/util/Map$Entry.class`));
+        check('Map.Entry is an interface', (mapEntry.accessFlags & 0x0200) !== 0);
+    }
+
+    // 测试3: 存储（未压缩）条目和带前缀的归档
+    const tmpDir = fs.mkdtempSync(path.join(os.tmpdir(), 'class-reader-'));
+    try {
+        const storedZip = buildStoredZip([{ name: 'a/B.class', data: Buffer.from([0xca, 0xfe, 0xba, 0xbe]) }]);
+        const prefixed = Buffer.concat([Buffer.from('JM\x01\x00', 'latin1'), storedZip]);
+        fs.writeFileSync(path.join(tmpDir, 'test.jmod'), prefixed);
+        const prefixedReader = await JarReader.open(path.join(tmpDir, 'test.jmod'));
+        const data = await prefixedReader.read('a/B.class');
+        check('Prefixed archive with a stored entry', data && data.readUInt32BE(0) === 0xCAFEBABE);
+    } finally {
+        fs.rmSync(tmpDir, { recursive: true, force: true });
+    }
+
+    console.log(allPassed ? '\n🎉 All class file reader tests passed!' : '\n❌ Some class file reader tests failed');
+    return allPassed;
+}
+
+// 构造只含未压缩条目的最小 ZIP
+function buildStoredZip(files) {
+    const locals = [];
+    const centrals = [];
+    let offset = 0;
+    for (const file of files) {
+        const name = Buffer.from(file.name, 'utf8');
+        const local = Buffer.alloc(30);
+        local.writeUInt32LE(0x04034b50, 0);
+        local.writeUInt32LE(file.data.length, 18);
+        local.writeUInt32LE(file.data.length, 22);
+        local.writeUInt16LE(name.length, 26);
+        locals.push(local, name, file.data);
+
+        const central = Buffer.alloc(46);
+        central.writeUInt32LE(0x02014b50, 0);
+        central.writeUInt32LE(file.data.length, 20);
+        central.writeUInt32LE(file.data.length, 24);
+        central.writeUInt16LE(name.length, 28);
+        central.writeUInt32LE(offset, 42);
+        centrals.push(central, name);
+        offset += 30 + name.length + file.data.length;
+    }
+    const directory = Buffer.concat(centrals);
+    const end = Buffer.alloc(22);
+    end.writeUInt32LE(0x06054b50, 0);
+    end.writeUInt16LE(files.length, 8);
+    end.writeUInt16LE(files.length, 10);
+    end.writeUInt32LE(directory.length, 12);
+    end.writeUInt32LE(offset, 16);
+    return Buffer.concat([...locals, directory, end]);
+}
+
+testClassFileReader();
@@ -0,0 +1,168 @@
+// 测试类关系图索引：k 跳邻域查询、关系类型与包过滤、增量更新、紧凑邻接表（需先 npm run compile）
+const { ClassGraphIndex, getTypeReferences } = require('../out/graph/ClassGraphIndex');
+const { CompactGraphBuilder, NameInterner } = require('../out/graph/CompactGraph');
+const { DiagramModel } = require('../out/plantuml/DiagramModel');
+
+function structure(packageName, className, options = {}) {
+    return {
+        className,
+        packageName,
+        filePath: `/src/${packageName.replace(/\./g, '/')}/${className}.java`,
+        classType: options.classType || 'class',
+        superClass: options.superClass,
+        interfaces: options.interfaces || [],
+        fields: (options.fields || []).map(([name, type]) => ({ name, type, visibility: 'private', isStatic: false, isFinal: false, annotations: [] })),
+        methods: (options.methods || []).map(([name, returnType, parameterTypes]) => ({
+            name,
+            returnType,
+            parameters: (parameterTypes || []).map((type, i) => ({ name: `p${i}`, type })),
+            visibility: 'public',
+            isStatic: false,
+            isAbstract: false,
+            isFinal: false,
+            annotations: [],
+            exceptions: []
+        })),
+        constructors: [],
+        innerClasses: [],
+        imports: options.imports || [],
+        annotations: [],
+        inheritanceHierarchy: [],
+        allInterfaces: [],
+        isSystemClass: false
+    };
+}
+
+function names(neighbors) {
+    return neighbors.map(neighbor => neighbor.qualifiedName).sort().join(',');
+}
+
+function testClassGraphIndex() {
+    console.log('=== Testing Class Graph Index ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: 引用提取覆盖父类、接口、字段（含泛型参数）与方法签名
+    const order = structure('shop.order', 'Order', {
+        superClass: 'shop.core.Entity<Long>',
+        interfaces: ['Auditable'],
+        imports: ['shop.core.Auditable', 'shop.customer.*'],
+        fields: [['customer', 'Customer'], ['lines', 'List<OrderLine>'], ['total', 'int'], ['first', 'Field0'], ['second', 'Field1'], ['third', 'Field2']],
+        methods: [['ship', 'void', ['Address']], ['status', 'Status', []]]
+    });
+    const references = getTypeReferences(order);
+    const byKind = kind => references.filter(reference => reference.kind === kind).map(reference => reference.typeName).join(',');
+    check('Supertypes are references', byKind('extends') === 'shop.core.Entity' && byKind('implements') === 'Auditable');
+    check('Every field type is a reference, type arguments included', byKind('association') === 'Customer,List,OrderLine,Field0,Field1,Field2', byKind('association'));
+    check('Method signatures are dependencies', byKind('dependency') === 'Long,Address,Status', byKind('dependency'));
+
+    // 测试2: 邻域查询
+    const index = new ClassGraphIndex();
+    [
+        order,
+        structure('shop.order', 'OrderLine', { fields: [['product', 'shop.catalog.Product']] }),
+        structure('shop.order', 'Status', { classType: 'enum' }),
+        structure('shop.order', 'Field0'),
+        structure('shop.order', 'Field1'),
+        structure('shop.order', 'Field2'),
+        structure('shop.core', 'Entity', { superClass: 'java.io.Serializable' }),
+        structure('shop.core', 'Auditable', { classType: 'interface' }),
+        structure('shop.customer', 'Customer', { fields: [['address', 'Address']] }),
+        structure('shop.customer', 'Address'),
+        structure('shop.catalog', 'Product', { superClass: 'Entity', imports: ['shop.core.Entity'] }),
+        structure('shop.admin', 'Report', { methods: [['of', 'Report', ['shop.order.Order']]] })
+    ].forEach(cls => index.update(cls));
+
+    const oneHop = index.getNeighborhood('shop.order.Order', { depth: 1 });
+    check('1 hop: direct relations, no field limit',
+        names(oneHop) === 'shop.core.Auditable,shop.core.Entity,shop.customer.Address,shop.customer.Customer,shop.order.Field0,shop.order.Field1,shop.order.Field2,shop.order.OrderLine,shop.order.Status',
+        names(oneHop));
+    const twoHop = index.getNeighborhood('shop.order.Order', { depth: 2 });
+    check('2 hops reach the classes of the related classes',
+        twoHop.some(neighbor => neighbor.qualifiedName === 'shop.catalog.Product' && neighbor.distance === 2) &&
+        twoHop.some(neighbor => neighbor.qualifiedName === 'java.io.Serializable' && !neighbor.structure));
+
+    const supertypes = index.getNeighborhood('shop.catalog.Product', { depth: Infinity, kinds: ['extends', 'implements'] });
+    check('Supertype chain, library types included', names(supertypes) === 'java.io.Serializable,shop.core.Entity', names(supertypes));
+
+    const samePackage = index.getNeighborhood('shop.order.Order', { depth: 3, packages: ['shop.order'] });
+    check('Package filter', samePackage.every(neighbor => neighbor.qualifiedName.startsWith('shop.order.')) && samePackage.length === 5, names(samePackage));
+
+    const users = index.getNeighborhood('shop.core.Entity', { depth: 1, direction: 'incoming' });
+    check('Incoming relations', names(users) === 'shop.catalog.Product,shop.order.Order', names(users));
+    const both = index.getNeighborhood('shop.order.Order', { depth: 1, direction: 'both', kinds: ['dependency'] });
+    check('Both directions, one relation kind', names(both) === 'shop.admin.Report,shop.customer.Address,shop.order.Status', names(both));
+
+    const capped = index.getNeighborhood('shop.order.Order', { depth: 3, maxClasses: 4 });
+    check('maxClasses keeps the closest classes', capped.length === 4 && capped.every(neighbor => neighbor.distance === 1));
+
+    // 测试3: 增量更新
+    index.update(structure('shop.order', 'OrderLine', { fields: [] }));
+    check('Updated class drops its old relations', !index.getNeighborhood('shop.order.Order', { depth: 2 }).some(neighbor => neighbor.qualifiedName === 'shop.catalog.Product'));
+    index.removeFile('/src/shop/customer/Customer.java');
+    check('Removed file drops its classes', !index.get('shop.customer.Customer') &&
+        !index.getNeighborhood('shop.order.Order', { depth: 1 }).some(neighbor => neighbor.qualifiedName.endsWith('Customer')));
+
+    // 测试4: 紧凑邻接表 —— 去重与反向边
+    const interner = new NameInterner();
+    check('Names are interned to dense ids', interner.intern('a.A') === 0 && interner.intern('b.B') === 1 && interner.intern('a.A') === 0 && interner.idOf('c.C') === -1 && interner.nameOf(1) === 'b.B');
+    const builder = new CompactGraphBuilder(2);
+    for (let i = 0; i < 3000; i++) {
+        builder.addEdge(0, i % 3, (i * 7) % 5);
+    }
+    builder.addEdge(1, 4, 0);
+    const compact = builder.build(5);
+    const sorted = array => Array.from(array).sort().join(',');
+    check('Duplicate edges are stored once', compact.edgeCount(0) === 15 && sorted(compact.outgoing(0, 1)) === '0,1,2,3,4', `${compact.edgeCount(0)} edges`);
+    check('Incoming lists mirror the outgoing ones', sorted(compact.incoming(0, 2)) === '0,1,2' && sorted(compact.incoming(1, 0)) === '4' && compact.outgoing(1, 0).length === 0);
+
+    const model = new DiagramModel('@startuml');
+    const added = [
+        model.addEdge('A', '<|--', 'B'),
+        model.addEdge('A', '<|--', 'B'),
+        model.addEdge('A', '-->', 'B', 'uses'),
+        model.addEdge('A', '-->', 'B'),
+        model.addEdge('B', '<|--', 'A')
+    ];
+    check('Diagram edges are deduplicated by interned ids', added.join() === 'true,false,true,true,true' && model.getEdges().length === 4);
+
+    // 测试5: 大图 —— 线性时间构建与微秒级查询
+    const buildLarge = count => {
+        const index = new ClassGraphIndex();
+        for (let i = 0; i < count; i++) {
+            index.update(structure(`pkg${i % 50}`, `C${i}`, {
+                superClass: i > 0 ? `pkg${Math.floor(i / 2) % 50}.C${Math.floor(i / 2)}` : undefined,
+                fields: [['a', `pkg${(i * 7 + 3) % count % 50}.C${(i * 7 + 3) % count}`], ['b', `pkg${(i * 13 + 1) % count % 50}.C${(i * 13 + 1) % count}`]],
+                methods: [['m', `pkg${(i * 31 + 5) % count % 50}.C${(i * 31 + 5) % count}`, []]]
+            }));
+        }
+        const buildStart = process.hrtime.bigint();
+        index.getNeighborhood('pkg0.C0', { depth: 1 });
+        return { index, ms: Number(process.hrtime.bigint() - buildStart) / 1e6 };
+    };
+    buildLarge(20000);
+    const count = 20000;
+    const { index: large, ms: buildMs } = buildLarge(count);
+    const { ms: doubleBuildMs } = buildLarge(count * 2);
+    check('Adjacency build scales linearly', doubleBuildMs < buildMs * 3, `${buildMs.toFixed(1)}ms for 20k classes, ${doubleBuildMs.toFixed(1)}ms for 40k`);
+    const queries = 2000;
+    const startTime = process.hrtime.bigint();
+    let reached = 0;
+    for (let i = 0; i < queries; i++) {
+        const id = (i * 9973) % count;
+        reached += large.getNeighborhood(`pkg${id % 50}.C${id}`, { depth: 2 }).length;
+    }
+    const microsPerQuery = Number(process.hrtime.bigint() - startTime) / 1000 / queries;
+    check('2-hop queries on 20k classes take microseconds', microsPerQuery < 200, `${microsPerQuery.toFixed(1)}µs per query, ${Math.round(reached / queries)} classes each`);
+
+    console.log(allPassed ? '\n🎉 All class graph index tests passed!' : '\n❌ Some class graph index tests failed');
+    return allPassed;
+}
+
+testClassGraphIndex();
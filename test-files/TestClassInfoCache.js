@@ -0,0 +1,133 @@
+// 测试 JavaLanguageServerClient.getClassInfo 的缓存、并发请求合并、失效与取消（需先 npm run compile）
+const { installVscodeMock } = require('../out/benchmark/vscodeMock');
+installVscodeMock();
+const vscode = require('vscode');
+const { LruCache } = require('../out/cache/LruCache');
+const { JavaLanguageServerClient } = require('../out/languageserver/JavaLanguageServerClient');
+const { runCancellable, currentCancellation, throwIfCancelled, isCancellationError } = require('../out/util/cancellation');
+
+async function testClassInfoCache() {
+    console.log('=== Testing Class Info Cache ===\n');
+
+    let allPassed = true;
+    const check = (name, actual, expected) => {
+        const passed = JSON.stringify(actual) === JSON.stringify(expected);
+        console.log(`${passed ? '✅' : '❌'} ${name}`);
+        if (!passed) {
+            console.log(`   expected: ${JSON.stringify(expected)}, actual: ${JSON.stringify(actual)}`);
+            allPassed = false;
+        }
+    };
+
+    // 用计数的假实现替换 Language Server 查询，其余逻辑都是真实代码
+    let serverCalls = 0;
+    let serverAborted = 0;
+    const createClient = () => {
+        const client = new JavaLanguageServerClient({ subscriptions: [], globalStorageUri: undefined });
+        client['getClassInfoUsingVSCodeAPI'] = async (className) => {
+            serverCalls++;
+            await new Promise(resolve => setTimeout(resolve, 20));
+            if (className === 'Missing') {
+                return null;
+            }
+            return { className, methods: [], fields: [], location: { uri: `file:///${className}.java` } };
+        };
+        return client;
+    };
+
+    // 测试1: 并发请求只访问一次 Language Server
+    const client = createClient();
+    const results = await Promise.all([client.getClassInfo('A'), client.getClassInfo('A'), client.getClassInfo('A')]);
+    check('Concurrent lookups share one server call', serverCalls, 1);
+    check('Every caller gets its own copy', results[0] !== results[1] && results[0].className === 'A', true);
+
+    // 测试2: 重复请求命中缓存，未解析的类也被缓存
+    await client.getClassInfo('A');
+    await client.getClassInfo('Missing');
+    await client.getClassInfo('Missing');
+    check('Repeated lookups hit the cache', serverCalls, 2);
+    const stats = client.getCacheStats();
+    check('Stats count hits, misses and deduplicated lookups',
+        { hits: stats.hits, misses: stats.misses, deduplicated: stats.deduplicated }, { hits: 2, misses: 2, deduplicated: 2 });
+
+    // 测试3: 打开的文档版本变化后重新查询
+    const documentB = { uri: vscode.Uri.file('/B.java'), version: 1 };
+    vscode.workspace.textDocuments.push(documentB);
+    await client.getClassInfo('B');
+    await client.getClassInfo('B');
+    check('An unchanged document version keeps the entry', serverCalls, 3);
+    documentB.version = 2;
+    await client.getClassInfo('B');
+    check('A newer document version forces a reload', serverCalls, 4);
+    vscode.workspace.textDocuments.length = 0;
+
+    // 测试4: 显式失效，新建文件时丢弃缓存的未命中结果
+    client.invalidateDocument(vscode.Uri.file('/A.java'), true);
+    await client.getClassInfo('A');
+    await client.getClassInfo('Missing');
+    check('Invalidation drops the document entry and cached misses', serverCalls, 6);
+    client.invalidateDocument(vscode.Uri.file('/Other.java'), false);
+    await client.getClassInfo('Missing');
+    check('Invalidating another document keeps cached misses', serverCalls, 6);
+
+    // 测试5: 查询进行中发生失效（缓存代数变化），结果不写入缓存
+    const pending = client.getClassInfo('C');
+    client.invalidateDocument(vscode.Uri.file('/Unrelated.java'), false);
+    await pending;
+    await client.getClassInfo('C');
+    check('Results read before an invalidation are not cached', serverCalls, 8);
+    await client.getClassInfo('C');
+    check('The reload after the invalidation is cached', serverCalls, 8);
+
+    // 测试6: 一个调用者取消时，共享的查询继续为其他调用者运行
+    const cancelled = new AbortController();
+    const cancelledLookup = runCancellable(cancelled.signal, () => client.getClassInfo('D'));
+    const waitingLookup = runCancellable(new AbortController().signal, () => client.getClassInfo('D'));
+    cancelled.abort();
+    const cancelledOutcome = await cancelledLookup.then(() => 'resolved', error => isCancellationError(error) ? 'cancelled' : String(error));
+    const waitingResult = await waitingLookup;
+    check('A cancelled caller stops waiting', cancelledOutcome, 'cancelled');
+    check('The other caller still gets the shared result', [serverCalls, waitingResult && waitingResult.className], [9, 'D']);
+
+    // 测试7: 所有调用者都取消后，共享的查询被取消，不写入缓存
+    const cancelledClient = createClient();
+    cancelledClient['getClassInfoUsingVSCodeAPI'] = async (className) => {
+        serverCalls++;
+        await new Promise(resolve => setTimeout(resolve, 20));
+        // 与真实的 querySymbols 一样，在取消后抛出 CancellationError
+        if (currentCancellation().aborted) {
+            serverAborted++;
+        }
+        throwIfCancelled();
+        return { className, methods: [], fields: [] };
+    };
+    const first = new AbortController();
+    const second = new AbortController();
+    const lookups = [
+        runCancellable(first.signal, () => cancelledClient.getClassInfo('E')).catch(error => error),
+        runCancellable(second.signal, () => cancelledClient.getClassInfo('E')).catch(error => error)
+    ];
+    first.abort();
+    second.abort();
+    const outcomes = await Promise.all(lookups);
+    check('Both callers are cancelled', outcomes.map(isCancellationError), [true, true]);
+    await new Promise(resolve => setTimeout(resolve, 40));
+    check('The shared lookup sees the cancellation', serverAborted, 1);
+    const callsBefore = serverCalls;
+    await cancelledClient.getClassInfo('E');
+    check('A new caller starts a fresh lookup instead of joining the cancelled one', serverCalls, callsBefore + 1);
+
+    // 测试8: LRU 淘汰最久未使用的条目
+    const cache = new LruCache(2);
+    cache.set('A', 1);
+    cache.set('B', 2);
+    cache.get('A');
+    cache.set('C', 3);
+    check('Least recently used entry is evicted', [cache.get('A'), cache.get('B'), cache.get('C')], [1, undefined, 3]);
+    check('Eviction is counted', cache.evictionCount, 1);
+
+    console.log(allPassed ? '\n🎉 All class info cache tests passed!' : '\n❌ Some class info cache tests failed');
+    return allPassed;
+}
+
+testClassInfoCache();
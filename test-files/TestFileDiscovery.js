@@ -0,0 +1,156 @@
+// 测试异步文件发现：.gitignore、files.exclude、无深度限制与流式输出（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { discoverFiles, collectFiles, isExcludedPath } = require('../out/util/fileDiscovery');
+
+function write(root, relativePath, content = '') {
+    const filePath = path.join(root, ...relativePath.split('/'));
+    fs.mkdirSync(path.dirname(filePath), { recursive: true });
+    fs.writeFileSync(filePath, content);
+}
+
+function relativeAll(root, files) {
+    return files.map(file => path.relative(root, file).split(path.sep).join('/')).sort();
+}
+
+async function testFileDiscovery() {
+    console.log('=== Testing File Discovery ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    const root = fs.mkdtempSync(path.join(os.tmpdir(), 'discovery-'));
+    try {
+        // 一个带 .gitignore 的仓库
+        fs.mkdirSync(path.join(root, '.git', 'info'), { recursive: true });
+        write(root, '.git/info/exclude', 'scratch/\n');
+        write(root, '.gitignore', [
+            '# build output',
+            'target/',
+            '*.gen.java',
+            '!keep.gen.java',
+            '/Root*.java',
+            'docs/**/Sample.java',
+            ''
+        ].join('\n'));
+        write(root, 'src/main/java/com/acme/Order.java');
+        write(root, 'src/main/java/com/acme/Order.gen.java');
+        write(root, 'src/main/java/com/acme/keep.gen.java');
+        write(root, 'src/main/java/com/acme/notes.txt');
+        write(root, 'src/main/java/com/acme/RootLevel.java');
+        write(root, 'RootLevel.java');
+        write(root, 'target/generated/Generated.java');
+        write(root, 'module/target/Nested.java');
+        write(root, 'scratch/Scratch.java');
+        write(root, 'docs/a/b/Sample.java');
+        write(root, 'docs/Other.java');
+        write(root, 'node_modules/pkg/Vendored.java');
+        write(root, '.idea/Hidden.java');
+        // 子目录自己的 .gitignore 只作用于该目录
+        write(root, 'legacy/.gitignore', 'Old*.java\n');
+        write(root, 'legacy/OldThing.java');
+        write(root, 'legacy/NewThing.java');
+        write(root, 'OldTop.java');
+        // 超过旧实现 10 层深度限制的源码树
+        write(root, `deep/${Array.from({ length: 15 }, (_, i) => `d${i}`).join('/')}/Deep.java`);
+
+        const files = relativeAll(root, await collectFiles(root));
+        const expected = [
+            'OldTop.java',
+            'deep/d0/d1/d2/d3/d4/d5/d6/d7/d8/d9/d10/d11/d12/d13/d14/Deep.java',
+            'docs/Other.java',
+            'legacy/NewThing.java',
+            'src/main/java/com/acme/Order.java',
+            'src/main/java/com/acme/RootLevel.java',
+            'src/main/java/com/acme/keep.gen.java'
+        ];
+        check('.gitignore rules are honored', files.join() === expected.join(), files.join(', '));
+        check('No depth limit', files.some(file => file.endsWith('Deep.java')));
+
+        // 测试2: files.exclude 风格的 glob，相对于工作区目录
+        const excluded = relativeAll(root, await collectFiles(root, {
+            excludeGlobs: ['**/legacy', 'src/**/{RootLevel,Missing}.java', 'deep/**']
+        }));
+        check('files.exclude globs are honored', excluded.join() === 'OldTop.java,docs/Other.java,src/main/java/com/acme/Order.java,src/main/java/com/acme/keep.gen.java', excluded.join(', '));
+
+        // 测试3: 从子目录开始遍历时，上层 .gitignore 仍然生效
+        const fromSubfolder = relativeAll(root, await collectFiles(path.join(root, 'src'), {
+            excludeGlobs: ['src/main/java/com/acme/RootLevel.java'],
+            excludeBase: root
+        }));
+        check('Ancestor .gitignore and exclude base apply to subfolders', fromSubfolder.join() === 'src/main/java/com/acme/Order.java,src/main/java/com/acme/keep.gen.java', fromSubfolder.join(', '));
+
+        // 单个路径（文件监听器报告的路径）与遍历结果一致
+        const allJava = relativeAll(root, await collectFiles(root, { useGitIgnore: false })).concat(['.idea/Hidden.java', 'node_modules/pkg/Vendored.java']);
+        const kept = [];
+        for (const file of allJava) {
+            if (!await isExcludedPath(root, path.join(root, ...file.split('/')))) {
+                kept.push(file);
+            }
+        }
+        check('Single paths are excluded like the walk excludes them', kept.sort().join() === expected.join(), kept.join(', '));
+        const globOptions = { excludeGlobs: ['**/legacy', 'src/**/{RootLevel,Missing}.java', 'deep/**'] };
+        check('files.exclude globs apply to single paths',
+            await isExcludedPath(root, path.join(root, 'legacy', 'NewThing.java'), globOptions) &&
+            !await isExcludedPath(root, path.join(root, 'docs', 'Other.java'), globOptions));
+        check('Paths outside the root or of other types are excluded',
+            await isExcludedPath(path.join(root, 'src'), path.join(root, 'docs', 'Other.java')) &&
+            await isExcludedPath(root, path.join(root, 'src', 'main', 'java', 'com', 'acme', 'notes.txt')));
+
+        const unfiltered = await collectFiles(root, { useGitIgnore: false });
+        check('.gitignore can be turned off', unfiltered.length === 14, `${unfiltered.length} files`);
+
+        // 测试4: 大目录树 —— 流式输出与速度
+        const big = path.join(root, 'big');
+        for (let module = 0; module < 40; module++) {
+            for (let pkg = 0; pkg < 25; pkg++) {
+                const dir = path.join(big, `module${module}`, 'src', 'main', 'java', `pkg${pkg}`);
+                fs.mkdirSync(dir, { recursive: true });
+                for (let file = 0; file < 20; file++) {
+                    fs.writeFileSync(path.join(dir, `Type${file}.java`), '');
+                }
+            }
+        }
+
+        let first;
+        const startTime = Date.now();
+        for await (const file of discoverFiles(big)) {
+            first = file;
+            break;
+        }
+        const firstLatency = Date.now() - startTime;
+        check('First path arrives before the walk finishes', first !== undefined && firstLatency < 200, `${firstLatency}ms`);
+
+        let ticks = 0;
+        const timer = setInterval(() => ticks++, 1);
+        const walkStart = Date.now();
+        const bigFiles = await collectFiles(big);
+        const elapsed = Date.now() - walkStart;
+        clearInterval(timer);
+        check('Finds every file of a 20000 file tree', bigFiles.length === 20000, `${bigFiles.length} files in ${elapsed}ms`);
+        check('Event loop keeps running during the walk', ticks > 0, `${ticks} timer ticks`);
+
+        // 测试5: 取消
+        const cancellation = { isCancellationRequested: false };
+        let seen = 0;
+        for await (const file of discoverFiles(big, { token: cancellation })) {
+            if (++seen === 100) {
+                cancellation.isCancellationRequested = true;
+            }
+        }
+        check('Cancellation stops the walk early', seen >= 100 && seen < 20000, `${seen} files`);
+    } finally {
+        fs.rmSync(root, { recursive: true, force: true });
+    }
+
+    console.log(allPassed ? '\n🎉 All file discovery tests passed!' : '\n❌ Some file discovery tests failed');
+    return allPassed;
+}
+
+testFileDiscovery();
@@ -0,0 +1,95 @@
+// 测试 SystemClassParser 的批量 javap 调用与输出分段（src/parser/SystemClassParser.ts，需先 npm run compile）
+const { SystemClassParser } = require('../out/parser/SystemClassParser');
+
+async function testJavapBatching() {
+    console.log('=== Testing Batched javap Execution ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 记录每次 javap 进程处理的类名，不改变真实的批处理逻辑
+    const createParser = () => {
+        const parser = new SystemClassParser();
+        const batches = [];
+        const runBatch = parser['runBatch'].bind(parser);
+        parser['runBatch'] = (classNames, signal) => {
+            batches.push(classNames);
+            return runBatch(classNames, signal);
+        };
+        return { parser, batches };
+    };
+
+    // 测试1: 离线样例输出的分段
+    const sample = [
+        'Compiled from "Runnable.java"',
+        'public interface java.lang.Runnable {',
+        '  public abstract void run();',
+        '}',
+        'Error: class not found: com.example.Missing',
+        'Compiled from "Map.java"',
+        'public interface java.util.Map$Entry<K, V> {',
+        '  public abstract K getKey();',
+        '}'
+    ].join('\n');
+    const sampleSections = new SystemClassParser()['splitJavapSections'](sample);
+    check('Sample output is split per class', sampleSections.size === 2);
+    check('Nested class names use dots', sampleSections.has('java.util.Map.Entry'));
+    check('Unknown classes produce no section', !sampleSections.has('com.example.Missing'));
+
+    // 测试2: 非 JDK 类名不启动 javap
+    const offline = createParser();
+    const workspaceType = await offline.parser.getSystemClassInfo('com.example.DoesNotExist');
+    check('Workspace types resolve to null without running javap', workspaceType === null && offline.batches.length === 0);
+
+    // 测试3: 真实 JDK 上同时发起的查询合并为一次 javap 进程
+    const classNames = [
+        'java.lang.String', 'java.lang.Object', 'java.util.ArrayList', 'java.util.AbstractList',
+        'java.util.List', 'java.util.Collection', 'java.io.Serializable', 'java.util.concurrent.TimeUnit',
+        'java.util.DoesNotExist'
+    ];
+    const { parser, batches } = createParser();
+    const startTime = Date.now();
+    const infos = await Promise.all(classNames.map(name => parser.getSystemClassInfo(name)));
+    const batchTime = Date.now() - startTime;
+
+    if (parser['javapUnavailable']) {
+        console.log('⚠️  javap not found on PATH, skipping JDK tests');
+    } else {
+        const resolved = infos.filter(info => info !== null).length;
+        check('Concurrent lookups share one javap process', batches.length === 1 && batches[0].length === classNames.length,
+            `${batches.length} process(es) in ${batchTime}ms`);
+        check('Every known class is resolved', resolved === classNames.length - 1, `${resolved}/${classNames.length}`);
+        const arrayList = infos[classNames.indexOf('java.util.ArrayList')];
+        check('Declaration line carries the supertypes',
+            arrayList && arrayList.superClass === 'java.util.AbstractList' && arrayList.interfaces.includes('java.util.List'),
+            arrayList && `${arrayList.superClass} / ${arrayList.interfaces.join(', ')}`);
+        check('Unknown JDK names resolve to null', infos[classNames.length - 1] === null);
+
+        // 测试4: 已解析的类（包括 javap 报告不存在的类）不再启动 javap
+        await parser.getSystemClassInfo('java.util.ArrayList');
+        await parser.getSystemClassInfo('java.util.DoesNotExist');
+        check('Resolved and not-found classes are remembered', batches.length === 1);
+
+        // 对比逐个调用的耗时
+        const single = createParser();
+        const singleStart = Date.now();
+        for (const name of classNames.slice(0, 4)) {
+            await single.parser.getSystemClassInfo(name);
+        }
+        const singleTime = Date.now() - singleStart;
+        console.log(`   4 sequential lookups took ${singleTime}ms in ${single.batches.length} processes, ` +
+            `one batch of ${classNames.length} took ${batchTime}ms`);
+        single.parser.dispose();
+    }
+    parser.dispose();
+
+    console.log(allPassed ? '\n🎉 All javap batching tests passed!' : '\n❌ Some javap batching tests failed');
+    return allPassed;
+}
+
+testJavapBatching();
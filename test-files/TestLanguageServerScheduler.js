@@ -0,0 +1,107 @@
+// 测试 Language Server 请求调度：AIMD 并发窗口、超时与退避、交互优先、请求合并与就绪等待（需先 npm run compile）
+const { LanguageServerScheduler, LanguageServerTimeoutError } = require('../out/languageserver/LanguageServerScheduler');
+
+const sleep = ms => new Promise(resolve => setTimeout(resolve, ms));
+
+// Fake Language Server: records the peak number of requests in flight and the completion order
+function fakeServer(latencyMs) {
+    const server = { inFlight: 0, peak: 0, calls: 0, order: [] };
+    server.request = (label, latency = latencyMs) => async () => {
+        server.calls++;
+        server.inFlight++;
+        server.peak = Math.max(server.peak, server.inFlight);
+        await sleep(typeof latency === 'function' ? latency() : latency);
+        server.inFlight--;
+        server.order.push(label);
+        return label;
+    };
+    return server;
+}
+
+async function testLanguageServerScheduler() {
+    console.log('=== Testing Language Server Scheduler ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: 快速响应时窗口加性增长，且从不超过窗口
+    const fast = new LanguageServerScheduler({ initialWindow: 2, maxWindow: 8, targetLatencyMs: 40 });
+    const fastServer = fakeServer(5);
+    const results = await Promise.all(Array.from({ length: 120 }, (_, i) => fast.schedule(fastServer.request(i), { priority: 'interactive' })));
+    check('Every request completes with its own result', results.every((result, i) => result === i));
+    check('Window grows while responses are fast', fast.getStats().window === 8 && fastServer.peak <= 8, `window ${fast.getStats().window}, peak ${fastServer.peak}`);
+
+    // 测试2: 慢响应使窗口减半（每个往返最多一次）
+    const slowServer = fakeServer(60);
+    await Promise.all(Array.from({ length: 8 }, (_, i) => fast.schedule(slowServer.request(i))));
+    check('Slow responses halve the window once per round trip', fast.getStats().window === 4, `window ${fast.getStats().window}`);
+
+    // 测试3: 超时拒绝、窗口收缩并对后台请求退避
+    const hanging = new LanguageServerScheduler({ initialWindow: 4, maxWindow: 4, timeoutMs: 30, maxBackoffMs: 1000 });
+    const hangServer = fakeServer(200);
+    let timeoutError;
+    try {
+        await hanging.schedule(hangServer.request('hung'));
+    } catch (error) {
+        timeoutError = error;
+    }
+    check('Hung requests time out', timeoutError instanceof LanguageServerTimeoutError && hanging.getStats().timeouts === 1);
+    check('A timeout halves the window and starts a backoff', hanging.getStats().window === 2 && hanging.getStats().backoffMs > 0 &&
+        !hanging.canServe('background') && hanging.canServe('interactive'));
+    const backoffMs = hanging.getStats().backoffMs;
+    const backoffStart = Date.now();
+    await hanging.schedule(fakeServer(1).request('after'), { priority: 'background' });
+    const waited = Date.now() - backoffStart;
+    check('Background requests wait out the backoff', waited >= backoffMs - 10, `${waited}ms for a ${backoffMs}ms backoff`);
+    check('A fast response ends the backoff', hanging.getStats().backoffMs === 0 && hanging.canServe('background'));
+
+    // 测试4: 交互请求排在批量请求之前，并保留一个槽位
+    const mixed = new LanguageServerScheduler({ initialWindow: 3, maxWindow: 3, targetLatencyMs: 1000 });
+    const mixedServer = fakeServer(20);
+    const bulk = Array.from({ length: 12 }, (_, i) => mixed.runInBackground(() => mixed.schedule(mixedServer.request(`bulk${i}`))));
+    await sleep(5);
+    check('Background work leaves a slot free', mixedServer.inFlight === 2, `${mixedServer.inFlight} in flight`);
+    const navigation = mixed.schedule(mixedServer.request('navigation'));
+    await navigation;
+    await Promise.all(bulk);
+    check('Navigation overtakes queued bulk requests', mixedServer.order.indexOf('navigation') <= 2, mixedServer.order.slice(0, 4).join(', '));
+
+    // 测试5: 相同请求合并；交互请求提升已排队的后台请求
+    const coalescing = new LanguageServerScheduler({ initialWindow: 1, maxWindow: 1 });
+    const coalescingServer = fakeServer(10);
+    const blocker = coalescing.schedule(coalescingServer.request('blocker'));
+    const queuedBulk = coalescing.schedule(coalescingServer.request('other'), { priority: 'background' });
+    const first = coalescing.schedule(coalescingServer.request('symbols'), { key: 'A.java', priority: 'background' });
+    const second = coalescing.schedule(coalescingServer.request('symbols'), { key: 'A.java' });
+    await Promise.all([blocker, queuedBulk, first, second]);
+    check('Identical requests share one call', coalescingServer.calls === 3 && coalescing.getStats().coalesced === 1);
+    check('An interactive duplicate promotes the queued request', coalescingServer.order.indexOf('symbols') < coalescingServer.order.indexOf('other'),
+        coalescingServer.order.join(', '));
+
+    // 测试6: 语言服务器就绪前后台请求等待，交互请求照常
+    const starting = new LanguageServerScheduler();
+    let markReady;
+    starting.waitForServer(new Promise(resolve => { markReady = resolve; }));
+    const startingServer = fakeServer(1);
+    const waiting = starting.runInBackground(() => starting.schedule(startingServer.request('indexing')));
+    await starting.schedule(startingServer.request('interactive'));
+    check('Background requests wait for the server', startingServer.order.join() === 'interactive' && !starting.canServe('background'));
+    markReady();
+    await waiting;
+    check('They run once it is ready', startingServer.order.join() === 'interactive,indexing');
+
+    // 测试7: 失败不影响窗口，错误传给调用方
+    const failing = new LanguageServerScheduler({ initialWindow: 2 });
+    const failed = await failing.schedule(() => Promise.reject(new Error('no provider'))).catch(error => error.message);
+    check('Failures reach the caller without shrinking the window', failed === 'no provider' && failing.getStats().window === 2 && failing.getStats().failures === 1);
+
+    console.log(allPassed ? '\n🎉 All Language Server scheduler tests passed!' : '\n❌ Some Language Server scheduler tests failed');
+    return allPassed;
+}
+
+testLanguageServerScheduler();
@@ -0,0 +1,139 @@
+// 测试大图的分层布局与类图构建（需先 npm run compile）
+const { computeLayeredLayout } = require('../out/graph/LayeredLayout');
+const { buildClassGraph, diffClassGraphs } = require('../out/graph/ClassGraph');
+
+function structure(className, packageName, extra = {}) {
+    return {
+        className,
+        packageName,
+        filePath: `/src/${packageName.replace(/\./g, '/')}/${className}.java`,
+        classType: 'class',
+        superClass: undefined,
+        interfaces: [],
+        fields: [],
+        methods: [],
+        constructors: [],
+        innerClasses: [],
+        imports: [],
+        annotations: [],
+        inheritanceHierarchy: [],
+        allInterfaces: [],
+        isSystemClass: false,
+        ...extra
+    };
+}
+
+// Nodes of the same row must not overlap
+function countOverlaps(nodes, layout, gap) {
+    const byRow = new Map();
+    nodes.forEach((node, id) => {
+        const row = byRow.get(layout.row[id]) || [];
+        row.push(id);
+        byRow.set(layout.row[id], row);
+    });
+    let overlaps = 0;
+    for (const ids of byRow.values()) {
+        ids.sort((a, b) => layout.x[a] - layout.x[b]);
+        for (let i = 1; i < ids.length; i++) {
+            if (layout.x[ids[i]] < layout.x[ids[i - 1]] + nodes[ids[i - 1]].width + gap - 0.5) {
+                overlaps++;
+            }
+        }
+    }
+    return overlaps;
+}
+
+function testLayeredLayout() {
+    console.log('=== Testing Layered Layout ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: 类图构建 —— 去重、外部父类、关联
+    const graph = buildClassGraph([
+        structure('Animal', 'zoo', { classType: 'abstract class' }),
+        structure('Pet', 'zoo', { classType: 'interface', interfaces: ['java.io.Serializable'] }),
+        structure('Dog', 'zoo', {
+            superClass: 'Animal',
+            interfaces: ['Pet', 'Comparable<Dog>'],
+            fields: [{ name: 'owner', type: 'Owner', visibility: 'private', isStatic: false }]
+        }),
+        structure('Owner', 'zoo', {
+            fields: [{ name: 'pets', type: 'java.util.List<Dog>', visibility: 'private', isStatic: false }]
+        }),
+        structure('Dog', 'zoo')
+    ]);
+    const id = name => graph.nodes.findIndex(node => node.name === name);
+    const hasEdge = (source, target, kind) => graph.edges.some(edge => edge.source === id(source) && edge.target === id(target) && edge.kind === kind);
+    check('Duplicate classes become one node', graph.nodes.filter(node => node.name === 'Dog').length === 1);
+    check('Supertypes outside the folder are external nodes',
+        graph.nodes.some(node => node.qualifiedName === 'java.io.Serializable' && node.kind === 'external') &&
+        graph.nodes.some(node => node.name === 'Comparable' && node.kind === 'external'));
+    check('Inheritance edges', hasEdge('Dog', 'Animal', 'extends') && hasEdge('Dog', 'Pet', 'implements') && hasEdge('Pet', 'Serializable', 'extends'));
+    check('Associations through generic field types', hasEdge('Dog', 'Owner', 'association') && hasEdge('Owner', 'Dog', 'association'));
+    check('Members are formatted like PlantUML', graph.nodes[id('Dog')].fields[0] === '-owner : Owner', graph.nodes[id('Dog')].fields[0]);
+
+    // 实时更新的图差异：只改成员时保留布局，增删类或关系时重新布局
+    const zoo = extra => [
+        structure('Animal', 'zoo', { classType: 'abstract class' }),
+        structure('Cat', 'zoo', { superClass: 'Animal', ...extra })
+    ];
+    const before = buildClassGraph(zoo());
+    const unchanged = diffClassGraphs(before, buildClassGraph(zoo()));
+    const memberEdit = diffClassGraphs(before, buildClassGraph(zoo({ fields: [{ name: 'lives', type: 'int', visibility: 'private', isStatic: false }] })));
+    const newRelation = diffClassGraphs(before, buildClassGraph(zoo({ interfaces: ['Runnable'] })));
+    check('An identical graph has nothing to redraw', unchanged.sameStructure && unchanged.changedNodes.length === 0);
+    check('A member edit only redraws its node', memberEdit.sameStructure && memberEdit.changedNodes.length === 1 &&
+        memberEdit.changedNodes[0].name === 'Cat');
+    check('A new supertype needs a new layout', !newRelation.sameStructure);
+
+    // 测试2: 小图 —— 父类在子类上方，环不会死循环
+    const nodes = [0, 1, 2, 3].map(() => ({ width: 100, height: 60 }));
+    const small = computeLayeredLayout(nodes, [
+        { from: 0, to: 1 },
+        { from: 0, to: 2 },
+        { from: 1, to: 3 },
+        { from: 3, to: 1 }
+    ]);
+    check('Supertype is above its subtypes', small.y[0] < small.y[1] && small.y[0] < small.y[2]);
+    check('Cycles are broken', small.reversedEdges === 1, `${small.reversedEdges} reversed`);
+    check('No overlaps in a small graph', countOverlaps(nodes, small, 40) === 0);
+
+    // 约束为 false 的关联边不产生新的层
+    const loose = computeLayeredLayout(nodes, [
+        { from: 0, to: 1 },
+        { from: 1, to: 2, constraint: false },
+        { from: 2, to: 3, constraint: false }
+    ]);
+    check('Associations do not add layers', loose.layerCount === 2, `${loose.layerCount} layers`);
+
+    // 测试3: 5000 个类在几秒内完成布局，且不截断
+    const count = 5000;
+    const bigNodes = [];
+    const bigEdges = [];
+    for (let i = 0; i < count; i++) {
+        bigNodes.push({ width: 80 + (i % 7) * 30, height: 40 + (i % 5) * 15 });
+        if (i > 0) {
+            // A forest of hierarchies plus cross-package associations
+            bigEdges.push({ from: Math.floor((i - 1) / 4), to: i });
+            bigEdges.push({ from: i, to: (i * 7919) % count, constraint: false });
+        }
+    }
+    const startTime = Date.now();
+    const big = computeLayeredLayout(bigNodes, bigEdges);
+    const elapsed = Date.now() - startTime;
+    check('5000 classes lay out in seconds', elapsed < 5000, `${elapsed}ms, ${big.rowCount} rows, ${Math.round(big.width)}x${Math.round(big.height)}`);
+    check('Every class is placed', big.x.length === count && big.x.every(Number.isFinite) && big.y.every(Number.isFinite));
+    check('No overlaps in a large graph', countOverlaps(bigNodes, big, 40) === 0);
+    check('Drawing stays roughly square', big.width < big.height * 6 && big.height < big.width * 6);
+
+    console.log(allPassed ? '\n🎉 All layered layout tests passed!' : '\n❌ Some layered layout tests failed');
+    return allPassed;
+}
+
+testLayeredLayout();
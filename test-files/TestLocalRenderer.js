@@ -0,0 +1,104 @@
+// 测试本地渲染进程的管道协议：用一个模拟的 plantuml 进程代替 java -jar plantuml.jar（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { LocalPlantUMLRenderer } = require('../out/render/LocalPlantUMLRenderer');
+
+// 模拟 PlantUML -pipe：每读到一个 @enduml 输出一个 SVG 和分隔符，遇到 crash 指令则退出
+const FAKE_PLANTUML = `
+const args = process.argv.slice(2);
+const delimiter = args[args.indexOf('-pipedelimitor') + 1];
+const counter = require('path').join(process.env.FAKE_PLANTUML_DIR, 'starts');
+require('fs').appendFileSync(counter, 'x');
+let buffer = '';
+process.stdin.setEncoding('utf8');
+process.stdin.on('data', chunk => {
+    buffer += chunk;
+    let end;
+    while ((end = buffer.indexOf('@enduml')) >= 0) {
+        const block = buffer.substring(0, end);
+        buffer = buffer.substring(end + '@enduml'.length);
+        if (block.includes('crash')) {
+            process.exit(3);
+        }
+        if (block.includes('syntax error')) {
+            process.stdout.write('ERROR\\n2\\nSyntax Error?\\n' + delimiter + '\\n');
+            continue;
+        }
+        const name = (/class (\\w+)/.exec(block) || [])[1] || 'empty';
+        // 分两次写出，检查输出分块时的拼接
+        process.stdout.write('<?xml version="1.0"?><svg><text>' + name);
+        setTimeout(() => process.stdout.write('</text></svg>\\n' + delimiter + '\\n'), 5);
+    }
+});
+`;
+
+async function testLocalRenderer() {
+    console.log('=== Testing Local PlantUML Renderer ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    const tmpDir = fs.mkdtempSync(path.join(os.tmpdir(), 'local-renderer-'));
+    fs.writeFileSync(path.join(tmpDir, 'plantuml.js'), FAKE_PLANTUML);
+    // 假的 java 可执行文件：忽略 JVM 参数，用 node 运行模拟脚本
+    const fakeJava = path.join(tmpDir, 'java');
+    fs.writeFileSync(fakeJava, `#!/bin/sh\nshift\nshift\nshift\nexec "${process.execPath}" "${path.join(tmpDir, 'plantuml.js')}" "$@"\n`);
+    fs.chmodSync(fakeJava, 0o755);
+    process.env.FAKE_PLANTUML_DIR = tmpDir;
+    const starts = () => fs.existsSync(path.join(tmpDir, 'starts')) ? fs.readFileSync(path.join(tmpDir, 'starts'), 'utf8').length : 0;
+
+    const renderer = new LocalPlantUMLRenderer({ javaPath: fakeJava, plantUMLJar: 'plantuml.jar' });
+    try {
+        // 测试1: 顺序渲染与并发排队
+        const svg = await renderer.render('@startuml\nclass First\n@enduml');
+        check('Single render returns the SVG', svg.startsWith('<svg') && svg.includes('First'), svg);
+
+        const startTime = Date.now();
+        const results = await Promise.all(['A', 'B', 'C', 'D'].map(name => renderer.render(`class ${name}`)));
+        check('Concurrent renders are answered in order', results.every((result, i) => result.includes(['A', 'B', 'C', 'D'][i])), `${Date.now() - startTime}ms`);
+        check('Renderer process is reused', starts() === 1, `${starts()} process starts`);
+
+        // 测试2: 语法错误不影响后续渲染
+        let syntaxError;
+        try {
+            await renderer.render('syntax error');
+        } catch (error) {
+            syntaxError = error;
+        }
+        check('Output without SVG is an error', syntaxError && /Syntax Error/.test(syntaxError.message), syntaxError && syntaxError.message);
+
+        // 测试3: 进程崩溃后自动重启
+        let crashError;
+        try {
+            await renderer.render('crash');
+        } catch (error) {
+            crashError = error;
+        }
+        check('Crash rejects the current render', crashError && /exited with code 3/.test(crashError.message), crashError && crashError.message);
+        const afterCrash = await renderer.render('class Restarted');
+        check('Renderer restarts after a crash', afterCrash.includes('Restarted') && starts() === 2, `${starts()} process starts`);
+    } finally {
+        renderer.dispose();
+        fs.rmSync(tmpDir, { recursive: true, force: true });
+    }
+
+    // 测试4: 释放后拒绝新请求
+    let disposedError;
+    try {
+        await renderer.render('class Late');
+    } catch (error) {
+        disposedError = error;
+    }
+    check('Disposed renderer rejects renders', !!disposedError);
+
+    console.log(allPassed ? '\n🎉 All local renderer tests passed!' : '\n❌ Some local renderer tests failed');
+    return allPassed;
+}
+
+testLocalRenderer();
@@ -0,0 +1,179 @@
+// 测试列式成员存储：视图兼容、序列化往返、模型缓存共享成员表与每成员内存（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const v8 = require('v8');
+const vm = require('vm');
+const { MemberTable, MemberTableBuilder, compactClassStructure, getMemberTable, modifierFlagsOf } = require('../out/parser/MemberTable');
+const { ClassModelCache } = require('../out/cache/ClassModelCache');
+const { ClassGraphIndex } = require('../out/graph/ClassGraphIndex');
+const { PlantUMLGenerator } = require('../out/plantuml/PlantUMLGenerator');
+
+const TYPES = ['String', 'int', 'long', 'List<Order>', 'Map<String, Customer>', 'Optional<Address>', 'BigDecimal', 'boolean'];
+
+// Members are cut out of a source text, the way the parsers produce them
+function parsedStructure(packageName, className, memberCount) {
+    const lines = [];
+    for (let i = 0; i < memberCount; i++) {
+        const type = TYPES[i % TYPES.length];
+        lines.push(i % 2 === 0
+            ? `    @Column private ${type} value${i};`
+            : `    public ${type} computeValue${i}(${TYPES[(i + 1) % TYPES.length]} input, String label) throws java.io.IOException {}`);
+    }
+    const source = `package ${packageName};\npublic class ${className} {\n${lines.join('\n')}\n}\n`;
+
+    const fields = [];
+    const methods = [];
+    for (const match of source.matchAll(/@(\w+) private (.+) (\w+);/g)) {
+        fields.push({ name: match[3], type: match[2], visibility: 'private', isStatic: false, isFinal: false, annotations: [match[1]] });
+    }
+    for (const match of source.matchAll(/public (.+) (\w+)\((.+) input, (\w+) label\) throws ([\w.]+)/g)) {
+        methods.push({
+            name: match[2],
+            returnType: match[1],
+            parameters: [{ name: 'input', type: match[3] }, { name: 'label', type: match[4] }],
+            visibility: 'public',
+            isStatic: false,
+            isAbstract: false,
+            isFinal: false,
+            annotations: [],
+            exceptions: [match[5]]
+        });
+    }
+    return {
+        className,
+        packageName,
+        filePath: `/src/${packageName.replace(/\./g, '/')}/${className}.java`,
+        classType: 'class',
+        superClass: 'BaseEntity',
+        interfaces: ['Serializable'],
+        fields,
+        methods,
+        constructors: [{
+            name: className, returnType: className, parameters: [], visibility: 'protected',
+            isStatic: false, isAbstract: false, isFinal: false, annotations: [], exceptions: []
+        }],
+        innerClasses: [],
+        imports: ['java.util.List', 'java.util.Map'],
+        annotations: ['Entity'],
+        inheritanceHierarchy: [],
+        allInterfaces: ['Serializable'],
+        isSystemClass: false
+    };
+}
+
+function quietly(action) {
+    const log = console.log;
+    console.log = () => {};
+    try {
+        return action();
+    } finally {
+        console.log = log;
+    }
+}
+
+function testMemberTable() {
+    console.log('=== Testing Member Table ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: 视图与原始对象一致
+    const plain = parsedStructure('shop.order', 'Order', 12);
+    plain.innerClasses.push(parsedStructure('shop.order', 'Line', 2));
+    const compact = compactClassStructure(plain);
+    const table = getMemberTable(compact);
+    check('Members move into one table', table instanceof MemberTable && table.fieldCount === 6 && table.methodCount === 6 && table.constructorCount === 1);
+    check('Views read back every member property', JSON.stringify(compact) === JSON.stringify(plain));
+    check('Views implement the member interfaces', compact.methods[0].parameters[0].type === 'long' &&
+        compact.methods[0].exceptions[0] === 'java.io.IOException' && compact.fields[0].annotations[0] === 'Column' &&
+        compact.constructors[0].visibility === 'protected' && compact.fields[2].isStatic === false);
+    check('Inner classes are compacted too', getMemberTable(compact.innerClasses[0]) !== undefined && compact.innerClasses[0].fields[0].name === 'value0');
+    check('Serialized form is the plain structure', JSON.parse(JSON.stringify(compact)).methods[0].parameters.length === 2 &&
+        !('memberTable' in JSON.parse(JSON.stringify(compact))));
+
+    const modifiers = new MemberTableBuilder()
+        .addMethod('of', 'Order', modifierFlagsOf(['public', 'static', 'final']), [])
+        .addMethod('handle', 'void', modifierFlagsOf(['protected', 'abstract']), [])
+        .build()
+        .methods();
+    check('Modifiers are bit-packed', modifiers[0].visibility === 'public' && modifiers[0].isStatic && modifiers[0].isFinal && !modifiers[0].isAbstract &&
+        modifiers[1].visibility === 'protected' && modifiers[1].isAbstract && !modifiers[1].isStatic);
+
+    const renamed = compactClassStructure(plain);
+    renamed.fields = renamed.fields.slice(0, 1);
+    check('Assigning a member list rebuilds the table', renamed.fields.length === 1 && renamed.methods.length === 6 && compact.fields.length === 6);
+
+    // 测试2: 生成的图不变
+    const generator = new PlantUMLGenerator();
+    const related = [parsedStructure('shop.customer', 'Customer', 4)];
+    const fromPlain = quietly(() => generator.generateInteractiveClassDiagram(plain, related));
+    const fromCompact = quietly(() => generator.generateInteractiveClassDiagram(compact, related.map(compactClassStructure)));
+    check('Diagrams are identical for plain and compact models', fromPlain === fromCompact && fromCompact.includes('computeValue1'));
+
+    // 测试3: 模型缓存共享成员表，磁盘往返
+    const storageDir = fs.mkdtempSync(path.join(os.tmpdir(), 'member-table-'));
+    try {
+        const cache = new ClassModelCache(storageDir);
+        cache.set(plain.filePath, 'hash', compact, 'javaParser');
+        const first = cache.get(plain.filePath, 'hash').structure;
+        const second = cache.get(plain.filePath, 'hash').structure;
+        check('Cache hits share the member table', getMemberTable(first) === table && getMemberTable(second) === table && first !== second);
+        first.imports.push('mutated');
+        first.methods = [];
+        check('Cache hits are still independent copies', second.imports.length === 2 && second.methods.length === 6 &&
+            cache.get(plain.filePath, 'hash').structure.methods.length === 6);
+
+        const index = new ClassGraphIndex();
+        index.update(second);
+        index.getNeighborhood('shop.order.Order', { depth: 1 });
+        const adjacency = index['adjacency'];
+        index.update(cache.get(plain.filePath, 'hash').structure);
+        check('Class graph keeps its adjacency on cache hits', adjacency !== undefined && index['adjacency'] === adjacency);
+
+        cache.flush();
+        const reloaded = new ClassModelCache(storageDir).get(plain.filePath, 'hash');
+        check('Shards round-trip through plain JSON', reloaded && getMemberTable(reloaded.structure) !== undefined &&
+            JSON.stringify(reloaded.structure) === JSON.stringify(plain));
+        check('Shards keep the parser that produced an entry', reloaded && reloaded.tier === 'javaParser');
+    } finally {
+        fs.rmSync(storageDir, { recursive: true, force: true });
+    }
+
+    // 测试4: 每成员内存 —— 同样的类带成员与不带成员的堆差值
+    v8.setFlagsFromString('--expose-gc');
+    const gc = vm.runInNewContext('gc');
+    const heapUsed = () => {
+        gc();
+        gc();
+        return process.memoryUsage().heapUsed;
+    };
+    const classCount = 2000;
+    const membersPerClass = 40;
+    const memberCount = classCount * (membersPerClass + 1);
+    const modelBytes = (members, compactModels) => {
+        const before = heapUsed();
+        const models = [];
+        for (let i = 0; i < classCount; i++) {
+            const structure = parsedStructure(`pkg${i % 20}`, `C${i}`, members);
+            models.push(compactModels ? compactClassStructure(structure) : structure);
+        }
+        // Typed array contents live outside the JS heap
+        const tableBytes = compactModels ? models.reduce((sum, model) => sum + getMemberTable(model).byteLength, 0) : 0;
+        return heapUsed() - before + tableBytes;
+    };
+    const plainBytes = (modelBytes(membersPerClass, false) - modelBytes(0, false)) / memberCount;
+    const compactBytes = (modelBytes(membersPerClass, true) - modelBytes(0, true)) / memberCount;
+    check('Memory per member drops by an order of magnitude', compactBytes * 10 <= plainBytes,
+        `${plainBytes.toFixed(0)} → ${compactBytes.toFixed(0)} bytes per member`);
+
+    console.log(allPassed ? '\n🎉 All member table tests passed!' : '\n❌ Some member table tests failed');
+    return allPassed;
+}
+
+testMemberTable();
@@ -0,0 +1,155 @@
+// 测试 Maven / Gradle 多模块识别与模块概览（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { discoverBuildModules } = require('../out/modules/BuildModules');
+const { summarizeModules, getModuleFiles } = require('../out/modules/ModuleOverview');
+const { PlantUMLGenerator } = require('../out/plantuml/PlantUMLGenerator');
+
+function write(root, relativePath, content = '') {
+    const filePath = path.join(root, ...relativePath.split('/'));
+    fs.mkdirSync(path.dirname(filePath), { recursive: true });
+    fs.writeFileSync(filePath, content);
+    return filePath;
+}
+
+function pom(artifactId, body) {
+    return `<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+    <modelVersion>4.0.0</modelVersion>
+    ${body}
+    <artifactId>${artifactId}</artifactId>
+</project>`;
+}
+
+async function testModuleOverview() {
+    console.log('=== Testing Module Overview ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    const root = fs.mkdtempSync(path.join(os.tmpdir(), 'modules-'));
+    try {
+        // 测试1: Maven 多模块（含嵌套聚合模块与 profile 中的模块）
+        const maven = path.join(root, 'maven');
+        write(maven, 'pom.xml', pom('shop-parent', `
+    <groupId>com.acme</groupId>
+    <packaging>pom</packaging>
+    <!-- <modules><module>commented-out</module></modules> -->
+    <modules>
+        <module>core</module>
+        <module>services</module>
+    </modules>
+    <profiles>
+        <profile>
+            <modules><module>tools</module></modules>
+        </profile>
+    </profiles>
+    <dependencyManagement>
+        <dependencies>
+            <dependency><groupId>com.acme</groupId><artifactId>core</artifactId></dependency>
+        </dependencies>
+    </dependencyManagement>`));
+        write(maven, 'core/pom.xml', pom('core', `
+    <parent><groupId>com.acme</groupId><artifactId>shop-parent</artifactId></parent>
+    <dependencies>
+        <dependency><groupId>org.slf4j</groupId><artifactId>slf4j-api</artifactId></dependency>
+    </dependencies>`));
+        write(maven, 'services/pom.xml', pom('services', `
+    <parent><groupId>com.acme</groupId><artifactId>shop-parent</artifactId></parent>
+    <packaging>pom</packaging>
+    <modules><module>orders</module></modules>`));
+        write(maven, 'services/orders/pom.xml', pom('orders', `
+    <parent><groupId>com.acme</groupId><artifactId>services</artifactId></parent>
+    <dependencies>
+        <dependency><groupId>\${project.groupId}</groupId><artifactId>core</artifactId></dependency>
+        <dependency><groupId>com.acme</groupId><artifactId>tools</artifactId><scope>test</scope></dependency>
+    </dependencies>`));
+        write(maven, 'tools/pom.xml', pom('tools', `<groupId>com.acme</groupId>`));
+
+        const mavenGraph = await discoverBuildModules(maven);
+        const mavenIds = mavenGraph.modules.map(module => module.id).sort();
+        check('Maven modules are found recursively, aggregators left out', mavenIds.join() === 'com.acme:core,com.acme:orders,com.acme:tools', mavenIds.join(', '));
+        const orders = mavenGraph.modules.find(module => module.name === 'orders');
+        check('Maven dependencies resolve to modules of the build', orders && orders.dependencies.sort().join() === 'com.acme:core,com.acme:tools', orders && orders.dependencies.join(', '));
+        check('Maven module directories', orders && orders.dir === path.join(maven, 'services', 'orders'));
+
+        // 测试2: Gradle settings.gradle 与 build.gradle
+        const gradle = path.join(root, 'gradle');
+        write(gradle, 'settings.gradle.kts', `
+rootProject.name = "platform"
+include(":api", ":impl")
+include("libs:util")
+// include(":ignored")
+project(":impl").projectDir = file("implementation")
+`);
+        write(gradle, 'api/build.gradle.kts', 'dependencies { implementation(projects.libs.util) }');
+        write(gradle, 'implementation/build.gradle', `dependencies {
+    implementation project(':api')
+    testImplementation project(path: ':libs:util')
+}`);
+        write(gradle, 'libs/util/build.gradle', '');
+
+        const gradleGraph = await discoverBuildModules(gradle);
+        const gradleIds = gradleGraph.modules.map(module => module.id).sort();
+        check('Gradle projects are read from settings', gradleIds.join() === ':api,:impl,:libs,:libs:util', gradleIds.join(', '));
+        const impl = gradleGraph.modules.find(module => module.id === ':impl');
+        check('Gradle projectDir overrides are applied', impl && impl.dir === path.join(gradle, 'implementation'));
+        check('Gradle project dependencies', impl && impl.dependencies.sort().join() === ':api,:libs:util', impl && impl.dependencies.join(', '));
+        const api = gradleGraph.modules.find(module => module.id === ':api');
+        check('Gradle type-safe project accessors', api && api.dependencies.join() === ':libs:util', api && api.dependencies.join(', '));
+
+        // 测试3: 从类型索引汇总模块
+        const declaration = (module, simpleName, kind, supertypes) => ({
+            simpleName,
+            qualifiedName: `com.acme.${simpleName}`,
+            packageName: 'com.acme',
+            filePath: path.join(maven, ...module.split('/'), 'src', 'main', 'java', 'com', 'acme', `${simpleName}.java`),
+            kind,
+            supertypes,
+            line: 1
+        });
+        const declarations = [
+            declaration('core', 'Entity', 'class', []),
+            declaration('core', 'Identified', 'interface', []),
+            declaration('services/orders', 'Order', 'class', ['Entity', 'Identified', 'Serializable']),
+            declaration('services/orders', 'OrderLine', 'class', ['Entity']),
+            declaration('services/orders', 'Status', 'enum', []),
+            declaration('tools', 'Fixtures', 'class', [])
+        ];
+        const index = {
+            getDeclarations: () => declarations,
+            resolveSupertype: (from, reference) => declarations.find(candidate => candidate.simpleName === reference)
+        };
+        const overview = summarizeModules(mavenGraph, index);
+        const summaryOf = name => overview.modules.find(summary => summary.module.name === name);
+        check('Types are counted per module', summaryOf('orders').counts.classes === 2 && summaryOf('orders').counts.enums === 1 && summaryOf('core').counts.interfaces === 1);
+        check('Cross-module extends / implements are counted', overview.hierarchy.length === 1 && overview.hierarchy[0].count === 3, JSON.stringify(overview.hierarchy));
+        check('Module files come from the index', getModuleFiles(orders, mavenGraph.modules, index).length === 3);
+
+        // 测试4: 生成模块概览
+        const log = console.log;
+        console.log = () => {};
+        let diagram;
+        try {
+            diagram = new PlantUMLGenerator().generateModuleOverview(overview);
+        } finally {
+            console.log = log;
+        }
+        check('Modules link to their expansion', diagram.includes(`[[openmodule:${encodeURIComponent('com.acme:orders')}]]`));
+        check('Build dependencies are drawn', /M\d ..> M\d/.test(diagram));
+        check('Module hierarchy is drawn with its count', /M\d --\|> M\d : 3/.test(diagram));
+    } finally {
+        fs.rmSync(root, { recursive: true, force: true });
+    }
+
+    console.log(allPassed ? '\n🎉 All module overview tests passed!' : '\n❌ Some module overview tests failed');
+    return allPassed;
+}
+
+testModuleOverview();
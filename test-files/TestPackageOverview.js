@@ -0,0 +1,83 @@
+// 测试包概览与按包生成的类图（需先 npm run compile）
+const { PlantUMLGenerator } = require('../out/plantuml/PlantUMLGenerator');
+
+function structure(className, packageName, extra = {}) {
+    return {
+        className,
+        packageName,
+        filePath: `/src/${packageName.replace(/\./g, '/')}/${className}.java`,
+        classType: 'class',
+        superClass: undefined,
+        interfaces: [],
+        fields: [],
+        methods: [],
+        constructors: [],
+        innerClasses: [],
+        imports: [],
+        annotations: [],
+        inheritanceHierarchy: [],
+        allInterfaces: [],
+        isSystemClass: false,
+        ...extra
+    };
+}
+
+function testPackageOverview() {
+    console.log('=== Testing Package Overview ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 生成器日志太多，测试期间关闭
+    const log = console.log;
+    const quiet = fn => {
+        console.log = () => {};
+        try {
+            return fn();
+        } finally {
+            console.log = log;
+        }
+    };
+
+    const classes = [];
+    for (let i = 0; i < 40; i++) {
+        classes.push(structure(`Order${i}`, 'shop.orders', {
+            fields: [{ name: 'customer', type: 'Customer', visibility: 'private', isStatic: false }]
+        }));
+    }
+    classes.push(structure('Customer', 'shop.customers', { interfaces: ['Identified'] }));
+    classes.push(structure('Identified', 'shop.common', { classType: 'interface' }));
+    classes.push(structure('Status', 'shop.common', { classType: 'enum' }));
+
+    const generator = new PlantUMLGenerator();
+    const overview = quiet(() => generator.generatePackageOverview(classes));
+
+    // 测试1: 每个包一个节点，带统计和展开链接
+    const packageLines = overview.split('\n').filter(line => line.includes('<<(P,#F5C242) package>>'));
+    check('One box per package', packageLines.length === 3, `${packageLines.length} packages`);
+    check('Class counts per package', overview.includes('40 classes') && overview.includes('1 interfaces') && overview.includes('1 enums'));
+    check('Packages link to their expansion', overview.includes('[[openpackage:shop.orders]]'));
+    check('Overview contains no class boxes', !overview.includes('Order0'));
+
+    // 测试2: 包之间的依赖按数量聚合
+    const id = packageName => /as (P\d+)/.exec(packageLines.find(line => line.includes(`"${packageName}"`)))[1];
+    check('Edges are aggregated with counts', overview.includes(`${id('shop.orders')} ..> ${id('shop.customers')} : 40`));
+    check('Cross-package inheritance is counted', overview.includes(`${id('shop.customers')} ..> ${id('shop.common')} : 1`));
+
+    // 测试3: 单个包的类图 —— 不截断
+    const packageDiagram = quiet(() => generator.generatePackageDiagram(classes, 'shop.orders'));
+    const shownClasses = (packageDiagram.match(/class Order\d+/g) || []).length;
+    check('Expanded package shows every class', shownClasses === 40, `${shownClasses} classes`);
+    check('Expanded package leaves other packages out', !packageDiagram.includes('interface Identified'));
+    check('No truncation note', !packageDiagram.includes('Only showing first'));
+
+    console.log(allPassed ? '\n🎉 All package overview tests passed!' : '\n❌ Some package overview tests failed');
+    return allPassed;
+}
+
+testPackageOverview();
@@ -0,0 +1,89 @@
+// 测试服务器渲染：非 2xx 响应不算成功，缓存键区分服务器和 plantuml.jar（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const http = require('http');
+const { ServerPlantUMLRenderer } = require('../out/render/ServerPlantUMLRenderer');
+const { LocalPlantUMLRenderer } = require('../out/render/LocalPlantUMLRenderer');
+const { DiagramRenderError } = require('../out/render/DiagramRenderer');
+
+async function testServerRenderer() {
+    console.log('=== Testing Server PlantUML Renderer ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 模拟 PlantUML 服务器：语法错误返回 400 和错误图片，crash 返回 500 和纯文本
+    const server = http.createServer((request, response) => {
+        let body = '';
+        request.on('data', chunk => body += chunk);
+        request.on('end', () => {
+            if (body.includes('crash')) {
+                response.writeHead(500, { 'Content-Type': 'text/plain' });
+                response.end('Internal error');
+            } else if (body.includes('syntax error')) {
+                response.writeHead(400, { 'Content-Type': 'image/svg+xml' });
+                response.end('<?xml version="1.0"?><svg><text>Syntax Error?</text></svg>');
+            } else {
+                response.writeHead(200, { 'Content-Type': 'image/svg+xml' });
+                response.end('<?xml version="1.0"?><svg><text>ok</text></svg>');
+            }
+        });
+    });
+    await new Promise(resolve => server.listen(0, '127.0.0.1', resolve));
+    const serverUrl = `http://127.0.0.1:${server.address().port}/plantuml/`;
+
+    const tmpDir = fs.mkdtempSync(path.join(os.tmpdir(), 'server-renderer-'));
+    try {
+        const renderer = new ServerPlantUMLRenderer(serverUrl);
+        const render = async code => {
+            try {
+                return { svg: await renderer.render(code) };
+            } catch (error) {
+                return { error };
+            }
+        };
+
+        // 测试1: 2xx 的 SVG 作为结果返回
+        const ok = await render('@startuml\nclass A\n@enduml');
+        check('2xx SVG resolves', ok.svg === '<svg><text>ok</text></svg>', ok.svg || ok.error?.message);
+
+        // 测试2: 400 的错误图片被拒绝，但图片随错误带出以便显示
+        const syntax = await render('@startuml\nsyntax error\n@enduml');
+        check('400 error image rejects', syntax.error instanceof DiagramRenderError && /400/.test(syntax.error.message), syntax.error?.message);
+        check('Error image travels with the error', (syntax.error?.svg || '').includes('Syntax Error?'));
+
+        // 测试3: 没有 SVG 的失败
+        const crash = await render('@startuml\ncrash\n@enduml');
+        check('5xx without SVG rejects', crash.error instanceof DiagramRenderError && crash.error.svg === undefined, crash.error?.message);
+
+        // 测试4: 缓存键区分服务器地址
+        check('Server URL is part of the cache namespace',
+            renderer.cacheNamespace !== new ServerPlantUMLRenderer('https://www.plantuml.com/plantuml').cacheNamespace);
+        check('Trailing slashes do not split the cache',
+            renderer.cacheNamespace === new ServerPlantUMLRenderer(serverUrl.replace(/\/+$/, '')).cacheNamespace);
+
+        // 测试5: 缓存键区分 plantuml.jar 的路径和版本（大小、修改时间）
+        const jar = path.join(tmpDir, 'plantuml.jar');
+        fs.writeFileSync(jar, 'v1');
+        const before = new LocalPlantUMLRenderer({ javaPath: 'java', plantUMLJar: jar }).cacheNamespace;
+        check('Same jar gives the same namespace', before === new LocalPlantUMLRenderer({ javaPath: 'java', plantUMLJar: jar }).cacheNamespace);
+        fs.writeFileSync(jar, 'version 2');
+        fs.utimesSync(jar, new Date(), new Date(Date.now() + 60000));
+        check('Replaced jar changes the namespace', before !== new LocalPlantUMLRenderer({ javaPath: 'java', plantUMLJar: jar }).cacheNamespace);
+        check('Local and server namespaces differ', !before.startsWith('server'));
+    } finally {
+        server.close();
+        fs.rmSync(tmpDir, { recursive: true, force: true });
+    }
+
+    console.log(allPassed ? '\n🎉 All server renderer tests passed!' : '\n❌ Some server renderer tests failed');
+    return allPassed;
+}
+
+testServerRenderer();
@@ -0,0 +1,104 @@
+// 测试点击命中用的 R 树与图元素 ID（需先 npm run compile）
+const { buildRTree, searchRTree } = require('../out/graph/SpatialIndex');
+const { PlantUMLGenerator } = require('../out/plantuml/PlantUMLGenerator');
+
+function bruteForce(boxes, x, y) {
+    const result = [];
+    boxes.forEach((box, id) => {
+        if (x >= box.minX && x <= box.maxX && y >= box.minY && y <= box.maxY) {
+            result.push(id);
+        }
+    });
+    return result;
+}
+
+function testSpatialIndex() {
+    console.log('=== Testing Spatial Index ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: 边界情况
+    check('Empty index finds nothing', searchRTree(buildRTree([]), 0, 0).length === 0);
+    const single = buildRTree([{ minX: 0, minY: 0, maxX: 10, maxY: 10 }]);
+    check('Single box is found, edges inclusive', searchRTree(single, 10, 10).join() === '0' && searchRTree(single, 11, 5).length === 0);
+
+    // 测试2: 类框里嵌套成员行，与暴力查找结果一致
+    let seed = 42;
+    const random = () => {
+        seed = (seed * 1103515245 + 12345) % 2147483648;
+        return seed / 2147483648;
+    };
+    const boxes = [];
+    for (let i = 0; i < 2000; i++) {
+        const x = random() * 20000;
+        const y = random() * 20000;
+        boxes.push({ minX: x, minY: y, maxX: x + 200, maxY: y + 160 });
+        for (let member = 0; member < 8; member++) {
+            boxes.push({ minX: x + 5, minY: y + 20 + member * 16, maxX: x + 190, maxY: y + 34 + member * 16 });
+        }
+    }
+    const tree = buildRTree(boxes);
+    let mismatches = 0;
+    for (let i = 0; i < 2000; i++) {
+        const box = boxes[Math.floor(random() * boxes.length)];
+        const x = box.minX + random() * (box.maxX - box.minX);
+        const y = box.minY + random() * (box.maxY - box.minY);
+        const expected = bruteForce(boxes, x, y).sort((a, b) => a - b).join();
+        const actual = searchRTree(tree, x, y).sort((a, b) => a - b).join();
+        if (expected !== actual) {
+            mismatches++;
+        }
+    }
+    check('Point queries match a linear scan', mismatches === 0, `${mismatches} mismatches`);
+
+    // 测试3: 查询速度 —— 与元素数量近似无关
+    const queries = 100000;
+    let hits = 0;
+    const startTime = Date.now();
+    for (let i = 0; i < queries; i++) {
+        hits += searchRTree(tree, random() * 20000, random() * 20000).length;
+    }
+    const elapsed = Date.now() - startTime;
+    check(`${queries} lookups over ${boxes.length} boxes are fast`, elapsed < 2000, `${elapsed}ms, ${hits} hits`);
+
+    // 测试4: 生成器为类、字段和方法写出稳定的元素 ID
+    const log = console.log;
+    console.log = () => {};
+    let diagram;
+    try {
+        diagram = new PlantUMLGenerator().generateMultiClassDiagram([{
+            className: 'Order',
+            packageName: 'shop',
+            filePath: 'C:\\src\\shop\\Order.java',
+            classType: 'class',
+            superClass: undefined,
+            interfaces: [],
+            fields: [{ name: 'total', type: 'BigDecimal', visibility: 'private', isStatic: false }],
+            methods: [{ name: 'pay', returnType: 'void', parameters: [], visibility: 'public', isStatic: false }],
+            constructors: [],
+            innerClasses: [],
+            imports: [],
+            annotations: [],
+            inheritanceHierarchy: [],
+            allInterfaces: [],
+            isSystemClass: false
+        }]);
+    } finally {
+        console.log = log;
+    }
+    const classId = `openfile:${encodeURIComponent('C:/src/shop/Order.java')}#Order`;
+    check('Class box carries its element id', diagram.includes(`class Order [[${classId}]] {`));
+    check('Field line carries its element id', diagram.includes(`-total : BigDecimal [[${classId}#field:total]]`));
+    check('Method line carries its element id', diagram.includes(`+pay() [[${classId}#method:pay]]`));
+
+    console.log(allPassed ? '\n🎉 All spatial index tests passed!' : '\n❌ Some spatial index tests failed');
+    return allPassed;
+}
+
+testSpatialIndex();
@@ -0,0 +1,199 @@
+// 测试文件夹类图的流式管道：背压、节流的部分更新与最终顺序（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { mapConcurrentStream } = require('../out/util/concurrency');
+const { FolderDiagramPipeline } = require('../out/pipeline/FolderDiagramPipeline');
+
+const sleep = ms => new Promise(resolve => setTimeout(resolve, ms));
+
+function structureFor(filePath) {
+    const className = path.basename(filePath, '.java');
+    return {
+        className,
+        packageName: path.basename(path.dirname(filePath)),
+        filePath,
+        classType: 'class',
+        interfaces: [],
+        fields: [],
+        methods: [],
+        constructors: [],
+        innerClasses: [],
+        imports: [],
+        annotations: [],
+        inheritanceHierarchy: [],
+        allInterfaces: [],
+        isSystemClass: false
+    };
+}
+
+function fakeProvider() {
+    const calls = [];
+    let open = false;
+    return {
+        calls,
+        close: () => { open = false; },
+        hasOpenPanel: () => open,
+        showClassDiagram: async (code, title) => { open = true; calls.push(['show', code]); },
+        updateDiagram: async code => { calls.push(['update', code]); return open; },
+        waitForRender: async () => sleep(30),
+        showPackageOverview: async structures => { open = true; calls.push(['showOverview', structures.length]); },
+        updatePackageOverview: async structures => { calls.push(['updateOverview', structures.length]); return open; },
+        showClassGraph: async graph => { open = true; calls.push(['showGraph', graph.nodes.length]); },
+        updateGraph: async graph => { calls.push(['updateGraph', graph.nodes.length]); return open; }
+    };
+}
+
+async function testStreamingPipeline() {
+    console.log('=== Testing Streaming Folder Pipeline ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: mapConcurrentStream 只在有空闲通道时才从上游取数据
+    {
+        let produced = 0;
+        let maxAhead = 0;
+        let consumed = 0;
+        async function* source() {
+            for (let i = 0; i < 50; i++) {
+                produced++;
+                maxAhead = Math.max(maxAhead, produced - consumed);
+                yield i;
+            }
+        }
+        const seen = [];
+        for await (const { index, value } of mapConcurrentStream(source(), 4, async item => {
+            await sleep(item % 3);
+            return item * 2;
+        })) {
+            consumed++;
+            seen.push([index, value]);
+        }
+        check('Every item is mapped once', seen.length === 50 && seen.every(([index, value]) => value === index * 2));
+        check('Producer stays within the concurrency limit', maxAhead <= 5, `at most ${maxAhead} items ahead`);
+
+        const token = { isCancellationRequested: false };
+        let count = 0;
+        for await (const result of mapConcurrentStream(source(), 4, async item => item, token)) {
+            if (++count === 10) {
+                token.isCancellationRequested = true;
+            }
+        }
+        check('Cancellation stops pulling from the source', count >= 10 && count < 50, `${count} results`);
+    }
+
+    // 测试2: 文件夹管道 —— 先显示部分类图，之后节流更新，最后按发现顺序输出
+    const root = fs.mkdtempSync(path.join(os.tmpdir(), 'pipeline-'));
+    try {
+        for (let pkg = 0; pkg < 3; pkg++) {
+            fs.mkdirSync(path.join(root, `pkg${pkg}`));
+            for (let i = 0; i < 40; i++) {
+                fs.writeFileSync(path.join(root, `pkg${pkg}`, `Type${i}.java`), '');
+            }
+        }
+        fs.writeFileSync(path.join(root, 'pkg1', 'Broken.java'), '');
+
+        const parseOrder = [];
+        const parser = {
+            parseJavaFile: async (code, filePath) => {
+                await sleep(5 + (parseOrder.length % 7));
+                parseOrder.push(filePath);
+                if (filePath.endsWith('Broken.java')) {
+                    throw new Error('syntax error');
+                }
+                return structureFor(filePath);
+            }
+        };
+        const generator = { generateMultiClassDiagram: structures => structures.map(s => s.className).join(',') };
+        const provider = fakeProvider();
+        const pipeline = new FolderDiagramPipeline(parser, generator, provider);
+
+        const progress = [];
+        const startTime = Date.now();
+        let firstPictureTime;
+        const originalShow = provider.showClassDiagram;
+        provider.showClassDiagram = async (...args) => {
+            firstPictureTime = firstPictureTime || Date.now() - startTime;
+            return originalShow(...args);
+        };
+
+        const log = console.error;
+        console.error = () => {};
+        let result;
+        try {
+            result = await pipeline.run(root, {
+                title: 'demo',
+                discovery: {},
+                concurrency: 4,
+                chooseView: () => 'plantuml',
+                onProgress: (parsed, discovered) => progress.push([parsed, discovered])
+            });
+        } finally {
+            console.error = log;
+        }
+        const totalTime = Date.now() - startTime;
+
+        check('All classes are parsed', result.classStructures.length === 120 && result.discoveredFiles === 121, `${result.classStructures.length} classes of ${result.discoveredFiles} files`);
+        check('Parse errors are collected', result.errors.length === 1 && result.errors[0].file === 'Broken.java');
+        check('First picture comes before the last file is parsed', firstPictureTime !== undefined && firstPictureTime < totalTime / 2, `${firstPictureTime}ms of ${totalTime}ms`);
+
+        const updates = provider.calls.filter(call => call[0] === 'update').length;
+        check('Partial updates are throttled', updates <= Math.ceil(totalTime / 1500) + 1, `${updates} updates in ${totalTime}ms`);
+
+        const finalCode = provider.calls[provider.calls.length - 1][1];
+        const expected = result.classStructures.map(s => s.className).join(',');
+        check('Final diagram has every class in discovery order', finalCode === expected);
+        check('Progress reports every parsed file', progress.length === 121 && progress[120][0] === 121);
+        check('Result says the diagram is shown', result.shown === true);
+
+        // 测试3: 视图只升级不降级（PlantUML → 包概览 → 图视图）
+        const escalating = fakeProvider();
+        const escalatingPipeline = new FolderDiagramPipeline(parser, generator, escalating);
+        console.error = () => {};
+        try {
+            await escalatingPipeline.run(root, {
+                title: 'demo',
+                discovery: {},
+                concurrency: 8,
+                chooseView: (files, structures) => files > 100 ? 'graph' : structures.length > 20 ? 'packageOverview' : 'plantuml'
+            });
+        } finally {
+            console.error = log;
+        }
+        const kinds = escalating.calls.map(call => call[0]);
+        const firstOverview = kinds.indexOf('showOverview');
+        const firstGraph = kinds.indexOf('showGraph');
+        check('View escalates as classes stream in', kinds[0] === 'show' && firstGraph > 0 && (firstOverview < 0 || firstOverview < firstGraph), kinds.join(' '));
+        check('View never switches back', kinds.slice(firstGraph + 1).every(kind => kind === 'updateGraph'));
+
+        // 测试4: 关闭面板后不再更新，也不会重新打开
+        const closing = fakeProvider();
+        const closingPipeline = new FolderDiagramPipeline(parser, generator, closing);
+        const originalClosingShow = closing.showClassDiagram;
+        closing.showClassDiagram = async (...args) => {
+            await originalClosingShow(...args);
+            closing.close();
+        };
+        console.error = () => {};
+        let closedResult;
+        try {
+            closedResult = await closingPipeline.run(root, { title: 'demo', discovery: {}, concurrency: 4, chooseView: () => 'plantuml' });
+        } finally {
+            console.error = log;
+        }
+        check('Closing the panel stops the updates', closing.calls.length === 1 && closedResult.shown === false, closing.calls.map(call => call[0]).join(' '));
+    } finally {
+        fs.rmSync(root, { recursive: true, force: true });
+    }
+
+    console.log(allPassed ? '\n🎉 All streaming pipeline tests passed!' : '\n❌ Some streaming pipeline tests failed');
+    return allPassed;
+}
+
+testStreamingPipeline();
@@ -0,0 +1,135 @@
+// 测试子类型索引（src/index/SubtypeIndex.ts）的头部扫描、查询与文件监听过滤（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const { installVscodeMock } = require('../out/benchmark/vscodeMock');
+installVscodeMock();
+const vscode = require('vscode');
+const { SubtypeIndex, scanTypeDeclarations } = require('../out/index/SubtypeIndex');
+
+function write(root, relativePath, content) {
+    const filePath = path.join(root, ...relativePath.split('/'));
+    fs.mkdirSync(path.dirname(filePath), { recursive: true });
+    fs.writeFileSync(filePath, content);
+    return filePath;
+}
+
+async function testSubtypeIndex() {
+    console.log('=== Testing Subtype Index ===\n');
+
+    let allPassed = true;
+    const check = (name, actual, expected) => {
+        const passed = JSON.stringify(actual) === JSON.stringify(expected);
+        console.log(`${passed ? '✅' : '❌'} ${name}`);
+        if (!passed) {
+            console.log(`   expected: ${JSON.stringify(expected)}`);
+            console.log(`   actual:   ${JSON.stringify(actual)}`);
+            allPassed = false;
+        }
+    };
+
+    const root = fs.mkdtempSync(path.join(os.tmpdir(), 'subtype-index-'));
+    const index = new SubtypeIndex();
+    try {
+        write(root, 'a/Repository.java', `package com.acme.a;
+public interface Repository<T, ID> { T findById(ID id); }`);
+
+        const baseRepository = `package com.acme.a;
+// class Fake extends Repository {}
+public abstract class BaseRepository<T extends Comparable<T>>
+        implements Repository<T, Long>, java.io.Serializable {
+    private final String s = "class Quoted extends Repository {";
+    private Class<?> c = BaseRepository.class;
+}`;
+        write(root, 'a/BaseRepository.java', baseRepository);
+
+        const userRepository = `package com.acme.b;
+import com.acme.a.BaseRepository;
+public class UserRepository extends BaseRepository<User> {
+    public static class Cached extends UserRepository implements Runnable {
+        public void run() {}
+    }
+    record Snapshot(String id) implements com.acme.a.Repository<String, String> {}
+    enum Kind implements Runnable { A { public void run() {} }; }
+}`;
+        write(root, 'b/UserRepository.java', userRepository);
+
+        // 同名但不同包的 Repository，不能被当作 com.acme.a.Repository 的实现
+        write(root, 'c/Repository.java', `package com.acme.c;
+public interface Repository {}`);
+        write(root, 'c/OtherRepo.java', `package com.acme.c;
+public class OtherRepo implements Repository {}`);
+
+        // 构建输出目录被 .gitignore 排除
+        fs.mkdirSync(path.join(root, '.git'));
+        write(root, '.gitignore', 'target/\n');
+        write(root, 'target/generated/GeneratedRepo.java', `package com.acme.gen;
+public class GeneratedRepo implements com.acme.a.Repository<String, Long> {}`);
+
+        // 测试1: 头部扫描
+        const userFile = scanTypeDeclarations(userRepository, '/ws/b/UserRepository.java');
+        check('Nested declarations are qualified with their enclosing type',
+            userFile.declarations.map(d => d.qualifiedName),
+            ['com.acme.b.UserRepository', 'com.acme.b.UserRepository.Cached', 'com.acme.b.UserRepository.Snapshot', 'com.acme.b.UserRepository.Kind']);
+        const baseFile = scanTypeDeclarations(baseRepository, '/ws/a/BaseRepository.java');
+        check('Generic arguments are erased from supertypes',
+            baseFile.declarations.map(d => d.supertypes),
+            [['Repository', 'java.io.Serializable']]);
+        check('Comments, string literals and .class literals are ignored', baseFile.declarations.length, 1);
+        check('Declaration lines are zero based', userFile.declarations.map(d => d.line), [2, 3, 6, 7]);
+
+        // 测试2: 从工作区构建索引，直接子类型
+        vscode.workspace.workspaceFolders = [{ uri: vscode.Uri.file(root) }];
+        await index.ensureBuilt();
+        check('Ignored build output is not indexed', index.getTypeCount(), 8);
+        check('Direct subtypes of a qualified interface exclude same-named types',
+            index.getDirectSubtypes('com.acme.a.Repository').map(d => d.simpleName).sort(),
+            ['BaseRepository', 'Snapshot']);
+        check('Simple name lookup returns every candidate',
+            index.getDirectSubtypes('Repository').map(d => d.simpleName).sort(),
+            ['BaseRepository', 'OtherRepo', 'Snapshot']);
+
+        // 测试3: 传递闭包
+        // 同一层内的顺序取决于文件发现顺序
+        const allSubtypes = index.getAllSubtypes('com.acme.a.Repository').map(d => d.simpleName);
+        check('All subtypes are found transitively, closest first',
+            [...allSubtypes.slice(0, 2).sort(), ...allSubtypes.slice(2)],
+            ['BaseRepository', 'Snapshot', 'UserRepository', 'Cached']);
+        check('Implementations of Runnable include nested enum and class',
+            index.getAllSubtypes('Runnable').map(d => d.simpleName).sort(),
+            ['Cached', 'Kind']);
+
+        // 测试4: 文件监听器报告的路径与初始扫描使用相同的排除规则
+        const generated = path.join(root, 'target', 'generated', 'GeneratedRepo.java');
+        await index['updateWatchedFile'](vscode.Uri.file(generated));
+        check('Watcher changes under ignored folders stay out of the index',
+            index.getDirectSubtypes('com.acme.a.Repository').map(d => d.simpleName).sort(),
+            ['BaseRepository', 'Snapshot']);
+        const added = write(root, 'd/JdbcRepo.java', `package com.acme.d;
+public class JdbcRepo implements com.acme.a.Repository<String, Long> {}`);
+        await index['updateWatchedFile'](vscode.Uri.file(added));
+        check('Watcher changes elsewhere are indexed',
+            index.getDirectSubtypes('com.acme.a.Repository').map(d => d.simpleName).sort(),
+            ['BaseRepository', 'JdbcRepo', 'Snapshot']);
+        index.removeFile(added);
+
+        // 测试5: 大工作区中的查询不再受20个符号的限制
+        for (let i = 0; i < 5000; i++) {
+            await index.updateFile(write(root, `gen/Impl${i}.java`, `package com.acme.gen;
+import com.acme.a.Repository;
+public class Impl${i} implements Repository<String, Long> {}`));
+        }
+        const startTime = Date.now();
+        const implementations = index.getDirectSubtypes('com.acme.a.Repository');
+        check('All 5000 generated implementations are returned', implementations.length, 5002);
+        console.log(`   lookup took ${Date.now() - startTime}ms`);
+    } finally {
+        index.dispose();
+        fs.rmSync(root, { recursive: true, force: true });
+    }
+
+    console.log(allPassed ? '\n🎉 All subtype index tests passed!' : '\n❌ Some subtype index tests failed');
+    return allPassed;
+}
+
+testSubtypeIndex();
@@ -0,0 +1,82 @@
+// 测试渲染结果缓存：内存 LRU（按字节淘汰）+ 磁盘缓存（需先 npm run compile）
+const fs = require('fs');
+const os = require('os');
+const path = require('path');
+const crypto = require('crypto');
+const { SvgCache } = require('../out/cache/SvgCache');
+
+function fakeSvg(name, size) {
+    return `<svg><text>${name}</text>${'x'.repeat(size)}</svg>`;
+}
+
+async function testSvgCache() {
+    console.log('=== Testing SVG Cache ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    const tmpDir = fs.mkdtempSync(path.join(os.tmpdir(), 'svg-cache-'));
+    try {
+        // 测试1: 键只取决于 PlantUML 文本和渲染器
+        const keyA = SvgCache.hashSource('@startuml\nclass A\n@enduml', 'local');
+        check('Same source gives the same key', keyA === SvgCache.hashSource('@startuml\nclass A\n@enduml', 'local'));
+        check('Renderer is part of the key', keyA !== SvgCache.hashSource('@startuml\nclass A\n@enduml', 'server'));
+
+        // 测试2: 内存命中
+        const cache = new SvgCache(tmpDir, 64 * 1024, 1024 * 1024);
+        check('Cold lookup misses', await cache.get(keyA) === undefined);
+        await cache.set(keyA, fakeSvg('A', 100));
+        check('Memory hit after set', (await cache.get(keyA) || '').includes('<text>A</text>'));
+
+        // 测试3: 内存按字节淘汰（每个约 14KB，64KB 上限放不下 6 个）
+        const names = ['B', 'C', 'D', 'E', 'F', 'G'];
+        const keys = names.map(name => SvgCache.hashSource(name));
+        for (let i = 0; i < keys.length; i++) {
+            await cache.set(keys[i], fakeSvg(names[i], 7000));
+        }
+        let stats = cache.getStats();
+        check('Memory is bounded by bytes', stats.memoryBytes <= 64 * 1024 && stats.memoryEvictions > 0, `${stats.memoryEntries} entries, ${stats.memoryBytes} bytes, ${stats.memoryEvictions} evicted`);
+        check('Evicted entries are still on disk', stats.diskEntries === 7, `${stats.diskEntries} on disk`);
+
+        // 超过内存上限 1/4 的图只放磁盘
+        const huge = SvgCache.hashSource('huge');
+        await cache.set(huge, fakeSvg('huge', 20000));
+        check('Huge diagram skips the memory level', cache.getStats().memoryEntries === stats.memoryEntries && (await cache.get(huge) || '').includes('huge'));
+
+        // 测试4: 新实例（模拟重启）从磁盘读取
+        const restarted = new SvgCache(tmpDir, 64 * 1024, 1024 * 1024);
+        const startTime = Date.now();
+        const fromDisk = await restarted.get(keys[0]);
+        check('Disk hit after restart', (fromDisk || '').includes('<text>B</text>'), `${Date.now() - startTime}ms`);
+        await restarted.get(keys[0]);
+        stats = restarted.getStats();
+        check('Second lookup is a memory hit', stats.diskHits === 1 && stats.memoryHits === 1, JSON.stringify({ disk: stats.diskHits, memory: stats.memoryHits }));
+
+        // 测试5: 磁盘按大小淘汰最久未用的文件
+        const small = new SvgCache(tmpDir, 64 * 1024, stats.diskBytes);
+        await small.get(keys[0]);
+        const big = SvgCache.hashSource('big');
+        await small.set(big, fakeSvg('big', 0) + crypto.randomBytes(200).toString('hex'));
+        const smallStats = small.getStats();
+        check('Disk is bounded by bytes', smallStats.diskBytes <= stats.diskBytes && smallStats.diskEvictions > 0, `${smallStats.diskEvictions} evicted`);
+        check('Recently used entry survives disk eviction', fs.readdirSync(tmpDir).some(name => name.includes(keys[0])));
+
+        // 测试6: 损坏的文件当作未命中
+        const corrupted = fs.readdirSync(tmpDir).find(name => name.includes(keys[0]));
+        fs.writeFileSync(path.join(tmpDir, corrupted), 'not gzip');
+        const fresh = new SvgCache(tmpDir);
+        check('Corrupt entry is a miss', await fresh.get(keys[0]) === undefined);
+    } finally {
+        fs.rmSync(tmpDir, { recursive: true, force: true });
+    }
+
+    console.log(allPassed ? '\n🎉 All SVG cache tests passed!' : '\n❌ Some SVG cache tests failed');
+    return allPassed;
+}
+
+testSvgCache();
@@ -0,0 +1,50 @@
+// 测试渲染结果 SVG 的净化：去掉脚本、foreignObject、事件属性和 javascript: 链接（需先 npm run compile）
+const { sanitizeSvg } = require('../out/render/SvgSanitizer');
+
+function testSvgSanitizer() {
+    console.log('=== Testing SVG Sanitizer ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: 正常的图保持不变
+    const diagram = '<svg xmlns="http://www.w3.org/2000/svg" width="100" height="50"><g>' +
+        '<a href="openclass:com.example.User" xlink:href="openclass:com.example.User" target="_top">' +
+        '<rect x="1" y="2" width="30" height="20" style="fill:#FEFECE;"/>' +
+        '<text x="5" y="15">User&lt;T&gt;</text></a></g></svg>';
+    check('A plain diagram passes unchanged', sanitizeSvg(diagram) === diagram);
+
+    // 测试2: 脚本和嵌入内容连同内部一起删除
+    const scripted = sanitizeSvg('<svg><script>alert(1)</script><SCRIPT type="x">alert(2)</SCRIPT>' +
+        '<foreignObject><div><script>alert(3)</script></div></foreignObject>' +
+        '<iframe src="https://example.com"></iframe><rect/></svg>');
+    check('Script, foreignObject and iframe are removed with their content', scripted === '<svg><rect/></svg>', scripted);
+    const nested = sanitizeSvg('<svg><foreignObject><foreignObject>a</foreignObject>b</foreignObject><g/></svg>');
+    check('Nested dropped elements are skipped as a whole', nested === '<svg><g/></svg>', nested);
+    const unclosed = sanitizeSvg('<svg><script>alert(1)');
+    check('An unclosed script drops the rest of the markup', unclosed === '<svg>', unclosed);
+
+    // 测试3: 事件属性和脚本链接被删除
+    const handlers = sanitizeSvg('<svg onload="alert(1)"><rect OnClick=\'alert(2)\' onmouseover=alert(3) width="5"/></svg>');
+    check('on* attributes are removed', handlers === '<svg><rect width="5"/></svg>', handlers);
+    const links = sanitizeSvg('<svg><a href="javascript:alert(1)"><text/></a>' +
+        '<a xlink:href=" JaVaScRiPt:alert(2)"/><a href="java&#x09;script:alert(3)"/>' +
+        '<a href="&#106;avascript:alert(4)"/><a href="data:text/html,x"/><a href="https://example.com"/></svg>');
+    check('javascript: links are removed, encoded or not', !/script:|data:text/i.test(links) && links.includes('href="https://example.com"'), links);
+
+    // 测试4: 不成形的标签被转义，不能绕过检查
+    const malformed = sanitizeSvg('<svg><text>a < b</text><img src=x onerror=alert(1)//</svg>');
+    check('Malformed tags are escaped', !malformed.includes('<img') && malformed.includes('a &lt; b'), malformed);
+    const comments = sanitizeSvg('<?xml version="1.0"?><!DOCTYPE svg><svg><!-- <script>alert(1)</script> --><g/></svg>');
+    check('Declarations and comments are dropped', comments === '<svg><g/></svg>', comments);
+
+    console.log(allPassed ? '\n🎉 All SVG sanitizer tests passed!' : '\n❌ Some SVG sanitizer tests failed');
+    return allPassed;
+}
+
+testSvgSanitizer();
@@ -0,0 +1,125 @@
+// 测试分阶段追踪：嵌套、计数器汇总与 Chrome trace 导出（需先 npm run compile）
+const { Tracer } = require('../out/trace/Tracer');
+
+const sleep = ms => new Promise(resolve => setTimeout(resolve, ms));
+
+async function testTracer() {
+    console.log('=== Testing Tracer ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    const tracer = new Tracer();
+    const completed = [];
+    tracer.onDidCompleteTrace(trace => completed.push(trace));
+
+    // 测试1: 追踪之外的 span 和计数器不记录任何内容
+    const outside = await tracer.span('parse', 'parser', async span => {
+        span.count('lsCalls');
+        tracer.count('cacheHits');
+        return 'ok';
+    });
+    check('Spans outside a trace still run their work', outside === 'ok');
+    check('Spans outside a trace are not recorded', completed.length === 0 && tracer.getCompletedTraces().length === 0);
+
+    // 测试2: 嵌套 span，计数器向上汇总
+    const result = await tracer.trace('Folder diagram demo', async () => {
+        await tracer.span('discovery', 'io', async span => {
+            span.count('files', 3);
+            await sleep(5);
+        });
+        // 并发解析，每个 parse 内部嵌套一个 LS 查询
+        await Promise.all([1, 2, 3].map(index => tracer.span('parse', 'parser', async () => {
+            await sleep(index * 3);
+            await tracer.span('ls.DocumentSymbolProvider', 'ls', async () => {
+                tracer.count('lsCalls');
+                await sleep(2);
+            });
+            if (index === 2) {
+                tracer.count('cacheHits');
+            }
+        })));
+        tracer.spanSync('generate', 'generate', () => {
+            tracer.spanSync('emit', 'generate', span => span.count('classesEmitted', 3));
+        });
+        return 42;
+    });
+    check('Trace returns the command result', result === 42);
+    check('Trace completes when the command ends', completed.length === 1);
+
+    const trace = completed[0];
+    const byName = name => trace.spans.filter(span => span.name === name);
+    const total = byName('total')[0];
+    check('Root span covers the whole command', total && total.duration >= 5, total && `${total.duration.toFixed(1)}ms`);
+    check('Every span is recorded', byName('parse').length === 3 && byName('ls.DocumentSymbolProvider').length === 3 && byName('emit').length === 1);
+    check('Counters roll up to enclosing spans', total.counters.lsCalls === 3 && total.counters.cacheHits === 1 && total.counters.files === 3 && byName('generate')[0].counters.classesEmitted === 3);
+    check('Counters stay out of sibling spans', byName('discovery')[0].counters.lsCalls === undefined && byName('parse').every(span => span.counters.lsCalls === 1));
+
+    // 测试3: 同一行内的 span 必须正确嵌套（trace viewer 的要求）
+    let badNesting = 0;
+    const lanes = new Map();
+    for (const span of trace.spans) {
+        const lane = lanes.get(span.lane) || [];
+        lane.push(span);
+        lanes.set(span.lane, lane);
+    }
+    for (const spans of lanes.values()) {
+        for (const a of spans) {
+            for (const b of spans) {
+                const aEnd = a.start + a.duration;
+                const bEnd = b.start + b.duration;
+                const overlaps = a.start < bEnd && b.start < aEnd;
+                const nested = (a.start >= b.start && aEnd <= bEnd) || (b.start >= a.start && bEnd <= aEnd);
+                if (a !== b && overlaps && !nested) {
+                    badNesting++;
+                }
+            }
+        }
+    }
+    check('Concurrent spans get separate lanes', lanes.size > 1 && badNesting === 0, `${lanes.size} lanes`);
+
+    // 测试4: Chrome trace 导出与摘要
+    const exported = JSON.parse(tracer.exportChromeTrace());
+    const complete = exported.traceEvents.filter(event => event.ph === 'X');
+    check('Export has one complete event per span', complete.length === trace.spans.length);
+    check('Export names the process after the trace', exported.traceEvents.some(event => event.ph === 'M' && event.args.name === 'Folder diagram demo'));
+    check('Exported events carry counters', complete.find(event => event.name === 'total').args.lsCalls === 3);
+
+    const summary = trace.summarize();
+    check('Summary lists every stage', ['total', 'discovery', 'parse', 'ls.DocumentSymbolProvider', 'generate', 'emit'].every(name => summary.includes(name)));
+    check('Summary counts concurrent spans', /parse\s+3\s/.test(summary));
+
+    // 测试5: 命令结束后仍在运行的工作（如后台渲染）会被等待
+    let release;
+    const detached = new Promise(resolve => { release = resolve; });
+    await tracer.trace('Detached render', async () => {
+        tracer.span('render', 'render', () => detached);
+    });
+    check('Trace waits for detached spans', completed.length === 1);
+    release();
+    await sleep(1);
+    check('Trace completes once detached spans end', completed.length === 2 && completed[1].spans.some(span => span.name === 'render'));
+
+    // 测试6: verbose 日志开关
+    const logged = [];
+    const log = console.log;
+    console.log = message => logged.push(message);
+    try {
+        tracer.log('hidden');
+        tracer.setVerbose(true);
+        tracer.log('shown');
+    } finally {
+        console.log = log;
+    }
+    check('Detail logging only when verbose', logged.join() === 'shown');
+
+    console.log(allPassed ? '\n🎉 All tracer tests passed!' : '\n❌ Some tracer tests failed');
+    return allPassed;
+}
+
+testTracer();
@@ -0,0 +1,30 @@
+// 测试写入 webview 页面的文本转义：HTML 文本和 <script> 中的字符串字面量（需先 npm run compile）
+const { escapeHtml, scriptStringLiteral } = require('../out/webview/ContentSecurityPolicy');
+
+function testWebviewEscaping() {
+    console.log('=== Testing Webview Escaping ===\n');
+
+    let allPassed = true;
+    const check = (name, passed, detail) => {
+        console.log(`${passed ? '✅' : '❌'} ${name}${detail ? ` (${detail})` : ''}`);
+        if (!passed) {
+            allPassed = false;
+        }
+    };
+
+    // 测试1: 泛型和引号不会被当成标签或属性结束
+    const generics = escapeHtml('Map<String, List<T>> & "quoted" \'single\'');
+    check('Generics are not read as tags', !/[<>"']/.test(generics) && generics.includes('&#60;String'), generics);
+
+    // 测试2: 字符串字面量不能跳出 <script>，也不能跳出字符串
+    const hostile = 'class `${alert(1)}`\n</script><script>alert(2)</script> "\\';
+    const literal = scriptStringLiteral(hostile);
+    check('No "<" reaches the script block', !literal.includes('<'), literal);
+    check('The text stays in a double-quoted string, not a template literal', literal.startsWith('"') && literal.endsWith('"'));
+    check('The literal evaluates back to the original text', eval(literal) === hostile);
+
+    console.log(allPassed ? '\n🎉 All webview escaping tests passed!' : '\n❌ Some webview escaping tests failed');
+    return allPassed;
+}
+
+testWebviewEscaping();